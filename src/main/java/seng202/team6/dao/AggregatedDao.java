@@ -5,6 +5,8 @@ import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.collections.ObservableMap;
@@ -26,6 +28,44 @@ import seng202.team6.util.Timer;
  */
 public class AggregatedDao extends Dao {
 
+  /**
+   * Query getting a page of reviews in ID order after a review ID. Only review columns are
+   * selected as WINE also has a DESCRIPTION, the wines are got after.
+   */
+  public static final String REVIEWS_AFTER_SQL =
+      "SELECT WINE_REVIEW.ID as wine_review_id, WINE_REVIEW.* "
+      + "FROM WINE_REVIEW "
+      + "INNER JOIN WINE ON WINE_REVIEW.WINE_ID = WINE.ID "
+      + "WHERE WINE_REVIEW.ID > ? "
+      + "ORDER BY WINE_REVIEW.ID "
+      + "LIMIT ? "
+      + "OFFSET ?";
+
+  /**
+   * Query getting a page of reviews like {@link #REVIEWS_AFTER_SQL}, filtered by username, wine
+   * title and rating.
+   */
+  public static final String FILTERED_REVIEWS_AFTER_SQL =
+      "SELECT WINE_REVIEW.ID as wine_review_id, WINE_REVIEW.* "
+      + "FROM WINE_REVIEW "
+      + "INNER JOIN WINE ON WINE_REVIEW.WINE_ID = WINE.ID "
+      + "WHERE WINE_REVIEW.ID > ? "
+      + "AND WINE_REVIEW.USERNAME LIKE ? "
+      + "AND WINE.TITLE LIKE ? "
+      + "AND WINE_REVIEW.RATING BETWEEN ? AND ? "
+      + "ORDER BY WINE_REVIEW.ID "
+      + "LIMIT ? "
+      + "OFFSET ?";
+
+  /**
+   * Query getting the notes of a user with the wines they are on.
+   */
+  public static final String NOTES_AND_WINES_BY_USER_SQL =
+      "SELECT WINE.ID as wine_id, WINE.*, NOTES.ID as note_id, NOTES.* "
+      + "FROM NOTES "
+      + "INNER JOIN WINE ON NOTES.WINE_ID = WINE.ID "
+      + "WHERE NOTES.USERNAME = ?";
+
   private final WineReviewDao wineReviewDao;
   private final WineNotesDao wineNotesDao;
   private final WineDao wineDao;
@@ -58,25 +98,24 @@ public class AggregatedDao extends Dao {
    */
   public ObservableMap<Wine, Note> getAllNotesMappedWithWinesByUser(User user) throws SQLException {
     Timer timer = new Timer();
-    String sql = "SELECT WINE.ID as wine_id, WINE.*, NOTES.ID as note_id, NOTES.* "
-        + "FROM NOTES "
-        + "INNER JOIN WINE ON NOTES.WINE_ID = WINE.ID "
-        + "WHERE NOTES.USERNAME = ?";
+    wineDao.flushUpdatesIfWriterFree();
     ObservableMap<Wine, Note> wineAndNotes = FXCollections.observableHashMap();
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
-      statement.setString(1, user.getUsername());
-
-      try (ResultSet resultSet = statement.executeQuery()) {
-        while (resultSet.next()) {
-          Wine wine = wineDao.extractWineFromResultSet(resultSet, "wine_id");
-          Note note = wineNotesDao.extractNoteFromResultSet(resultSet, "note_id");
-          wineAndNotes.put(wine, note);
+    return read(connection -> {
+      try (PreparedStatement statement = prepare(connection, NOTES_AND_WINES_BY_USER_SQL)) {
+        statement.setString(1, user.getUsername());
+
+        try (ResultSet resultSet = statement.executeQuery()) {
+          while (resultSet.next()) {
+            Wine wine = wineDao.extractWineFromResultSet(resultSet, "wine_id");
+            Note note = wineNotesDao.extractNoteFromResultSet(resultSet, "note_id");
+            wineAndNotes.put(wine, note);
+          }
         }
+        log.info("Successfully retrieves {} wines with notes by user '{}' in {}ms",
+            wineAndNotes.size(), user.getUsername(), timer.currentOffsetMilliseconds());
       }
-      log.info("Successfully retrieves {} wines with notes by user '{}' in {}ms",
-          wineAndNotes.size(), user.getUsername(), timer.currentOffsetMilliseconds());
-    }
-    return wineAndNotes;
+      return wineAndNotes;
+    });
   }
 
   /**
@@ -88,28 +127,31 @@ public class AggregatedDao extends Dao {
   public ObservableList<WineDatePair> getWinesMappedWithDatesFromList(WineList wineList)
       throws SQLException {
     Timer timer = new Timer();
+    wineDao.flushUpdatesIfWriterFree();
     String sql = "SELECT WINE.ID as wine_id, WINE.*, GEOLOCATION.LATITUDE, GEOLOCATION.LONGITUDE, "
         + "DATE_ADDED "
         + "FROM WINE "
         + "INNER JOIN LIST_ITEMS ON WINE.ID = LIST_ITEMS.WINE_ID "
         + "INNER JOIN LIST_NAME ON LIST_ITEMS.LIST_ID = LIST_NAME.ID "
-        + "LEFT JOIN GEOLOCATION on lower(WINE.REGION) like lower(GEOLOCATION.NAME) "
+        + WineDao.GEOLOCATION_JOIN
         + "WHERE LIST_NAME.ID = ?";
     ObservableList<WineDatePair> winesAndDates = FXCollections.observableArrayList();
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
-      statement.setLong(1, wineList.id());
-
-      try (ResultSet resultSet = statement.executeQuery()) {
-        while (resultSet.next()) {
-          Wine wine = wineDao.extractWineFromResultSet(resultSet, "wine_id");
-          Date date = resultSet.getDate("DATE_ADDED");
-          winesAndDates.add(new WineDatePair(wine, date));
+    return read(connection -> {
+      try (PreparedStatement statement = prepare(connection, sql)) {
+        statement.setLong(1, wineList.id());
+
+        try (ResultSet resultSet = statement.executeQuery()) {
+          while (resultSet.next()) {
+            Wine wine = wineDao.extractWineFromResultSet(resultSet, "wine_id");
+            Date date = resultSet.getDate("DATE_ADDED");
+            winesAndDates.add(new WineDatePair(wine, date));
+          }
         }
+        log.info("Successfully retrieves {} wines with dates in list {} in {}ms",
+            winesAndDates.size(), wineList.id(), timer.currentOffsetMilliseconds());
       }
-      log.info("Successfully retrieves {} wines with dates in list {} in {}ms",
-          winesAndDates.size(), wineList.id(), timer.currentOffsetMilliseconds());
-    }
-    return winesAndDates;
+      return winesAndDates;
+    });
   }
 
   /**
@@ -120,30 +162,34 @@ public class AggregatedDao extends Dao {
    */
   public ObservableList<Wine> getWinesInList(WineList wineList) throws SQLException {
     Timer timer = new Timer();
+    wineDao.flushUpdatesIfWriterFree();
     String sql = "SELECT WINE.ID as wine_id, WINE.*, GEOLOCATION.LATITUDE, GEOLOCATION.LONGITUDE "
         + "FROM WINE "
         + "INNER JOIN LIST_ITEMS ON WINE.ID = LIST_ITEMS.WINE_ID "
         + "INNER JOIN LIST_NAME ON LIST_ITEMS.LIST_ID = LIST_NAME.ID "
-        + "LEFT JOIN GEOLOCATION on lower(WINE.REGION) like lower(GEOLOCATION.NAME) "
+        + WineDao.GEOLOCATION_JOIN
         + "WHERE LIST_NAME.ID = ?";
     ObservableList<Wine> wines = FXCollections.observableArrayList();
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
-      statement.setLong(1, wineList.id());
+    return read(connection -> {
+      try (PreparedStatement statement = prepare(connection, sql)) {
+        statement.setLong(1, wineList.id());
 
-      try (ResultSet resultSet = statement.executeQuery()) {
-        while (resultSet.next()) {
-          Wine wine = wineDao.extractWineFromResultSet(resultSet, "wine_id");
-          wines.add(wine);
+        try (ResultSet resultSet = statement.executeQuery()) {
+          while (resultSet.next()) {
+            Wine wine = wineDao.extractWineFromResultSet(resultSet, "wine_id");
+            wines.add(wine);
+          }
         }
+        log.info("Successfully retrieved {} wines in list {} in {}ms",
+            wines.size(), wineList.id(), timer.currentOffsetMilliseconds());
       }
-      log.info("Successfully retrieved {} wines in list {} in {}ms",
-          wines.size(), wineList.id(), timer.currentOffsetMilliseconds());
-    }
-    return wines;
+      return wines;
+    });
   }
 
   /**
-   * Gets a list of wine reviews and wines given [optional] filters.
+   * Gets a list of wine reviews and wines given [optional] filters, in the order the reviews were
+   * added.
    *
    * @param begin   begin
    * @param end     end
@@ -153,46 +199,106 @@ public class AggregatedDao extends Dao {
   public ObservableList<Pair<WineReview, Wine>> getWineReviewsAndWines(int begin, int end,
       ReviewFilters filters) throws SQLException {
     Timer timer = new Timer();
-    // We are out of columns to rename, else we have 2 descriptions and it flicks between the two
-    String sql = "SELECT WINE.ID as wine_id, WINE_REVIEW.ID as wine_review_id, "
-        + "WINE_REVIEW.*, GEOLOCATION.LATITUDE, GEOLOCATION.LONGITUDE "
-        + "FROM WINE_REVIEW "
-        + "INNER JOIN WINE ON WINE_REVIEW.WINE_ID = WINE.ID "
-        + "LEFT JOIN GEOLOCATION on lower(WINE.REGION) like lower(GEOLOCATION.NAME) "
-        + (filters == null ? "" : "WHERE WINE_REVIEW.USERNAME LIKE ? "
-        + "AND WINE.TITLE LIKE ? "
-        + "AND WINE_REVIEW.RATING BETWEEN ? AND ? ")
-        + "LIMIT ? "
-        + "OFFSET ?";
-    ObservableList<Pair<WineReview, Wine>> wineReviewPairs = FXCollections.observableArrayList();
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
-      if (filters != null) {
-        statement.setString(1,
-            filters.getUsername().isEmpty() ? "%" : "%" + filters.getUsername() + "%");
-        statement.setString(2,
-            filters.getWineName().isEmpty() ? "%" : "%" + filters.getWineName() + "%");
-        statement.setInt(3, filters.getMinRating());
-        statement.setInt(4, filters.getMaxRating());
-        statement.setInt(5, end - begin);
-        statement.setInt(6, begin);
-      } else {
-        statement.setInt(1, end - begin);
-        statement.setInt(2, begin);
-      }
+    ObservableList<Pair<WineReview, Wine>> wineReviewPairs = getWineReviewsAndWines(0, begin,
+        end - begin, filters);
+    log.info("Successfully retrieved {} reviews with wines in range {}-{} in {}ms",
+        wineReviewPairs.size(), begin, end, timer.currentOffsetMilliseconds());
+    return wineReviewPairs;
+  }
+
+  /**
+   * Gets a page of wine reviews and wines given [optional] filters, starting after the last
+   * review of the previous page. Seeking past the last review ID keeps pages stable while reviews
+   * are added or deleted, and does not read the reviews of earlier pages.
+   *
+   * @param afterReviewId ID of the last review of the previous page, or 0 for the first page
+   * @param limit         most pairs to return
+   * @param filters       the review filters to filter by
+   * @return pairs of up to limit reviews with IDs after afterReviewId and their wines
+   */
+  public ObservableList<Pair<WineReview, Wine>> getWineReviewsAndWinesAfter(long afterReviewId,
+      int limit, ReviewFilters filters) throws SQLException {
+    Timer timer = new Timer();
+    ObservableList<Pair<WineReview, Wine>> wineReviewPairs = getWineReviewsAndWines(
+        afterReviewId, 0, limit, filters);
+    log.info("Successfully retrieved {} reviews with wines after review ID {} in {}ms",
+        wineReviewPairs.size(), afterReviewId, timer.currentOffsetMilliseconds());
+    return wineReviewPairs;
+  }
+
+  /**
+   * Gets reviews in ID order with their wines, skipping both reviews up to an ID and a number of
+   * the reviews after it.
+   *
+   * @param afterReviewId ID to start after
+   * @param offset        number of matching reviews to skip
+   * @param limit         most pairs to return
+   * @param filters       the review filters to filter by, or null for none
+   * @return pairs of reviews and their wines
+   */
+  private ObservableList<Pair<WineReview, Wine>> getWineReviewsAndWines(long afterReviewId,
+      int offset, int limit, ReviewFilters filters) throws SQLException {
+    wineDao.flushUpdatesIfWriterFree();
+    String sql = filters == null ? REVIEWS_AFTER_SQL : FILTERED_REVIEWS_AFTER_SQL;
+    ObservableList<WineReview> wineReviews = read(connection -> {
+      try (PreparedStatement statement = prepare(connection, sql)) {
+        int index = 1;
+        statement.setLong(index++, afterReviewId);
+        if (filters != null) {
+          statement.setString(index++,
+              filters.getUsername().isEmpty() ? "%" : "%" + filters.getUsername() + "%");
+          statement.setString(index++,
+              filters.getWineName().isEmpty() ? "%" : "%" + filters.getWineName() + "%");
+          statement.setInt(index++, filters.getMinRating());
+          statement.setInt(index++, filters.getMaxRating());
+        }
+        statement.setInt(index++, limit);
+        statement.setInt(index, offset);
 
-      try (ResultSet resultSet = statement.executeQuery()) {
-        while (resultSet.next()) {
-          WineReview wineReview = wineReviewDao.extractWineReviewFromResultSet(resultSet,
-              "wine_review_id");
-          long wineKey = resultSet.getLong("wine_id");
-          Wine wine = wineDao.get(wineKey);
-          wineReviewPairs.add(new Pair<>(wineReview, wine));
+        try (ResultSet resultSet = statement.executeQuery()) {
+          return wineReviewDao.extractAllWineReviewsFromResultSet(resultSet, "wine_review_id");
         }
-        log.info("Successfully retrieved {} reviews with wines in range {}-{} in {}ms",
-            wineReviewPairs.size(), begin, end, timer.currentOffsetMilliseconds());
-        return wineReviewPairs;
+      }
+    });
+    return pairWithWines(wineReviews);
+  }
+
+  /**
+   * Gets all reviews by a user along with the wines they review. The wines are loaded with one
+   * query for all the reviews rather than one for each.
+   *
+   * @param user user whose reviews to get
+   * @return pairs of each review and its wine
+   */
+  public ObservableList<Pair<WineReview, Wine>> getWineReviewsAndWines(User user)
+      throws SQLException {
+    Timer timer = new Timer();
+    ObservableList<Pair<WineReview, Wine>> wineReviewPairs = pairWithWines(
+        wineReviewDao.getAll(user));
+    log.info("Successfully retrieved {} reviews with wines by user '{}' in {}ms",
+        wineReviewPairs.size(), user.getUsername(), timer.currentOffsetMilliseconds());
+    return wineReviewPairs;
+  }
+
+  /**
+   * Pairs reviews with their wines, getting all the wines at once.
+   *
+   * @param wineReviews reviews
+   * @return pairs of each review and its wine, skipping reviews whose wine no longer exists
+   */
+  private ObservableList<Pair<WineReview, Wine>> pairWithWines(List<WineReview> wineReviews)
+      throws SQLException {
+    Map<Long, Wine> wines = wineDao.getAll(wineReviews.stream()
+        .map(WineReview::getWineId)
+        .toList());
+    ObservableList<Pair<WineReview, Wine>> wineReviewPairs = FXCollections.observableArrayList();
+    for (WineReview wineReview : wineReviews) {
+      Wine wine = wines.get(wineReview.getWineId());
+      if (wine != null) {
+        wineReviewPairs.add(new Pair<>(wineReview, wine));
       }
     }
+    return wineReviewPairs;
   }
 
   /**
@@ -203,23 +309,26 @@ public class AggregatedDao extends Dao {
    */
   public ObservableList<Wine> getWinesFromVineyard(Vineyard vineyard) throws SQLException {
     Timer timer = new Timer();
+    wineDao.flushUpdatesIfWriterFree();
     String sql = "SELECT WINE.ID as wine_id, WINE.*, GEOLOCATION.LATITUDE, GEOLOCATION.LONGITUDE "
         + "FROM WINE "
-        + "LEFT JOIN GEOLOCATION on lower(WINE.REGION) like lower(GEOLOCATION.NAME) "
+        + WineDao.GEOLOCATION_JOIN
         + "WHERE WINERY = ?";
     ObservableList<Wine> wines = FXCollections.observableArrayList();
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
-      statement.setString(1, vineyard.getName());
+    return read(connection -> {
+      try (PreparedStatement statement = prepare(connection, sql)) {
+        statement.setString(1, vineyard.getName());
 
-      try (ResultSet resultSet = statement.executeQuery()) {
-        while (resultSet.next()) {
-          Wine wine = wineDao.extractWineFromResultSet(resultSet, "wine_id");
-          wines.add(wine);
+        try (ResultSet resultSet = statement.executeQuery()) {
+          while (resultSet.next()) {
+            Wine wine = wineDao.extractWineFromResultSet(resultSet, "wine_id");
+            wines.add(wine);
+          }
         }
+        log.info("Successfully retrieved {} wines from vineyard {} in {}ms",
+            wines.size(), vineyard.getName(), timer.currentOffsetMilliseconds());
       }
-      log.info("Successfully retrieved {} wines from vineyard {} in {}ms",
-          wines.size(), vineyard.getName(), timer.currentOffsetMilliseconds());
-    }
-    return wines;
+      return wines;
+    });
   }
 }
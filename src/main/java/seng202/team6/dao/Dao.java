@@ -1,8 +1,12 @@
 package seng202.team6.dao;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import seng202.team6.util.ConnectionPool;
 
 /**
  * Abstract base class for Data Access Objects (DAO). This class provides a common structure for all
@@ -20,6 +24,20 @@ public abstract class Dao {
    */
   protected final Logger log;
 
+  /**
+   * Pool whose writer is the connection above, used to run queries on read-only connections.
+   * DatabaseManager shares one pool between every DAO, so a pool of the DAO's own is only created
+   * when it is first used without one.
+   */
+  private volatile ConnectionPool connectionPool;
+
+  /**
+   * Whether the pool was created by this DAO, and so is closed when replaced. Guarded by the pool
+   * lock.
+   */
+  private boolean ownsConnectionPool = false;
+  private final Object poolLock = new Object();
+
   /**
    * Constructs a new DAO with the given database connection and initializes logging.
    *
@@ -31,6 +49,108 @@ public abstract class Dao {
     this.log = LogManager.getLogger(implementationClass);
   }
 
+  /**
+   * Sets the pool this DAO runs its queries and writes through, closing the pool it created for
+   * itself if it was used before. Until set, everything runs on the connection the DAO was
+   * constructed with.
+   *
+   * @param connectionPool pool whose writer is this DAO's connection
+   */
+  public void setConnectionPool(ConnectionPool connectionPool) {
+    synchronized (poolLock) {
+      if (ownsConnectionPool) {
+        this.connectionPool.close();
+        ownsConnectionPool = false;
+      }
+      this.connectionPool = connectionPool;
+    }
+  }
+
+  /**
+   * Gets the pool this DAO runs through, creating one of its own on the DAO's connection if none
+   * was set.
+   *
+   * @return connection pool
+   */
+  private ConnectionPool getConnectionPool() {
+    ConnectionPool pool = connectionPool;
+    if (pool != null) {
+      return pool;
+    }
+    synchronized (poolLock) {
+      if (connectionPool == null) {
+        connectionPool = new ConnectionPool(connection);
+        ownsConnectionPool = true;
+      }
+      return connectionPool;
+    }
+  }
+
+  /**
+   * Runs a query through the connection pool, on a read-only connection if one is available.
+   *
+   * @param operation query to run
+   * @param <T>       type of the result
+   * @return result of the query
+   * @throws SQLException if the query failed
+   */
+  protected <T> T read(ConnectionPool.Operation<T> operation) throws SQLException {
+    return getConnectionPool().read(operation);
+  }
+
+  /**
+   * Runs a write on this DAO's connection, queueing behind any other write in progress.
+   *
+   * @param operation write to run
+   * @param <T>       type of the result
+   * @return result of the write
+   * @throws SQLException if the write failed
+   */
+  protected <T> T write(ConnectionPool.Operation<T> operation) throws SQLException {
+    return getConnectionPool().write(operation);
+  }
+
+  /**
+   * Borrows a connection to read from until the lease is closed, for queries whose results are
+   * read after the call returns.
+   *
+   * @return lease of a connection
+   * @throws SQLException if the thread was interrupted while waiting for a connection
+   */
+  protected ConnectionPool.Lease borrowReader() throws SQLException {
+    return getConnectionPool().borrowReader();
+  }
+
+  /**
+   * Gets a prepared statement for the SQL, reused from the connection's statement cache if it was
+   * prepared before. The statement should be closed with try-with-resources, which returns it to
+   * the cache.
+   *
+   * @param connection connection to prepare the statement on, this DAO's connection or one handed
+   *                   to a query
+   * @param sql        SQL to prepare
+   * @return prepared statement
+   * @throws SQLException if the statement could not be prepared
+   */
+  protected PreparedStatement prepare(Connection connection, String sql) throws SQLException {
+    return getConnectionPool().prepare(connection, sql);
+  }
+
+  /**
+   * Waits for the writer, for writes spanning several calls. Must be followed by
+   * {@link #unlockWriter()}.
+   */
+  protected void lockWriter() {
+    getConnectionPool().lockWriter();
+  }
+
+  /**
+   * Releases the writer.
+   */
+  protected void unlockWriter() {
+    getConnectionPool().unlockWriter();
+  }
+
   /**
    * Returns an array of SQL statements required to initialize the tables handled by this DAO.
    * Subclasses should override this method to provide their specific SQL initialization
@@ -43,4 +163,15 @@ public abstract class Dao {
     return null;
   }
 
+  /**
+   * Returns the migrations bringing the tables handled by this DAO up to date in databases created
+   * by earlier versions of the app. Subclasses should override this method whenever they change
+   * the schema of an existing table.
+   *
+   * @return migrations of this DAO's tables, empty if there are none
+   */
+  public List<Migration> getMigrations() {
+    return List.of();
+  }
+
 }
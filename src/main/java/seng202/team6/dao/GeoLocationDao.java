@@ -31,7 +31,25 @@ public class GeoLocationDao extends Dao {
   }
 
   /**
-   * Returns the SQL statements required to initialise the GEOLOCATION table.
+   * Index on the lowercased name, as wines and vineyards are matched to geolocations
+   * case-insensitively.
+   */
+  private static final String NAME_KEY_INDEX_SQL =
+      "CREATE INDEX IF NOT EXISTS GEOLOCATION_NAME_KEY ON GEOLOCATION (LOWER(NAME))";
+
+  /**
+   * Names the geocoding API found nothing for, along with when they were last tried, so they are
+   * not looked up again on every launch.
+   */
+  private static final String UNRESOLVED_TABLE_SQL =
+      "CREATE TABLE IF NOT EXISTS GEOLOCATION_UNRESOLVED ("
+          + "NAME           VARCHAR(64)   PRIMARY KEY,"
+          + "ATTEMPTED      INTEGER       NOT NULL"
+          + ")";
+
+  /**
+   * Returns the SQL statements required to initialise the GEOLOCATION and GEOLOCATION_UNRESOLVED
+   * tables.
    *
    * @return Array of SQL statements for initialising the GEOLOCATION table
    */
@@ -42,10 +60,30 @@ public class GeoLocationDao extends Dao {
             + "NAME           VARCHAR(64)   PRIMARY KEY,"
             + "LATITUDE       DECIMAL       NOT NULL,"
             + "LONGITUDE      DECIMAL       NOT NULL"
-            + ")"
+            + ")",
+        NAME_KEY_INDEX_SQL,
+        UNRESOLVED_TABLE_SQL
     };
   }
 
+  /**
+   * Gets the migrations of the geolocation tables. Version 2 indexes the lowercased names and
+   * version 7 adds the table of unresolved names.
+   *
+   * @return migrations
+   */
+  @Override
+  public List<Migration> getMigrations() {
+    return List.of(
+        new Migration(2, "Index geolocations by lowercased name", connection -> {
+          if (MigrationRunner.tableExists(connection, "GEOLOCATION")) {
+            MigrationRunner.execute(connection, NAME_KEY_INDEX_SQL);
+          }
+        }),
+        new Migration(7, "Remember names geocoding found nothing for",
+            connection -> MigrationRunner.execute(connection, UNRESOLVED_TABLE_SQL)));
+  }
+
   /**
    * Adds default geolocation data to the database from a CSV file, if the GEOLOCATION table is
    * empty. The CSV file should contain geolocation data with name, latitude, and longitude.
@@ -75,7 +113,7 @@ public class GeoLocationDao extends Dao {
   public void addAll(Map<String, GeoLocation> geoLocations) {
     Timer timer = new Timer();
     String sql = "INSERT INTO GEOLOCATION values (?, ?, ?);";
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+    try (PreparedStatement statement = prepare(connection, sql)) {
       for (Entry<String, GeoLocation> entry : geoLocations.entrySet()) {
         statement.setString(1, entry.getKey());
         statement.setDouble(2, entry.getValue().getLatitude());
@@ -91,6 +129,99 @@ public class GeoLocationDao extends Dao {
     }
   }
 
+  /**
+   * Adds or replaces a single geolocation, and forgets that its name was ever unresolved. Safe to
+   * call from several threads at once as locations are resolved.
+   *
+   * @param name        location name
+   * @param geoLocation coordinates of the location
+   */
+  public void add(String name, GeoLocation geoLocation) {
+    String sql = "INSERT OR REPLACE INTO GEOLOCATION VALUES (?, ?, ?)";
+    String deleteSql = "DELETE FROM GEOLOCATION_UNRESOLVED WHERE NAME = ?";
+    try {
+      write(connection -> {
+        try (PreparedStatement statement = prepare(connection, sql)) {
+          statement.setString(1, name);
+          statement.setDouble(2, geoLocation.getLatitude());
+          statement.setDouble(3, geoLocation.getLongitude());
+          statement.executeUpdate();
+        }
+        try (PreparedStatement statement = prepare(connection, deleteSql)) {
+          statement.setString(1, name);
+          statement.executeUpdate();
+        }
+        return null;
+      });
+      log.info("Successfully added geolocation for '{}'", name);
+    } catch (SQLException error) {
+      log.error("Failed to add geolocation for '{}'", name, error);
+    }
+  }
+
+  /**
+   * Records that a location name could not be resolved, so it is not tried again until a while
+   * later.
+   *
+   * @param name location name
+   */
+  public void addUnresolved(String name) {
+    String sql = "INSERT OR REPLACE INTO GEOLOCATION_UNRESOLVED VALUES (?, ?)";
+    try {
+      write(connection -> {
+        try (PreparedStatement statement = prepare(connection, sql)) {
+          statement.setString(1, name);
+          statement.setLong(2, System.currentTimeMillis());
+          statement.executeUpdate();
+        }
+        return null;
+      });
+      log.info("Recorded '{}' as unresolved", name);
+    } catch (SQLException error) {
+      log.error("Failed to record '{}' as unresolved", name, error);
+    }
+  }
+
+  /**
+   * Retrieves the names of locations which could not be resolved when last tried, if that was
+   * recently.
+   *
+   * @param locationNames  location names to check
+   * @param attemptedSince time in epoch milliseconds, attempts before which are ignored
+   * @return the location names which were unresolved when tried since then
+   */
+  public Set<String> getUnresolvedLocationNames(Set<String> locationNames, long attemptedSince) {
+    Timer timer = new Timer();
+    String sql = "SELECT NAME FROM GEOLOCATION_UNRESOLVED WHERE ATTEMPTED >= ? AND NAME IN ("
+        + String.join(",", Collections.nCopies(locationNames.size(), "?")) + ")";
+    Set<String> unresolvedLocationNames = new HashSet<>();
+
+    try {
+      read(connection -> {
+        try (PreparedStatement statement = prepare(connection, sql)) {
+          statement.setLong(1, attemptedSince);
+          int paramIndex = 2;
+          for (String locationName : locationNames) {
+            statement.setString(paramIndex++, locationName);
+          }
+
+          try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+              unresolvedLocationNames.add(resultSet.getString("NAME"));
+            }
+          }
+        }
+        return null;
+      });
+      log.info("Successfully found {} out of {} location names unresolved in {}ms",
+          unresolvedLocationNames.size(), locationNames.size(),
+          timer.currentOffsetMilliseconds());
+    } catch (SQLException error) {
+      log.error("Failed to retrieve unresolved location names", error);
+    }
+    return unresolvedLocationNames;
+  }
+
   /**
    * Retrieves the names of locations that already exist in the GEOLOCATION table. This method
    * checks for matches between the provided set of location names and those not in the table.
@@ -105,7 +236,7 @@ public class GeoLocationDao extends Dao {
         + String.join(",", Collections.nCopies(locationNames.size(), "?")) + ")";
     Set<String> existingLocationNames = new HashSet<>();
 
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+    try (PreparedStatement statement = prepare(connection, sql)) {
       int paramIndex = 1;
       for (String locationName : locationNames) {
         statement.setString(paramIndex++, locationName);
@@ -151,7 +282,7 @@ public class GeoLocationDao extends Dao {
     int rowsAffected = 0;
     int batchSize = 2048;
 
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+    try (PreparedStatement statement = prepare(connection, sql)) {
       for (int i = 1; i < rows.size(); i++) {
         String[] row = rows.get(i);
         String name = row[0];
@@ -0,0 +1,109 @@
+package seng202.team6.dao;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * A change to the schema of databases created by an earlier version of the app. Migrations are
+ * numbered by the schema version they bring a database up to, which is unique across all DAOs.
+ * <p>
+ * The schema step runs when the database is opened, in one transaction with the version update.
+ * Changes to existing rows which would take too long to run at startup are made by a backfill,
+ * which is run in batches in the background once the app is usable.
+ * </p>
+ */
+public class Migration {
+
+  private final int version;
+  private final String description;
+  private final Step schema;
+  private final Backfill backfill;
+
+  /**
+   * Constructs a migration with no backfill.
+   *
+   * @param version     schema version the migration brings the database up to, from 1
+   * @param description what the migration changes, for logging
+   * @param schema      changes to the schema
+   */
+  public Migration(int version, String description, Step schema) {
+    this(version, description, schema, null);
+  }
+
+  /**
+   * Constructs a migration whose existing rows are updated by a backfill.
+   *
+   * @param version     schema version the migration brings the database up to, from 1
+   * @param description what the migration changes, for logging
+   * @param schema      changes to the schema
+   * @param backfill    updates existing rows in batches, or null if there are none to update
+   */
+  public Migration(int version, String description, Step schema, Backfill backfill) {
+    if (version <= 0) {
+      throw new IllegalArgumentException("Migration versions start from 1");
+    }
+    this.version = version;
+    this.description = description;
+    this.schema = schema;
+    this.backfill = backfill;
+  }
+
+  public int getVersion() {
+    return version;
+  }
+
+  public String getDescription() {
+    return description;
+  }
+
+  public Step getSchema() {
+    return schema;
+  }
+
+  public Backfill getBackfill() {
+    return backfill;
+  }
+
+  /**
+   * Changes to the schema, run in the migration's transaction.
+   */
+  @FunctionalInterface
+  public interface Step {
+
+    /**
+     * Applies the changes.
+     *
+     * @param connection connection to the database being migrated
+     * @throws SQLException if the changes failed, which rolls the migration back
+     */
+    void apply(Connection connection) throws SQLException;
+  }
+
+  /**
+   * Updates the existing rows of a table in batches of consecutive IDs, each batch in its own
+   * transaction. A batch may be run again if the app closes before its progress is saved, so
+   * batches must give the same result when repeated.
+   */
+  public interface Backfill {
+
+    /**
+     * Gets the highest ID to backfill, read once before the first batch is run.
+     *
+     * @param connection connection to the database
+     * @return highest ID, or 0 if there are no rows
+     * @throws SQLException if the ID could not be read
+     */
+    long getMaxId(Connection connection) throws SQLException;
+
+    /**
+     * Updates the rows with IDs in a range.
+     *
+     * @param connection connection to the database, in the batch's transaction
+     * @param fromId     ID the batch starts after
+     * @param toId       last ID of the batch
+     * @return number of rows updated
+     * @throws SQLException if the update failed, which rolls the batch back
+     */
+    int applyBatch(Connection connection, long fromId, long toId) throws SQLException;
+  }
+}
@@ -0,0 +1,336 @@
+package seng202.team6.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import seng202.team6.model.MigrationProgress;
+import seng202.team6.util.ConnectionPool;
+import seng202.team6.util.Timer;
+
+/**
+ * Brings the schema of a database up to date by applying the migrations newer than its version.
+ * The version is stored in SQLite's user_version pragma, which is 0 for databases created before
+ * migrations were tracked.
+ * <p>
+ * Each migration's schema step and version update are applied in one transaction, so a failed
+ * migration leaves the database at the version before it. Migrations with a backfill record
+ * their progress in the MIGRATION_BACKFILL table, and the backfill is run later in batches which
+ * each hold the writer only for their own transaction, resuming from the last saved batch if the
+ * app was closed part way through.
+ * </p>
+ */
+public class MigrationRunner {
+
+  private static final Logger log = LogManager.getLogger(MigrationRunner.class);
+
+  /**
+   * Number of IDs covered by each backfill batch.
+   */
+  public static final int DEFAULT_BATCH_SIZE = 5000;
+
+  private static final String CREATE_BACKFILL_TABLE_SQL =
+      "CREATE TABLE IF NOT EXISTS MIGRATION_BACKFILL ("
+          + "VERSION   INTEGER PRIMARY KEY,"
+          + "LAST_ID   INTEGER NOT NULL DEFAULT 0,"
+          + "COMPLETE  BOOLEAN NOT NULL DEFAULT 0)";
+
+  private final Connection connection;
+
+  /**
+   * Migrations in version order.
+   */
+  private final List<Migration> migrations;
+
+  /**
+   * Constructor.
+   *
+   * @param connection connection to the database to migrate
+   * @param migrations migrations of every DAO, in any order
+   * @throws IllegalArgumentException if two migrations have the same version
+   */
+  public MigrationRunner(Connection connection, List<Migration> migrations) {
+    this.connection = connection;
+    this.migrations = migrations.stream()
+        .sorted(Comparator.comparingInt(Migration::getVersion))
+        .toList();
+    for (int i = 1; i < this.migrations.size(); i++) {
+      if (this.migrations.get(i).getVersion() == this.migrations.get(i - 1).getVersion()) {
+        throw new IllegalArgumentException(
+            "Duplicate migration version " + this.migrations.get(i).getVersion());
+      }
+    }
+  }
+
+  /**
+   * Checks if a table has a column, for schema steps which may run on databases which already
+   * have the change.
+   *
+   * @param connection connection to the database
+   * @param table      name of the table
+   * @param column     name of the column
+   * @return true if the column exists
+   * @throws SQLException if the schema could not be read
+   */
+  public static boolean columnExists(Connection connection, String table, String column)
+      throws SQLException {
+    String sql = "SELECT 1 FROM pragma_table_info(?) WHERE name = ?";
+    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+      statement.setString(1, table);
+      statement.setString(2, column);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        return resultSet.next();
+      }
+    }
+  }
+
+  /**
+   * Checks if a table exists, for schema steps which may run on databases which already have the
+   * change.
+   *
+   * @param connection connection to the database
+   * @param table      name of the table
+   * @return true if the table exists
+   * @throws SQLException if the schema could not be read
+   */
+  public static boolean tableExists(Connection connection, String table) throws SQLException {
+    String sql = "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?";
+    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+      statement.setString(1, table);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        return resultSet.next();
+      }
+    }
+  }
+
+  /**
+   * Executes statements in order, for schema steps made of the same IF NOT EXISTS statements
+   * that create the latest schema.
+   *
+   * @param connection connection to the database
+   * @param statements statements to execute
+   * @throws SQLException if a statement failed
+   */
+  public static void execute(Connection connection, String... statements) throws SQLException {
+    try (Statement statement = connection.createStatement()) {
+      for (String sql : statements) {
+        statement.execute(sql);
+      }
+    }
+  }
+
+  /**
+   * Gets the version the newest migration brings a database up to.
+   *
+   * @return latest schema version, or 0 if there are no migrations
+   */
+  public int getLatestVersion() {
+    return migrations.isEmpty() ? 0 : migrations.getLast().getVersion();
+  }
+
+  /**
+   * Gets the schema version of the database.
+   *
+   * @return schema version
+   * @throws SQLException if the version could not be read
+   */
+  public int getVersion() throws SQLException {
+    try (Statement statement = connection.createStatement();
+        ResultSet resultSet = statement.executeQuery("PRAGMA user_version")) {
+      return resultSet.next() ? resultSet.getInt(1) : 0;
+    }
+  }
+
+  private void setVersion(Statement statement, int version) throws SQLException {
+    // Pragmas cannot take parameters, but the version is always an int
+    statement.execute("PRAGMA user_version = " + version);
+  }
+
+  /**
+   * Applies the migrations newer than the database's version, in order. Backfills of the applied
+   * migrations are left to {@link #runBackfills}.
+   *
+   * @return number of migrations applied
+   * @throws SQLException if a migration failed, in which case it and later migrations are not
+   *                      applied
+   */
+  public int migrate() throws SQLException {
+    Timer timer = new Timer();
+    int version = getVersion();
+    int applied = 0;
+    try (Statement statement = connection.createStatement()) {
+      statement.execute(CREATE_BACKFILL_TABLE_SQL);
+    }
+    for (Migration migration : migrations) {
+      if (migration.getVersion() > version) {
+        apply(migration);
+        applied++;
+      }
+    }
+    if (applied > 0) {
+      log.info("Successfully migrated the database from version {} to {} in {}ms", version,
+          getLatestVersion(), timer.currentOffsetMilliseconds());
+    }
+    return applied;
+  }
+
+  /**
+   * Applies a migration's schema step and updates the version in one transaction.
+   *
+   * @param migration migration to apply
+   * @throws SQLException if the migration failed, in which case it is rolled back
+   */
+  private void apply(Migration migration) throws SQLException {
+    Timer timer = new Timer();
+    connection.setAutoCommit(false);
+    try (Statement statement = connection.createStatement()) {
+      migration.getSchema().apply(connection);
+      if (migration.getBackfill() != null) {
+        statement.executeUpdate("INSERT OR REPLACE INTO MIGRATION_BACKFILL (VERSION) VALUES ("
+            + migration.getVersion() + ")");
+      }
+      setVersion(statement, migration.getVersion());
+      connection.commit();
+    } catch (SQLException error) {
+      connection.rollback();
+      log.error("Failed to apply migration {} ({})", migration.getVersion(),
+          migration.getDescription(), error);
+      throw error;
+    } finally {
+      connection.setAutoCommit(true);
+    }
+    log.info("Successfully applied migration {} ({}) in {}ms", migration.getVersion(),
+        migration.getDescription(), timer.currentOffsetMilliseconds());
+  }
+
+  /**
+   * Sets the version of a database just created with the latest schema, which has nothing to
+   * migrate or backfill.
+   *
+   * @throws SQLException if the version could not be set
+   */
+  public void markCurrent() throws SQLException {
+    try (Statement statement = connection.createStatement()) {
+      statement.execute(CREATE_BACKFILL_TABLE_SQL);
+      setVersion(statement, getLatestVersion());
+    }
+  }
+
+  /**
+   * Gets the migrations whose backfill has not finished.
+   *
+   * @param connectionPool pool to read the progress through
+   * @return migrations with pending backfills, in version order
+   * @throws SQLException if the progress could not be read
+   */
+  public List<Migration> getPendingBackfills(ConnectionPool connectionPool) throws SQLException {
+    List<Long> versions = connectionPool.read(connection -> {
+      List<Long> pending = new ArrayList<>();
+      String sql = "SELECT VERSION FROM MIGRATION_BACKFILL WHERE COMPLETE = 0";
+      try (PreparedStatement statement = connectionPool.prepare(connection, sql);
+          ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          pending.add(resultSet.getLong("VERSION"));
+        }
+      }
+      return pending;
+    });
+    return migrations.stream()
+        .filter(migration -> migration.getBackfill() != null)
+        .filter(migration -> versions.contains((long) migration.getVersion()))
+        .toList();
+  }
+
+  /**
+   * Runs the pending backfills in version order. Each batch and its saved progress are written in
+   * their own transaction, queueing for the writer like any other write so the app stays usable.
+   *
+   * @param connectionPool pool to run the batches through
+   * @param batchSize      number of IDs covered by each batch
+   * @param listener       told the progress after each batch
+   * @return number of backfills finished
+   * @throws SQLException if a batch failed, in which case the backfill resumes from it next time
+   */
+  public int runBackfills(ConnectionPool connectionPool, int batchSize,
+      Consumer<MigrationProgress> listener) throws SQLException {
+    if (batchSize <= 0) {
+      throw new IllegalArgumentException("Batch size must be positive");
+    }
+    List<Migration> pending = getPendingBackfills(connectionPool);
+    for (Migration migration : pending) {
+      runBackfill(connectionPool, migration, batchSize, listener);
+    }
+    return pending.size();
+  }
+
+  private void runBackfill(ConnectionPool connectionPool, Migration migration, int batchSize,
+      Consumer<MigrationProgress> listener) throws SQLException {
+    Timer timer = new Timer();
+    Migration.Backfill backfill = migration.getBackfill();
+    String progressSql = "SELECT LAST_ID FROM MIGRATION_BACKFILL WHERE VERSION = ?";
+    long startId = connectionPool.read(connection -> {
+      try (PreparedStatement statement = connectionPool.prepare(connection, progressSql)) {
+        statement.setInt(1, migration.getVersion());
+        try (ResultSet resultSet = statement.executeQuery()) {
+          return resultSet.next() ? resultSet.getLong("LAST_ID") : 0L;
+        }
+      }
+    });
+    long maxId = connectionPool.read(backfill::getMaxId);
+
+    String saveSql = "UPDATE MIGRATION_BACKFILL SET LAST_ID = ?, COMPLETE = ? WHERE VERSION = ?";
+    long lastId = startId;
+    int batches = 0;
+    int rowsUpdated = 0;
+    while (lastId < maxId) {
+      long fromId = lastId;
+      long toId = Math.min(maxId, fromId + batchSize);
+      rowsUpdated += connectionPool.write(connection -> {
+        connection.setAutoCommit(false);
+        try (PreparedStatement statement = connectionPool.prepare(connection, saveSql)) {
+          int rows = backfill.applyBatch(connection, fromId, toId);
+          statement.setLong(1, toId);
+          statement.setBoolean(2, toId >= maxId);
+          statement.setInt(3, migration.getVersion());
+          statement.executeUpdate();
+          connection.commit();
+          return rows;
+        } catch (SQLException error) {
+          connection.rollback();
+          log.error("Failed to backfill migration {} ({}) after id {}", migration.getVersion(),
+              migration.getDescription(), fromId, error);
+          throw error;
+        } finally {
+          connection.setAutoCommit(true);
+        }
+      });
+      lastId = toId;
+      batches++;
+      listener.accept(new MigrationProgress(migration.getVersion(), migration.getDescription(),
+          lastId, maxId, batches, timer.currentOffsetMilliseconds(), lastId >= maxId));
+    }
+    if (batches == 0) {
+      // Nothing left to backfill, so no batch marked it complete
+      connectionPool.write(connection -> {
+        try (PreparedStatement statement = connectionPool.prepare(connection, saveSql)) {
+          statement.setLong(1, startId);
+          statement.setBoolean(2, true);
+          statement.setInt(3, migration.getVersion());
+          return statement.executeUpdate();
+        }
+      });
+      listener.accept(new MigrationProgress(migration.getVersion(), migration.getDescription(),
+          startId, maxId, 0, timer.currentOffsetMilliseconds(), true));
+    }
+    log.info("Successfully backfilled migration {} ({}), {} rows in {} batches from id {} in {}ms",
+        migration.getVersion(), migration.getDescription(), rowsUpdated, batches, startId,
+        timer.currentOffsetMilliseconds());
+  }
+}
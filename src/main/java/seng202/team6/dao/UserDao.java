@@ -74,7 +74,7 @@ public class UserDao extends Dao {
   public User get(String username) {
     Timer timer = new Timer();
     String sql = "SELECT * FROM USER WHERE USERNAME = ?";
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+    try (PreparedStatement statement = prepare(connection, sql)) {
       statement.setString(1, username);
 
       try (ResultSet resultSet = statement.executeQuery()) {
@@ -113,7 +113,7 @@ public class UserDao extends Dao {
 
     String sql = "SELECT * FROM USER WHERE LOWER(USERNAME) LIKE ?;";
 
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+    try (PreparedStatement statement = prepare(connection, sql)) {
       statement.setString(1, "%" + search.toLowerCase() + "%");
       try (ResultSet resultSet = statement.executeQuery()) {
         while (resultSet.next()) {
@@ -145,7 +145,7 @@ public class UserDao extends Dao {
     ObservableList<User> users = FXCollections.observableArrayList();
 
     String sql = "SELECT * FROM USER WHERE USERNAME != 'admin'";
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+    try (PreparedStatement statement = prepare(connection, sql)) {
       try (ResultSet resultSet = statement.executeQuery()) {
         while (resultSet.next()) {
           User user = new User(
@@ -200,7 +200,7 @@ public class UserDao extends Dao {
   public void delete(User user) {
     Timer timer = new Timer();
     String sql = "DELETE FROM USER WHERE USERNAME = ?";
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+    try (PreparedStatement statement = prepare(connection, sql)) {
       statement.setString(1, user.getUsername());
 
       int rowsAffected = statement.executeUpdate();
@@ -266,7 +266,7 @@ public class UserDao extends Dao {
       DatabaseManager.AttributeSetter attributeSetter) {
     Timer timer = new Timer();
     String sql = "UPDATE USER set " + attributeName + " = ? where USERNAME = ?";
-    try (PreparedStatement update = connection.prepareStatement(sql)) {
+    try (PreparedStatement update = prepare(connection, sql)) {
       attributeSetter.setAttribute(update);
       update.setString(2, username);
 
@@ -6,7 +6,9 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import seng202.team6.managers.DatabaseManager;
@@ -25,6 +27,13 @@ import seng202.team6.util.Timer;
  */
 public class VineyardDao extends Dao {
 
+  /**
+   * Join clause resolving the geolocation of a vineyard's address using the expression index on
+   * GEOLOCATION.
+   */
+  static final String GEOLOCATION_JOIN =
+      "LEFT JOIN GEOLOCATION ON LOWER(VINEYARD.ADDRESS) = LOWER(GEOLOCATION.NAME) ";
+
   /**
    * Cache to store and reuse Vineyard objects to avoid duplication.
    */
@@ -98,7 +107,7 @@ public class VineyardDao extends Dao {
     String sql = "SELECT VINEYARD.ID as vineyard_id, VINEYARD.*, GEOLOCATION.LATITUDE, "
         + "GEOLOCATION.LONGITUDE "
         + "FROM VINEYARD "
-        + "LEFT JOIN GEOLOCATION ON LOWER(VINEYARD.ADDRESS) LIKE LOWER(GEOLOCATION.NAME)"
+        + GEOLOCATION_JOIN
         + (vineyardFilters == null ? "" :
         "where VINEYARD.NAME like ? "
             + "and ADDRESS like ? "
@@ -106,7 +115,7 @@ public class VineyardDao extends Dao {
         + "ORDER BY VINEYARD.ID "
         + "LIMIT ? "
         + "OFFSET ?";
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+    try (PreparedStatement statement = prepare(connection, sql)) {
       int paramIndex = 1;
       if (vineyardFilters != null) {
         statement.setString(paramIndex++,
@@ -144,9 +153,9 @@ public class VineyardDao extends Dao {
     String sql = "SELECT VINEYARD.ID as vineyard_id, VINEYARD.*, GEOLOCATION.LATITUDE, "
         + "GEOLOCATION.LONGITUDE "
         + "FROM VINEYARD "
-        + "LEFT JOIN GEOLOCATION ON LOWER(VINEYARD.ADDRESS) LIKE LOWER(GEOLOCATION.NAME) "
+        + GEOLOCATION_JOIN
         + "WHERE VINEYARD.NAME = ?";
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+    try (PreparedStatement statement = prepare(connection, sql)) {
       statement.setString(1, name);
       try (ResultSet resultSet = statement.executeQuery()) {
         if (resultSet.next()) {
@@ -171,7 +180,7 @@ public class VineyardDao extends Dao {
   public void addAll(List<Vineyard> vineyards) {
     Timer timer = new Timer();
     String sql = "INSERT INTO VINEYARD values (null, ?, ?, ?, ?, ?, ?);";
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+    try (PreparedStatement statement = prepare(connection, sql)) {
       for (Vineyard vineyard : vineyards) {
         statement.setString(1, vineyard.getName());
         statement.setString(2, vineyard.getAddress());
@@ -243,7 +252,7 @@ public class VineyardDao extends Dao {
   public void remove(Vineyard vineyard) {
     Timer timer = new Timer();
     String sql = "DELETE FROM VINEYARD WHERE ID = ?;";
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+    try (PreparedStatement statement = prepare(connection, sql)) {
       statement.setLong(1, vineyard.getId());
 
       int rowsAffected = statement.executeUpdate();
@@ -272,9 +281,9 @@ public class VineyardDao extends Dao {
         + "GEOLOCATION.LONGITUDE "
         + "FROM VINEYARD_TOUR_ITEM "
         + "LEFT JOIN VINEYARD ON VINEYARD.ID = VINEYARD_TOUR_ITEM.VINEYARD_ID "
-        + "LEFT JOIN GEOLOCATION ON LOWER(VINEYARD.ADDRESS) LIKE LOWER(GEOLOCATION.NAME)"
+        + GEOLOCATION_JOIN
         + "WHERE TOUR_ID = ?";
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+    try (PreparedStatement statement = prepare(connection, sql)) {
       statement.setLong(1, vineyardTour.getId());
 
       try (ResultSet resultSet = statement.executeQuery()) {
@@ -307,9 +316,9 @@ public class VineyardDao extends Dao {
             + "INNER JOIN LIST_ITEMS ON WINE.ID = LIST_ITEMS.WINE_ID "
             + "INNER JOIN LIST_NAME ON LIST_ITEMS.LIST_ID = LIST_NAME.ID "
             + "INNER JOIN VINEYARD ON VINEYARD.NAME = WINE.WINERY "
-            + "LEFT JOIN GEOLOCATION on lower(WINE.REGION) like lower(GEOLOCATION.NAME) "
+            + WineDao.GEOLOCATION_JOIN
             + "WHERE LIST_NAME.ID = ?";
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+    try (PreparedStatement statement = prepare(connection, sql)) {
       statement.setLong(1, wineList.id());
 
       try (ResultSet resultSet = statement.executeQuery()) {
@@ -335,7 +344,7 @@ public class VineyardDao extends Dao {
   public void updateUniques() {
     Timer timer = new Timer();
     String query = "SELECT NAME, ADDRESS, REGION FROM VINEYARD";
-    try (PreparedStatement statement = connection.prepareStatement(query)) {
+    try (PreparedStatement statement = prepare(connection, query)) {
       try (ResultSet resultSet = statement.executeQuery()) {
         while (resultSet.next()) {
           String name = resultSet.getString("NAME");
@@ -495,7 +504,7 @@ public class VineyardDao extends Dao {
       DatabaseManager.AttributeSetter attributeSetter) throws SQLException {
     Timer timer = new Timer();
     String sql = "UPDATE VINEYARD set " + attributeName + " = ? where ID = ?";
-    try (PreparedStatement update = connection.prepareStatement(sql)) {
+    try (PreparedStatement update = prepare(connection, sql)) {
       attributeSetter.setAttribute(update);
       update.setLong(2, id);
 
@@ -510,6 +519,35 @@ public class VineyardDao extends Dao {
     }
   }
 
+  /**
+   * Retrieves the addresses of vineyards which have no geolocation.
+   *
+   * @return addresses without a geolocation
+   */
+  public Set<String> getAddressesWithoutGeoLocation() {
+    Timer timer = new Timer();
+    String sql = "SELECT DISTINCT VINEYARD.ADDRESS FROM VINEYARD "
+        + GEOLOCATION_JOIN
+        + "WHERE GEOLOCATION.NAME IS NULL";
+    Set<String> addresses = new HashSet<>();
+    try {
+      read(connection -> {
+        try (PreparedStatement statement = prepare(connection, sql);
+            ResultSet resultSet = statement.executeQuery()) {
+          while (resultSet.next()) {
+            addresses.add(resultSet.getString("ADDRESS"));
+          }
+        }
+        return null;
+      });
+      log.info("Successfully found {} vineyard addresses without a geolocation in {}ms",
+          addresses.size(), timer.currentOffsetMilliseconds());
+    } catch (SQLException error) {
+      log.error("Failed to find vineyard addresses without a geolocation", error);
+    }
+    return addresses;
+  }
+
   /**
    * Checks if the GEOLOCATION table already has data to avoid re-adding default geolocations.
    *
@@ -62,7 +62,7 @@ public class VineyardTourDao extends Dao {
     String sql = "SELECT VINEYARD_TOUR.ID as vineyard_tour_id, VINEYARD_TOUR.* "
         + "FROM VINEYARD_TOUR "
         + "WHERE USERNAME = ?";
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+    try (PreparedStatement statement = prepare(connection, sql)) {
       statement.setString(1, user.getUsername());
 
       try (ResultSet resultSet = statement.executeQuery()) {
@@ -124,7 +124,7 @@ public class VineyardTourDao extends Dao {
   public void remove(VineyardTour vineyardTour) {
     Timer timer = new Timer();
     String sql = "DELETE FROM VINEYARD_TOUR WHERE ID = ?";
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+    try (PreparedStatement statement = prepare(connection, sql)) {
       statement.setLong(1, vineyardTour.getId());
 
       int rowsAffected = statement.executeUpdate();
@@ -152,7 +152,7 @@ public class VineyardTourDao extends Dao {
   public boolean isVineyardInTour(VineyardTour vineyardTour, Vineyard vineyard) {
     Timer timer = new Timer();
     String sql = "SELECT * FROM VINEYARD_TOUR_ITEM WHERE TOUR_ID = ? AND VINEYARD_ID = ?";
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+    try (PreparedStatement statement = prepare(connection, sql)) {
       statement.setLong(1, vineyardTour.getId());
       statement.setLong(2, vineyard.getId());
 
@@ -179,7 +179,7 @@ public class VineyardTourDao extends Dao {
   public void addVineyard(VineyardTour vineyardTour, Vineyard vineyard) {
     Timer timer = new Timer();
     String sql = "INSERT INTO VINEYARD_TOUR_ITEM VALUES (?, ?)";
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+    try (PreparedStatement statement = prepare(connection, sql)) {
       statement.setLong(1, vineyardTour.getId());
       statement.setLong(2, vineyard.getId());
 
@@ -206,7 +206,7 @@ public class VineyardTourDao extends Dao {
   public void removeVineyard(VineyardTour vineyardTour, Vineyard vineyard) {
     Timer timer = new Timer();
     String sql = "DELETE FROM VINEYARD_TOUR_ITEM WHERE TOUR_ID = ? AND VINEYARD_ID = ?";
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+    try (PreparedStatement statement = prepare(connection, sql)) {
       statement.setLong(1, vineyardTour.getId());
       statement.setLong(2, vineyard.getId());
 
@@ -5,16 +5,38 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.StringJoiner;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import org.apache.logging.log4j.LogManager;
-import seng202.team6.managers.DatabaseManager;
+import seng202.team6.enums.WineImportMode;
+import seng202.team6.enums.WineSortOrder;
+import seng202.team6.model.CacheStats;
 import seng202.team6.model.GeoLocation;
 import seng202.team6.model.Wine;
+import seng202.team6.model.WineCursor;
 import seng202.team6.model.WineFilters;
+import seng202.team6.model.WinePage;
 import seng202.team6.service.WineDataStatService;
+import seng202.team6.util.BoundedCache;
+import seng202.team6.util.ConnectionPool;
 import seng202.team6.util.DatabaseObjectUniquer;
 import seng202.team6.util.Timer;
 
@@ -23,13 +45,242 @@ import seng202.team6.util.Timer;
  */
 public class WineDao extends Dao {
 
+  /**
+   * Join clause resolving the geolocation of a wine's region. The equality on LOWER(NAME) matches
+   * the expression index on GEOLOCATION, so each wine costs one index lookup instead of a scan.
+   */
+  static final String GEOLOCATION_JOIN =
+      "LEFT JOIN GEOLOCATION ON LOWER(WINE.REGION) = LOWER(GEOLOCATION.NAME) ";
+
+  /**
+   * Maximum number of filtered counts to keep.
+   */
+  private static final int COUNT_CACHE_SIZE = 32;
+
+  /**
+   * Most wines the second level cache holds on to, and their approximate size.
+   */
+  private static final int WINE_CACHE_ENTRIES = 20_000;
+  private static final long WINE_CACHE_BYTES = 32L * 1024 * 1024;
+
+  /**
+   * Most search pages the second level cache holds on to.
+   */
+  private static final int PAGE_CACHE_ENTRIES = 64;
+
+  /**
+   * Time wines and pages stay in the second level cache without being reloaded.
+   */
+  private static final long SECOND_LEVEL_CACHE_TTL_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+  /**
+   * Number of rows fetched at a time when streaming wines.
+   */
+  public static final int DEFAULT_FETCH_SIZE = 1000;
+
+  /**
+   * Attributes the wineDataStatService keeps unique values or ranges of.
+   */
+  private static final List<Wine.Attribute> STAT_ATTRIBUTES = List.of(Wine.Attribute.TITLE,
+      Wine.Attribute.COUNTRY, Wine.Attribute.WINERY, Wine.Attribute.COLOR, Wine.Attribute.VINTAGE,
+      Wine.Attribute.SCORE_PERCENT, Wine.Attribute.ABV, Wine.Attribute.PRICE);
+
+  /**
+   * Temporary table imported wines are merged from. Repeated natural keys within one import
+   * collapse into a single row through the unique constraint. NULLs are distinct in a unique
+   * constraint, so it is on key columns which replace a NULL winery or vintage with a value of
+   * another type, keeping NULL apart from every stored value as the IS comparisons do.
+   */
+  private static final String STAGING_TABLE_SQL = "CREATE TEMP TABLE WINE_STAGING ("
+      + "TITLE          VARCHAR(64)   NOT NULL,"
+      + "VARIETY        VARCHAR(32),"
+      + "COUNTRY        VARCHAR(32),"
+      + "REGION         VARCHAR(32),"
+      + "WINERY         VARCHAR(64),"
+      + "COLOR          VARCHAR(32),"
+      + "VINTAGE        INTEGER,"
+      + "DESCRIPTION    TEXT,"
+      + "SCORE_PERCENT  INTEGER,"
+      + "ABV            FLOAT,"
+      + "PRICE          FLOAT,"
+      + "AVERAGE_RATING DOUBLE,"
+      + "WINERY_KEY     GENERATED ALWAYS AS (COALESCE(WINERY, X'')) STORED,"
+      + "VINTAGE_KEY    GENERATED ALWAYS AS (COALESCE(VINTAGE, '')) STORED,"
+      + "UNIQUE (TITLE, WINERY_KEY, VINTAGE_KEY)"
+      + ")";
+
+  /**
+   * Stages an imported wine, replacing the values of an earlier row with the same natural key.
+   */
+  private static final String STAGING_INSERT_SQL = "INSERT INTO WINE_STAGING VALUES "
+      + "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) "
+      + "ON CONFLICT (TITLE, WINERY_KEY, VINTAGE_KEY) DO UPDATE SET "
+      + "VARIETY = excluded.VARIETY, COUNTRY = excluded.COUNTRY, REGION = excluded.REGION, "
+      + "COLOR = excluded.COLOR, DESCRIPTION = excluded.DESCRIPTION, "
+      + "SCORE_PERCENT = excluded.SCORE_PERCENT, ABV = excluded.ABV, PRICE = excluded.PRICE";
+
+  /**
+   * Matches a staged wine S to a wine in WINE on the natural key, which WINE_NATURAL_KEY indexes.
+   */
+  private static final String NATURAL_KEY_MATCH = "WINE.TITLE = S.TITLE "
+      + "AND WINE.WINERY IS S.WINERY AND WINE.VINTAGE IS S.VINTAGE";
+
+  /**
+   * Updates the matched wines whose imported values differ. Unchanged wines are skipped so they
+   * do not fire the search index and version triggers.
+   */
+  private static final String MERGE_UPDATE_SQL = "UPDATE WINE SET "
+      + "VARIETY = S.VARIETY, COUNTRY = S.COUNTRY, REGION = S.REGION, COLOR = S.COLOR, "
+      + "DESCRIPTION = S.DESCRIPTION, SCORE_PERCENT = S.SCORE_PERCENT, ABV = S.ABV, "
+      + "PRICE = S.PRICE "
+      + "FROM WINE_STAGING S "
+      + "WHERE " + NATURAL_KEY_MATCH + " "
+      + "AND (WINE.VARIETY IS NOT S.VARIETY OR WINE.COUNTRY IS NOT S.COUNTRY "
+      + "OR WINE.REGION IS NOT S.REGION OR WINE.COLOR IS NOT S.COLOR "
+      + "OR WINE.DESCRIPTION IS NOT S.DESCRIPTION OR WINE.SCORE_PERCENT IS NOT S.SCORE_PERCENT "
+      + "OR WINE.ABV IS NOT S.ABV OR WINE.PRICE IS NOT S.PRICE)";
+
+  /**
+   * Removes the wines no staged wine matches.
+   */
+  private static final String MERGE_DELETE_SQL = "DELETE FROM WINE WHERE NOT EXISTS "
+      + "(SELECT 1 FROM WINE_STAGING S WHERE " + NATURAL_KEY_MATCH + ")";
+
+  /**
+   * Inserts the staged wines no existing wine matches, in the order they were staged.
+   */
+  private static final String MERGE_INSERT_SQL = "INSERT INTO WINE (TITLE, VARIETY, COUNTRY, "
+      + "REGION, WINERY, COLOR, VINTAGE, DESCRIPTION, SCORE_PERCENT, ABV, PRICE, AVERAGE_RATING) "
+      + "SELECT S.TITLE, S.VARIETY, S.COUNTRY, S.REGION, S.WINERY, S.COLOR, S.VINTAGE, "
+      + "S.DESCRIPTION, S.SCORE_PERCENT, S.ABV, S.PRICE, S.AVERAGE_RATING "
+      + "FROM WINE_STAGING S "
+      + "WHERE NOT EXISTS (SELECT 1 FROM WINE WHERE " + NATURAL_KEY_MATCH + ") "
+      + "ORDER BY S.rowid";
+
+  /**
+   * Counts how merging the staged wines changes the stat values, without replacing wines.
+   */
+  private static final String MERGE_STATS_SQL = buildMergeStatsSql(false);
+
+  /**
+   * Counts how merging the staged wines changes the stat values, replacing wines.
+   */
+  private static final String REPLACE_STATS_SQL = buildMergeStatsSql(true);
+
+  /**
+   * Inserts a wine. Review aggregates start at zero and are kept by the WINE_REVIEW triggers.
+   */
+  private static final String INSERT_SQL = "INSERT INTO WINE (TITLE, VARIETY, COUNTRY, REGION, "
+      + "WINERY, COLOR, VINTAGE, DESCRIPTION, SCORE_PERCENT, ABV, PRICE, AVERAGE_RATING) "
+      + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+  /**
+   * Review counts and rating sums of each reviewed wine, computed from WINE_REVIEW.
+   */
+  private static final String REVIEW_TOTALS_SQL = "SELECT WINE_ID, COUNT(*) AS COUNT, "
+      + "SUM(RATING) AS SUM FROM WINE_REVIEW GROUP BY WINE_ID";
+
+  /**
+   * Wines whose stored review aggregates differ from their reviews, with the correct values.
+   */
+  private static final String INCONSISTENT_AGGREGATES_SQL = "SELECT WINE.ID AS ID, "
+      + "COALESCE(R.COUNT, 0) AS COUNT, COALESCE(R.SUM, 0) AS SUM "
+      + "FROM WINE LEFT JOIN (" + REVIEW_TOTALS_SQL + ") R ON R.WINE_ID = WINE.ID "
+      + "WHERE WINE.REVIEW_COUNT != COALESCE(R.COUNT, 0) "
+      + "OR ABS(WINE.RATING_SUM - COALESCE(R.SUM, 0)) > 1e-9";
+
+  /**
+   * Recomputes the review aggregates of the inconsistent wines. A wine left with no reviews gets
+   * an average of 0, while wines which never had reviews keep theirs.
+   */
+  private static final String REPAIR_AGGREGATES_SQL = "UPDATE WINE SET REVIEW_COUNT = M.COUNT, "
+      + "RATING_SUM = M.SUM, "
+      + "AVERAGE_RATING = CASE WHEN M.COUNT = 0 THEN 0 ELSE M.SUM / M.COUNT END "
+      + "FROM (" + INCONSISTENT_AGGREGATES_SQL + ") M "
+      + "WHERE WINE.ID = M.ID";
+
+  /**
+   * Sets the review aggregates of the reviewed wines in a range of IDs from their reviews.
+   */
+  private static final String BACKFILL_AGGREGATES_SQL = "UPDATE WINE SET REVIEW_COUNT = R.COUNT, "
+      + "RATING_SUM = R.SUM, AVERAGE_RATING = R.SUM / R.COUNT "
+      + "FROM (SELECT WINE_ID, COUNT(*) AS COUNT, SUM(RATING) AS SUM FROM WINE_REVIEW "
+      + "WHERE WINE_ID > ? AND WINE_ID <= ? GROUP BY WINE_ID) R "
+      + "WHERE WINE.ID = R.WINE_ID";
+
+  /**
+   * Number of IDs bound to each query when getting wines by ID, kept below SQLite's limit on
+   * parameters.
+   */
+  private static final int ID_BATCH_SIZE = 500;
+
+  /**
+   * Query getting a batch of wines by ID. Short batches repeat their last ID so that every batch
+   * reuses the same statement.
+   */
+  private static final String GET_BATCH_SQL = "SELECT WINE.ID as wine_id, WINE.*, "
+      + "GEOLOCATION.LATITUDE, GEOLOCATION.LONGITUDE "
+      + "FROM WINE "
+      + GEOLOCATION_JOIN
+      + "WHERE WINE.ID IN (" + String.join(", ", Collections.nCopies(ID_BATCH_SIZE, "?")) + ")";
+
+  /**
+   * Delay after a wine is edited before queued updates are written.
+   */
+  private static final long UPDATE_FLUSH_DELAY_MILLIS = 250;
+
   /**
    * Cache to store and reuse Wine objects to avoid duplication.
    */
   private final DatabaseObjectUniquer<Wine> wineCache = new DatabaseObjectUniquer<>();
 
+  /**
+   * Cache of filtered counts, keyed by the normalised count query and its parameters. Any write to
+   * WINE clears it.
+   */
+  private final BoundedCache<CountKey, Integer> countCache = new BoundedCache<>(COUNT_CACHE_SIZE);
+
+  /**
+   * Second level cache of recently loaded wines. The wine cache only holds weak references, so
+   * wines on a page the user has left are soon collected; this keeps them strongly referenced, so
+   * they are still the same instances the wine cache hands out.
+   */
+  private final BoundedCache<Long, Wine> recentWines = new BoundedCache<>(WINE_CACHE_ENTRIES,
+      WINE_CACHE_BYTES, SECOND_LEVEL_CACHE_TTL_NANOS, WineDao::estimateSize);
+
+  /**
+   * Second level cache of search pages, keyed by the page query and its parameters. Any write to
+   * WINE invalidates it. An import only invalidates it when the batch writer commits, so until
+   * then cached pages and counts show the wines from before the import, as queries on the
+   * read-only connections do.
+   */
+  private final BoundedCache<PageKey, WinePage> pageCache = new BoundedCache<>(
+      PAGE_CACHE_ENTRIES, WINE_CACHE_BYTES, SECOND_LEVEL_CACHE_TTL_NANOS,
+      page -> 16 + 8L * page.wines().size());
+
+  /**
+   * Incremented whenever the cached pages are invalidated, so a page read while a write was made
+   * is not cached.
+   */
+  private long pageGeneration = 0;
+
+  private volatile boolean secondLevelCacheEnabled = true;
+
   private final WineDataStatService wineDataStatService;
 
+  private final WineUpdateQueue updateQueue;
+
+  /**
+   * Change tracker shared by every wine this DAO loads, so a loaded wine holds no listeners of its
+   * own.
+   */
+  private final Wine.ChangeTracker changeTracker = this::onWineChanged;
+
+  /**
+   * Run after wines are removed, so caches outside this DAO holding wine IDs can drop them.
+   */
+  private Runnable winesRemovedListener = () -> {
+  };
 
   /**
    * Constructs a new WineDAO with the given database connection.
@@ -39,32 +290,194 @@ public class WineDao extends Dao {
   public WineDao(Connection connection, WineDataStatService wineDataStatService) {
     super(connection, WineDao.class);
     this.wineDataStatService = wineDataStatService;
+    this.updateQueue = new WineUpdateQueue(connection, UPDATE_FLUSH_DELAY_MILLIS);
+  }
+
+  @Override
+  public void setConnectionPool(ConnectionPool connectionPool) {
+    super.setConnectionPool(connectionPool);
+    updateQueue.setConnectionPool(connectionPool);
+  }
+
+  /**
+   * Sets what to run after wines are removed. Removed IDs may be given to new wines, so anything
+   * caching facts about wines by ID must forget them.
+   *
+   * @param winesRemovedListener run after wines are removed
+   */
+  public void setWinesRemovedListener(Runnable winesRemovedListener) {
+    this.winesRemovedListener = winesRemovedListener;
   }
 
   /**
-   * Returns the SQL statements required to initialise the WINE table.
+   * Indexes on the columns wines are filtered and sorted by. Each index implicitly ends with the
+   * row ID, making it the (column, ID) composite that keyset paging seeks on.
+   */
+  private static final String[] FILTER_INDEX_SQL = {
+      "CREATE INDEX IF NOT EXISTS WINE_COUNTRY ON WINE (COUNTRY COLLATE NOCASE)",
+      "CREATE INDEX IF NOT EXISTS WINE_WINERY ON WINE (WINERY COLLATE NOCASE)",
+      "CREATE INDEX IF NOT EXISTS WINE_COLOR ON WINE (COLOR COLLATE NOCASE)",
+      "CREATE INDEX IF NOT EXISTS WINE_VINTAGE ON WINE (VINTAGE)",
+      "CREATE INDEX IF NOT EXISTS WINE_SCORE_PERCENT ON WINE (SCORE_PERCENT)",
+      "CREATE INDEX IF NOT EXISTS WINE_PRICE ON WINE (PRICE)",
+      "CREATE INDEX IF NOT EXISTS WINE_ABV ON WINE (ABV)"
+  };
+
+  /**
+   * Full-text index over the text columns, reading its content from WINE and kept in sync with it
+   * by triggers.
+   */
+  private static final String[] SEARCH_INDEX_SQL = {
+      "CREATE VIRTUAL TABLE IF NOT EXISTS WINE_SEARCH USING fts5("
+          + "TITLE, VARIETY, DESCRIPTION, "
+          + "content='WINE', content_rowid='ID', "
+          + "tokenize='unicode61 remove_diacritics 2'"
+          + ")",
+      // Rank title matches above variety matches, and both above description matches
+      "INSERT INTO WINE_SEARCH (WINE_SEARCH, rank) VALUES ('rank', 'bm25(10.0, 5.0, 1.0)')",
+      "CREATE TRIGGER IF NOT EXISTS WINE_SEARCH_INSERT AFTER INSERT ON WINE "
+          + "BEGIN "
+          + "INSERT INTO WINE_SEARCH (rowid, TITLE, VARIETY, DESCRIPTION) "
+          + "VALUES (NEW.ID, NEW.TITLE, NEW.VARIETY, NEW.DESCRIPTION); "
+          + "END",
+      "CREATE TRIGGER IF NOT EXISTS WINE_SEARCH_DELETE AFTER DELETE ON WINE "
+          + "BEGIN "
+          + "INSERT INTO WINE_SEARCH (WINE_SEARCH, rowid, TITLE, VARIETY, DESCRIPTION) "
+          + "VALUES ('delete', OLD.ID, OLD.TITLE, OLD.VARIETY, OLD.DESCRIPTION); "
+          + "END",
+      "CREATE TRIGGER IF NOT EXISTS WINE_SEARCH_UPDATE "
+          + "AFTER UPDATE OF TITLE, VARIETY, DESCRIPTION ON WINE "
+          + "BEGIN "
+          + "INSERT INTO WINE_SEARCH (WINE_SEARCH, rowid, TITLE, VARIETY, DESCRIPTION) "
+          + "VALUES ('delete', OLD.ID, OLD.TITLE, OLD.VARIETY, OLD.DESCRIPTION); "
+          + "INSERT INTO WINE_SEARCH (rowid, TITLE, VARIETY, DESCRIPTION) "
+          + "VALUES (NEW.ID, NEW.TITLE, NEW.VARIETY, NEW.DESCRIPTION); "
+          + "END"
+  };
+
+  /**
+   * Counter of changes to the columns the wine stats cover, so a saved stats snapshot can tell if
+   * it is stale. STATS_VERSION is the VERSION the snapshot in WINE_STATS was saved at.
+   */
+  private static final String[] STATS_VERSION_SQL = {
+      "CREATE TABLE IF NOT EXISTS WINE_VERSION ("
+          + "ID             INTEGER       PRIMARY KEY CHECK (ID = 0),"
+          + "VERSION        INTEGER       NOT NULL DEFAULT 0,"
+          + "STATS_VERSION  INTEGER       NOT NULL DEFAULT -1"
+          + ")",
+      "INSERT OR IGNORE INTO WINE_VERSION (ID) VALUES (0)",
+      "CREATE TABLE IF NOT EXISTS WINE_STATS ("
+          + "ATTRIBUTE      VARCHAR(16)   NOT NULL,"
+          + "VALUE,"
+          + "COUNT          INTEGER       NOT NULL"
+          + ")",
+      "CREATE TRIGGER IF NOT EXISTS WINE_VERSION_INSERT AFTER INSERT ON WINE "
+          + "BEGIN "
+          + "UPDATE WINE_VERSION SET VERSION = VERSION + 1 WHERE ID = 0; "
+          + "END",
+      "CREATE TRIGGER IF NOT EXISTS WINE_VERSION_DELETE AFTER DELETE ON WINE "
+          + "BEGIN "
+          + "UPDATE WINE_VERSION SET VERSION = VERSION + 1 WHERE ID = 0; "
+          + "END",
+      "CREATE TRIGGER IF NOT EXISTS WINE_VERSION_UPDATE "
+          + "AFTER UPDATE OF TITLE, COUNTRY, WINERY, COLOR, VINTAGE, SCORE_PERCENT, ABV, PRICE "
+          + "ON WINE "
+          + "BEGIN "
+          + "UPDATE WINE_VERSION SET VERSION = VERSION + 1 WHERE ID = 0; "
+          + "END"
+  };
+
+  /**
+   * Index on the natural key imports are merged on, which also answers exact title lookups and
+   * replaces the title index.
+   */
+  private static final String[] NATURAL_KEY_INDEX_SQL = {
+      "DROP INDEX IF EXISTS WINE_TITLE",
+      "CREATE INDEX IF NOT EXISTS WINE_NATURAL_KEY ON WINE (TITLE, WINERY, VINTAGE)"
+  };
+
+  /**
+   * Builds the query counting how a merge changes the stat values, as ATTRIBUTE, VALUE and COUNT
+   * rows where a negative count removes references. It must run before the merge statements, as
+   * they change which wines match. The counts cover the old and new values of the matched wines
+   * the merge updates, the staged wines it inserts and, when replacing, the wines it removes. The
+   * title, winery and vintage are the natural key, so never change on a matched wine.
+   *
+   * @param replace true if wines with no staged match are removed
+   * @return query counting the changes
+   */
+  private static String buildMergeStatsSql(boolean replace) {
+    List<Wine.Attribute> updated = List.of(Wine.Attribute.COUNTRY, Wine.Attribute.COLOR,
+        Wine.Attribute.SCORE_PERCENT, Wine.Attribute.ABV, Wine.Attribute.PRICE);
+    StringJoiner matched = new StringJoiner(", ");
+    for (Wine.Attribute attribute : updated) {
+      matched.add("WINE." + attribute.name() + " AS OLD_" + attribute.name() + ", S."
+          + attribute.name() + " AS NEW_" + attribute.name());
+    }
+    StringJoiner staged = new StringJoiner(", ");
+    StringJoiner stored = new StringJoiner(", ");
+    for (Wine.Attribute attribute : STAT_ATTRIBUTES) {
+      staged.add("S." + attribute.name());
+      stored.add("WINE." + attribute.name());
+    }
+    String with = "WITH MATCHED AS MATERIALIZED (SELECT " + matched + " "
+        + "FROM WINE_STAGING S JOIN WINE ON " + NATURAL_KEY_MATCH + "), "
+        + "ADDED AS MATERIALIZED (SELECT " + staged + " FROM WINE_STAGING S "
+        + "WHERE NOT EXISTS (SELECT 1 FROM WINE WHERE " + NATURAL_KEY_MATCH + "))";
+    if (replace) {
+      with += ", REMOVED AS MATERIALIZED (SELECT " + stored + " FROM WINE "
+          + "WHERE NOT EXISTS (SELECT 1 FROM WINE_STAGING S WHERE " + NATURAL_KEY_MATCH + "))";
+    }
+
+    StringJoiner sql = new StringJoiner(" UNION ALL ", with + " ", "");
+    for (Wine.Attribute attribute : updated) {
+      String name = attribute.name();
+      String changed = "FROM MATCHED WHERE OLD_" + name + " IS NOT NEW_" + name;
+      sql.add("SELECT '" + name + "' AS ATTRIBUTE, OLD_" + name + " AS VALUE, -COUNT(*) AS COUNT "
+          + changed + " GROUP BY OLD_" + name);
+      sql.add("SELECT '" + name + "', NEW_" + name + ", COUNT(*) " + changed
+          + " GROUP BY NEW_" + name);
+    }
+    for (Wine.Attribute attribute : STAT_ATTRIBUTES) {
+      String name = attribute.name();
+      sql.add("SELECT '" + name + "', " + name + ", COUNT(*) FROM ADDED GROUP BY " + name);
+      if (replace) {
+        sql.add("SELECT '" + name + "', " + name + ", -COUNT(*) FROM REMOVED GROUP BY " + name);
+      }
+    }
+    return sql.toString();
+  }
+
+  /**
+   * Returns the SQL statements required to initialise the WINE table with the latest schema.
+   * Databases created by an earlier version get the same indexes, search index and stats tables
+   * from the migrations in {@link #getMigrations}.
    *
    * @return Array of SQL statements for initialising the WINE table
    */
   @Override
   public String[] getInitialiseStatements() {
-    return new String[]{
-        "CREATE TABLE IF NOT EXISTS WINE ("
-            + "ID             INTEGER       PRIMARY KEY,"
-            + "TITLE          VARCHAR(64)   NOT NULL,"
-            + "VARIETY        VARCHAR(32),"
-            + "COUNTRY        VARCHAR(32),"
-            + "REGION         VARCHAR(32),"
-            + "WINERY         VARCHAR(64),"
-            + "COLOR          VARCHAR(32),"
-            + "VINTAGE        INTEGER,"
-            + "DESCRIPTION    TEXT,"
-            + "SCORE_PERCENT  INTEGER,"
-            + "ABV            FLOAT,"
-            + "PRICE          FLOAT,"
-            + "AVERAGE_RATING DOUBLE"
-            + ")"
-    };
+    String createTable = "CREATE TABLE IF NOT EXISTS WINE ("
+        + "ID             INTEGER       PRIMARY KEY,"
+        + "TITLE          VARCHAR(64)   NOT NULL,"
+        + "VARIETY        VARCHAR(32),"
+        + "COUNTRY        VARCHAR(32),"
+        + "REGION         VARCHAR(32),"
+        + "WINERY         VARCHAR(64),"
+        + "COLOR          VARCHAR(32),"
+        + "VINTAGE        INTEGER,"
+        + "DESCRIPTION    TEXT,"
+        + "SCORE_PERCENT  INTEGER,"
+        + "ABV            FLOAT,"
+        + "PRICE          FLOAT,"
+        + "AVERAGE_RATING DOUBLE,"
+        + "REVIEW_COUNT   INTEGER       NOT NULL DEFAULT 0,"
+        + "RATING_SUM     DOUBLE        NOT NULL DEFAULT 0"
+        + ")";
+    return Stream.of(new String[]{createTable}, FILTER_INDEX_SQL, NATURAL_KEY_INDEX_SQL,
+            SEARCH_INDEX_SQL, STATS_VERSION_SQL)
+        .flatMap(Arrays::stream)
+        .toArray(String[]::new);
   }
 
   /**
@@ -74,60 +487,55 @@ public class WineDao extends Dao {
    */
   public int getCount() throws SQLException {
     Timer timer = new Timer();
+    updateQueue.flushIfWriterFree();
     String sql = "SELECT COUNT(*) FROM WINE";
-    try (Statement statement = connection.createStatement()) {
-      try (ResultSet resultSet = statement.executeQuery(sql)) {
-        if (resultSet.next()) {
-          int count = resultSet.getInt(1);
-          log.info("Counted {} wines in {}ms", count, timer.currentOffsetMilliseconds());
-          return count;
+    return read(connection -> {
+      try (Statement statement = connection.createStatement()) {
+        try (ResultSet resultSet = statement.executeQuery(sql)) {
+          if (resultSet.next()) {
+            int count = resultSet.getInt(1);
+            log.info("Counted {} wines in {}ms", count, timer.currentOffsetMilliseconds());
+            return count;
+          }
         }
       }
-    }
-    return 0;
+      return 0;
+    });
   }
 
   /**
-   * Retrieves total number of wines after applying filters.
+   * Retrieves total number of wines after applying filters. Counts are cached per set of filters
+   * until the next write, so paging through one set of results only counts once.
    *
    * @param filters filters to apply to wines before counting
    * @return number of wines after filtering
    */
   public int getCount(WineFilters filters) throws SQLException {
-    String sql = "SELECT count(*) from WINE "
-        + "where TITLE like ? "
-        + "and COUNTRY like ? "
-        + "and WINERY like ? "
-        + "and COLOR like ? "
-        + "and VINTAGE between ? and ? "
-        + "and SCORE_PERCENT between ? and ? "
-        + "and ABV between ? and ? "
-        + "and PRICE between ? and ? "
-        + "ORDER BY WINE.ID ;";
-
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
-      int paramIndex = 1;
-      statement.setString(paramIndex++,
-          filters.getTitle().isEmpty() ? "%" : "%" + filters.getTitle() + "%");
-      statement.setString(paramIndex++,
-          filters.getCountry().isEmpty() ? "%" : "%" + filters.getCountry() + "%");
-      statement.setString(paramIndex++,
-          filters.getWinery().isEmpty() ? "%" : "%" + filters.getWinery() + "%");
-      statement.setString(paramIndex++,
-          filters.getColor().isEmpty() ? "%" : "%" + filters.getColor() + "%");
-      statement.setInt(paramIndex++, filters.getMinVintage());
-      statement.setInt(paramIndex++, filters.getMaxVintage());
-      statement.setDouble(paramIndex++, filters.getMinScore());
-      statement.setDouble(paramIndex++, filters.getMaxScore());
-      statement.setDouble(paramIndex++, filters.getMinAbv());
-      statement.setDouble(paramIndex++, filters.getMaxAbv());
-      statement.setDouble(paramIndex++, filters.getMinPrice());
-      statement.setDouble(paramIndex, filters.getMaxPrice());
-
-      ResultSet resultSet = statement.executeQuery();
-      return resultSet.getInt(1);
-
+    Timer timer = new Timer();
+    updateQueue.flushIfWriterFree();
+    List<Object> parameters = new ArrayList<>();
+    String sql = "SELECT COUNT(*) FROM WINE "
+        + buildSearchJoin(filters, parameters)
+        + buildFilterClause(filters, parameters);
+    CountKey key = new CountKey(sql, List.copyOf(parameters));
+    Integer cachedCount = countCache.get(key);
+    if (cachedCount != null) {
+      return cachedCount;
     }
+
+    long generation = getPageGeneration();
+    return read(connection -> {
+      try (PreparedStatement statement = prepare(connection, sql)) {
+        bindParameters(statement, parameters, 1);
+
+        try (ResultSet resultSet = statement.executeQuery()) {
+          int count = resultSet.next() ? resultSet.getInt(1) : 0;
+          cacheCount(key, count, generation);
+          log.info("Counted {} filtered wines in {}ms", count, timer.currentOffsetMilliseconds());
+          return count;
+        }
+      }
+    });
   }
 
   /**
@@ -137,17 +545,75 @@ public class WineDao extends Dao {
    */
   public ObservableList<Wine> getAll() throws SQLException {
     Timer timer = new Timer();
+    updateQueue.flushIfWriterFree();
     String sql = "SELECT WINE.ID as wine_id, WINE.*, GEOLOCATION.LATITUDE, GEOLOCATION.LONGITUDE "
         + "FROM WINE "
-        + "LEFT JOIN GEOLOCATION ON LOWER(WINE.REGION) LIKE LOWER(GEOLOCATION.NAME)"
+        + GEOLOCATION_JOIN
         + "ORDER BY WINE.ID ";
-    try (Statement statement = connection.createStatement()) {
-      try (ResultSet resultSet = statement.executeQuery(sql)) {
-        ObservableList<Wine> wines = extractAllWinesFromResultSet(resultSet, "wine_id");
-        log.info("Successfully retrieved all {} wines in {}ms", wines.size(),
-            timer.currentOffsetMilliseconds());
-        return wines;
+    return read(connection -> {
+      try (Statement statement = connection.createStatement()) {
+        try (ResultSet resultSet = statement.executeQuery(sql)) {
+          ObservableList<Wine> wines = extractAllWinesFromResultSet(resultSet, "wine_id");
+          log.info("Successfully retrieved all {} wines in {}ms", wines.size(),
+              timer.currentOffsetMilliseconds());
+          return wines;
+        }
+      }
+    });
+  }
+
+  /**
+   * Streams every wine matching the filters in ID order using the default fetch size.
+   *
+   * @param filters filters to apply, or null for no filtering
+   * @return stream of wines, which must be closed to release the cursor
+   * @throws SQLException if the query could not be run
+   * @see #stream(WineFilters, int)
+   */
+  public Stream<Wine> stream(WineFilters filters) throws SQLException {
+    return stream(filters, DEFAULT_FETCH_SIZE);
+  }
+
+  /**
+   * Streams every wine matching the filters in ID order over a forward-only cursor. Rows are read
+   * as the stream is consumed, so a scan of the whole table holds at most one fetch of rows.
+   * <p>
+   * Streamed wines are detached: they are not added to the wine cache and changes made to them are
+   * not saved. The stream holds a read-only connection, or the writer if there are no read-only
+   * connections, until it is closed, so it must be closed by the thread which opened it, ideally
+   * with try-with-resources. A database error while reading is thrown as a RuntimeException.
+   * </p>
+   *
+   * @param filters   filters to apply, or null for no filtering
+   * @param fetchSize number of rows to fetch from the database at a time
+   * @return stream of wines, which must be closed to release the cursor
+   * @throws SQLException if the query could not be run
+   */
+  public Stream<Wine> stream(WineFilters filters, int fetchSize) throws SQLException {
+    updateQueue.flushIfWriterFree();
+    List<Object> parameters = new ArrayList<>();
+    String sql = "SELECT WINE.ID as wine_id, WINE.*, GEOLOCATION.LATITUDE, GEOLOCATION.LONGITUDE "
+        + "FROM WINE "
+        + buildSearchJoin(filters, parameters)
+        + GEOLOCATION_JOIN
+        + buildFilterClause(filters, parameters)
+        + "ORDER BY WINE.ID";
+    ConnectionPool.Lease lease = borrowReader();
+    PreparedStatement statement = null;
+    try {
+      statement = prepare(lease.getConnection(), sql);
+      statement.setFetchSize(fetchSize);
+      bindParameters(statement, parameters, 1);
+      WineSpliterator spliterator = new WineSpliterator(statement, statement.executeQuery());
+      return StreamSupport.stream(spliterator, false)
+          .onClose(spliterator::close)
+          .onClose(lease::close);
+    } catch (SQLException error) {
+      if (statement != null) {
+        statement.close();
       }
+      lease.close();
+      throw error;
     }
   }
 
@@ -161,52 +627,121 @@ public class WineDao extends Dao {
    */
   public ObservableList<Wine> getAllInRange(int begin, int end, WineFilters filters)
       throws SQLException {
+    return search(filters, WineSortOrder.DEFAULT, begin, end - begin).wines();
+  }
+
+  /**
+   * Searches for the page of wines following a cursor. The cursor is turned into a range condition
+   * on the sort index, so every page costs the same no matter how deep into the results it is.
+   *
+   * @param filters filters to apply, or null for no filtering
+   * @param order   order to sort the wines in
+   * @param after   cursor of the previous page, or null to start from the first wine
+   * @param limit   maximum number of wines on the page
+   * @return page of wines along with the cursor of the following page
+   */
+  public WinePage search(WineFilters filters, WineSortOrder order, WineCursor after, int limit)
+      throws SQLException {
+    return search(filters, order, after, 0, limit);
+  }
+
+  /**
+   * Searches for a page of wines by offset. SQLite has to step over every skipped row, so this
+   * should only be used to jump to a page without a cursor; following pages should be read with
+   * the returned cursor.
+   *
+   * @param filters filters to apply, or null for no filtering
+   * @param order   order to sort the wines in
+   * @param offset  number of matching wines to skip
+   * @param limit   maximum number of wines on the page
+   * @return page of wines along with the cursor of the following page
+   */
+  public WinePage search(WineFilters filters, WineSortOrder order, int offset, int limit)
+      throws SQLException {
+    return search(filters, order, null, offset, limit);
+  }
+
+  /**
+   * Searches for a page of wines, one more than the limit is read to find out if there is a
+   * following page.
+   *
+   * @param filters filters to apply, or null for no filtering
+   * @param order   order to sort the wines in
+   * @param after   cursor of the previous page, or null
+   * @param offset  number of matching wines to skip after the cursor
+   * @param limit   maximum number of wines on the page
+   * @return page of wines along with the cursor of the following page
+   */
+  private WinePage search(WineFilters filters, WineSortOrder order, WineCursor after, int offset,
+      int limit) throws SQLException {
     Timer timer = new Timer();
-    String sql = "SELECT WINE.ID as wine_id, WINE.*, GEOLOCATION.LATITUDE, GEOLOCATION.LONGITUDE "
+    updateQueue.flushIfWriterFree();
+    List<Object> parameters = new ArrayList<>();
+    String searchJoin = buildSearchJoin(filters, parameters);
+    // Without search text there is nothing to rank by
+    WineSortOrder sortOrder = order == WineSortOrder.RELEVANCE && searchJoin.isEmpty()
+        ? WineSortOrder.DEFAULT : order;
+    String where = buildFilterClause(filters, parameters);
+    int startOffset = offset;
+    if (after != null && sortOrder == WineSortOrder.RELEVANCE) {
+      // Ranks are floats recomputed by each query and often tied, so there is no stable key
+      startOffset += after.position();
+    } else if (after != null) {
+      where += (where.isEmpty() ? "WHERE " : "AND ") + buildCursorCondition(sortOrder, after,
+          parameters);
+    }
+    String sql = "SELECT WINE.ID as wine_id, WINE.*, GEOLOCATION.LATITUDE, GEOLOCATION.LONGITUDE, "
+        + sortOrder.getColumn() + " as sort_key "
         + "FROM WINE "
-        + "LEFT JOIN GEOLOCATION ON LOWER(WINE.REGION) LIKE LOWER(GEOLOCATION.NAME) "
-        + "WHERE WINE.ID > ? "
-        + (filters == null ? "" : "AND TITLE LIKE ? "
-        + "AND COUNTRY LIKE ? "
-        + "AND WINERY LIKE ? "
-        + "AND COLOR LIKE ? "
-        + "AND VINTAGE BETWEEN ? AND ? "
-        + "AND SCORE_PERCENT BETWEEN ? AND ? "
-        + "AND ABV BETWEEN ? AND ? "
-        + "AND PRICE BETWEEN ? AND ? ")
-        + "ORDER BY WINE.ID "
-        + "LIMIT ?;";
-
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
-      int paramIndex = 1;
-      statement.setInt(paramIndex++, begin);
-      if (filters != null) {
-        statement.setString(paramIndex++,
-            filters.getTitle().isEmpty() ? "%" : "%" + filters.getTitle() + "%");
-        statement.setString(paramIndex++,
-            filters.getCountry().isEmpty() ? "%" : "%" + filters.getCountry() + "%");
-        statement.setString(paramIndex++,
-            filters.getWinery().isEmpty() ? "%" : "%" + filters.getWinery() + "%");
-        statement.setString(paramIndex++,
-            filters.getColor().isEmpty() ? "%" : "%" + filters.getColor() + "%");
-        statement.setInt(paramIndex++, filters.getMinVintage());
-        statement.setInt(paramIndex++, filters.getMaxVintage());
-        statement.setDouble(paramIndex++, filters.getMinScore());
-        statement.setDouble(paramIndex++, filters.getMaxScore());
-        statement.setDouble(paramIndex++, filters.getMinAbv());
-        statement.setDouble(paramIndex++, filters.getMaxAbv());
-        statement.setDouble(paramIndex++, filters.getMinPrice());
-        statement.setDouble(paramIndex++, filters.getMaxPrice());
-      }
-      statement.setInt(paramIndex, end - begin);
-
-      try (ResultSet resultSet = statement.executeQuery()) {
-        ObservableList<Wine> wines = extractAllWinesFromResultSet(resultSet, "wine_id");
-        log.info("Successfully retrieved {} wines in range {}-{} in {}ms", wines.size(),
-            begin, end, timer.currentOffsetMilliseconds());
-        return wines;
+        + searchJoin
+        + GEOLOCATION_JOIN
+        + where
+        + buildOrderClause(sortOrder)
+        + "LIMIT ? OFFSET ?";
+    PageKey key = new PageKey(sql, List.copyOf(parameters), limit, startOffset);
+    if (secondLevelCacheEnabled) {
+      WinePage cachedPage = pageCache.get(key);
+      if (cachedPage != null) {
+        log.info("Retrieved cached page of {} wines", cachedPage.wines().size());
+        return new WinePage(FXCollections.observableArrayList(cachedPage.wines()),
+            cachedPage.next(), cachedPage.total());
       }
     }
+    long generation = getPageGeneration();
+    int position = (after == null ? 0 : after.position()) + offset;
+
+    return read(connection -> {
+      try (PreparedStatement statement = prepare(connection, sql)) {
+        int paramIndex = bindParameters(statement, parameters, 1);
+        statement.setLong(paramIndex++, (long) limit + 1);
+        statement.setInt(paramIndex, startOffset);
+
+        try (ResultSet resultSet = statement.executeQuery()) {
+          ObservableList<Wine> wines = FXCollections.observableArrayList();
+          WineCursor next = null;
+          double sortKey = 0;
+          boolean nullSortKey = false;
+          while (resultSet.next()) {
+            if (wines.size() == limit) {
+              if (!wines.isEmpty()) {
+                next = new WineCursor(sortKey, nullSortKey, wines.getLast().getKey(),
+                    position + wines.size());
+              }
+              break;
+            }
+            wines.add(extractWineFromResultSet(resultSet, "wine_id"));
+            sortKey = resultSet.getDouble("sort_key");
+            nullSortKey = resultSet.wasNull();
+          }
+          int total = getCount(filters);
+          log.info("Successfully searched {} of {} wines by {} in {}ms", wines.size(), total,
+              sortOrder, timer.currentOffsetMilliseconds());
+          WinePage page = new WinePage(wines, next, total);
+          cachePage(key, page, generation);
+          return page;
+        }
+      }
+    });
   }
 
   /**
@@ -216,25 +751,88 @@ public class WineDao extends Dao {
    * @return wine of given id or null
    */
   public Wine get(long id) throws SQLException {
+    updateQueue.flushIfWriterFree();
+    if (secondLevelCacheEnabled) {
+      Wine cachedWine = recentWines.get(id);
+      if (cachedWine != null) {
+        return cachedWine;
+      }
+    }
     String sql = "SELECT WINE.ID as wine_id, WINE.*, GEOLOCATION.LATITUDE, GEOLOCATION.LONGITUDE "
         + "FROM WINE "
-        + "LEFT JOIN GEOLOCATION ON LOWER(WINE.REGION) LIKE LOWER(GEOLOCATION.NAME) "
+        + GEOLOCATION_JOIN
         + "WHERE ID = ?";
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
-      statement.setLong(1, id);
-
-      try (ResultSet resultSet = statement.executeQuery()) {
-        if (resultSet.next()) {
-          Wine wine = extractWineFromResultSet(resultSet, "wine_id");
-          if (wine != null) {
-            log.info("Successfully retrieved wine with ID {}", id);
-            return wine;
+    return read(connection -> {
+      try (PreparedStatement statement = prepare(connection, sql)) {
+        statement.setLong(1, id);
+
+        try (ResultSet resultSet = statement.executeQuery()) {
+          if (resultSet.next()) {
+            Wine wine = extractWineFromResultSet(resultSet, "wine_id");
+            if (wine != null) {
+              if (secondLevelCacheEnabled) {
+                recentWines.put(id, wine);
+              }
+              log.info("Successfully retrieved wine with ID {}", id);
+              return wine;
+            }
+            log.info("Could not retrieve wine with ID {}", id);
           }
-          log.info("Could not retrieve wine with ID {}", id);
         }
       }
+      return null;
+    });
+  }
+
+  /**
+   * Gets the wines with the given ids. Wines already in memory are reused and the rest are loaded
+   * in batches, rather than with a query for each id.
+   *
+   * @param ids ids of wines
+   * @return map from id to wine in the order of the given ids, without ids that have no wine
+   */
+  public Map<Long, Wine> getAll(Collection<Long> ids) throws SQLException {
+    Timer timer = new Timer();
+    updateQueue.flushIfWriterFree();
+    Map<Long, Wine> wines = new LinkedHashMap<>();
+    List<Long> missing = new ArrayList<>();
+    for (long id : ids) {
+      Wine wine = wineCache.tryGetObject(id);
+      if (wine == null && secondLevelCacheEnabled) {
+        wine = recentWines.get(id);
+      }
+      wines.put(id, wine);
+      if (wine == null) {
+        missing.add(id);
+      }
     }
-    return null;
+    if (!missing.isEmpty()) {
+      read(connection -> {
+        try (PreparedStatement statement = prepare(connection, GET_BATCH_SQL)) {
+          for (int start = 0; start < missing.size(); start += ID_BATCH_SIZE) {
+            List<Long> batch = missing.subList(start,
+                Math.min(start + ID_BATCH_SIZE, missing.size()));
+            for (int i = 0; i < ID_BATCH_SIZE; i++) {
+              statement.setLong(i + 1, batch.get(Math.min(i, batch.size() - 1)));
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+              while (resultSet.next()) {
+                Wine wine = extractWineFromResultSet(resultSet, "wine_id");
+                wines.put(wine.getKey(), wine);
+                if (secondLevelCacheEnabled) {
+                  recentWines.put(wine.getKey(), wine);
+                }
+              }
+            }
+          }
+        }
+        return null;
+      });
+    }
+    wines.values().removeIf(wine -> wine == null);
+    log.info("Successfully retrieved {} wines by ID, {} from memory, in {}ms", wines.size(),
+        ids.size() - missing.size(), timer.currentOffsetMilliseconds());
+    return wines;
   }
 
   /**
@@ -245,27 +843,30 @@ public class WineDao extends Dao {
    */
   public Wine getByExactTitle(String title) throws SQLException {
     Timer timer = new Timer();
+    updateQueue.flushIfWriterFree();
     String sql = "SELECT WINE.ID as wine_id, WINE.*, GEOLOCATION.LATITUDE, GEOLOCATION.LONGITUDE "
         + "FROM WINE "
-        + "LEFT JOIN GEOLOCATION ON LOWER(WINE.REGION) LIKE LOWER(GEOLOCATION.NAME) "
+        + GEOLOCATION_JOIN
         + "WHERE TITLE = ?";
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
-      statement.setString(1, title);
-
-      try (ResultSet resultSet = statement.executeQuery()) {
-        if (resultSet.next()) {
-          Wine wine = extractWineFromResultSet(resultSet, "wine_id");
-          if (wine != null) {
-            log.info("Successfully retrieved wine with title '{}' in {}ms", title,
-                timer.currentOffsetMilliseconds());
-            return wine;
+    return read(connection -> {
+      try (PreparedStatement statement = prepare(connection, sql)) {
+        statement.setString(1, title);
+
+        try (ResultSet resultSet = statement.executeQuery()) {
+          if (resultSet.next()) {
+            Wine wine = extractWineFromResultSet(resultSet, "wine_id");
+            if (wine != null) {
+              log.info("Successfully retrieved wine with title '{}' in {}ms", title,
+                  timer.currentOffsetMilliseconds());
+              return wine;
+            }
           }
+          log.info("Could not retrieve wine with title '{}' in {}ms", title,
+              timer.currentOffsetMilliseconds());
         }
-        log.info("Could not retrieve wine with title '{}' in {}ms", title,
-            timer.currentOffsetMilliseconds());
       }
-    }
-    return null;
+      return null;
+    });
   }
 
   /**
@@ -289,11 +890,10 @@ public class WineDao extends Dao {
   private void addList(List<Wine> wines) throws SQLException {
 
     Timer timer = new Timer();
-    String sql = "INSERT INTO WINE VALUES (null, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-
+    lockWriter();
     connection.setAutoCommit(false);
 
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+    try (PreparedStatement statement = connection.prepareStatement(INSERT_SQL)) {
       for (int i = 0; i < wines.size(); i++) {
         if (wines.get(i).getKey() != -1) {
           log.error("Adding wine that is already in the database");
@@ -309,8 +909,13 @@ public class WineDao extends Dao {
         wines.get(i++).setKey(keys.getLong(1));
       }
       connection.commit();
+      invalidateCachedPages();
+      for (Wine wine : wines) {
+        wineDataStatService.addWine(wine);
+      }
     } finally {
       connection.setAutoCommit(true);
+      unlockWriter();
     }
     log.info("Successfully {} wines in {}ms", wines.size(), timer.currentOffsetMilliseconds());
   }
@@ -322,7 +927,6 @@ public class WineDao extends Dao {
    */
   public void add(Wine wine) throws SQLException {
     addList(Collections.singletonList(wine));
-    updateUniques(wine); // Check if new wine updates uniques
   }
 
   /**
@@ -335,9 +939,23 @@ public class WineDao extends Dao {
     for (int i = 0; i < wines.size(); i += 2048) {
       addList(wines.subList(i, Math.min(wines.size(), i + 2048)));
     }
+  }
 
-    // Update uniques due to new values
-    updateUniques();
+  /**
+   * Opens a writer importing wines in a single transaction, for imports too large to hold in
+   * memory at once. Nothing written is visible to other connections until the writer is
+   * committed, and closing it without committing rolls every wine back.
+   * <p>
+   * The writer holds the connection's transaction open until it is closed, so other writes queue
+   * behind it while queries from other threads run on read-only connections, if there are any.
+   * </p>
+   *
+   * @param mode how the imported wines are combined with the existing ones
+   * @return batch writer, which must be closed
+   * @throws SQLException if the transaction could not be started
+   */
+  public BatchWriter openBatchWriter(WineImportMode mode) throws SQLException {
+    return new BatchWriter(mode);
   }
 
   /**
@@ -345,69 +963,455 @@ public class WineDao extends Dao {
    */
   public void removeAll() throws SQLException {
     Timer timer = new Timer();
+    updateQueue.flush();
     wineCache.clear();
     String sql = "DELETE FROM WINE";
-    try (Statement statement = connection.createStatement()) {
-      int rowsAffected = statement.executeUpdate(sql);
-      log.info("Successfully removed {} wines in {}ms", rowsAffected,
-          timer.currentOffsetMilliseconds());
-      wineCache.removeAll();
-      updateUniques();
-    }
+    write(connection -> {
+      try (Statement statement = connection.createStatement()) {
+        int rowsAffected = statement.executeUpdate(sql);
+        invalidateCachedPages();
+        recentWines.invalidateAll();
+        log.info("Successfully removed {} wines in {}ms", rowsAffected,
+            timer.currentOffsetMilliseconds());
+        wineCache.removeAll();
+        wineDataStatService.reset();
+      }
+      return null;
+    });
+    winesRemovedListener.run();
   }
 
   /**
-   * Extracts all wines from the provided ResultSet and stores them in an ObservableList.
-   *
-   * @param resultSet The ResultSet from which wines are to be extracted
-   * @return An ObservableList of Wine objects
-   * @throws SQLException If an error occurs while processing the ResultSet
+   * Rebuilds the full-text search index from the WINE table. Needed once for databases whose wines
+   * were added before the index existed, after which the triggers keep it in sync.
    */
-  ObservableList<Wine> extractAllWinesFromResultSet(ResultSet resultSet, String idColumnName)
-      throws SQLException {
-    ObservableList<Wine> wines = FXCollections.observableArrayList();
-    while (resultSet.next()) {
-      wines.add(extractWineFromResultSet(resultSet, idColumnName));
-    }
-    return wines;
+  public void rebuildSearchIndex() throws SQLException {
+    Timer timer = new Timer();
+    String sql = "INSERT INTO WINE_SEARCH (WINE_SEARCH) VALUES ('rebuild')";
+    write(connection -> {
+      try (PreparedStatement statement = prepare(connection, sql)) {
+        return statement.executeUpdate();
+      }
+    });
+    log.info("Successfully rebuilt the wine search index in {}ms",
+        timer.currentOffsetMilliseconds());
   }
 
   /**
-   * Extracts a Wine object from the provided ResultSet. The wine cache is checked before creating a
-   * new Wine instance
+   * Gets the migrations of the WINE table. Version 1 adds the review aggregates, backfilled from
+   * the reviews of each batch of wines. Versions 3 to 6 add the filter indexes, the search index
+   * built from the existing wines, the change counter of the stats snapshot and the natural key
+   * index.
    *
-   * @param resultSet The ResultSet from which wines are to be extracted
-   * @return The extracted Wine object
-   * @throws SQLException If an error occurs while processing the ResultSet
+   * @return migrations
    */
-  Wine extractWineFromResultSet(ResultSet resultSet, String idColumnName) throws SQLException {
-    long id = resultSet.getLong(idColumnName);
-    Wine cachedWine = wineCache.tryGetObject(id);
-    if (cachedWine != null) {
-      return cachedWine;
-    }
+  @Override
+  public List<Migration> getMigrations() {
+    return List.of(reviewAggregatesMigration(),
+        new Migration(3, "Index wine filter and sort columns",
+            connection -> MigrationRunner.execute(connection, FILTER_INDEX_SQL)),
+        new Migration(4, "Add the wine search index", connection -> {
+          boolean exists = MigrationRunner.tableExists(connection, "WINE_SEARCH");
+          MigrationRunner.execute(connection, SEARCH_INDEX_SQL);
+          if (!exists) {
+            // The triggers only index wines changed from now on
+            MigrationRunner.execute(connection,
+                "INSERT INTO WINE_SEARCH (WINE_SEARCH) VALUES ('rebuild')");
+          }
+        }),
+        new Migration(5, "Track wine changes for the stats snapshot",
+            connection -> MigrationRunner.execute(connection, STATS_VERSION_SQL)),
+        new Migration(6, "Index wines by natural key",
+            connection -> MigrationRunner.execute(connection, NATURAL_KEY_INDEX_SQL)));
+  }
 
-    GeoLocation geoLocation = createGeoLocation(resultSet);
-    Wine wine = new Wine(
-        id,
-        resultSet.getString("TITLE"),
-        resultSet.getString("VARIETY"),
-        resultSet.getString("COUNTRY"),
-        resultSet.getString("REGION"),
-        resultSet.getString("WINERY"),
-        resultSet.getString("COLOR"),
-        resultSet.getInt("VINTAGE"),
-        resultSet.getString("DESCRIPTION"),
-        resultSet.getInt("SCORE_PERCENT"),
-        resultSet.getFloat("ABV"),
-        resultSet.getFloat("PRICE"),
-        geoLocation,
-        resultSet.getDouble("AVERAGE_RATING")
-    );
-    wineCache.addObject(id, wine);
+  private Migration reviewAggregatesMigration() {
+    return new Migration(1, "Add review aggregates to wines", connection -> {
+      if (!MigrationRunner.columnExists(connection, "WINE", "REVIEW_COUNT")) {
+        try (Statement statement = connection.createStatement()) {
+          statement.execute("ALTER TABLE WINE ADD COLUMN REVIEW_COUNT INTEGER NOT NULL DEFAULT 0");
+          statement.execute("ALTER TABLE WINE ADD COLUMN RATING_SUM DOUBLE NOT NULL DEFAULT 0");
+        }
+      }
+    }, new Migration.Backfill() {
+      @Override
+      public long getMaxId(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+            ResultSet resultSet = statement.executeQuery("SELECT MAX(ID) FROM WINE")) {
+          return resultSet.next() ? resultSet.getLong(1) : 0;
+        }
+      }
+
+      @Override
+      public int applyBatch(Connection connection, long fromId, long toId) throws SQLException {
+        try (PreparedStatement statement = prepare(connection, BACKFILL_AGGREGATES_SQL)) {
+          statement.setLong(1, fromId);
+          statement.setLong(2, toId);
+          return statement.executeUpdate();
+        }
+      }
+    });
+  }
+
+  /**
+   * Finds the wines whose stored review count or rating sum does not match their reviews. The
+   * WINE_REVIEW triggers keep them in sync, so a wine is only found if WINE or WINE_REVIEW was
+   * changed with the triggers missing.
+   *
+   * @return ids of the inconsistent wines
+   */
+  public List<Long> findInconsistentReviewAggregates() throws SQLException {
+    Timer timer = new Timer();
+    return read(connection -> {
+      List<Long> ids = new ArrayList<>();
+      try (PreparedStatement statement = prepare(connection, INCONSISTENT_AGGREGATES_SQL);
+          ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          ids.add(resultSet.getLong("ID"));
+        }
+      }
+      log.info("Successfully found {} wines with inconsistent review aggregates in {}ms",
+          ids.size(), timer.currentOffsetMilliseconds());
+      return ids;
+    });
+  }
+
+  /**
+   * Recomputes the review aggregates of the wines whose stored aggregates do not match their
+   * reviews, and updates the average ratings of those in memory on the calling thread.
+   *
+   * @return number of wines repaired
+   */
+  public int repairReviewAggregates() throws SQLException {
+    return repairReviewAggregates(Runnable::run);
+  }
 
-    bindUpdater(wine);
-    return wine;
+  /**
+   * Recomputes the review aggregates of the wines whose stored aggregates do not match their
+   * reviews. The new average ratings of those in memory are read on the calling thread, then
+   * applied by an executor, as the ratings may be bound to controls.
+   *
+   * @param ratingsExecutor runs the update of the ratings in memory, such as Platform::runLater
+   * @return number of wines repaired
+   */
+  public int repairReviewAggregates(Executor ratingsExecutor) throws SQLException {
+    List<Long> ids = findInconsistentReviewAggregates();
+    if (ids.isEmpty()) {
+      return 0;
+    }
+    Timer timer = new Timer();
+    int rowsAffected = write(connection -> {
+      try (PreparedStatement statement = prepare(connection, REPAIR_AGGREGATES_SQL)) {
+        return statement.executeUpdate();
+      }
+    });
+    log.warn("Repaired review aggregates of {} wines in {}ms", rowsAffected,
+        timer.currentOffsetMilliseconds());
+    Map<Wine, Double> ratings = readAverageRatings(ids);
+    if (!ratings.isEmpty()) {
+      ratingsExecutor.execute(() -> applyAverageRatings(ratings));
+    }
+    return rowsAffected;
+  }
+
+  /**
+   * Reloads the average ratings of wines in memory after the WINE_REVIEW triggers have changed
+   * them in the database. The ratings may be bound to controls, so this must be called on the
+   * JavaFX application thread if any are shown.
+   *
+   * @param wineIds ids of the wines whose reviews changed
+   */
+  public void refreshAverageRatings(Collection<Long> wineIds) throws SQLException {
+    applyAverageRatings(readAverageRatings(wineIds));
+  }
+
+  /**
+   * Reads the average ratings the WINE_REVIEW triggers have stored for wines in memory, without
+   * changing the wines, so it can be called from any thread. The wines are dropped from the second
+   * level cache, and wines no longer in memory are skipped, as they are read with their new
+   * ratings when next loaded.
+   *
+   * @param wineIds ids of the wines whose reviews changed
+   * @return stored average rating of each of the wines in memory
+   */
+  public Map<Wine, Double> readAverageRatings(Collection<Long> wineIds) throws SQLException {
+    invalidateCachedPages();
+    List<Long> ids = wineIds.stream().distinct().toList();
+    ids.forEach(recentWines::invalidate);
+    List<Wine> loadedWines = ids.stream()
+        .map(wineCache::tryGetObject)
+        .filter(Objects::nonNull)
+        .toList();
+    if (loadedWines.isEmpty()) {
+      return Map.of();
+    }
+    String sql = "SELECT AVERAGE_RATING FROM WINE WHERE ID = ?";
+    return read(connection -> {
+      Map<Wine, Double> ratings = new LinkedHashMap<>();
+      try (PreparedStatement statement = prepare(connection, sql)) {
+        for (Wine wine : loadedWines) {
+          statement.setLong(1, wine.getKey());
+          try (ResultSet resultSet = statement.executeQuery()) {
+            if (resultSet.next()) {
+              ratings.put(wine, resultSet.getDouble("AVERAGE_RATING"));
+            }
+          }
+        }
+      }
+      return ratings;
+    });
+  }
+
+  /**
+   * Sets the average ratings of wines in memory to those read by {@link #readAverageRatings}. The
+   * new values are not written back. The ratings may be bound to controls, so this must be called
+   * on the JavaFX application thread if any are shown.
+   *
+   * @param ratings stored average rating of each wine
+   */
+  public void applyAverageRatings(Map<Wine, Double> ratings) {
+    ratings.forEach(Wine::loadAverageRating);
+  }
+
+  /**
+   * Builds the join restricting wines to those matching the search text of the filters. The match
+   * runs against the WINE_SEARCH full-text index rather than scanning every title.
+   *
+   * @param filters    filters to apply, or null for no filtering
+   * @param parameters list the values to bind are appended to
+   * @return join clause, or an empty string if there is no search text
+   */
+  private String buildSearchJoin(WineFilters filters, List<Object> parameters) {
+    if (filters == null || filters.getTitle() == null) {
+      return "";
+    }
+    String query = buildMatchQuery(filters.getTitle(), filters.isPrefixMatch());
+    if (query.isEmpty()) {
+      return "";
+    }
+    parameters.add(query);
+    return "INNER JOIN WINE_SEARCH ON WINE_SEARCH.rowid = WINE.ID AND WINE_SEARCH MATCH ? ";
+  }
+
+  /**
+   * Converts search text into an FTS5 query matching every term. Terms are quoted so characters in
+   * the text are never read as query syntax, and lower cased so equivalent searches share a cached
+   * count.
+   *
+   * @param text   search text
+   * @param prefix whether each term also matches words starting with it
+   * @return FTS5 query, or an empty string if the text has no terms
+   */
+  static String buildMatchQuery(String text, boolean prefix) {
+    StringBuilder query = new StringBuilder();
+    for (String term : text.split("[^\\p{L}\\p{N}]+")) {
+      if (term.isEmpty()) {
+        continue;
+      }
+      if (!query.isEmpty()) {
+        query.append(' ');
+      }
+      query.append('"').append(term.toLowerCase(Locale.ROOT)).append('"');
+      if (prefix) {
+        query.append('*');
+      }
+    }
+    return query.toString();
+  }
+
+  /**
+   * Builds the WHERE clause for a set of filters. Filters left at their defaults are skipped
+   * entirely instead of being bound as catch-all patterns or ranges, which leaves SQLite free to
+   * use the index of whichever filter is actually set.
+   *
+   * @param filters    filters to apply, or null for no filtering
+   * @param parameters list the values to bind are appended to
+   * @return WHERE clause, or an empty string if no filters are set
+   */
+  private String buildFilterClause(WineFilters filters, List<Object> parameters) {
+    List<String> predicates = new ArrayList<>();
+    if (filters != null) {
+      addEqualsPredicate(predicates, parameters, "WINE.COUNTRY", filters.getCountry());
+      addEqualsPredicate(predicates, parameters, "WINE.WINERY", filters.getWinery());
+      addEqualsPredicate(predicates, parameters, "WINE.COLOR", filters.getColor());
+      addRangePredicate(predicates, parameters, "WINE.VINTAGE", filters.getMinVintage(),
+          filters.getMaxVintage() == Integer.MAX_VALUE ? Double.MAX_VALUE
+              : filters.getMaxVintage());
+      addRangePredicate(predicates, parameters, "WINE.SCORE_PERCENT", filters.getMinScore(),
+          filters.getMaxScore());
+      addRangePredicate(predicates, parameters, "WINE.ABV", filters.getMinAbv(),
+          filters.getMaxAbv());
+      addRangePredicate(predicates, parameters, "WINE.PRICE", filters.getMinPrice(),
+          filters.getMaxPrice());
+    }
+    return predicates.isEmpty() ? "" : "WHERE " + String.join(" AND ", predicates) + " ";
+  }
+
+  /**
+   * Adds a case-insensitive equality predicate if the value is set. The NOCASE collation matches
+   * the collation of the column indexes.
+   *
+   * @param predicates list of predicates to add to
+   * @param parameters list of values to bind
+   * @param column     column to compare
+   * @param value      value to match, or an empty string to skip the predicate
+   */
+  private void addEqualsPredicate(List<String> predicates, List<Object> parameters, String column,
+      String value) {
+    if (value != null && !value.isBlank()) {
+      predicates.add(column + " = ? COLLATE NOCASE");
+      parameters.add(value.strip());
+    }
+  }
+
+  /**
+   * Adds range predicates for whichever bounds are set. A minimum of zero or less and a maximum of
+   * Double.MAX_VALUE are treated as unset.
+   *
+   * @param predicates list of predicates to add to
+   * @param parameters list of values to bind
+   * @param column     column to compare
+   * @param min        inclusive minimum
+   * @param max        inclusive maximum
+   */
+  private void addRangePredicate(List<String> predicates, List<Object> parameters, String column,
+      double min, double max) {
+    if (min > 0) {
+      predicates.add(column + " >= ?");
+      parameters.add(min);
+    }
+    if (max != Double.MAX_VALUE) {
+      predicates.add(column + " <= ?");
+      parameters.add(max);
+    }
+  }
+
+  /**
+   * Builds the order clause of a search. Wines with no value in the sort column come after every
+   * other wine whichever way it is sorted, then ties are broken by ID.
+   *
+   * @param order order the wines are sorted in
+   * @return order clause
+   */
+  private String buildOrderClause(WineSortOrder order) {
+    String direction = order.isDescending() ? "DESC" : "ASC";
+    if (order == WineSortOrder.DEFAULT || order == WineSortOrder.RELEVANCE) {
+      // Neither the ID nor the rank of a matched wine can be null
+      return "ORDER BY " + order.getColumn() + " " + direction + ", WINE.ID " + direction + " ";
+    }
+    return "ORDER BY " + order.getColumn() + " IS NULL, " + order.getColumn() + " " + direction
+        + ", WINE.ID " + direction + " ";
+  }
+
+  /**
+   * Builds the condition selecting wines after a cursor, matching the order clause. After a wine
+   * with a sort key come the rest of the wines with sort keys and then every wine without one.
+   * After a wine without a sort key come only the wines without one which follow it by ID. The row
+   * value comparison lets SQLite seek straight to the cursor in the (column, ID) sort index.
+   *
+   * @param order      order the wines are sorted in, not relevance
+   * @param after      cursor of the previous page
+   * @param parameters list of values to bind
+   * @return condition on the sort key and ID
+   */
+  private String buildCursorCondition(WineSortOrder order, WineCursor after,
+      List<Object> parameters) {
+    String comparison = order.isDescending() ? "<" : ">";
+    if (order == WineSortOrder.DEFAULT) {
+      parameters.add(after.id());
+      return "WINE.ID " + comparison + " ? ";
+    }
+    String column = order.getColumn();
+    if (after.nullSortKey()) {
+      parameters.add(after.id());
+      return "(" + column + " IS NULL AND WINE.ID " + comparison + " ?) ";
+    }
+    parameters.add(after.sortKey());
+    parameters.add(after.id());
+    return "(" + column + " IS NULL OR (" + column + ", WINE.ID) " + comparison + " (?, ?)) ";
+  }
+
+  /**
+   * Binds a list of values to a statement in order.
+   *
+   * @param statement  statement to bind to
+   * @param parameters values to bind
+   * @param startIndex index of the first parameter
+   * @return index of the next unbound parameter
+   * @throws SQLException if a value could not be bound
+   */
+  private int bindParameters(PreparedStatement statement, List<Object> parameters, int startIndex)
+      throws SQLException {
+    for (Object parameter : parameters) {
+      statement.setObject(startIndex++, parameter);
+    }
+    return startIndex;
+  }
+
+  /**
+   * Extracts all wines from the provided ResultSet and stores them in an ObservableList.
+   *
+   * @param resultSet The ResultSet from which wines are to be extracted
+   * @return An ObservableList of Wine objects
+   * @throws SQLException If an error occurs while processing the ResultSet
+   */
+  ObservableList<Wine> extractAllWinesFromResultSet(ResultSet resultSet, String idColumnName)
+      throws SQLException {
+    ObservableList<Wine> wines = FXCollections.observableArrayList();
+    while (resultSet.next()) {
+      wines.add(extractWineFromResultSet(resultSet, idColumnName));
+    }
+    return wines;
+  }
+
+  /**
+   * Extracts a Wine object from the provided ResultSet. The wine cache is checked before creating a
+   * new Wine instance
+   *
+   * @param resultSet The ResultSet from which wines are to be extracted
+   * @return The extracted Wine object
+   * @throws SQLException If an error occurs while processing the ResultSet
+   */
+  Wine extractWineFromResultSet(ResultSet resultSet, String idColumnName) throws SQLException {
+    long id = resultSet.getLong(idColumnName);
+    Wine cachedWine = wineCache.tryGetObject(id);
+    if (cachedWine != null) {
+      return cachedWine;
+    }
+
+    Wine wine = createWine(resultSet, id);
+    wine.setChangeTracker(changeTracker);
+    // Another thread may have loaded the same wine since it was looked up
+    return wineCache.addObjectIfAbsent(id, wine);
+  }
+
+  /**
+   * Creates a new Wine from the current row of the provided ResultSet, without checking the wine
+   * cache or tracking changes.
+   *
+   * @param resultSet The ResultSet positioned at the wine's row
+   * @param id        ID of the wine
+   * @return The created Wine object
+   * @throws SQLException If an error occurs while processing the ResultSet
+   */
+  private Wine createWine(ResultSet resultSet, long id) throws SQLException {
+    GeoLocation geoLocation = createGeoLocation(resultSet);
+    return new Wine(
+        id,
+        resultSet.getString("TITLE"),
+        resultSet.getString("VARIETY"),
+        resultSet.getString("COUNTRY"),
+        resultSet.getString("REGION"),
+        resultSet.getString("WINERY"),
+        resultSet.getString("COLOR"),
+        resultSet.getInt("VINTAGE"),
+        resultSet.getString("DESCRIPTION"),
+        resultSet.getInt("SCORE_PERCENT"),
+        resultSet.getFloat("ABV"),
+        resultSet.getFloat("PRICE"),
+        geoLocation,
+        resultSet.getDouble("AVERAGE_RATING")
+    );
   }
 
   /**
@@ -457,268 +1461,575 @@ public class WineDao extends Dao {
   }
 
   /**
-   * Binds listeners to the Wine object to ensure that any changes to the wines properties are
-   * automatically reflected in the database.
+   * Handles a change to a loaded wine by updating the wine stats and queueing the wine to be
+   * written behind. The wine tracks which attributes are dirty, so only those columns are written
+   * when the queue is flushed.
    *
-   * @param wine The Wine object to bind listeners to
+   * @param wine      wine that changed
+   * @param attribute attribute that changed
+   * @param before    value of the attribute before the change
    */
-  private void bindUpdater(Wine wine) {
-    wine.titleProperty().addListener((observableValue, before, after) -> {
-      try {
-        updateAttribute(wine.getKey(), "TITLE", update -> {
-          update.setString(1, after);
-        });
-      } catch (SQLException e) {
-        throw new RuntimeException(e);
-      }
-    });
-    wine.varietyProperty().addListener((observableValue, before, after) -> {
-      try {
-        updateAttribute(wine.getKey(), "VARIETY", update -> {
-          update.setString(1, after);
-        });
-      } catch (SQLException e) {
-        throw new RuntimeException(e);
-      }
-    });
-    wine.countryProperty().addListener((observableValue, before, after) -> {
-      try {
-        updateAttribute(wine.getKey(), "COUNTRY", update -> {
-          update.setString(1, after);
-        });
-      } catch (SQLException e) {
-        throw new RuntimeException(e);
-      }
-    });
-    wine.regionProperty().addListener((observableValue, before, after) -> {
-      try {
-        updateAttribute(wine.getKey(), "REGION", update -> {
-          update.setString(1, after);
-        });
-      } catch (SQLException e) {
-        throw new RuntimeException(e);
-      }
-    });
-    wine.wineryProperty().addListener((observableValue, before, after) -> {
-      try {
-        updateAttribute(wine.getKey(), "WINERY", update -> {
-          update.setString(1, after);
-        });
-      } catch (SQLException e) {
-        throw new RuntimeException(e);
-      }
-    });
-    wine.colorProperty().addListener((observableValue, before, after) -> {
-      try {
-        updateAttribute(wine.getKey(), "COLOR", update -> {
-          update.setString(1, after);
-        });
-      } catch (SQLException e) {
-        throw new RuntimeException(e);
-      }
-    });
-    wine.vintageProperty().addListener((observableValue, before, after) -> {
-      try {
-        updateAttribute(wine.getKey(), "VINTAGE", update -> {
-          update.setInt(1, (int) after);
-        });
-      } catch (SQLException e) {
-        throw new RuntimeException(e);
-      }
-    });
-    wine.descriptionProperty().addListener((observableValue, before, after) -> {
-      try {
-        updateAttribute(wine.getKey(), "DESCRIPTION", update -> {
-          update.setString(1, after);
-        });
-      } catch (SQLException e) {
-        throw new RuntimeException(e);
-      }
-    });
-    wine.scorePercentProperty().addListener((observableValue, before, after) -> {
-      try {
-        updateAttribute(wine.getKey(), "SCORE_PERCENT", update -> {
-          update.setInt(1, (int) after);
-        });
-      } catch (SQLException e) {
-        throw new RuntimeException(e);
-      }
-    });
-    wine.abvProperty().addListener((observableValue, before, after) -> {
-      try {
-        updateAttribute(wine.getKey(), "ABV", update -> {
-          update.setFloat(1, (float) after);
-        });
-      } catch (SQLException e) {
-        throw new RuntimeException(e);
-      }
-    });
-    wine.priceProperty().addListener((observableValue, before, after) -> {
-      try {
-        updateAttribute(wine.getKey(), "PRICE", update -> {
-          update.setFloat(1, (float) after);
-        });
-      } catch (SQLException e) {
-        throw new RuntimeException(e);
-      }
-    });
-    wine.averageRatingProperty().addListener((observableValue, before, after) -> {
-      try {
-        updateAttribute(wine.getKey(), "AVERAGE_RATING", update -> {
-          update.setDouble(1, (double) after);
-        });
-      } catch (SQLException e) {
-        throw new RuntimeException(e);
-      }
-    });
+  private void onWineChanged(Wine wine, Wine.Attribute attribute, Object before) {
+    invalidateCachedPages();
+    wineDataStatService.updateValue(attribute, before, wine.getAttribute(attribute));
+    try {
+      updateQueue.enqueue(wine);
+    } catch (SQLException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Clears the cached counts and pages after a write to WINE. Cached wines are the instances which
+   * were changed, so they stay cached unless wines were removed or replaced.
+   */
+  private synchronized void invalidateCachedPages() {
+    countCache.invalidateAll();
+    pageCache.invalidateAll();
+    pageGeneration++;
   }
 
   /**
-   * Updates a specific attribute of the user in the WINE table.
+   * Gets the number of times cached pages have been invalidated by writes to WINE. A page read
+   * before the generation last changed may be out of date.
    *
-   * @param attributeName   name of attribute
-   * @param attributeSetter callback to set attribute
+   * @return page generation
    */
-  private void updateAttribute(long id, String attributeName,
-      DatabaseManager.AttributeSetter attributeSetter) throws SQLException {
-    if (id == -1) {
-      log.warn("Skipping attribute update '{}' for wine with ID -1",
-          attributeName);
+  public synchronized long getPageGeneration() {
+    return pageGeneration;
+  }
+
+  /**
+   * Caches a page and the wines on it, unless the cached pages were invalidated since the page
+   * started being read.
+   *
+   * @param key        page query
+   * @param page       page read
+   * @param generation page generation before the page was read
+   */
+  private synchronized void cachePage(PageKey key, WinePage page, long generation) {
+    if (!secondLevelCacheEnabled || generation != pageGeneration) {
       return;
     }
-    Timer timer = new Timer();
-    String sql = "UPDATE WINE set " + attributeName + " = ? where ID = ?";
-    try (PreparedStatement update = connection.prepareStatement(sql)) {
-      attributeSetter.setAttribute(update);
-      update.setLong(2, id);
-
-      int rowsAffected = update.executeUpdate();
-      if (rowsAffected == 1) {
-        log.info("Successfully updated attribute '{}' for wine with ID {} in {}ms",
-            attributeName, id, timer.currentOffsetMilliseconds());
-      } else {
-        log.info("Could not update attribute '{}' for wine with ID {} in {}ms",
-            attributeName, id, timer.currentOffsetMilliseconds());
+    pageCache.put(key, new WinePage(FXCollections.observableArrayList(page.wines()),
+        page.next(), page.total()));
+    for (Wine wine : page.wines()) {
+      recentWines.put(wine.getKey(), wine);
+    }
+  }
+
+  /**
+   * Caches a count, unless the cached counts were invalidated since it started being read.
+   *
+   * @param key        count query
+   * @param count      count read
+   * @param generation page generation before the count was read
+   */
+  private synchronized void cacheCount(CountKey key, int count, long generation) {
+    if (generation == pageGeneration) {
+      countCache.put(key, count);
+    }
+  }
+
+  /**
+   * Estimates the memory a wine takes up, for bounding the second level cache.
+   *
+   * @param wine wine
+   * @return approximate size in bytes
+   */
+  private static long estimateSize(Wine wine) {
+    long size = 256;
+    for (String value : new String[]{wine.getTitle(), wine.getVariety(), wine.getCountry(),
+        wine.getRegion(), wine.getWinery(), wine.getColor(), wine.getDescription()}) {
+      if (value != null) {
+        size += 40 + value.length();
       }
     }
+    return size;
   }
 
   /**
-   * Updates a range of unique values using the wineDataStatService.
+   * Turns the second level cache of wines and pages on or off. It is on by default; turning it off
+   * drops everything it holds.
+   *
+   * @param enabled true to cache wines and pages
+   */
+  public void setSecondLevelCacheEnabled(boolean enabled) {
+    secondLevelCacheEnabled = enabled;
+    if (!enabled) {
+      invalidateCachedPages();
+      recentWines.invalidateAll();
+    }
+  }
+
+  /**
+   * Gets the hit, eviction and memory counters of the second level wine cache.
+   *
+   * @return wine cache stats
+   */
+  public CacheStats getWineCacheStats() {
+    return recentWines.getStats();
+  }
+
+  /**
+   * Gets the hit, eviction and memory counters of the second level page cache.
+   *
+   * @return page cache stats
+   */
+  public CacheStats getPageCacheStats() {
+    return pageCache.getStats();
+  }
+
+  /**
+   * Writes any queued wine updates to the database, waiting for the writer if another thread holds
+   * it.
+   */
+  public void flushUpdates() throws SQLException {
+    updateQueue.flush();
+  }
+
+  /**
+   * Writes any queued wine updates to the database if no other thread holds the writer. Reads
+   * within this DAO flush this way first, other DAOs reading wine columns directly should call
+   * this before querying. While an import holds the writer, the read sees the database without
+   * the queued updates rather than waiting for the import to commit.
+   */
+  public void flushUpdatesIfWriterFree() throws SQLException {
+    updateQueue.flushIfWriterFree();
+  }
+
+  /**
+   * Gets the queue wine updates are written behind through.
+   *
+   * @return wine update queue
+   */
+  public WineUpdateQueue getUpdateQueue() {
+    return updateQueue;
+  }
+
+  /**
+   * Recalculates the unique values and ranges in the wineDataStatService from the WINE table.
    *
    * <p>
-   * When the cache is invalidated by write operations to the database this must be called.
+   * Adding, changing and removing wines keeps the stats up to date, so this is only needed when
+   * the database is opened. Each attribute is counted by grouping on its index, so the
+   * recalculation reads the indexes rather than the wine rows.
    * </p>
    */
   public void updateUniques() throws SQLException {
-    wineDataStatService.reset();
-    String query = "SELECT title, country, winery, color, vintage, score_percent, abv, price "
-        + "FROM wine";
-    try (PreparedStatement statement = connection.prepareStatement(query);
-        ResultSet set = statement.executeQuery()) {
+    Timer timer = new Timer();
+    updateQueue.flush();
+    StringJoiner sql = new StringJoiner(" UNION ALL ");
+    for (Wine.Attribute attribute : STAT_ATTRIBUTES) {
+      sql.add("SELECT '" + attribute.name() + "' as ATTRIBUTE, " + attribute.name() + " as VALUE, "
+          + "COUNT(*) as COUNT FROM WINE GROUP BY " + attribute.name());
+    }
+    List<StatValue> values = read(connection -> {
+      try (PreparedStatement statement = prepare(connection, sql.toString());
+          ResultSet set = statement.executeQuery()) {
+        return readStatValues(set);
+      }
+    });
+    synchronized (wineDataStatService) {
+      wineDataStatService.reset();
+      addStatValues(values);
+    }
+    log.info("Successfully updated unique values wine cache in {}ms",
+        timer.currentOffsetMilliseconds());
+  }
 
-      // Go through results and add to lists
-      while (set.next()) {
-        final String title = set.getString("title");
-        final String country = set.getString("country");
-        final String winery = set.getString("winery");
-        final String color = set.getString("color");
-        final int vintage = set.getInt("vintage");
-        final int score = set.getInt("score_percent");
-        final float abv = set.getFloat("abv");
-        final float price = set.getFloat("price");
+  /**
+   * Loads the wine stats from the snapshot saved in WINE_STATS if no wine has changed since it was
+   * saved. Otherwise the stats are recalculated and a new snapshot is saved.
+   * <p>
+   * Unique titles are not part of the snapshot and are counted when first requested through
+   * {@link #getUniqueTitles()}.
+   * </p>
+   */
+  public void loadStats() throws SQLException {
+    Timer timer = new Timer();
+    updateQueue.flush();
+    String versionSql = "SELECT VERSION, STATS_VERSION FROM WINE_VERSION WHERE ID = 0";
+    boolean current = read(connection -> {
+      try (PreparedStatement statement = prepare(connection, versionSql);
+          ResultSet versions = statement.executeQuery()) {
+        return versions.next()
+            && versions.getLong("VERSION") == versions.getLong("STATS_VERSION");
+      }
+    });
+    if (!current) {
+      log.info("Wine stats snapshot is missing or stale, recalculating");
+      updateUniques();
+      saveStats();
+      return;
+    }
 
-        // Add to sets
-        this.wineDataStatService.getUniqueTitles().add(title);
-        this.wineDataStatService.getUniqueCountries().add(country);
-        this.wineDataStatService.getUniqueWineries().add(winery);
-        this.wineDataStatService.getUniqueColors().add(color);
+    String sql = "SELECT ATTRIBUTE, VALUE, COUNT FROM WINE_STATS";
+    List<StatValue> values = read(connection -> {
+      try (PreparedStatement statement = prepare(connection, sql);
+          ResultSet set = statement.executeQuery()) {
+        return readStatValues(set);
+      }
+    });
+    synchronized (wineDataStatService) {
+      wineDataStatService.reset();
+      wineDataStatService.setTitlesLoaded(false);
+      addStatValues(values);
+    }
+    log.info("Successfully loaded wine stats snapshot in {}ms", timer.currentOffsetMilliseconds());
+  }
 
-        // Update mins and maxes
-        updateMinMax("vintage", vintage);
-        updateMinMax("score", score);
-        updateMinMax("abv", abv);
-        updateMinMax("price", price);
+  /**
+   * Saves the current wine stats to WINE_STATS, recording the WINE version they match. The stats
+   * are kept up to date as wines change, so this can be called at any time, usually on shutdown.
+   */
+  public void saveStats() throws SQLException {
+    Timer timer = new Timer();
+    updateQueue.flush();
+    String insertSql = "INSERT INTO WINE_STATS (ATTRIBUTE, VALUE, COUNT) VALUES (?, ?, ?)";
+    lockWriter();
+    connection.setAutoCommit(false);
+    try (Statement statement = connection.createStatement();
+        PreparedStatement insert = prepare(connection, insertSql)) {
+      statement.executeUpdate("DELETE FROM WINE_STATS");
+      int rows = 0;
+      for (Wine.Attribute attribute : STAT_ATTRIBUTES) {
+        if (attribute == Wine.Attribute.TITLE) {
+          continue;
+        }
+        for (Map.Entry<?, Integer> entry : wineDataStatService.getValueCounts(attribute)
+            .entrySet()) {
+          insert.setString(1, attribute.name());
+          insert.setObject(2, entry.getKey());
+          insert.setInt(3, entry.getValue());
+          insert.addBatch();
+          rows++;
+        }
       }
-      log.info("Successfully updated unique values wine cache");
+      insert.executeBatch();
+      statement.executeUpdate("UPDATE WINE_VERSION SET STATS_VERSION = VERSION WHERE ID = 0");
+      connection.commit();
+      log.info("Successfully saved {} wine stats in {}ms", rows,
+          timer.currentOffsetMilliseconds());
+    } catch (SQLException error) {
+      connection.rollback();
+      throw error;
+    } finally {
+      connection.setAutoCommit(true);
+      unlockWriter();
+    }
+  }
+
+  /**
+   * Gets the unique wine titles, counting them first if they were not loaded with the stats.
+   *
+   * @return unique wine titles
+   */
+  public Set<String> getUniqueTitles() throws SQLException {
+    if (!wineDataStatService.isTitlesLoaded()) {
+      Timer timer = new Timer();
+      updateQueue.flushIfWriterFree();
+      String sql = "SELECT 'TITLE' as ATTRIBUTE, TITLE as VALUE, COUNT(*) as COUNT "
+          + "FROM WINE GROUP BY TITLE";
+      List<StatValue> values = read(connection -> {
+        try (PreparedStatement statement = prepare(connection, sql);
+            ResultSet set = statement.executeQuery()) {
+          return readStatValues(set);
+        }
+      });
+      synchronized (wineDataStatService) {
+        // another thread may have counted the titles while these were read
+        if (!wineDataStatService.isTitlesLoaded()) {
+          wineDataStatService.setTitlesLoaded(true);
+          addStatValues(values);
+        }
+      }
+      log.info("Successfully loaded {} unique wine titles in {}ms",
+          wineDataStatService.getUniqueTitles().size(), timer.currentOffsetMilliseconds());
+    }
+    return wineDataStatService.getUniqueTitles();
+  }
+
+  /**
+   * Reads counted values from a result set with ATTRIBUTE, VALUE and COUNT columns.
+   *
+   * @param set result set of counted values
+   * @return counted values
+   * @throws SQLException if an error occurs while reading the result set
+   */
+  private List<StatValue> readStatValues(ResultSet set) throws SQLException {
+    List<StatValue> values = new ArrayList<>();
+    while (set.next()) {
+      Wine.Attribute attribute = Wine.Attribute.valueOf(set.getString("ATTRIBUTE"));
+      Object value = switch (attribute) {
+        case VINTAGE, SCORE_PERCENT -> set.getInt("VALUE");
+        case ABV, PRICE -> set.getFloat("VALUE");
+        default -> set.getString("VALUE");
+      };
+      values.add(new StatValue(attribute, value, set.getInt("COUNT")));
+    }
+    return values;
+  }
+
+  /**
+   * Adds counted values to the wineDataStatService. The values are read before the service is
+   * locked, so the database is never waited on while holding it.
+   *
+   * @param values counted values
+   */
+  private void addStatValues(List<StatValue> values) {
+    for (StatValue value : values) {
+      wineDataStatService.addValue(value.attribute(), value.value(), value.count());
     }
   }
 
   /**
-   * Update uniques that handles a single wine instead.
+   * Gets the wineDataStatService.
    *
-   * @param wine The new wine to check
+   * @return wineDataStatService
+   */
+  public WineDataStatService getWineDataStatService() {
+    return wineDataStatService;
+  }
+
+  /**
+   * Spliterator reading detached wines from an open result set, one row per advance.
    */
-  public void updateUniques(Wine wine) {
+  private class WineSpliterator extends Spliterators.AbstractSpliterator<Wine> {
+
+    private final Statement statement;
+    private final ResultSet resultSet;
+    private final Timer timer = new Timer();
+    private long count = 0;
 
-    // Add wine data to sets
-    wineDataStatService.getUniqueTitles().add(wine.getTitle());
-    wineDataStatService.getUniqueCountries().add(wine.getCountry());
-    wineDataStatService.getUniqueWineries().add(wine.getWinery());
-    wineDataStatService.getUniqueColors().add(wine.getColor());
+    WineSpliterator(Statement statement, ResultSet resultSet) {
+      super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.DISTINCT);
+      this.statement = statement;
+      this.resultSet = resultSet;
+    }
 
-    // Check mins and maxes
-    updateMinMax("vintage", wine.getVintage());
-    updateMinMax("score", wine.getScorePercent());
-    updateMinMax("abv", wine.getAbv());
-    updateMinMax("price", wine.getPrice());
+    @Override
+    public boolean tryAdvance(Consumer<? super Wine> action) {
+      try {
+        if (!resultSet.next()) {
+          return false;
+        }
+        action.accept(createWine(resultSet, resultSet.getLong("wine_id")));
+        count++;
+        return true;
+      } catch (SQLException error) {
+        throw new RuntimeException(error);
+      }
+    }
+
+    /**
+     * Closes the cursor and the statement, returning it to the statement cache.
+     */
+    void close() {
+      try (statement) {
+        resultSet.close();
+        log.info("Successfully streamed {} wines in {}ms", count,
+            timer.currentOffsetMilliseconds());
+      } catch (SQLException error) {
+        log.error("Failed to close wine stream", error);
+      }
+    }
   }
 
   /**
-   * Helper function for the update uniques, just abstracts the min and max checks.
+   * Writes batches of imported wines through one reused insert statement inside a single
+   * transaction. Written wines are not given their keys or cached, as imports discard them once
+   * written.
    * <p>
-   * Updates the specified value if the new value is smaller than current min or<br> greater than
-   * current max.
+   * Appended wines are inserted straight into WINE. Merged wines are first loaded into the
+   * temporary WINE_STAGING table, where a repeated title, winery and vintage replaces the earlier
+   * row, and are merged into WINE by a few set-based statements when the writer is committed.
    * </p>
-   *
-   * @param name  name of the variable to update
-   * @param value new value
    */
-  private void updateMinMax(String name, float value) {
-    switch (name) {
-      case "vintage":
-        if (value > this.wineDataStatService.getMaxVintage()) {
-          this.wineDataStatService.setMaxVintage((int) value);
+  public class BatchWriter implements AutoCloseable {
+
+    private final WineImportMode mode;
+    private final PreparedStatement statement;
+    private final Timer timer = new Timer();
+
+    /**
+     * Values of the appended wines, added to the wine stats once committed.
+     */
+    private final WineDataStatService appendedStats = new WineDataStatService();
+    private long count = 0;
+    private int added = 0;
+    private int updated = 0;
+    private int removed = 0;
+    private boolean committed = false;
 
-          // In decanter, some vintages are NV which defaults to 0
-          // In the 130k dataset, some values don't have vintage that defaults to -1
-        } else if (value < this.wineDataStatService.getMinVintage() && value > 0) {
-          this.wineDataStatService.setMinVintage((int) value);
+    private BatchWriter(WineImportMode mode) throws SQLException {
+      this.mode = mode;
+      updateQueue.flush();
+      lockWriter();
+      connection.setAutoCommit(false);
+      try {
+        if (mode.isMerged()) {
+          try (Statement create = connection.createStatement()) {
+            create.executeUpdate(STAGING_TABLE_SQL);
+          }
+          statement = connection.prepareStatement(STAGING_INSERT_SQL);
+        } else {
+          statement = connection.prepareStatement(INSERT_SQL);
         }
-        break;
-      case "score":
-        if (value > this.wineDataStatService.getMaxScore()) {
-          this.wineDataStatService.setMaxScore((int) value);
-        } else if (value < this.wineDataStatService.getMinScore()) {
-          this.wineDataStatService.setMinScore((int) value);
+      } catch (SQLException error) {
+        connection.rollback();
+        connection.setAutoCommit(true);
+        unlockWriter();
+        throw error;
+      }
+    }
+
+    /**
+     * Writes a batch of wines, to WINE when appending or to the staging table when merging.
+     *
+     * @param wines wines to write, which must not already be in the database
+     * @throws SQLException if the wines could not be written
+     */
+    public void write(List<Wine> wines) throws SQLException {
+      for (Wine wine : wines) {
+        setWineParameters(statement, wine, 1);
+        statement.addBatch();
+      }
+      statement.executeBatch();
+      if (!mode.isMerged()) {
+        for (Wine wine : wines) {
+          appendedStats.addWine(wine);
         }
-        break;
-      case "abv":
-        if (value > this.wineDataStatService.getMaxAbv()) {
-          this.wineDataStatService.setMaxAbv(value);
-        } else if (value < this.wineDataStatService.getMinAbv()) {
-          this.wineDataStatService.setMinAbv(value);
+        added += wines.size();
+      }
+      count += wines.size();
+    }
+
+    /**
+     * Merges the staged wines into WINE if merging, then commits. Matched wines which differ from
+     * their staged row are updated in place, keeping their ID and average rating. Unmatched staged
+     * wines are inserted in the order they were first written and, when replacing, wines with no
+     * staged match are removed. The wine stats are updated from the values the merge changed,
+     * rather than recalculated.
+     *
+     * @throws SQLException if the wines could not be merged or committed
+     */
+    public void commit() throws SQLException {
+      List<StatValue> statValues = new ArrayList<>();
+      if (mode.isMerged()) {
+        try (Statement merge = connection.createStatement()) {
+          try (ResultSet set = merge.executeQuery(
+              mode == WineImportMode.REPLACE ? REPLACE_STATS_SQL : MERGE_STATS_SQL)) {
+            statValues.addAll(readStatValues(set));
+          }
+          updated = merge.executeUpdate(MERGE_UPDATE_SQL);
+          if (mode == WineImportMode.REPLACE) {
+            removed = merge.executeUpdate(MERGE_DELETE_SQL);
+          }
+          added = merge.executeUpdate(MERGE_INSERT_SQL);
+          merge.executeUpdate("DROP TABLE temp.WINE_STAGING");
+        }
+      }
+      connection.commit();
+      committed = true;
+      invalidateCachedPages();
+      if (mode.isMerged()) {
+        recentWines.invalidateAll();
+        wineCache.removeAll();
+      } else {
+        for (Wine.Attribute attribute : STAT_ATTRIBUTES) {
+          appendedStats.getValueCounts(attribute).forEach((value, valueCount) ->
+              statValues.add(new StatValue(attribute, value, valueCount)));
         }
-        break;
-      case "price":
-        if (value > this.wineDataStatService.getMaxPrice()) {
-          this.wineDataStatService.setMaxPrice(value);
-        } else if (value < this.wineDataStatService.getMinPrice()) {
-          this.wineDataStatService.setMinPrice(value);
+      }
+      synchronized (wineDataStatService) {
+        addStatValues(statValues);
+      }
+      if (removed > 0) {
+        winesRemovedListener.run();
+      }
+      log.info("Successfully committed {} imported wines, adding {}, updating {} and removing {} "
+          + "in {}ms", count, added, updated, removed, timer.currentOffsetMilliseconds());
+    }
+
+    /**
+     * Closes the writer, rolling back if it was not committed. The wine stats are only updated on
+     * commit, so are left as they are after a rollback.
+     *
+     * @throws SQLException if the transaction could not be rolled back
+     */
+    @Override
+    public void close() throws SQLException {
+      try {
+        statement.close();
+        if (!committed) {
+          connection.rollback();
+          log.info("Rolled back {} written wines", count);
         }
-        break;
+      } finally {
+        connection.setAutoCommit(true);
+        unlockWriter();
+      }
+    }
+
+    /**
+     * Gets the number of wines added to WINE. Only known for merges once committed.
+     *
+     * @return wines added
+     */
+    public int getAdded() {
+      return added;
+    }
+
+    /**
+     * Gets the number of existing wines a merge updated.
+     *
+     * @return wines updated
+     */
+    public int getUpdated() {
+      return updated;
+    }
 
-      default:
-        break;
+    /**
+     * Gets the number of existing wines a replace removed.
+     *
+     * @return wines removed
+     */
+    public int getRemoved() {
+      return removed;
     }
   }
 
   /**
-   * Gets the wineDataStatService.
+   * Number of wines holding a value of an attribute, as counted by the database.
    *
-   * @return wineDataStatService
+   * @param attribute attribute the value belongs to
+   * @param value     value of the attribute
+   * @param count     number of wines holding it
    */
-  public WineDataStatService getWineDataStatService() {
-    return wineDataStatService;
+  private record StatValue(Wine.Attribute attribute, Object value, int count) {
+
+  }
+
+  /**
+   * Key of a cached count.
+   *
+   * @param sql        count query, which only contains predicates for filters that are set
+   * @param parameters values bound to the query
+   */
+  private record CountKey(String sql, List<Object> parameters) {
+
+  }
+
+  /**
+   * Key of a cached page.
+   *
+   * @param sql        page query, including its cursor condition
+   * @param parameters values bound to the query
+   * @param limit      maximum number of wines on the page
+   * @param offset     number of matching wines skipped
+   */
+  private record PageKey(String sql, List<Object> parameters, int limit, int offset) {
+
   }
 }
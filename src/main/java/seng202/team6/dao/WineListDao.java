@@ -6,12 +6,21 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import seng202.team6.model.User;
 import seng202.team6.model.Wine;
 import seng202.team6.model.WineList;
 import seng202.team6.util.DatabaseObjectUniquer;
+import seng202.team6.util.LongBitSet;
 import seng202.team6.util.Timer;
 
 /**
@@ -19,11 +28,50 @@ import seng202.team6.util.Timer;
  */
 public class WineListDao extends Dao {
 
+  /**
+   * Query getting the lists of a user.
+   */
+  public static final String GET_BY_USER_SQL = "SELECT ID, NAME FROM LIST_NAME WHERE USERNAME = ?";
+
+  /**
+   * Query checking if a wine is in a list.
+   */
+  public static final String CONTAINS_WINE_SQL =
+      "SELECT 1 FROM LIST_ITEMS WHERE LIST_ID = ? AND WINE_ID = ?";
+
+  /**
+   * Statement removing a wine from a list.
+   */
+  public static final String REMOVE_WINE_SQL =
+      "DELETE FROM LIST_ITEMS WHERE LIST_ID = ? AND WINE_ID = ?";
+
+  /**
+   * Indexes finding the lists of a user, a wine in a list, and the lists to cascade to when a wine
+   * is deleted.
+   */
+  private static final String[] INDEX_SQL = {
+      "CREATE INDEX IF NOT EXISTS LIST_NAME_USERNAME ON LIST_NAME (USERNAME)",
+      "CREATE INDEX IF NOT EXISTS LIST_ITEMS_LIST_WINE ON LIST_ITEMS (LIST_ID, WINE_ID)",
+      "CREATE INDEX IF NOT EXISTS LIST_ITEMS_WINE ON LIST_ITEMS (WINE_ID)"
+  };
+
   /**
    * Cache to store and reuse WineList objects to avoid duplication.
    */
   private final DatabaseObjectUniquer<WineList> wineListCache = new DatabaseObjectUniquer<>();
 
+  /**
+   * Wines in each list of the users whose membership has been loaded this session, by list ID.
+   * Lists of other users are not held, and are checked against the database. Guarded by itself,
+   * which is only ever locked after the writer when both are held.
+   */
+  private final Map<Long, LongBitSet> listMembership = new HashMap<>();
+
+  /**
+   * IDs of the lists of each user whose membership has been loaded, guarded by the list
+   * membership.
+   */
+  private final Map<String, Set<Long>> membershipUsers = new HashMap<>();
 
   /**
    * Constructs a new WineListDAO with the given database connection.
@@ -63,9 +111,27 @@ public class WineListDao extends Dao {
             + "FOREIGN KEY (LIST_ID) REFERENCES LIST_NAME(ID) ON DELETE CASCADE,"
             + "FOREIGN KEY (WINE_ID) REFERENCES WINE(ID) ON DELETE CASCADE"
             + ")",
+        INDEX_SQL[0],
+        INDEX_SQL[1],
+        INDEX_SQL[2]
     };
   }
 
+  /**
+   * Gets the migrations of the LIST_NAME and LIST_ITEMS tables. Version 10 indexes the columns
+   * lists and their wines are looked up by.
+   *
+   * @return migrations
+   */
+  @Override
+  public List<Migration> getMigrations() {
+    return List.of(new Migration(10, "Index wine lists by user and wine", connection -> {
+      if (MigrationRunner.tableExists(connection, "LIST_ITEMS")) {
+        MigrationRunner.execute(connection, INDEX_SQL);
+      }
+    }));
+  }
+
   /**
    * Retrieves all wine lists owned by the provided user from the LIST_NAME table.
    *
@@ -74,17 +140,18 @@ public class WineListDao extends Dao {
    */
   public ObservableList<WineList> getAll(User user) throws SQLException {
     Timer timer = new Timer();
-    String sql = "SELECT ID, NAME FROM LIST_NAME WHERE USERNAME = ?";
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
-      statement.setString(1, user.getUsername());
-
-      try (ResultSet resultSet = statement.executeQuery()) {
-        ObservableList<WineList> wineLists = extractAllWineListsFromResultSet(resultSet);
-        log.info("Successfully retrieved all {} wine lists for user '{}' in {}ms",
-            wineLists.size(), user.getUsername(), timer.currentOffsetMilliseconds());
-        return wineLists;
+    return read(connection -> {
+      try (PreparedStatement statement = prepare(connection, GET_BY_USER_SQL)) {
+        statement.setString(1, user.getUsername());
+
+        try (ResultSet resultSet = statement.executeQuery()) {
+          ObservableList<WineList> wineLists = extractAllWineListsFromResultSet(resultSet);
+          log.info("Successfully retrieved all {} wine lists for user '{}' in {}ms",
+              wineLists.size(), user.getUsername(), timer.currentOffsetMilliseconds());
+          return wineLists;
+        }
       }
-    }
+    });
   }
 
   /**
@@ -97,26 +164,35 @@ public class WineListDao extends Dao {
   public WineList create(User user, String listName) throws SQLException {
     Timer timer = new Timer();
     String sql = "INSERT INTO LIST_NAME VALUES (NULL, ?, ?)";
-    try (PreparedStatement statement = connection.prepareStatement(sql,
-        Statement.RETURN_GENERATED_KEYS)) {
-      statement.setString(1, user.getUsername());
-      statement.setString(2, listName);
-      statement.executeUpdate();
-
-      try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
-        if (generatedKeys.next()) {
-          long id = generatedKeys.getLong(1);
-          log.info("Successfully created list '{}' with ID {} for user '{}' in {}ms", listName,
-              id, listName, user.getUsername(), timer.currentOffsetMilliseconds());
-          WineList wineList = new WineList(id, listName);
-          wineListCache.addObject(id, wineList);
-
-          return wineList;
+    return write(connection -> {
+      try (PreparedStatement statement = connection.prepareStatement(sql,
+          Statement.RETURN_GENERATED_KEYS)) {
+        statement.setString(1, user.getUsername());
+        statement.setString(2, listName);
+        statement.executeUpdate();
+
+        try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+          if (generatedKeys.next()) {
+            long id = generatedKeys.getLong(1);
+            log.info("Successfully created list '{}' with ID {} for user '{}' in {}ms", listName,
+                id, listName, user.getUsername(), timer.currentOffsetMilliseconds());
+            WineList wineList = new WineList(id, listName);
+            wineListCache.addObject(id, wineList);
+            synchronized (listMembership) {
+              Set<Long> userListIds = membershipUsers.get(user.getUsername());
+              if (userListIds != null) {
+                userListIds.add(id);
+                listMembership.put(id, new LongBitSet());
+              }
+            }
+
+            return wineList;
+          }
+          log.warn("Could not create list '{}' for user '{}'", listName, user.getUsername());
         }
-        log.warn("Could not create list '{}' for user '{}'", listName, user.getUsername());
       }
-    }
-    return null;
+      return null;
+    });
   }
 
   /**
@@ -127,43 +203,58 @@ public class WineListDao extends Dao {
   public void delete(WineList wineList) throws SQLException {
     Timer timer = new Timer();
     String sql = "DELETE FROM LIST_NAME WHERE ID = ?";
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
-      statement.setLong(1, wineList.id());
+    write(connection -> {
+      try (PreparedStatement statement = prepare(connection, sql)) {
+        statement.setLong(1, wineList.id());
 
-      int rowsAffected = statement.executeUpdate();
-      if (rowsAffected == 1) {
-        log.info("Successfully deleted list '{}' with ID {} in {}ms", wineList.name(),
-            wineList.id(), timer.currentOffsetMilliseconds());
-      } else {
-        log.warn("Could not delete list '{}' with ID {}", wineList.name(),
-            wineList.id());
+        int rowsAffected = statement.executeUpdate();
+        if (rowsAffected == 1) {
+          log.info("Successfully deleted list '{}' with ID {} in {}ms", wineList.name(),
+              wineList.id(), timer.currentOffsetMilliseconds());
+        } else {
+          log.warn("Could not delete list '{}' with ID {}", wineList.name(),
+              wineList.id());
+        }
+        wineListCache.removeObject(wineList.id());
+        synchronized (listMembership) {
+          listMembership.remove(wineList.id());
+          membershipUsers.values().forEach(userListIds -> userListIds.remove(wineList.id()));
+        }
       }
-      wineListCache.removeObject(wineList.id());
-    }
+      return null;
+    });
   }
 
   /**
-   * Checks if a wine is part of a specific wine list.
+   * Checks if a wine is part of a specific wine list. Lists of users whose membership has been
+   * loaded are checked in memory without querying the database.
    *
    * @param wineList The wine list to check
    * @param wine     The wine to check
    * @return true if the wine is in the list, false otherwise
    */
   public boolean isWineInList(WineList wineList, Wine wine) throws SQLException {
-    Timer timer = new Timer();
-    String sql = "SELECT * FROM LIST_ITEMS WHERE LIST_ID = ? AND WINE_ID = ?";
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
-      statement.setLong(1, wineList.id());
-      statement.setLong(2, wine.getKey());
-
-      try (ResultSet resultSet = statement.executeQuery()) {
-        boolean found = resultSet.next();
-        log.info("Successfully found wine with ID {} is {} list with ID {} in {}ms",
-            wine.getKey(), found ? "in" : "not in", wineList.id(),
-            timer.currentOffsetMilliseconds());
-        return found;
+    synchronized (listMembership) {
+      LongBitSet wines = listMembership.get(wineList.id());
+      if (wines != null) {
+        return wines.contains(wine.getKey());
       }
     }
+    Timer timer = new Timer();
+    return read(connection -> {
+      try (PreparedStatement statement = prepare(connection, CONTAINS_WINE_SQL)) {
+        statement.setLong(1, wineList.id());
+        statement.setLong(2, wine.getKey());
+
+        try (ResultSet resultSet = statement.executeQuery()) {
+          boolean found = resultSet.next();
+          log.info("Successfully found wine with ID {} is {} list with ID {} in {}ms",
+              wine.getKey(), found ? "in" : "not in", wineList.id(),
+              timer.currentOffsetMilliseconds());
+          return found;
+        }
+      }
+    });
   }
 
   /**
@@ -175,20 +266,24 @@ public class WineListDao extends Dao {
   public void addWine(WineList wineList, Wine wine) throws SQLException {
     Timer timer = new Timer();
     String sql = "INSERT INTO LIST_ITEMS VALUES (null, ?, ?, ?)";
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
-      statement.setLong(1, wineList.id());
-      statement.setLong(2, wine.getKey());
-      statement.setDate(3, new Date(System.currentTimeMillis()));
-
-      int rowsAffected = statement.executeUpdate();
-      if (rowsAffected == 1) {
-        log.info("Successfully added wine with ID {} to list with ID {} in {}ms",
-            wine.getKey(), wineList.id(), timer.currentOffsetMilliseconds());
-      } else {
-        log.warn("Could not add wine with ID {} to list with ID {} in {}ms",
-            wine.getKey(), wineList.id(), timer.currentOffsetMilliseconds());
+    write(connection -> {
+      try (PreparedStatement statement = prepare(connection, sql)) {
+        statement.setLong(1, wineList.id());
+        statement.setLong(2, wine.getKey());
+        statement.setDate(3, new Date(System.currentTimeMillis()));
+
+        int rowsAffected = statement.executeUpdate();
+        if (rowsAffected == 1) {
+          updateMembership(wineList, wine, true);
+          log.info("Successfully added wine with ID {} to list with ID {} in {}ms",
+              wine.getKey(), wineList.id(), timer.currentOffsetMilliseconds());
+        } else {
+          log.warn("Could not add wine with ID {} to list with ID {} in {}ms",
+              wine.getKey(), wineList.id(), timer.currentOffsetMilliseconds());
+        }
       }
-    }
+      return null;
+    });
   }
 
   /**
@@ -199,18 +294,131 @@ public class WineListDao extends Dao {
    */
   public void removeWine(WineList wineList, Wine wine) throws SQLException {
     Timer timer = new Timer();
-    String sql = "DELETE FROM LIST_ITEMS WHERE LIST_ID = ? AND WINE_ID = ?";
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
-      statement.setLong(1, wineList.id());
-      statement.setLong(2, wine.getKey());
-
-      int rowsAffected = statement.executeUpdate();
-      if (rowsAffected == 1) {
-        log.info("Successfully removed wine with ID {} from list with ID {} in {}ms",
-            wine.getKey(), wineList.id(), timer.currentOffsetMilliseconds());
+    write(connection -> {
+      try (PreparedStatement statement = prepare(connection, REMOVE_WINE_SQL)) {
+        statement.setLong(1, wineList.id());
+        statement.setLong(2, wine.getKey());
+
+        int rowsAffected = statement.executeUpdate();
+        updateMembership(wineList, wine, false);
+        if (rowsAffected == 1) {
+          log.info("Successfully removed wine with ID {} from list with ID {} in {}ms",
+              wine.getKey(), wineList.id(), timer.currentOffsetMilliseconds());
+        } else {
+          log.warn("Could not remove wine with ID {} from list with ID {} in {}ms",
+              wine.getKey(), wineList.id(), timer.currentOffsetMilliseconds());
+        }
+      }
+      return null;
+    });
+  }
+
+  /**
+   * Gets which of a user's lists each of the given wines is in. The membership of all the user's
+   * lists is loaded in one query the first time it is needed this session, and kept up to date
+   * as wines are added and removed, so later calls do not query the database.
+   *
+   * @param user    The user whose lists are checked
+   * @param wineIds IDs of the wines to check
+   * @return IDs of the lists containing each wine, by wine ID in the given order, with an empty
+   *         list for wines in none of the user's lists
+   */
+  public Map<Long, List<Long>> getListIdsContaining(User user, Collection<Long> wineIds)
+      throws SQLException {
+    loadMembership(user);
+    Timer timer = new Timer();
+    Map<Long, List<Long>> listIds = new LinkedHashMap<>();
+    synchronized (listMembership) {
+      Set<Long> userListIds = membershipUsers.getOrDefault(user.getUsername(), Set.of());
+      for (long wineId : wineIds) {
+        List<Long> containing = new ArrayList<>();
+        for (long listId : userListIds) {
+          if (listMembership.get(listId).contains(wineId)) {
+            containing.add(listId);
+          }
+        }
+        listIds.put(wineId, containing);
+      }
+    }
+    log.info("Successfully found the lists of {} wines for user '{}' in {}ms", listIds.size(),
+        user.getUsername(), timer.currentOffsetMilliseconds());
+    return listIds;
+  }
+
+  /**
+   * Loads which wines are in each of a user's lists in one query, unless it has already been
+   * loaded this session.
+   *
+   * @param user The user whose lists are loaded
+   */
+  public void loadMembership(User user) throws SQLException {
+    synchronized (listMembership) {
+      if (membershipUsers.containsKey(user.getUsername())) {
+        return;
+      }
+    }
+    Timer timer = new Timer();
+    String sql = "SELECT LIST_NAME.ID AS LIST_ID, LIST_ITEMS.WINE_ID AS WINE_ID "
+        + "FROM LIST_NAME LEFT JOIN LIST_ITEMS ON LIST_ITEMS.LIST_ID = LIST_NAME.ID "
+        + "WHERE LIST_NAME.USERNAME = ?";
+    // Loaded on the writer, so no wine can be added or removed between reading and storing it
+    write(connection -> {
+      synchronized (listMembership) {
+        if (membershipUsers.containsKey(user.getUsername())) {
+          return null;
+        }
+        Map<Long, LongBitSet> loaded = new HashMap<>();
+        try (PreparedStatement statement = prepare(connection, sql)) {
+          statement.setString(1, user.getUsername());
+          try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+              LongBitSet wines = loaded.computeIfAbsent(resultSet.getLong("LIST_ID"),
+                  id -> new LongBitSet());
+              long wineId = resultSet.getLong("WINE_ID");
+              if (!resultSet.wasNull()) {
+                wines.add(wineId);
+              }
+            }
+          }
+        }
+        listMembership.putAll(loaded);
+        membershipUsers.put(user.getUsername(), new HashSet<>(loaded.keySet()));
+        log.info("Successfully loaded the wines in {} lists for user '{}' in {}ms",
+            loaded.size(), user.getUsername(), timer.currentOffsetMilliseconds());
+      }
+      return null;
+    });
+  }
+
+  /**
+   * Drops the loaded list membership, so it is queried again when next needed. Called when a
+   * session ends, and when wines are removed so that a reused wine ID is not found in the lists
+   * of the wine it replaced.
+   */
+  public void invalidateMembership() {
+    synchronized (listMembership) {
+      listMembership.clear();
+      membershipUsers.clear();
+    }
+  }
+
+  /**
+   * Records a wine being added to or removed from a list whose membership has been loaded.
+   *
+   * @param wineList The wine list changed
+   * @param wine     The wine added or removed
+   * @param added    whether the wine was added
+   */
+  private void updateMembership(WineList wineList, Wine wine, boolean added) {
+    synchronized (listMembership) {
+      LongBitSet wines = listMembership.get(wineList.id());
+      if (wines == null) {
+        return;
+      }
+      if (added) {
+        wines.add(wine.getKey());
       } else {
-        log.warn("Could not remove wine with ID {} from list with ID {} in {}ms",
-            wine.getKey(), wineList.id(), timer.currentOffsetMilliseconds());
+        wines.remove(wine.getKey());
       }
     }
   }
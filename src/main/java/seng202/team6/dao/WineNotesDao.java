@@ -5,6 +5,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.List;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import seng202.team6.managers.DatabaseManager;
@@ -19,6 +20,29 @@ import seng202.team6.util.Timer;
  */
 public class WineNotesDao extends Dao {
 
+  /**
+   * Query getting the notes of a user.
+   */
+  public static final String GET_BY_USER_SQL = "SELECT NOTES.ID AS note_id, NOTES.* "
+      + "FROM NOTES "
+      + "WHERE USERNAME = ?";
+
+  /**
+   * Query getting the note of a user on a wine.
+   */
+  public static final String GET_BY_USER_AND_WINE_SQL = "SELECT NOTES.ID AS note_id, NOTES.* "
+      + "FROM NOTES "
+      + "WHERE USERNAME = ? AND WINE_ID = ?";
+
+  /**
+   * Indexes finding the notes of a user, the note of a user on a wine, and the notes to cascade to
+   * when wines are deleted.
+   */
+  private static final String[] INDEX_SQL = {
+      "CREATE INDEX IF NOT EXISTS NOTES_USERNAME_WINE ON NOTES (USERNAME, WINE_ID)",
+      "CREATE INDEX IF NOT EXISTS NOTES_WINE ON NOTES (WINE_ID)"
+  };
+
   /**
    * Cache to store and reuse Note objects to avoid duplication.
    */
@@ -44,10 +68,26 @@ public class WineNotesDao extends Dao {
             + "NOTE           TEXT,"
             + "FOREIGN KEY (USERNAME) REFERENCES USER(USERNAME) ON DELETE CASCADE,"
             + "FOREIGN KEY (WINE_ID) REFERENCES WINE(ID) ON DELETE CASCADE"
-            + ")"
+            + ")",
+        INDEX_SQL[0],
+        INDEX_SQL[1]
     };
   }
 
+  /**
+   * Gets the migrations of the NOTES table. Version 9 indexes the columns notes are looked up by.
+   *
+   * @return migrations
+   */
+  @Override
+  public List<Migration> getMigrations() {
+    return List.of(new Migration(9, "Index notes by user and wine", connection -> {
+      if (MigrationRunner.tableExists(connection, "NOTES")) {
+        MigrationRunner.execute(connection, INDEX_SQL);
+      }
+    }));
+  }
+
   /**
    * Retrieves all notes from the NOTES table.
    *
@@ -77,10 +117,7 @@ public class WineNotesDao extends Dao {
    */
   public ObservableList<Note> getAll(User user) {
     Timer timer = new Timer();
-    String sql = "SELECT NOTES.ID AS note_id, NOTES.* "
-        + "FROM NOTES "
-        + "WHERE USERNAME = ?";
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+    try (PreparedStatement statement = prepare(connection, GET_BY_USER_SQL)) {
       statement.setString(1, user.getUsername());
 
       try (ResultSet resultSet = statement.executeQuery()) {
@@ -106,10 +143,7 @@ public class WineNotesDao extends Dao {
    */
   public Note getOrCreate(User user, Wine wine) {
     Timer timer = new Timer();
-    String sql = "SELECT NOTES.ID AS note_id, NOTES.* "
-        + "FROM NOTES "
-        + "WHERE USERNAME = ? AND WINE_ID = ?";
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+    try (PreparedStatement statement = prepare(connection, GET_BY_USER_AND_WINE_SQL)) {
       statement.setString(1, user.getUsername());
       statement.setLong(2, wine.getKey());
 
@@ -207,7 +241,7 @@ public class WineNotesDao extends Dao {
     }
     Timer timer = new Timer();
     String sql = "DELETE FROM NOTES WHERE ID = ?";
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+    try (PreparedStatement statement = prepare(connection, sql)) {
       statement.setLong(1, note.getId());
 
       int rowsAffected = statement.executeUpdate();
@@ -317,7 +351,7 @@ public class WineNotesDao extends Dao {
       DatabaseManager.AttributeSetter attributeSetter) {
     Timer timer = new Timer();
     String sql = "UPDATE NOTES set " + attributeName + " = ? where ID = ?";
-    try (PreparedStatement update = connection.prepareStatement(sql)) {
+    try (PreparedStatement update = prepare(connection, sql)) {
       attributeSetter.setAttribute(update);
       update.setLong(2, id);
 
@@ -6,6 +6,9 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import seng202.team6.managers.DatabaseManager;
@@ -20,6 +23,52 @@ import seng202.team6.util.Timer;
  */
 public class WineReviewDao extends Dao {
 
+  /**
+   * Query getting the reviews of a wine.
+   */
+  public static final String GET_BY_WINE_SQL =
+      "SELECT WINE_REVIEW.ID as wine_review_id, WINE_REVIEW.* "
+      + "FROM WINE_REVIEW WHERE WINE_ID = ?";
+
+  /**
+   * Query getting the reviews by a user.
+   */
+  public static final String GET_BY_USER_SQL =
+      "SELECT WINE_REVIEW.ID as wine_review_id, WINE_REVIEW.* "
+      + "FROM WINE_REVIEW "
+      + "WHERE USERNAME = ?";
+
+  /**
+   * Query getting a page of reviews after the last review of the previous page.
+   */
+  public static final String GET_AFTER_SQL =
+      "SELECT WINE_REVIEW.ID as wine_review_id, WINE_REVIEW.* "
+      + "FROM WINE_REVIEW "
+      + "WHERE ID > ? "
+      + "ORDER BY ID "
+      + "LIMIT ?";
+
+  /**
+   * Query getting the reviews flagged for moderation.
+   */
+  public static final String GET_FLAGGED_SQL = "SELECT * FROM WINE_REVIEW WHERE FLAG = 1";
+
+  /**
+   * Statement deleting the reviews flagged for moderation.
+   */
+  public static final String DELETE_FLAGGED_SQL = "DELETE FROM WINE_REVIEW WHERE FLAG = 1";
+
+  /**
+   * Indexes on the columns reviews are looked up by. The wine and user indexes also serve the
+   * cascading deletes, and the flagged index only holds the few flagged reviews so moderation
+   * reads them without a scan.
+   */
+  private static final String[] INDEX_SQL = {
+      "CREATE INDEX IF NOT EXISTS WINE_REVIEW_WINE ON WINE_REVIEW (WINE_ID)",
+      "CREATE INDEX IF NOT EXISTS WINE_REVIEW_USERNAME ON WINE_REVIEW (USERNAME)",
+      "CREATE INDEX IF NOT EXISTS WINE_REVIEW_FLAGGED ON WINE_REVIEW (ID) WHERE FLAG = 1"
+  };
+
   /**
    * Cache to store and reuse WineReview objects to avoid duplication.
    */
@@ -35,13 +84,14 @@ public class WineReviewDao extends Dao {
   }
 
   /**
-   * Returns the SQL statements required to initialise the WINE_REVIEW table.
+   * Returns the SQL statements required to initialise the WINE_REVIEW table and the triggers
+   * keeping the review count, rating sum and average rating of each wine in step with its reviews.
    *
    * @return Array of SQL statements for initialising the WINE_REVIEW table
    */
   @Override
   public String[] getInitialiseStatements() {
-    return new String[]{
+    String[] statements = {
         "CREATE TABLE IF NOT EXISTS WINE_REVIEW ("
             + "ID             INTEGER       PRIMARY KEY,"
             + "USERNAME       varchar(64)   NOT NULL,"
@@ -52,8 +102,67 @@ public class WineReviewDao extends Dao {
             + "FLAG           INTEGER       NOT NULL CHECK(FLAG IN (\"0\", \"1\")),"
             + "FOREIGN KEY (USERNAME) REFERENCES USER(USERNAME) ON DELETE CASCADE,"
             + "FOREIGN KEY (WINE_ID) REFERENCES WINE(ID) ON DELETE CASCADE"
-            + ")"
+            + ")",
+        // Each expression reads the values from before the update, so the average is computed
+        // from the new count and sum directly
+        "CREATE TRIGGER IF NOT EXISTS WINE_REVIEW_AGGREGATE_INSERT AFTER INSERT ON WINE_REVIEW "
+            + "BEGIN "
+            + addReview("NEW")
+            + "END",
+        "CREATE TRIGGER IF NOT EXISTS WINE_REVIEW_AGGREGATE_DELETE AFTER DELETE ON WINE_REVIEW "
+            + "BEGIN "
+            + removeReview("OLD")
+            + "END",
+        "CREATE TRIGGER IF NOT EXISTS WINE_REVIEW_AGGREGATE_UPDATE "
+            + "AFTER UPDATE OF WINE_ID, RATING ON WINE_REVIEW "
+            + "BEGIN "
+            + removeReview("OLD")
+            + addReview("NEW")
+            + "END"
     };
+    return Stream.of(statements, INDEX_SQL).flatMap(Arrays::stream).toArray(String[]::new);
+  }
+
+  /**
+   * Gets the migrations of the WINE_REVIEW table. Version 8 indexes the columns reviews are looked
+   * up by.
+   *
+   * @return migrations
+   */
+  @Override
+  public List<Migration> getMigrations() {
+    return List.of(new Migration(8, "Index reviews by wine, user and flag", connection -> {
+      if (MigrationRunner.tableExists(connection, "WINE_REVIEW")) {
+        MigrationRunner.execute(connection, INDEX_SQL);
+      }
+    }));
+  }
+
+  /**
+   * Builds the trigger statement adding a review to the aggregates of its wine.
+   *
+   * @param row NEW or OLD
+   * @return update statement
+   */
+  private static String addReview(String row) {
+    return "UPDATE WINE SET REVIEW_COUNT = REVIEW_COUNT + 1, "
+        + "RATING_SUM = RATING_SUM + " + row + ".RATING, "
+        + "AVERAGE_RATING = (RATING_SUM + " + row + ".RATING) / (REVIEW_COUNT + 1) "
+        + "WHERE ID = " + row + ".WINE_ID; ";
+  }
+
+  /**
+   * Builds the trigger statement removing a review from the aggregates of its wine.
+   *
+   * @param row NEW or OLD
+   * @return update statement
+   */
+  private static String removeReview(String row) {
+    return "UPDATE WINE SET REVIEW_COUNT = REVIEW_COUNT - 1, "
+        + "RATING_SUM = RATING_SUM - " + row + ".RATING, "
+        + "AVERAGE_RATING = CASE WHEN REVIEW_COUNT <= 1 THEN 0 "
+        + "ELSE (RATING_SUM - " + row + ".RATING) / (REVIEW_COUNT - 1) END "
+        + "WHERE ID = " + row + ".WINE_ID; ";
   }
 
   /**
@@ -65,19 +174,19 @@ public class WineReviewDao extends Dao {
    */
   public ObservableList<WineReview> getAll(Wine wine) throws SQLException {
     Timer timer = new Timer();
-    String sql = "SELECT WINE_REVIEW.ID as wine_review_id, WINE_REVIEW.* "
-        + "FROM WINE_REVIEW WHERE WINE_ID = ?";
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
-      statement.setLong(1, wine.getKey());
-
-      try (ResultSet resultSet = statement.executeQuery()) {
-        ObservableList<WineReview> wineReviews = extractAllWineReviewsFromResultSet(resultSet,
-            "wine_review_id");
-        log.info("Successfully retrieved all {} reviews for wine with ID {} in {}ms",
-            wineReviews.size(), wine.getKey(), timer.currentOffsetMilliseconds());
-        return wineReviews;
+    return read(connection -> {
+      try (PreparedStatement statement = prepare(connection, GET_BY_WINE_SQL)) {
+        statement.setLong(1, wine.getKey());
+
+        try (ResultSet resultSet = statement.executeQuery()) {
+          ObservableList<WineReview> wineReviews = extractAllWineReviewsFromResultSet(resultSet,
+              "wine_review_id");
+          log.info("Successfully retrieved all {} reviews for wine with ID {} in {}ms",
+              wineReviews.size(), wine.getKey(), timer.currentOffsetMilliseconds());
+          return wineReviews;
+        }
       }
-    }
+    });
   }
 
   /**
@@ -89,24 +198,23 @@ public class WineReviewDao extends Dao {
    */
   public ObservableList<WineReview> getAll(User user) throws SQLException {
     Timer timer = new Timer();
-    String sql = "SELECT WINE_REVIEW.ID as wine_review_id, WINE_REVIEW.* "
-        + "FROM WINE_REVIEW "
-        + "WHERE USERNAME = ?";
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
-      statement.setString(1, user.getUsername());
-
-      try (ResultSet resultSet = statement.executeQuery()) {
-        ObservableList<WineReview> wineReviews = extractAllWineReviewsFromResultSet(resultSet,
-            "wine_review_id");
-        log.info("Successfully retrieved all {} reviews for user '{}' in {}ms",
-            wineReviews.size(), user.getUsername(), timer.currentOffsetMilliseconds());
-        return wineReviews;
+    return read(connection -> {
+      try (PreparedStatement statement = prepare(connection, GET_BY_USER_SQL)) {
+        statement.setString(1, user.getUsername());
+
+        try (ResultSet resultSet = statement.executeQuery()) {
+          ObservableList<WineReview> wineReviews = extractAllWineReviewsFromResultSet(resultSet,
+              "wine_review_id");
+          log.info("Successfully retrieved all {} reviews for user '{}' in {}ms",
+              wineReviews.size(), user.getUsername(), timer.currentOffsetMilliseconds());
+          return wineReviews;
+        }
       }
-    }
+    });
   }
 
   /**
-   * Retrieves a range of reviews from the WINE_REVIEW table.
+   * Retrieves a range of reviews from the WINE_REVIEW table, in the order they were added.
    *
    * @param begin The start index of the range (inclusive)
    * @param end   The end index of the range (exclusive)
@@ -116,20 +224,50 @@ public class WineReviewDao extends Dao {
     Timer timer = new Timer();
     String sql = "SELECT WINE_REVIEW.ID as wine_review_id, WINE_REVIEW.* "
         + "FROM WINE_REVIEW "
+        + "ORDER BY ID "
         + "LIMIT ? "
         + "OFFSET ?";
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
-      statement.setInt(1, end - begin);
-      statement.setInt(2, begin);
-
-      try (ResultSet resultSet = statement.executeQuery()) {
-        ObservableList<WineReview> wineReviews = extractAllWineReviewsFromResultSet(resultSet,
-            "wine_review_id");
-        log.info("Successfully retrieved {} reviews in range {}-{} for user '{}' in {}ms",
-            wineReviews.size(), begin, end, timer.currentOffsetMilliseconds());
-        return wineReviews;
+    return read(connection -> {
+      try (PreparedStatement statement = prepare(connection, sql)) {
+        statement.setInt(1, end - begin);
+        statement.setInt(2, begin);
+
+        try (ResultSet resultSet = statement.executeQuery()) {
+          ObservableList<WineReview> wineReviews = extractAllWineReviewsFromResultSet(resultSet,
+              "wine_review_id");
+          log.info("Successfully retrieved {} reviews in range {}-{} in {}ms",
+              wineReviews.size(), begin, end, timer.currentOffsetMilliseconds());
+          return wineReviews;
+        }
       }
-    }
+    });
+  }
+
+  /**
+   * Retrieves a page of reviews in the order they were added, starting after the last review of
+   * the previous page. Unlike a range, seeking past the last ID does not read the skipped reviews,
+   * and pages stay stable while reviews are added or deleted.
+   *
+   * @param afterId ID of the last review of the previous page, or 0 for the first page
+   * @param limit   The most reviews to return
+   * @return An ObservableList of up to limit WineReview objects with IDs after afterId
+   */
+  public ObservableList<WineReview> getAllAfter(long afterId, int limit) throws SQLException {
+    Timer timer = new Timer();
+    return read(connection -> {
+      try (PreparedStatement statement = prepare(connection, GET_AFTER_SQL)) {
+        statement.setLong(1, afterId);
+        statement.setInt(2, limit);
+
+        try (ResultSet resultSet = statement.executeQuery()) {
+          ObservableList<WineReview> wineReviews = extractAllWineReviewsFromResultSet(resultSet,
+              "wine_review_id");
+          log.info("Successfully retrieved {} reviews after ID {} in {}ms",
+              wineReviews.size(), afterId, timer.currentOffsetMilliseconds());
+          return wineReviews;
+        }
+      }
+    });
   }
 
   /**
@@ -147,42 +285,44 @@ public class WineReviewDao extends Dao {
     int flag = 0;
     Timer timer = new Timer();
     String insert = "INSERT INTO WINE_REVIEW VALUES (null, ?, ?, ?, ?, ?, ?)";
-    try (PreparedStatement statement = connection.prepareStatement(insert,
-        Statement.RETURN_GENERATED_KEYS)) {
-      statement.setString(1, user.getUsername());
-      statement.setLong(2, wine.getKey());
-      statement.setDouble(3, rating);
-      statement.setString(4, description);
-      statement.setDate(5, date);
-      statement.setInt(6, flag);
-      statement.executeUpdate();
-
-      try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
-        if (generatedKeys.next()) {
-          long id = generatedKeys.getLong(1);
-          log.info(
-              "Successfully created wine review with ID {} for user '{}' "
-                  + "and wine with ID {} in {}ms",
-              id, user.getUsername(), wine.getKey(), timer.currentOffsetMilliseconds());
-          WineReview wineReview = new WineReview(
-              id,
-              wine.getKey(),
-              user.getUsername(),
-              rating,
-              description,
-              date,
-              flag
-          );
-          wineReviewCache.addObject(id, wineReview);
-
-          bindUpdater(wineReview);
-          return wineReview;
+    return write(connection -> {
+      try (PreparedStatement statement = connection.prepareStatement(insert,
+          Statement.RETURN_GENERATED_KEYS)) {
+        statement.setString(1, user.getUsername());
+        statement.setLong(2, wine.getKey());
+        statement.setDouble(3, rating);
+        statement.setString(4, description);
+        statement.setDate(5, date);
+        statement.setInt(6, flag);
+        statement.executeUpdate();
+
+        try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+          if (generatedKeys.next()) {
+            long id = generatedKeys.getLong(1);
+            log.info(
+                "Successfully created wine review with ID {} for user '{}' "
+                    + "and wine with ID {} in {}ms",
+                id, user.getUsername(), wine.getKey(), timer.currentOffsetMilliseconds());
+            WineReview wineReview = new WineReview(
+                id,
+                wine.getKey(),
+                user.getUsername(),
+                rating,
+                description,
+                date,
+                flag
+            );
+            wineReviewCache.addObject(id, wineReview);
+
+            bindUpdater(wineReview);
+            return wineReview;
+          }
+          log.warn("Could not create wine review for user '{}' and wine with ID {} in {}ms",
+              user.getUsername(), wine.getKey(), timer.currentOffsetMilliseconds());
         }
-        log.warn("Could not create wine review for user '{}' and wine with ID {} in {}ms",
-            user.getUsername(), wine.getKey(), timer.currentOffsetMilliseconds());
       }
-    }
-    return null;
+      return null;
+    });
   }
 
   /**
@@ -193,19 +333,22 @@ public class WineReviewDao extends Dao {
   public void delete(WineReview wineReview) throws SQLException {
     Timer timer = new Timer();
     String sql = "DELETE FROM WINE_REVIEW WHERE ID = ?";
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
-      statement.setLong(1, wineReview.getId());
-
-      int rowsAffected = statement.executeUpdate();
-      if (rowsAffected == 1) {
-        log.info("Successfully deleted wine review with ID {} in {}ms", wineReview.getId(),
-            timer.currentOffsetMilliseconds());
-      } else {
-        log.warn("Could not delete wine review with ID {} in {}ms", wineReview.getId(),
-            timer.currentOffsetMilliseconds());
+    write(connection -> {
+      try (PreparedStatement statement = prepare(connection, sql)) {
+        statement.setLong(1, wineReview.getId());
+
+        int rowsAffected = statement.executeUpdate();
+        if (rowsAffected == 1) {
+          log.info("Successfully deleted wine review with ID {} in {}ms", wineReview.getId(),
+              timer.currentOffsetMilliseconds());
+        } else {
+          log.warn("Could not delete wine review with ID {} in {}ms", wineReview.getId(),
+              timer.currentOffsetMilliseconds());
+        }
       }
-    }
-    wineReviewCache.removeObject(wineReview.getId());
+      wineReviewCache.removeObject(wineReview.getId());
+      return null;
+    });
   }
 
   /**
@@ -216,14 +359,17 @@ public class WineReviewDao extends Dao {
   public void deleteAllFromUser(User user) throws SQLException {
     Timer timer = new Timer();
     String sql = "DELETE FROM WINE_REVIEW WHERE USERNAME = ?";
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
-      statement.setString(1, user.getUsername());
-      int rowsAffected = statement.executeUpdate();
-      if (rowsAffected >= 1) {
-        log.info("Successfully removed {} reviews in {}ms",
-            rowsAffected, timer.currentOffsetMilliseconds());
+    write(connection -> {
+      try (PreparedStatement statement = prepare(connection, sql)) {
+        statement.setString(1, user.getUsername());
+        int rowsAffected = statement.executeUpdate();
+        if (rowsAffected >= 1) {
+          log.info("Successfully removed {} reviews in {}ms",
+              rowsAffected, timer.currentOffsetMilliseconds());
+        }
       }
-    }
+      return null;
+    });
   }
 
   /**
@@ -233,7 +379,7 @@ public class WineReviewDao extends Dao {
    * @return ObservableList of WineReview objects extracted from the ResultSet
    * @throws SQLException if a database access error occurs
    */
-  private ObservableList<WineReview> extractAllWineReviewsFromResultSet(ResultSet resultSet,
+  ObservableList<WineReview> extractAllWineReviewsFromResultSet(ResultSet resultSet,
       String idColumnName)
       throws SQLException {
     ObservableList<WineReview> wineReviews = FXCollections.observableArrayList();
@@ -250,17 +396,17 @@ public class WineReviewDao extends Dao {
    */
   public ObservableList<WineReview> getAllFlaggedReviews() throws SQLException {
     Timer timer = new Timer();
-
-    String sql = "SELECT * FROM WINE_REVIEW WHERE FLAG = 1";
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
-      try (ResultSet resultSet = statement.executeQuery()) {
-        ObservableList<WineReview> wineReviews =
-            extractAllWineReviewsFromResultSet(resultSet, "ID");
-        log.info("Successfully retrieved all flagged reviews in {}ms",
-            timer.currentOffsetMilliseconds());
-        return wineReviews;
+    return read(connection -> {
+      try (PreparedStatement statement = prepare(connection, GET_FLAGGED_SQL)) {
+        try (ResultSet resultSet = statement.executeQuery()) {
+          ObservableList<WineReview> wineReviews =
+              extractAllWineReviewsFromResultSet(resultSet, "ID");
+          log.info("Successfully retrieved all flagged reviews in {}ms",
+              timer.currentOffsetMilliseconds());
+          return wineReviews;
+        }
       }
-    }
+    });
   }
 
   /**
@@ -268,16 +414,18 @@ public class WineReviewDao extends Dao {
    */
   public void deleteAllFlaggedReviews() throws SQLException {
     Timer timer = new Timer();
-    String sql = "DELETE FROM WINE_REVIEW WHERE FLAG = 1";
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
-      int rowsAffected = statement.executeUpdate();
-      if (rowsAffected >= 1) {
-        log.info("Successfully removed {} reviews in {}ms",
-            rowsAffected, timer.currentOffsetMilliseconds());
+    write(connection -> {
+      try (PreparedStatement statement = prepare(connection, DELETE_FLAGGED_SQL)) {
+        int rowsAffected = statement.executeUpdate();
+        if (rowsAffected >= 1) {
+          log.info("Successfully removed {} reviews in {}ms",
+              rowsAffected, timer.currentOffsetMilliseconds());
+        }
       }
-    }
 
-    wineReviewCache.clear();
+      wineReviewCache.clear();
+      return null;
+    });
   }
 
   /**
@@ -291,16 +439,19 @@ public class WineReviewDao extends Dao {
     Timer timer = new Timer();
     String sql = "UPDATE WINE_REVIEW SET FLAG = ? WHERE ID = ?";
     log.info("Before try()");
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
-      statement.setInt(1, review.getFlag());
-      statement.setLong(2, review.getId());
-
-      int rowsAffected = statement.executeUpdate();
-      if (rowsAffected >= 1) {
-        log.info("Successfully updated {} reviews in {}ms",
-            rowsAffected, timer.currentOffsetMilliseconds());
+    write(connection -> {
+      try (PreparedStatement statement = prepare(connection, sql)) {
+        statement.setInt(1, review.getFlag());
+        statement.setLong(2, review.getId());
+
+        int rowsAffected = statement.executeUpdate();
+        if (rowsAffected >= 1) {
+          log.info("Successfully updated {} reviews in {}ms",
+              rowsAffected, timer.currentOffsetMilliseconds());
+        }
       }
-    }
+      return null;
+    });
   }
 
   /**
@@ -370,18 +521,21 @@ public class WineReviewDao extends Dao {
       DatabaseManager.AttributeSetter attributeSetter) throws SQLException {
     Timer timer = new Timer();
     String sql = "UPDATE WINE_REVIEW set " + attributeName + " = ? where ID = ?";
-    try (PreparedStatement update = connection.prepareStatement(sql)) {
-      attributeSetter.setAttribute(update);
-      update.setLong(2, id);
-
-      int rowsAffected = update.executeUpdate();
-      if (rowsAffected == 1) {
-        log.info("Successfully updated attribute '{}' for wine review with ID {} in {}ms",
-            attributeName, id, timer.currentOffsetMilliseconds());
-      } else {
-        log.info("Could not update attribute '{}' for wine review with ID {} in {}ms",
-            attributeName, id, timer.currentOffsetMilliseconds());
+    write(connection -> {
+      try (PreparedStatement update = prepare(connection, sql)) {
+        attributeSetter.setAttribute(update);
+        update.setLong(2, id);
+
+        int rowsAffected = update.executeUpdate();
+        if (rowsAffected == 1) {
+          log.info("Successfully updated attribute '{}' for wine review with ID {} in {}ms",
+              attributeName, id, timer.currentOffsetMilliseconds());
+        } else {
+          log.info("Could not update attribute '{}' for wine review with ID {} in {}ms",
+              attributeName, id, timer.currentOffsetMilliseconds());
+        }
       }
-    }
+      return null;
+    });
   }
 }
@@ -0,0 +1,427 @@
+package seng202.team6.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import seng202.team6.model.Wine;
+import seng202.team6.util.ConnectionPool;
+import seng202.team6.util.Timer;
+
+/**
+ * Write-behind queue for wine attribute changes. Changed wines are queued once, and their dirty
+ * attributes are written as a single row update when the queue is flushed. Each wine's dirty
+ * values are taken in one snapshot, so flushes may run on any thread while the wine is changed on
+ * the JavaFX thread. All pending updates are
+ * written in one transaction, or under a savepoint of the writer's transaction if it is already in
+ * one. If the updates fail, the wines are marked dirty again and stay queued for the next flush.
+ * <p>
+ * The queue is flushed when it fills up, when {@link #flush()} is called, when it is closed, and
+ * a short delay after the first pending change once a flush executor is set. Flushes must run on
+ * the thread that owns the connection, so the delayed flush is handed to the flush executor rather
+ * than run on the timer thread. Without an executor, pending changes wait for the next explicit
+ * flush.
+ * </p>
+ * <p>
+ * A flush queues for the connection pool's writer before taking the queue's own lock, the same
+ * order a writer flushing the queue while it holds the writer takes them in. Reads only flush if
+ * the writer is free, so a read during an import runs straight away without the pending updates.
+ * </p>
+ */
+public class WineUpdateQueue {
+
+  private static final Logger log = LogManager.getLogger(WineUpdateQueue.class);
+
+  /**
+   * Number of pending wines at which the queue is flushed straight away.
+   */
+  private static final int MAX_PENDING_WINES = 1024;
+
+  private final Connection connection;
+  private final long flushDelayMillis;
+
+  /**
+   * Wines with dirty attributes by ID, in the order they were first changed.
+   */
+  private final Map<Long, Wine> pending = new LinkedHashMap<>();
+
+  /**
+   * Update statements reused across flushes, keyed by the columns they set.
+   */
+  private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+  private ConnectionPool connectionPool;
+  private ScheduledExecutorService scheduler;
+  private ScheduledFuture<?> scheduledFlush;
+  private Executor flushExecutor;
+
+  private long changesQueued = 0;
+  private long flushCount = 0;
+  private long rowsFlushed = 0;
+  private int lastBatchSize = 0;
+  private int maxBatchSize = 0;
+  private long lastFlushMillis = 0;
+  private long maxFlushMillis = 0;
+  private long totalFlushMillis = 0;
+
+  /**
+   * Constructor.
+   *
+   * @param connection       The database connection to write to
+   * @param flushDelayMillis delay after the first pending change before a scheduled flush
+   */
+  public WineUpdateQueue(Connection connection, long flushDelayMillis) {
+    this.connection = connection;
+    this.flushDelayMillis = flushDelayMillis;
+  }
+
+  /**
+   * Sets the pool whose writer flushes queue for. Until set, flushes queue for a writer of the
+   * queue's own, created on the first flush.
+   *
+   * @param connectionPool pool whose writer is this queue's connection
+   */
+  public synchronized void setConnectionPool(ConnectionPool connectionPool) {
+    this.connectionPool = connectionPool;
+  }
+
+  /**
+   * Sets the executor that scheduled flushes run on. Flushes queue for the writer connection, so
+   * this can be any thread other than the JavaFX application thread.
+   *
+   * @param flushExecutor executor for scheduled flushes, or null to only flush explicitly
+   */
+  public synchronized void setFlushExecutor(Executor flushExecutor) {
+    this.flushExecutor = flushExecutor;
+    if (flushExecutor != null && scheduler == null) {
+      scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "wine-update-queue");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+
+  /**
+   * Queues a changed wine. Its dirty attributes are read when the queue is flushed, so further
+   * changes before then are written in the same update.
+   *
+   * @param wine changed wine
+   */
+  public void enqueue(Wine wine) throws SQLException {
+    if (wine.getKey() == -1) {
+      log.warn("Skipping attribute update for wine with ID -1");
+      return;
+    }
+    synchronized (this) {
+      pending.putIfAbsent(wine.getKey(), wine);
+      changesQueued++;
+      if (pending.size() < MAX_PENDING_WINES) {
+        if (scheduledFlush == null && flushExecutor != null) {
+          scheduledFlush = scheduler.schedule(() -> flushExecutor.execute(this::scheduledFlush),
+              flushDelayMillis, TimeUnit.MILLISECONDS);
+        }
+        return;
+      }
+    }
+    flush();
+  }
+
+  /**
+   * Writes all pending updates in one transaction.
+   *
+   * @throws SQLException if the updates could not be written, in which case none are
+   */
+  public void flush() throws SQLException {
+    ConnectionPool writerPool = getWriterPool();
+    if (writerPool == null) {
+      return;
+    }
+    writerPool.lockWriter();
+    try {
+      flushPending();
+    } finally {
+      writerPool.unlockWriter();
+    }
+  }
+
+  /**
+   * Writes all pending updates in one transaction if no other thread holds the writer. Reads call
+   * this rather than {@link #flush()}, so they are not held up behind a long write such as an
+   * import, and read the database without the pending updates instead.
+   *
+   * @throws SQLException if the updates could not be written, in which case none are
+   */
+  public void flushIfWriterFree() throws SQLException {
+    ConnectionPool writerPool = getWriterPool();
+    if (writerPool == null) {
+      return;
+    }
+    if (!writerPool.tryLockWriter()) {
+      log.debug("Writer is busy, leaving {} wine updates queued", getPendingCount());
+      return;
+    }
+    try {
+      flushPending();
+    } finally {
+      writerPool.unlockWriter();
+    }
+  }
+
+  /**
+   * Gets the pool whose writer a flush queues for, creating one of the queue's own if none was
+   * set.
+   *
+   * @return connection pool, or null if there is nothing to flush
+   */
+  private synchronized ConnectionPool getWriterPool() {
+    if (pending.isEmpty()) {
+      return null;
+    }
+    if (connectionPool == null) {
+      connectionPool = new ConnectionPool(connection);
+    }
+    return connectionPool;
+  }
+
+  /**
+   * Writes the pending updates, once the writer is held. Wines are only taken off the queue once
+   * the updates are committed, or released into the writer's own transaction.
+   *
+   * @throws SQLException if the updates could not be written, in which case none are
+   */
+  private synchronized void flushPending() throws SQLException {
+    if (scheduledFlush != null) {
+      scheduledFlush.cancel(false);
+      scheduledFlush = null;
+    }
+    if (pending.isEmpty()) {
+      return;
+    }
+    Timer timer = new Timer();
+    Map<Wine, Map<Wine.Attribute, Object>> taken = new LinkedHashMap<>();
+    boolean autoCommit = connection.getAutoCommit();
+    Savepoint savepoint = null;
+    List<PreparedStatement> batched = new ArrayList<>();
+    try {
+      if (autoCommit) {
+        connection.setAutoCommit(false);
+      } else {
+        savepoint = connection.setSavepoint();
+      }
+      for (Wine wine : pending.values()) {
+        Map<Wine.Attribute, Object> values = wine.takeDirtyValues();
+        if (values.isEmpty()) {
+          continue;
+        }
+        taken.put(wine, values);
+        PreparedStatement statement = getStatement(values.keySet());
+        int paramIndex = 1;
+        for (Object value : values.values()) {
+          statement.setObject(paramIndex++, value);
+        }
+        statement.setLong(paramIndex, wine.getKey());
+        statement.addBatch();
+        if (!batched.contains(statement)) {
+          batched.add(statement);
+        }
+      }
+      for (PreparedStatement statement : batched) {
+        statement.executeBatch();
+      }
+      if (savepoint != null) {
+        connection.releaseSavepoint(savepoint);
+      } else {
+        connection.commit();
+      }
+    } catch (SQLException error) {
+      rollback(savepoint, batched);
+      taken.forEach((wine, values) -> wine.restoreDirtyAttributes(values.keySet()));
+      log.error("Failed to flush {} wine updates, keeping them queued", taken.size(), error);
+      throw error;
+    } finally {
+      if (autoCommit) {
+        connection.setAutoCommit(true);
+      }
+    }
+    pending.clear();
+    int batchSize = taken.size();
+    long millis = timer.currentOffsetMilliseconds();
+    flushCount++;
+    rowsFlushed += batchSize;
+    lastBatchSize = batchSize;
+    maxBatchSize = Math.max(maxBatchSize, batchSize);
+    lastFlushMillis = millis;
+    maxFlushMillis = Math.max(maxFlushMillis, millis);
+    totalFlushMillis += millis;
+    log.info("Successfully flushed updates to {} wines in {}ms", batchSize, millis);
+  }
+
+  /**
+   * Rolls back a failed flush, to its savepoint if it joined the writer's transaction, and drops
+   * the updates left batched on its statements.
+   *
+   * @param savepoint savepoint the flush started at, or null if it had its own transaction
+   * @param batched   statements the updates were batched on
+   */
+  private void rollback(Savepoint savepoint, List<PreparedStatement> batched) {
+    try {
+      for (PreparedStatement statement : batched) {
+        statement.clearBatch();
+      }
+      if (savepoint != null) {
+        connection.rollback(savepoint);
+      } else {
+        connection.rollback();
+      }
+    } catch (SQLException error) {
+      log.error("Failed to roll back wine updates", error);
+    }
+  }
+
+  /**
+   * Flushes the queue and closes the reused statements.
+   */
+  public void close() throws SQLException {
+    try {
+      flush();
+    } finally {
+      synchronized (this) {
+        if (scheduler != null) {
+          scheduler.shutdownNow();
+        }
+        for (PreparedStatement statement : statements.values()) {
+          statement.close();
+        }
+        statements.clear();
+      }
+    }
+  }
+
+  /**
+   * Gets the update statement for a set of attributes, preparing it the first time it is used.
+   *
+   * @param attributes attributes to set, in the order their values are bound
+   * @return update statement
+   * @throws SQLException if the statement could not be prepared
+   */
+  private PreparedStatement getStatement(Set<Wine.Attribute> attributes) throws SQLException {
+    StringJoiner assignments = new StringJoiner(", ");
+    for (Wine.Attribute attribute : attributes) {
+      assignments.add(attribute.name() + " = ?");
+    }
+    String key = assignments.toString();
+    PreparedStatement statement = statements.get(key);
+    if (statement == null) {
+      statement = connection.prepareStatement("UPDATE WINE SET " + key + " WHERE ID = ?");
+      statements.put(key, statement);
+    }
+    return statement;
+  }
+
+  /**
+   * Runs a scheduled flush, logging rather than throwing as there is no caller to report to.
+   */
+  private void scheduledFlush() {
+    try {
+      flush();
+    } catch (SQLException error) {
+      log.error("Scheduled flush of wine updates failed", error);
+    }
+  }
+
+  /**
+   * Gets the number of wines queued for the next flush.
+   *
+   * @return number of pending wines
+   */
+  public synchronized int getPendingCount() {
+    return pending.size();
+  }
+
+  /**
+   * Gets the number of attribute changes reported, before coalescing.
+   *
+   * @return number of changes queued
+   */
+  public synchronized long getChangesQueued() {
+    return changesQueued;
+  }
+
+  /**
+   * Gets the number of flushes which wrote at least one update.
+   *
+   * @return number of flushes
+   */
+  public synchronized long getFlushCount() {
+    return flushCount;
+  }
+
+  /**
+   * Gets the number of row updates written across all flushes.
+   *
+   * @return number of rows flushed
+   */
+  public synchronized long getRowsFlushed() {
+    return rowsFlushed;
+  }
+
+  /**
+   * Gets the number of rows written by the last flush.
+   *
+   * @return last batch size
+   */
+  public synchronized int getLastBatchSize() {
+    return lastBatchSize;
+  }
+
+  /**
+   * Gets the largest number of rows written by one flush.
+   *
+   * @return largest batch size
+   */
+  public synchronized int getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  /**
+   * Gets how long the last flush took.
+   *
+   * @return last flush latency in milliseconds
+   */
+  public synchronized long getLastFlushMillis() {
+    return lastFlushMillis;
+  }
+
+  /**
+   * Gets how long the slowest flush took.
+   *
+   * @return largest flush latency in milliseconds
+   */
+  public synchronized long getMaxFlushMillis() {
+    return maxFlushMillis;
+  }
+
+  /**
+   * Gets the mean time taken by a flush.
+   *
+   * @return mean flush latency in milliseconds
+   */
+  public synchronized double getMeanFlushMillis() {
+    return flushCount == 0 ? 0 : (double) totalFlushMillis / flushCount;
+  }
+}
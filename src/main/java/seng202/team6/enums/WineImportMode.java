@@ -0,0 +1,30 @@
+package seng202.team6.enums;
+
+/**
+ * Ways imported wines can be combined with the wines already in the database. Merging and
+ * replacing match wines on their title, winery and vintage, so wines which are imported again
+ * keep their ID and with it their reviews, notes and list entries.
+ */
+public enum WineImportMode {
+  /**
+   * Adds every imported wine, even if an equal wine already exists.
+   */
+  APPEND,
+  /**
+   * Updates wines which match an imported wine and adds the rest.
+   */
+  MERGE,
+  /**
+   * Merges, then removes every wine which did not match an imported wine.
+   */
+  REPLACE;
+
+  /**
+   * Checks if imported wines are matched against existing wines through the staging table.
+   *
+   * @return true if wines are merged
+   */
+  public boolean isMerged() {
+    return this != APPEND;
+  }
+}
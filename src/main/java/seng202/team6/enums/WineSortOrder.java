@@ -0,0 +1,65 @@
+package seng202.team6.enums;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+/**
+ * Orders in which wines can be searched. Each column order is backed by an index so a page can be
+ * read straight from the index. Relevance orders by the bm25 rank of the search text and is only
+ * used when there is search text.
+ */
+public enum WineSortOrder {
+  DEFAULT("Default", "WINE.ID", false),
+  SCORE("Highest Score", "WINE.SCORE_PERCENT", true),
+  PRICE_LOW_TO_HIGH("Lowest Price", "WINE.PRICE", false),
+  PRICE_HIGH_TO_LOW("Highest Price", "WINE.PRICE", true),
+  VINTAGE("Newest Vintage", "WINE.VINTAGE", true),
+  RELEVANCE("Best Match", "WINE_SEARCH.rank", false);
+
+  public static final ObservableList<WineSortOrder> VALUES = FXCollections.observableArrayList(
+      values());
+  private final String name;
+  private final String column;
+  private final boolean descending;
+
+  /**
+   * Constructor.
+   *
+   * @param prettyName name shown to the user
+   * @param column     column the wines are sorted by
+   * @param descending whether the largest values come first
+   */
+  WineSortOrder(String prettyName, String column, boolean descending) {
+    this.name = prettyName;
+    this.column = column;
+    this.descending = descending;
+  }
+
+  /**
+   * Gets the column the wines are sorted by.
+   *
+   * @return qualified column name
+   */
+  public String getColumn() {
+    return column;
+  }
+
+  /**
+   * Gets whether the largest values come first.
+   *
+   * @return true if descending
+   */
+  public boolean isDescending() {
+    return descending;
+  }
+
+  /**
+   * Gets the name shown to the user.
+   *
+   * @return pretty name
+   */
+  @Override
+  public String toString() {
+    return name;
+  }
+}
@@ -1,6 +1,6 @@
 package seng202.team6.gui;
 
-import java.sql.SQLException;
+import java.util.List;
 import java.util.Optional;
 import javafx.beans.property.BooleanProperty;
 import javafx.collections.FXCollections;
@@ -115,11 +115,6 @@ public class AdminController extends Controller {
     userList.setOnMouseClicked(this::selectUser);
 
     //==========| Reviews Tab |==========<
-    try {
-      allFlaggedReviews = databaseManager.getWineReviewDao().getAllFlaggedReviews();
-    } catch (SQLException e) {
-      throw new RuntimeException(e);
-    }
     setupReviewTable();
     refreshReviewActions();
 
@@ -158,8 +153,10 @@ public class AdminController extends Controller {
 
   @FXML
   private void onYes() {
-    getManagerContext().getDatabaseManager().getUserDao().deleteAll();
-    getManagerContext().getGuiManager().openWineScreen();
+    getManagerContext().getGuiManager().runInBackground(() -> {
+      databaseManager.getUserDao().deleteAll();
+      return null;
+    }, result -> getManagerContext().getGuiManager().openWineScreen());
   }
 
   @FXML
@@ -183,8 +180,11 @@ public class AdminController extends Controller {
 
     Optional<ButtonType> result = confirmation.showAndWait();
     if (result.get() == ButtonType.OK) {
-      databaseManager.getUserDao().delete(workingUser);
-      resetView();
+      User user = workingUser;
+      getManagerContext().getGuiManager().runInBackground(() -> {
+        databaseManager.getUserDao().delete(user);
+        return null;
+      }, deleted -> resetView());
     }
   }
 
@@ -198,11 +198,11 @@ public class AdminController extends Controller {
             + "This action cannot be undone");
     Optional<ButtonType> result = confirmation.showAndWait();
     if (result.get() == ButtonType.OK) {
-      try {
-        databaseManager.getWineReviewDao().deleteAllFromUser(workingUser);
-      } catch (SQLException e) {
-        throw new RuntimeException(e);
-      }
+      User user = workingUser;
+      getManagerContext().getGuiManager().runInBackground(() -> {
+        databaseManager.getWineReviewDao().deleteAllFromUser(user);
+        return null;
+      }, deleted -> refreshReviewTable());
     }
   }
 
@@ -210,7 +210,6 @@ public class AdminController extends Controller {
    * Reset FXML component content. Used on account deletion.
    */
   private void resetView() {
-    ObservableList<User> users = databaseManager.getUserDao().getAll();
     userList.setCellFactory(param -> new ListCell<User>() {
       @Override
       protected void updateItem(User item, boolean empty) {
@@ -223,7 +222,8 @@ public class AdminController extends Controller {
         }
       }
     });
-    userList.setItems(users);
+    getManagerContext().getGuiManager().runInBackground(
+        () -> databaseManager.getUserDao().getAll(), userList::setItems);
     userLabel.setText("No User Selected");
     deleteUser.setDisable(true);
     deleteReviews.setDisable(true);
@@ -274,21 +274,21 @@ public class AdminController extends Controller {
   void onNewPasswordAccept() {
     String password = passwordField.getText();
     String confirm = confirmField.getText();
-    AuthenticationResponse response =
-        getManagerContext().getAuthenticationManager().validatePasswordReset(
-            workingUser.getUsername(), password, confirm
-        );
-
-    if (response == AuthenticationResponse.PASSWORD_CHANGED_SUCCESS) {
-      log.info("Password updated");
-      togglePasswordBox(false);
-      selectedActionsPane.setPrefHeight(250);
-    } else {
-      selectedActionsPane.setPrefHeight(300);
-      passwordErrorLabel.setStyle("-fx-text-fill: red");
-      passwordErrorLabel.setText(response.getMessage());
-    }
-
+    String username = workingUser.getUsername();
+    getManagerContext().getGuiManager().runInBackground(
+        () -> getManagerContext().getAuthenticationManager().validatePasswordReset(
+            username, password, confirm
+        ), response -> {
+          if (response == AuthenticationResponse.PASSWORD_CHANGED_SUCCESS) {
+            log.info("Password updated");
+            togglePasswordBox(false);
+            selectedActionsPane.setPrefHeight(250);
+          } else {
+            selectedActionsPane.setPrefHeight(300);
+            passwordErrorLabel.setStyle("-fx-text-fill: red");
+            passwordErrorLabel.setText(response.getMessage());
+          }
+        });
   }
 
   @FXML
@@ -361,13 +361,12 @@ public class AdminController extends Controller {
    */
   private void refreshReviewTable() {
     reviewsTable.getItems().clear();
-    try {
-      allFlaggedReviews = databaseManager.getWineReviewDao().getAllFlaggedReviews();
-    } catch (SQLException e) {
-      throw new RuntimeException(e);
-    }
-    reviewsTable.setItems(allFlaggedReviews);
-
+    getManagerContext().getGuiManager().runInBackground(
+        () -> databaseManager.getWineReviewDao().getAllFlaggedReviews(), reviews -> {
+          allFlaggedReviews = reviews;
+          reviewsTable.setItems(allFlaggedReviews);
+          refreshReviewActions();
+        });
   }
 
   /**
@@ -388,72 +387,71 @@ public class AdminController extends Controller {
   }
 
   @FXML
-  void onDeleteSelected() throws SQLException {
-    for (int i = 0; i < selectedReviews.size(); i++) {
-      databaseManager.getWineReviewDao().delete(selectedReviews.get(i));
-      long wineId = selectedReviews.get(i).getWineId();
-      ObservableList<WineReview> theseReviews = databaseManager.getWineReviewDao()
-          .getAll(databaseManager.getWineDao().get(wineId));
-      double sum = theseReviews.stream()
-          .mapToDouble(WineReview::getRating)
-          .sum();
-      databaseManager.getWineDao().get(wineId).setAverageRating(sum / theseReviews.size());
-
-    }
-    selectedReviews.clear();
-    allFlaggedReviews.clear();
-    refreshReviewTable();
-    refreshReviewActions();
+  void onDeleteSelected() {
+    List<WineReview> reviews = List.copyOf(selectedReviews);
+    getManagerContext().getGuiManager().runInBackground(() -> {
+      for (WineReview review : reviews) {
+        databaseManager.getWineReviewDao().delete(review);
+      }
+      return databaseManager.getWineDao().readAverageRatings(reviews.stream()
+          .map(WineReview::getWineId)
+          .toList());
+    }, ratings -> {
+      databaseManager.getWineDao().applyAverageRatings(ratings);
+      selectedReviews.clear();
+      allFlaggedReviews.clear();
+      refreshReviewTable();
+    });
   }
 
   @FXML
-  void onDeleteAll() throws SQLException {
-    databaseManager.getWineReviewDao().deleteAllFlaggedReviews();
-    for (int i = 0; i < allFlaggedReviews.size(); i++) {
-      long wineId = allFlaggedReviews.get(i).getWineId();
-      ObservableList<WineReview> theseReviews = databaseManager.getWineReviewDao()
-          .getAll(databaseManager.getWineDao().get(wineId));
-      double sum = theseReviews.stream()
-          .mapToDouble(WineReview::getRating)
-          .sum();
-      databaseManager.getWineDao().get(wineId).setAverageRating(sum / theseReviews.size());
-    }
-
-    selectedReviews.clear();
-    allFlaggedReviews.clear();
-    refreshReviewTable();
+  void onDeleteAll() {
+    List<WineReview> reviews = List.copyOf(allFlaggedReviews);
+    getManagerContext().getGuiManager().runInBackground(() -> {
+      databaseManager.getWineReviewDao().deleteAllFlaggedReviews();
+      return databaseManager.getWineDao().readAverageRatings(reviews.stream()
+          .map(WineReview::getWineId)
+          .toList());
+    }, ratings -> {
+      databaseManager.getWineDao().applyAverageRatings(ratings);
+      selectedReviews.clear();
+      allFlaggedReviews.clear();
+      refreshReviewTable();
+    });
   }
 
   @FXML
   void onKeepAll() {
-    for (int i = 0; i < allFlaggedReviews.size(); i++) {
-      allFlaggedReviews.get(i).setFlag(0);
-      try {
-        databaseManager.getWineReviewDao().updateWineReviewFlag(allFlaggedReviews.get(i));
-      } catch (SQLException e) {
-        throw new RuntimeException(e);
-      }
-      allFlaggedReviews.get(i).setSelected(false);
+    List<WineReview> reviews = List.copyOf(allFlaggedReviews);
+    for (WineReview review : reviews) {
+      review.setFlag(0);
+      review.setSelected(false);
     }
-    selectedReviews.clear();
-    allFlaggedReviews.clear();
-    refreshReviewTable();
-
+    getManagerContext().getGuiManager().runInBackground(() -> {
+      for (WineReview review : reviews) {
+        databaseManager.getWineReviewDao().updateWineReviewFlag(review);
+      }
+      return null;
+    }, updated -> {
+      selectedReviews.clear();
+      allFlaggedReviews.clear();
+      refreshReviewTable();
+    });
   }
 
   @FXML
   void onKeepSelected() {
     log.info(selectedReviews.size());
-    for (int i = 0; i < selectedReviews.size(); i++) {
-      selectedReviews.get(i).setFlag(0);
-      try {
-        databaseManager.getWineReviewDao().updateWineReviewFlag(selectedReviews.get(i));
-      } catch (SQLException e) {
-        throw new RuntimeException(e);
-      }
-      //selectedReviews.get(i).setSelected(false);
+    List<WineReview> reviews = List.copyOf(selectedReviews);
+    for (WineReview review : reviews) {
+      review.setFlag(0);
     }
-    refreshReviewTable();
+    getManagerContext().getGuiManager().runInBackground(() -> {
+      for (WineReview review : reviews) {
+        databaseManager.getWineReviewDao().updateWineReviewFlag(review);
+      }
+      return null;
+    }, updated -> refreshReviewTable());
   }
 
 
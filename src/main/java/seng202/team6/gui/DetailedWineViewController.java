@@ -1,6 +1,5 @@
 package seng202.team6.gui;
 
-import java.sql.SQLException;
 import javafx.beans.binding.StringBinding;
 import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener;
@@ -115,11 +114,6 @@ public class DetailedWineViewController extends Controller {
     this.ratingStars = new UnmodifiableRating();
     this.scoreIndicator = new CircularScoreIndicator();
     bindToWineReviewsService();
-
-    String winery = viewedWine.getWinery();
-    if (winery != null && !winery.isEmpty()) {
-      wineVineyard = getManagerContext().getDatabaseManager().getVineyardsDao().get(winery);
-    }
   }
 
   /**
@@ -143,14 +137,17 @@ public class DetailedWineViewController extends Controller {
     if (getManagerContext().getAuthenticationManager().isAuthenticated()) {
       setNotesVisible(true);
       User user = getManagerContext().getAuthenticationManager().getAuthenticatedUser();
-      Note note = wineNoteService.loadUsersNote(user);
-      notesTextbox.setText(note.getNote());
-
       // disables the save not button if the note is not changed
       saveNotes.setDisable(true);
-      notesTextbox.textProperty().addListener((observableValue, before, after) -> {
-        saveNotes.setDisable(after.equals(note.getNote()));
-      });
+      notesTextbox.setDisable(true);
+      getManagerContext().getGuiManager().runInBackground(
+          () -> wineNoteService.loadUsersNote(user), note -> {
+            notesTextbox.setText(note.getNote());
+            notesTextbox.setDisable(false);
+            notesTextbox.textProperty().addListener((observableValue, before, after) -> {
+              saveNotes.setDisable(after.equals(note.getNote()));
+            });
+          });
     } else {
       setNotesVisible(false);
       addReviewButton.setDisable(true);
@@ -169,7 +166,30 @@ public class DetailedWineViewController extends Controller {
     scoreIndicator.setScore(viewedWine.getScorePercent());
     descriptionScoreNotesGridPane.add(scoreIndicator, 2, 1);
 
+    String winery = viewedWine.getWinery();
+    viewVineyardButton.setDisable(true);
+    getManagerContext().getGuiManager().runInBackground(
+        () -> winery == null || winery.isEmpty() ? null
+            : getManagerContext().getDatabaseManager().getVineyardsDao().get(winery),
+        this::showVineyard);
+
+    // everything is ready so now the wine reviews can be loaded
+    getManagerContext().getGuiManager().runInBackground(wineReviewsService::loadReviews,
+        reviews -> {
+          wineReviewsService.setReviews(reviews);
+          updateRatingsLabel(viewedWine.getAverageRating());
+        });
+  }
+
+  /**
+   * Shows the vineyard of the wine on the map, or removes the view vineyard button if it has none.
+   *
+   * @param vineyard vineyard of the wine, or null if it has none
+   */
+  private void showVineyard(Vineyard vineyard) {
+    wineVineyard = vineyard;
     if (wineVineyard != null) {
+      viewVineyardButton.setDisable(false);
       mapController = new LeafletOsmController(webView.getEngine());
       mapController.initMap();
       mapController.runOrQueueWhenReady(() -> {
@@ -178,16 +198,18 @@ public class DetailedWineViewController extends Controller {
     } else {
       buttonsContainer.getChildren().remove(viewVineyardButton);
     }
+  }
 
-    // everything is ready so now the wine reviews can be loaded
-    wineReviewsService.init();
-
-    // Set rating label text
+  /**
+   * Sets the rating label text from the average rating and number of reviews.
+   *
+   * @param averageRating average rating of the wine
+   */
+  private void updateRatingsLabel(double averageRating) {
     if (wineReviewsService.hasReviews()) {
       int numberOfRatings = wineReviewsService.getWineReviews().size();
       ratingsLabel.setText(
-          "Average %.2f From %d ratings".formatted(viewedWine.getAverageRating(),
-              numberOfRatings));
+          "Average %.2f From %d ratings".formatted(averageRating, numberOfRatings));
     } else {
       ratingsLabel.setText("This wine has not been reviewed");
     }
@@ -223,16 +245,8 @@ public class DetailedWineViewController extends Controller {
           addReviewButton.setText((usersReview == null ? "Add" : "Modify") + " Review");
         });
     ratingStars.ratingProperty().bind(viewedWine.averageRatingProperty());
-    ratingStars.ratingProperty().addListener((observableValue, oldValue, newAverageRating) -> {
-      if (wineReviewsService.hasReviews()) {
-        int numberOfRatings = wineReviewsService.getWineReviews().size();
-        ratingsLabel.setText(
-            "Average %.2f From %d ratings".formatted(newAverageRating.doubleValue(),
-                numberOfRatings));
-      } else {
-        ratingsLabel.setText("This wine has not been reviewed");
-      }
-    });
+    ratingStars.ratingProperty().addListener((observableValue, oldValue, newAverageRating) ->
+        updateRatingsLabel(newAverageRating.doubleValue()));
   }
 
   /**
@@ -336,11 +350,11 @@ public class DetailedWineViewController extends Controller {
   private void flagReview(WineReview wineReview) {
     wineReview.setFlag(1);
     wineReview.setSelected(false);
-    try {
+    getManagerContext().getGuiManager().runInBackground(() -> {
       getManagerContext().getDatabaseManager().getWineReviewDao().updateWineReviewFlag(wineReview);
-    } catch (SQLException e) {
-      throw new RuntimeException(e);
-    }
+      return null;
+    }, flagged -> {
+    });
   }
 
   /**
@@ -367,7 +381,12 @@ public class DetailedWineViewController extends Controller {
     Note note = wineNoteService.getNote();
     // if the note is null the user is not authenticated
     if (note != null) {
-      note.setNote(notesTextbox.getText());
+      // the note is saved to the database by its listener
+      String text = notesTextbox.getText();
+      getManagerContext().getGuiManager().runInBackground(() -> {
+        note.setNote(text);
+        return null;
+      }, saved -> saveNotes.setDisable(true));
     }
   }
 
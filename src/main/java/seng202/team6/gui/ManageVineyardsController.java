@@ -1,5 +1,6 @@
 package seng202.team6.gui;
 
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
@@ -159,13 +160,15 @@ public class ManageVineyardsController extends Controller {
     if (!validateFields(popup, null, name, address, region, logoUrl)) {
       return;
     }
-    getManagerContext().getGuiManager().showLoadingIndicator(() -> {
-      GeoLocation geoLocation = validateLogoUrlAndGeolocation(popup, address, logoUrl);
-      if (geoLocation == null) {
-        return;
-      }
-      vineyardService.create(name, address, region, website, logoUrl, description, geoLocation);
-    });
+    // the logo and address are checked by web requests, so they are waited for in the background
+    getManagerContext().getGuiManager().runInBackground(
+        () -> validateLogoUrlAndGeolocation(popup, address, logoUrl), geoLocation -> {
+          if (geoLocation == null) {
+            return;
+          }
+          vineyardService.create(name, address, region, website, logoUrl, description,
+              geoLocation);
+        });
     popup.close();
   }
 
@@ -254,7 +257,8 @@ public class ManageVineyardsController extends Controller {
   private GeoLocation validateLogoUrlAndGeolocation(GeneralPopupController popup, String address,
       String logoUrl) {
     if (!validateLogoUrl(logoUrl)) {
-      popup.setErrorMessage("The logo URL was invalid and did not point to an image");
+      Platform.runLater(
+          () -> popup.setErrorMessage("The logo URL was invalid and did not point to an image"));
       return null;
     }
 
@@ -262,7 +266,8 @@ public class ManageVineyardsController extends Controller {
     try {
       return geolocationResolver.resolveLocation(address).join();
     } catch (Exception error) {
-      popup.setErrorMessage("The address was invalid and could not be resolved.");
+      Platform.runLater(
+          () -> popup.setErrorMessage("The address was invalid and could not be resolved."));
       return null;
     }
   }
@@ -1,12 +1,10 @@
 package seng202.team6.gui;
 
-import java.sql.SQLException;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
-import javafx.collections.ObservableMap;
 import javafx.fxml.FXML;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
@@ -61,30 +59,27 @@ public class NotesController extends Controller {
    */
   @Override
   public void init() {
-    try {
-      populateTable();
-    } catch (SQLException e) {
-      throw new RuntimeException(e);
-    }
+    setupColumns();
+    notesTable.setOnMouseClicked(this::openNoteOnClick);
+    populateTable();
     deleteButton.setDisable(true);
     saveButton.setDisable(true);
   }
 
   /**
    * Populates table columns using the wineTitle string property in the Note object. Called to
-   * refresh the notes in the table.
+   * refresh the notes in the table. The notes are loaded in the background.
    */
-  private void populateTable() throws SQLException {
+  private void populateTable() {
     User user = getManagerContext().getAuthenticationManager().getAuthenticatedUser();
     AggregatedDao aggregatedDao = getManagerContext().getDatabaseManager().getAggregatedDao();
-    ObservableMap<Wine, Note> allNotesMappedWithWinesByUser = aggregatedDao
-        .getAllNotesMappedWithWinesByUser(user);
-    ObservableList<Map.Entry<Wine, Note>> noteList = FXCollections.observableArrayList(
-        allNotesMappedWithWinesByUser.entrySet());
-    setupColumns();
     notesTable.getItems().clear();
-    notesTable.setItems(noteList);
-    notesTable.setOnMouseClicked(this::openNoteOnClick);
+    getManagerContext().getGuiManager().runInBackground(
+        () -> aggregatedDao.getAllNotesMappedWithWinesByUser(user), notes -> {
+          ObservableList<Map.Entry<Wine, Note>> noteList = FXCollections.observableArrayList(
+              notes.entrySet());
+          notesTable.setItems(noteList);
+        });
   }
 
   /**
@@ -137,7 +132,14 @@ public class NotesController extends Controller {
    */
   @FXML
   public void onSaveClicked() {
-    openedNote.setNote(noteArea.getText());
+    // the note is saved to the database by its listener
+    Note note = openedNote;
+    String text = noteArea.getText();
+    getManagerContext().getGuiManager().runInBackground(() -> {
+      note.setNote(text);
+      return null;
+    }, saved -> {
+    });
   }
 
   /**
@@ -153,13 +155,12 @@ public class NotesController extends Controller {
     Optional<ButtonType> result = confirmation.showAndWait();
     if (result.isPresent() && result.get() == ButtonType.OK) {
       // setting the note to empty will trigger the database to delete the note
-      openedNote.setNote("");
-      try {
-        populateTable();
-      } catch (SQLException e) {
-        throw new RuntimeException(e);
-      }
+      Note note = openedNote;
       clearNotesPanel();
+      getManagerContext().getGuiManager().runInBackground(() -> {
+        note.setNote("");
+        return null;
+      }, deleted -> populateTable());
     }
   }
 }
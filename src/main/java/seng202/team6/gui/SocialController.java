@@ -1,18 +1,16 @@
 package seng202.team6.gui;
 
-import java.sql.SQLException;
-import javafx.collections.ObservableList;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
+import javafx.scene.control.ScrollPane;
 import javafx.scene.layout.AnchorPane;
 import javafx.scene.layout.TilePane;
-import kotlin.Pair;
 import org.apache.logging.log4j.LogManager;
 import org.controlsfx.control.RangeSlider;
 import seng202.team6.gui.controls.AutoCompletionTextField;
 import seng202.team6.gui.controls.ReviewCard;
 import seng202.team6.managers.ManagerContext;
 import seng202.team6.model.ReviewFilters;
-import seng202.team6.model.User;
 import seng202.team6.model.Wine;
 import seng202.team6.model.WineReview;
 import seng202.team6.service.WineReviewsService;
@@ -24,6 +22,11 @@ import seng202.team6.util.FilterUtil;
  */
 public class SocialController extends Controller {
 
+  /**
+   * Number of reviews loaded each time the reviews are scrolled to the bottom.
+   */
+  private static final int REVIEWS_PER_PAGE = 100;
+
   @FXML
   AnchorPane filtersPane;
   AutoCompletionTextField usernameTextField;
@@ -31,8 +34,20 @@ public class SocialController extends Controller {
   @FXML
   private TilePane reviewsViewContainer;
   @FXML
+  private ScrollPane reviewsScrollPane;
+  @FXML
   private ReviewFilters currentFilters;
   private RangeSlider ratingSlider;
+  /**
+   * ID of the last review shown, which the next page starts after.
+   */
+  private long lastReviewId = 0;
+  private boolean loadingPage = false;
+  private boolean lastPageLoaded = false;
+  /**
+   * Incremented when the filters change, so pages loaded for the old filters are ignored.
+   */
+  private int pageGeneration = 0;
 
   /**
    * Constructor.
@@ -68,11 +83,14 @@ public class SocialController extends Controller {
     });
 
     ratingSlider.setSnapToTicks(true);
-    try {
-      openReviewsInRange(null);
-    } catch (SQLException exception) {
-      LogManager.getLogger(getClass()).error("Failed to open reviews", exception);
-    }
+    reviewsScrollPane.vvalueProperty().addListener((observable, oldValue, newValue) -> {
+      if (newValue.doubleValue() >= reviewsScrollPane.getVmax()) {
+        loadNextPage();
+      }
+    });
+    reviewsScrollPane.viewportBoundsProperty().addListener(
+        (observable, oldBounds, newBounds) -> Platform.runLater(this::loadNextPageIfAtBottom));
+    openReviews();
 
   }
 
@@ -102,24 +120,81 @@ public class SocialController extends Controller {
   public void openReviewOnClick(WineReview selectedReview, Wine selectedWine) {
 
     String reviewerUsername = selectedReview.getUsername();
-    User reviewer = getManagerContext().getDatabaseManager().getUserDao().get(reviewerUsername);
     WineReviewsService wineReviewsService = new WineReviewsService(
         getManagerContext().getAuthenticationManager(),
         getManagerContext().getDatabaseManager(),
         selectedWine);
-    getManagerContext()
-        .getGuiManager()
-        .openPopupReviewView(wineReviewsService, reviewer, selectedReview, selectedWine);
+    getManagerContext().getGuiManager().runInBackground(
+        () -> getManagerContext().getDatabaseManager().getUserDao().get(reviewerUsername),
+        reviewer -> getManagerContext()
+            .getGuiManager()
+            .openPopupReviewView(wineReviewsService, reviewer, selectedReview, selectedWine));
   }
 
-  private void openReviewsInRange(ReviewFilters filters) throws SQLException {
-
-    ObservableList<Pair<WineReview, Wine>> reviews = getManagerContext().getDatabaseManager()
-        .getAggregatedDao().getWineReviewsAndWines(0, 100, filters);
-
+  /**
+   * Clears the reviews shown and loads the first page matching the current filters.
+   */
+  private void openReviews() {
     reviewsViewContainer.getChildren().clear();
-    reviews.forEach(pair -> createReviewCard(pair.getFirst(), pair.getSecond()));
+    reviewsScrollPane.setVvalue(0);
+    lastReviewId = 0;
+    lastPageLoaded = false;
+    loadingPage = false;
+    pageGeneration++;
+    loadNextPage();
+  }
 
+  /**
+   * Loads the page of reviews after the last one shown, seeking past its ID rather than skipping
+   * the reviews already shown.
+   */
+  private void loadNextPage() {
+    if (loadingPage || lastPageLoaded) {
+      return;
+    }
+    loadingPage = true;
+    int generation = pageGeneration;
+    long afterReviewId = lastReviewId;
+    ReviewFilters filters = currentFilters;
+    getManagerContext().getGuiManager().runInBackground(
+        () -> getManagerContext().getDatabaseManager().getAggregatedDao()
+            .getWineReviewsAndWinesAfter(afterReviewId, REVIEWS_PER_PAGE, filters),
+        reviews -> {
+          if (generation != pageGeneration) {
+            return;
+          }
+          loadingPage = false;
+          lastPageLoaded = reviews.size() < REVIEWS_PER_PAGE;
+          if (!reviews.isEmpty()) {
+            lastReviewId = reviews.getLast().getFirst().getId();
+          }
+          reviews.forEach(pair -> createReviewCard(pair.getFirst(), pair.getSecond()));
+          loadNextPageIfAtBottom();
+        },
+        error -> {
+          if (generation == pageGeneration) {
+            loadingPage = false;
+          }
+          LogManager.getLogger(getClass()).error("Failed to open reviews", error);
+        });
+  }
+
+  /**
+   * Loads the next page if the pane is still scrolled to the bottom, or its content does not fill
+   * the viewport, as the scroll listener only loads a page when the scroll position changes.
+   */
+  private void loadNextPageIfAtBottom() {
+    if (loadingPage || lastPageLoaded) {
+      return;
+    }
+    reviewsScrollPane.applyCss();
+    reviewsScrollPane.layout();
+    double contentHeight = reviewsScrollPane.getContent().getBoundsInLocal().getHeight();
+    double viewportHeight = reviewsScrollPane.getViewportBounds().getHeight();
+    if (reviewsScrollPane.getVvalue() >= reviewsScrollPane.getVmax()
+        || (viewportHeight > 0 && contentHeight <= viewportHeight)) {
+      loadNextPage();
+    }
   }
 
   @FXML
@@ -128,7 +203,7 @@ public class SocialController extends Controller {
   }
 
   @FXML
-  void onApply() throws SQLException {
+  void onApply() {
 
     currentFilters = new ReviewFilters(
         usernameTextField.getText(),
@@ -137,7 +212,7 @@ public class SocialController extends Controller {
         (int) ratingSlider.getHighValue()
     );
 
-    openReviewsInRange(currentFilters);
+    openReviews();
 
   }
 
@@ -150,11 +225,7 @@ public class SocialController extends Controller {
     usernameTextField.setText("");
 
     this.currentFilters = null;
-    try {
-      openReviewsInRange(null);
-    } catch (SQLException exception) {
-      LogManager.getLogger(getClass()).error("Failed to open reviews", exception);
-    }
+    openReviews();
 
   }
 
@@ -215,19 +215,20 @@ public class TourPlanningController extends Controller {
     }
 
     mapController.clearWineMarkers();
-    getManagerContext().getGuiManager().showLoadingIndicator(() -> {
-      List<GeoLocation> vineyardLocations = currentTourPlanningService.getVineyards().stream()
-          .peek(vineyard -> mapController.addVineyardMaker(vineyard, false))
-          .map(Vineyard::getGeoLocation)
-          .toList();
-      String geometry = geolocationResolver.resolveRoute(vineyardLocations);
-      if (geometry == null) {
-        showCalculatingRouteError();
-        return;
-      }
-      mapController.addRoute(geometry);
-      tabPane.getSelectionModel().select(viewTourTab);
-    });
+    List<GeoLocation> vineyardLocations = currentTourPlanningService.getVineyards().stream()
+        .peek(vineyard -> mapController.addVineyardMaker(vineyard, false))
+        .map(Vineyard::getGeoLocation)
+        .toList();
+    // the route is resolved by a web request, so it is waited for in the background
+    getManagerContext().getGuiManager().runInBackground(
+        () -> geolocationResolver.resolveRoute(vineyardLocations), geometry -> {
+          if (geometry == null) {
+            showCalculatingRouteError();
+            return;
+          }
+          mapController.addRoute(geometry);
+          tabPane.getSelectionModel().select(viewTourTab);
+        });
   }
 
   /**
@@ -1,7 +1,5 @@
 package seng202.team6.gui;
 
-import java.sql.SQLException;
-import java.util.Set;
 import javafx.fxml.FXML;
 import javafx.geometry.HPos;
 import javafx.geometry.Insets;
@@ -24,6 +22,7 @@ import javafx.scene.layout.VBox;
 import javafx.scene.text.Font;
 import javafx.scene.text.TextAlignment;
 import org.controlsfx.control.Rating;
+import seng202.team6.dao.WineDao;
 import seng202.team6.gui.controls.AutoCompletionTextField;
 import seng202.team6.gui.controls.CircularScoreIndicator;
 import seng202.team6.gui.controls.UnmodifiableRating;
@@ -101,22 +100,19 @@ public class WineCompareController extends Controller {
       container.setPadding(new Insets(10));
       container.setStyle("-fx-background-color: #f3f4f6; -fx-background-radius: 10px;");
 
-      Set<String> uniqueTitles = getManagerContext().getDatabaseManager().getWineDataStatService()
-          .getUniqueTitles();
+      WineDao wineDao = getManagerContext().getDatabaseManager().getWineDao();
       AutoCompletionTextField searchTextField = new AutoCompletionTextField(
           wine == null ? "" : wine.getTitle());
       searchTextField.setPrefWidth(300);
-      searchTextField.getEntries().addAll(uniqueTitles);
-      searchTextField.setOnSelectionAction(match -> {
-        try {
-          Wine wine = getManagerContext().getDatabaseManager().getWineDao().getByExactTitle(match);
-          if (wine != null) {
-            setWine(wine);
-          }
-        } catch (SQLException e) {
-          throw new RuntimeException(e);
-        }
-      });
+      getManagerContext().getGuiManager().runInBackground(wineDao::getUniqueTitles,
+          uniqueTitles -> searchTextField.getEntries().addAll(uniqueTitles));
+      searchTextField.setOnSelectionAction(match ->
+          getManagerContext().getGuiManager().runInBackground(
+              () -> wineDao.getByExactTitle(match), wine -> {
+                if (wine != null) {
+                  setWine(wine);
+                }
+              }));
 
       Label searchLabel = new Label("Search for a Wine");
       searchLabel.setFont(Font.font(18));
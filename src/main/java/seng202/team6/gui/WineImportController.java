@@ -1,6 +1,8 @@
 package seng202.team6.gui;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -10,6 +12,7 @@ import java.util.Set;
 import java.util.stream.Collectors;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.geometry.HPos;
 import javafx.geometry.Insets;
@@ -18,6 +21,7 @@ import javafx.scene.control.ChoiceBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.ListCell;
 import javafx.scene.control.ListView;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.layout.ColumnConstraints;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.Priority;
@@ -29,26 +33,33 @@ import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import seng202.team6.enums.WineImportMode;
 import seng202.team6.enums.WinePropertyName;
 import seng202.team6.gui.popup.GeneralPopupController;
+import seng202.team6.managers.GuiManager;
 import seng202.team6.managers.ManagerContext;
-import seng202.team6.model.Wine;
+import seng202.team6.model.WineImportProgress;
+import seng202.team6.model.WineImportResult;
+import seng202.team6.service.WineImportPipeline;
 import seng202.team6.service.WineImportService;
-import seng202.team6.util.ProcessCsv;
-import seng202.team6.util.WineValidator;
-import seng202.team6.util.exceptions.ValidationException;
+import seng202.team6.util.CsvRowReader;
 
 /**
  * Controller for wine import.
  */
 public class WineImportController extends Controller {
 
+  /**
+   * Number of rows shown for each column when choosing its property.
+   */
+  private static final int SAMPLE_ROW_COUNT = 5;
+
   private final Logger log = LogManager.getLogger(getClass());
   private final Map<Integer, WinePropertyName> selectedWineProperties = new HashMap<>();
   private final WineImportService importService;
   @FXML
   private TilePane dataColumnsContainer;
-  private List<String[]> currentFileRows;
+  private File currentFile;
 
   /**
    * Constructor.
@@ -84,11 +95,28 @@ public class WineImportController extends Controller {
       return;
     }
 
-    getManagerContext().getGuiManager().showLoadingIndicator(() -> {
-      currentFileRows = ProcessCsv.getCsvRows(selectedFile);
-      String[] columnNames = currentFileRows.removeFirst();
+    // only the header and the sample rows are read now, the rest is streamed when importing
+    getManagerContext().getGuiManager().runInBackground(() -> {
+      List<String[]> rows = new ArrayList<>();
+      try (CsvRowReader reader = new CsvRowReader(selectedFile.toPath())) {
+        while (rows.size() <= SAMPLE_ROW_COUNT && reader.hasNext()) {
+          rows.add(reader.next());
+        }
+      } catch (UncheckedIOException error) {
+        throw error.getCause();
+      }
+      return rows;
+    }, rows -> {
+      currentFile = selectedFile;
       selectedWineProperties.clear();
-      makeColumnRemapList(columnNames, currentFileRows);
+      String[] columnNames = rows.isEmpty() ? new String[0] : rows.getFirst();
+      makeColumnRemapList(columnNames, rows.isEmpty() ? rows : rows.subList(1, rows.size()));
+    }, error -> {
+      log.error("Failed to read CSV file: {}", selectedFile.getAbsolutePath(), error);
+      GeneralPopupController popup = getManagerContext().getGuiManager().showErrorPopup();
+      popup.setTitle("Invalid File");
+      popup.setMessage("The file could not be read as a CSV file");
+      popup.addOkButton();
     });
   }
 
@@ -101,7 +129,18 @@ public class WineImportController extends Controller {
     if (!validate()) {
       return;
     }
-    getManagerContext().getGuiManager().showLoadingIndicator(() -> parseWines(false));
+    importWines(WineImportMode.APPEND);
+  }
+
+  /**
+   * Called when the merge data button is clicked.
+   */
+  @FXML
+  void onMergeDataButtonClick() {
+    if (!validate()) {
+      return;
+    }
+    importWines(WineImportMode.MERGE);
   }
 
   /**
@@ -112,7 +151,7 @@ public class WineImportController extends Controller {
     if (!validate()) {
       return;
     }
-    getManagerContext().getGuiManager().showLoadingIndicator(() -> parseWines(true));
+    importWines(WineImportMode.REPLACE);
   }
 
   /**
@@ -121,55 +160,112 @@ public class WineImportController extends Controller {
   private void reset() {
     dataColumnsContainer.getChildren().clear();
     selectedWineProperties.clear();
-    currentFileRows = null;
+    currentFile = null;
   }
 
   /**
-   * Parse the list of currently selected wines.
+   * Imports the rows of the current file on a background thread, showing the progress of the
+   * import in a popup which can cancel it. Rows are streamed from the file as they are imported.
+   * Navigation is disabled until the import finishes, as the import holds the database connection
+   * for the whole time.
    *
-   * @param replace whether to replace
+   * @param mode how the imported wines are combined with the existing ones
    */
-  private void parseWines(boolean replace) {
-    List<Wine> parsedWines = new ArrayList<>();
-    Map<WinePropertyName, Integer> valid = importService.validHashMapCreate(
+  private void importWines(WineImportMode mode) {
+    GuiManager guiManager = getManagerContext().getGuiManager();
+    Map<WinePropertyName, Integer> columns = importService.validHashMapCreate(
         selectedWineProperties);
+    File file = currentFile;
+    WineImportPipeline pipeline = new WineImportPipeline(
+        getManagerContext().getDatabaseManager().getWineDao());
 
-    currentFileRows.forEach(row -> {
-      try {
-        parsedWines.add(WineValidator.parseWine(
-            importService.extractPropertyFromRowOrDefault(valid, row, WinePropertyName.TITLE),
-            importService.extractPropertyFromRowOrDefault(valid, row, WinePropertyName.VARIETY),
-            importService.extractPropertyFromRowOrDefault(valid, row, WinePropertyName.COUNTRY),
-            importService.extractPropertyFromRowOrDefault(valid, row, WinePropertyName.REGION),
-            importService.extractPropertyFromRowOrDefault(valid, row, WinePropertyName.WINERY),
-            importService.extractPropertyFromRowOrDefault(valid, row, WinePropertyName.COLOUR),
-            importService.extractPropertyFromRowOrDefault(valid, row, WinePropertyName.VINTAGE),
-            importService.extractPropertyFromRowOrDefault(valid, row,
-                WinePropertyName.DESCRIPTION),
-            importService.extractPropertyFromRowOrDefault(valid, row, WinePropertyName.SCORE),
-            importService.extractPropertyFromRowOrDefault(valid, row, WinePropertyName.ABV),
-            importService.extractPropertyFromRowOrDefault(valid, row, WinePropertyName.PRICE),
-            null
-        ));
-      } catch (ValidationException e) {
-        log.error("Could not parse a wine: {}", e.getMessage());
+    Task<WineImportResult> task = new Task<>() {
+      @Override
+      protected WineImportResult call() throws IOException, SQLException {
+        try (CsvRowReader reader = new CsvRowReader(file.toPath())) {
+          // skip the header row
+          if (reader.hasNext()) {
+            reader.next();
+          }
+          return pipeline.run(reader, columns, mode, -1, progress -> {
+            updateProgress(reader.getBytesRead(), reader.getSize());
+            updateMessage(formatProgress(progress));
+          });
+        }
       }
+    };
+
+    ProgressBar progressBar = new ProgressBar();
+    progressBar.setPrefWidth(400);
+    progressBar.progressProperty().bind(task.progressProperty());
+    Label statusLabel = new Label();
+    statusLabel.setFont(Font.font(14));
+    statusLabel.textProperty().bind(task.messageProperty());
+    VBox progressContent = new VBox(10, progressBar, statusLabel);
+    progressContent.setAlignment(Pos.CENTER);
+
+    GeneralPopupController popup = guiManager.showPopup();
+    popup.setTitle(switch (mode) {
+      case APPEND -> "Appending Wines";
+      case MERGE -> "Merging Wines";
+      case REPLACE -> "Replacing Wines";
     });
-    log.info("Successfully parsed {} out of {} wines", parsedWines.size(),
-        currentFileRows.size());
-    try {
+    popup.setCloseable(false);
+    popup.addContent(progressContent);
+    popup.addButton("Cancel Import", pipeline::cancel);
+    guiManager.disableNavigation(true);
 
-      if (replace) {
-        getManagerContext().getDatabaseManager().getWineDao().replaceAll(parsedWines);
+    task.setOnSucceeded(event -> {
+      finishImport(popup);
+      WineImportResult result = task.getValue();
+      GeneralPopupController resultPopup = guiManager.showPopup();
+      if (result.cancelled()) {
+        resultPopup.setTitle("Import Cancelled");
+        resultPopup.setMessage("The import was cancelled and no wines were changed.");
       } else {
-        getManagerContext().getDatabaseManager().getWineDao().addAll(parsedWines);
+        resultPopup.setTitle("Import Complete");
+        resultPopup.setMessage(String.format("Added %d, updated %d and removed %d wines in %.1f "
+                + "seconds. %d rows could not be read as wines and were skipped.",
+            result.winesAdded(), result.winesUpdated(), result.winesRemoved(),
+            result.elapsedMillis() / 1000.0, result.rowsInvalid()));
       }
-    } catch (SQLException exception) {
-      log.error("SQL error when replacing wines");
-    }
+      resultPopup.addOkButton();
+    });
+    task.setOnFailed(event -> {
+      finishImport(popup);
+      log.error("Failed to import wines", task.getException());
+      GeneralPopupController errorPopup = guiManager.showErrorPopup();
+      errorPopup.setTitle("Import Failed");
+      errorPopup.setMessage("The wines could not be imported, so no wines were changed.");
+      errorPopup.addOkButton();
+    });
+
+    getManagerContext().getDatabaseManager().getExecutor().execute(task);
+  }
+
+  /**
+   * Closes the progress popup of a finished import and resets the screen.
+   *
+   * @param progressPopup progress popup
+   */
+  private void finishImport(GeneralPopupController progressPopup) {
+    progressPopup.close();
+    getManagerContext().getGuiManager().disableNavigation(false);
     reset();
   }
 
+  /**
+   * Formats the progress of an import for display.
+   *
+   * @param progress import progress
+   * @return progress text
+   */
+  private static String formatProgress(WineImportProgress progress) {
+    return String.format("%d rows imported, %d skipped%n"
+            + "Reading %.0f rows/s, parsing %.0f rows/s, writing %.0f rows/s",
+        progress.rowsWritten(), progress.rowsInvalid(),
+        progress.readRate(), progress.parseRate(), progress.writeRate());
+  }
 
   /**
    * Checks if the importer contains the title property.
@@ -222,7 +318,7 @@ public class WineImportController extends Controller {
    * Makes the column remap list.
    *
    * @param columnNames column names
-   * @param rows        rows
+   * @param rows        sample rows to show values from
    */
   private void makeColumnRemapList(String[] columnNames, List<String[]> rows) {
     dataColumnsContainer.getChildren().clear();
@@ -234,8 +330,10 @@ public class WineImportController extends Controller {
       }
 
       ObservableList<String> sampleValues = FXCollections.observableArrayList();
-      for (int j = 0; j < 5 && j != rows.size(); j++) {
-        sampleValues.add(rows.get(j)[i]);
+      for (String[] row : rows) {
+        if (i < row.length) {
+          sampleValues.add(row[i]);
+        }
       }
 
       WinePropertyName possiblePropertyName = WinePropertyName.tryMatch(columnName);
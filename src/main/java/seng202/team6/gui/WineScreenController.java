@@ -1,11 +1,14 @@
 package seng202.team6.gui;
 
 import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 import javafx.application.Platform;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
+import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.TabPane;
 import javafx.scene.control.TableColumn;
@@ -25,14 +28,19 @@ import javafx.util.converter.IntegerStringConverter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import seng202.team6.dao.WineDao;
+import seng202.team6.enums.WineSortOrder;
 import seng202.team6.gui.controls.AutoCompletionTextField;
 import seng202.team6.gui.controls.CustomRangeSlider;
 import seng202.team6.gui.controls.WineCard;
 import seng202.team6.managers.ManagerContext;
 import seng202.team6.model.Wine;
+import seng202.team6.model.WineCursor;
 import seng202.team6.model.WineFilters;
+import seng202.team6.model.WinePage;
+import seng202.team6.model.WinePageRequest;
 import seng202.team6.service.PageService;
 import seng202.team6.service.WineDataStatService;
+import seng202.team6.service.WinePagePrefetcher;
 import seng202.team6.util.NoDecimalCurrencyStringConverter;
 import seng202.team6.util.YearStringConverter;
 
@@ -45,9 +53,14 @@ public class WineScreenController extends Controller {
   // Utilities and services
   private final Logger log = LogManager.getLogger(WineScreenController.class);
   private final PageService pageService;
+  // Cursors to continue from, keyed by the page they start
+  private final Map<Integer, WineCursor> pageCursors = new HashMap<>();
+  // Loads the pages either side of the current one in the background
+  private final WinePagePrefetcher pagePrefetcher;
   @FXML
   public TabPane tabPane;
   private WineFilters currentFilters;
+  private WineSortOrder currentSortOrder = WineSortOrder.DEFAULT;
   // FXML elements
   @FXML
   private Button prevPageButtonSimpleView;
@@ -79,6 +92,8 @@ public class WineScreenController extends Controller {
   @FXML
   private TextField titleTextField;
   @FXML
+  private ComboBox<WineSortOrder> sortOrderComboBox;
+  @FXML
   private TilePane winesViewContainer;
   @FXML
   private Button nextPageButtonRawViewer;
@@ -98,6 +113,8 @@ public class WineScreenController extends Controller {
   public WineScreenController(ManagerContext managerContext) {
     super(managerContext);
     this.pageService = new PageService(100);
+    this.pagePrefetcher = new WinePagePrefetcher(managerContext.getDatabaseManager().getWineDao(),
+        managerContext.getDatabaseManager().getExecutor());
   }
 
   /**
@@ -110,6 +127,8 @@ public class WineScreenController extends Controller {
     super(managerContext);
     this.currentFilters = filters;
     this.pageService = pageService;
+    this.pagePrefetcher = new WinePagePrefetcher(managerContext.getDatabaseManager().getWineDao(),
+        managerContext.getDatabaseManager().getExecutor());
   }
 
   /**
@@ -128,6 +147,7 @@ public class WineScreenController extends Controller {
     // Setup Sliders and filters
     sliderInit();
     setFilterValues();
+    sortOrderInit();
 
     // ensure tabbing doesn't select sliders
     colorTextField.setOnKeyPressed(event -> {
@@ -159,6 +179,12 @@ public class WineScreenController extends Controller {
 
   /**
    * Opens a page of wines from the database according to filters.
+   * <p>
+   * Pages reached by stepping through the results continue from the cursor of the page before, so
+   * they cost the same however deep they are. Jumping straight to a page falls back to an offset.
+   * Pages are loaded in the background and the pages either side are then prefetched, so the
+   * loading indicator is only shown for pages which were not.
+   * </p>
    *
    * @param filters list of filters
    */
@@ -167,29 +193,68 @@ public class WineScreenController extends Controller {
     tableView.getItems().clear();
     winesViewContainer.getChildren().clear();
 
-    // Calculate range of data to get
-    int begin = this.pageService.getMinRange();
-    int end = this.pageService.getMaxRange();
-
-    getManagerContext().getGuiManager().showLoadingIndicator(() -> {
-      ObservableList<Wine> wines = null;
+    int pageNumber = this.pageService.getPageNumber();
+    WinePageRequest request = pageRequest(pageNumber, filters);
+    if (pagePrefetcher.isReady(request)) {
       try {
-        wines = getManagerContext().getDatabaseManager().getWineDao()
-                .getAllInRange(begin, end, filters);
+        showWinePage(request, pageNumber, pagePrefetcher.get(request));
       } catch (SQLException e) {
         throw new RuntimeException(e);
       }
-      ObservableList<Wine> finalWines = wines;
-      mapController.runOrQueueWhenReady(() -> {
-        mapController.clearWineMarkers();
-        mapController.clearHeatmap();
-        finalWines.stream()
-                .filter(wine -> wine.getGeoLocation() != null)
-                .forEach(mapController::addWineMarker);
-      });
-      wines.forEach(this::createWineCard);
-      tableView.setItems(wines);
+    } else {
+      getManagerContext().getGuiManager().runInBackground(() -> pagePrefetcher.get(request),
+          page -> showWinePage(request, pageNumber, page));
+    }
+  }
+
+  /**
+   * Creates the request for a page of wines in the current sort order.
+   *
+   * @param pageNumber page number
+   * @param filters    list of filters
+   * @return page request, continuing from the page's cursor if it is known
+   */
+  private WinePageRequest pageRequest(int pageNumber, WineFilters filters) {
+    int pageSize = this.pageService.getPageSize();
+    return new WinePageRequest(filters, currentSortOrder, pageCursors.get(pageNumber),
+        (pageNumber - 1) * pageSize, pageSize);
+  }
+
+  /**
+   * Displays a page of wines, then prefetches the pages either side of it.
+   *
+   * @param request    page request
+   * @param pageNumber page number
+   * @param page       page of wines
+   */
+  private void showWinePage(WinePageRequest request, int pageNumber, WinePage page) {
+    // Skip the page if another page or search was opened while it was loading
+    if (pageNumber != pageService.getPageNumber() || request.order() != currentSortOrder
+        || request.filters() != currentFilters) {
+      return;
+    }
+    if (page.hasNext()) {
+      pageCursors.put(pageNumber + 1, page.next());
+    }
+    // The total comes from the count cache, so this only changes after the wines are edited
+    pageService.setTotalItems(page.total());
+    ObservableList<Wine> wines = page.wines();
+    mapController.runOrQueueWhenReady(() -> {
+      mapController.clearWineMarkers();
+      mapController.clearHeatmap();
+      wines.stream()
+              .filter(wine -> wine.getGeoLocation() != null)
+              .forEach(mapController::addWineMarker);
     });
+    wines.forEach(this::createWineCard);
+    tableView.setItems(wines);
+
+    if (page.hasNext()) {
+      pagePrefetcher.prefetch(pageRequest(pageNumber + 1, request.filters()));
+    }
+    if (pageNumber > 1) {
+      pagePrefetcher.prefetch(pageRequest(pageNumber - 1, request.filters()));
+    }
   }
 
   /**
@@ -294,31 +359,34 @@ public class WineScreenController extends Controller {
    * Is called when the "apply" button is pressed<br> Updates table with filtered data.
    */
   public void onApplyFiltersButtonPressed() {
+    // Sliders left at their full extent are unset so the search can skip them
     currentFilters = new WineFilters(
         titleTextField.getText(),
         countryTextField.getText(),
         wineryTextField.getText(),
         colorTextField.getText(),
-        (int) vintageSlider.getLowValue(),
-        (int) vintageSlider.getHighValue(),
-        scoreSlider.getLowValue(),
-        scoreSlider.getHighValue(),
-        abvSlider.getLowValue(),
-        abvSlider.getHighValue(),
-        priceSlider.getLowValue(),
-        priceSlider.getHighValue()
+        (int) getLowFilterValue(vintageSlider),
+        getHighFilterValue(vintageSlider) == Double.MAX_VALUE ? Integer.MAX_VALUE
+            : (int) vintageSlider.getHighValue(),
+        getLowFilterValue(scoreSlider),
+        getHighFilterValue(scoreSlider),
+        getLowFilterValue(abvSlider),
+        getHighFilterValue(abvSlider),
+        getLowFilterValue(priceSlider),
+        getHighFilterValue(priceSlider)
     );
+    pageCursors.clear();
+    pagePrefetcher.clear();
 
-    // update max pages
-    try {
-      this.pageService.setTotalItems(
-          getManagerContext().getDatabaseManager().getWineDao().getCount(currentFilters));
-    } catch (SQLException e) {
-      throw new RuntimeException(e);
-    }
-
-    // Update table with filtered wines
-    openWineRange(currentFilters);
+    // update max pages, this count is cached so the page search below reuses it
+    WineFilters filters = currentFilters;
+    WineDao wineDao = getManagerContext().getDatabaseManager().getWineDao();
+    getManagerContext().getGuiManager().runInBackground(() -> wineDao.getCount(filters),
+        count -> {
+          this.pageService.setTotalItems(count);
+          // Update table with filtered wines
+          openWineRange(currentFilters);
+        });
   }
 
   /**
@@ -334,16 +402,15 @@ public class WineScreenController extends Controller {
 
     // Reset current filters
     this.currentFilters = null;
+    pageCursors.clear();
+    pagePrefetcher.clear();
 
-    // Update pages
-    try {
-      pageService.setTotalItems(getManagerContext().getDatabaseManager().getWineDao().getCount());
-    } catch (SQLException e) {
-      throw new RuntimeException(e);
-    }
-
-    // Update wines
-    openWineRange(null);
+    // Update pages, then wines
+    WineDao wineDao = getManagerContext().getDatabaseManager().getWineDao();
+    getManagerContext().getGuiManager().runInBackground(wineDao::getCount, count -> {
+      pageService.setTotalItems(count);
+      openWineRange(currentFilters);
+    });
   }
 
   /**
@@ -447,16 +514,16 @@ public class WineScreenController extends Controller {
 
     // Set slider values (if not disabled)
     if (!vintageSlider.isDisabled()) {
-      vintageSlider.setLowHigh(currentFilters.getMinVintage(), currentFilters.getMaxVintage());
+      restoreSlider(vintageSlider, currentFilters.getMinVintage(), currentFilters.getMaxVintage());
     }
     if (!scoreSlider.isDisabled()) {
-      scoreSlider.setLowHigh(currentFilters.getMinScore(), currentFilters.getMaxScore());
+      restoreSlider(scoreSlider, currentFilters.getMinScore(), currentFilters.getMaxScore());
     }
     if (!abvSlider.isDisabled()) {
-      abvSlider.setLowHigh(currentFilters.getMinAbv(), currentFilters.getMaxAbv());
+      restoreSlider(abvSlider, currentFilters.getMinAbv(), currentFilters.getMaxAbv());
     }
     if (!priceSlider.isDisabled()) {
-      priceSlider.setLowHigh(currentFilters.getMinPrice(), currentFilters.getMaxPrice());
+      restoreSlider(priceSlider, currentFilters.getMinPrice(), currentFilters.getMaxPrice());
     }
 
     // Hide all context menus → fixes a bug caused by setting the text
@@ -482,6 +549,37 @@ public class WineScreenController extends Controller {
     textField.getEntries().addAll(entries); // Add new data for auto-complete
   }
 
+  /**
+   * Gets the low value of a slider as a filter value.
+   *
+   * @param slider slider
+   * @return low value, or 0 if the thumb is at the slider minimum
+   */
+  private double getLowFilterValue(CustomRangeSlider slider) {
+    return slider.getLowValue() <= slider.getMin() ? 0 : slider.getLowValue();
+  }
+
+  /**
+   * Gets the high value of a slider as a filter value.
+   *
+   * @param slider slider
+   * @return high value, or Double.MAX_VALUE if the thumb is at the slider maximum
+   */
+  private double getHighFilterValue(CustomRangeSlider slider) {
+    return slider.getHighValue() >= slider.getMax() ? Double.MAX_VALUE : slider.getHighValue();
+  }
+
+  /**
+   * Sets slider thumbs from saved filter values, unset bounds are clamped to the slider range.
+   *
+   * @param slider slider
+   * @param low    saved low value
+   * @param high   saved high value
+   */
+  private void restoreSlider(CustomRangeSlider slider, double low, double high) {
+    slider.setLowHigh(Math.max(low, slider.getMin()), Math.min(high, slider.getMax()));
+  }
+
   /**
    * Resets all sliders back to their minimums and maxes.
    */
@@ -520,6 +618,24 @@ public class WineScreenController extends Controller {
     filtersPane.getChildren().addAll(vintageSlider, scoreSlider, abvSlider, priceSlider);
   }
 
+  /**
+   * Initialises the sort order box, changing the order returns to the first page.
+   */
+  private void sortOrderInit() {
+    sortOrderComboBox.setItems(WineSortOrder.VALUES);
+    sortOrderComboBox.getSelectionModel().select(currentSortOrder);
+    sortOrderComboBox.valueProperty().addListener((observableValue, oldValue, newValue) -> {
+      currentSortOrder = newValue;
+      pageCursors.clear();
+    pagePrefetcher.clear();
+      if (pageService.getPageNumber() == 1) {
+        openWineRange(currentFilters);
+      } else {
+        pageService.setPageNumber(1);
+      }
+    });
+  }
+
   /**
    * Sets up page navigation buttons.
    */
@@ -565,12 +681,14 @@ public class WineScreenController extends Controller {
           this.pageNumberTextFieldRawViewer.setText(newValue + "");
         });
 
-    // Set up max pages
-    try {
-      pageService.setTotalItems(getManagerContext().getDatabaseManager().getWineDao().getCount());
-    } catch (SQLException e) {
-      throw new RuntimeException(e);
-    }
+    // Set up max pages, the labels are updated by the listener below once counted. A saved
+    // state counts its filtered wines instead
+    WineDao wineDao = getManagerContext().getDatabaseManager().getWineDao();
+    getManagerContext().getGuiManager().runInBackground(wineDao::getCount, count -> {
+      if (currentFilters == null) {
+        pageService.setTotalItems(count);
+      }
+    });
     maxPageNumberRawViewer.setText("/" + pageService.getMaxPages()); // Set initial value
     maxPageNumberSimpleView.setText("/" + pageService.getMaxPages());
     pageService.maxPagesProperty().addListener((observableValue, oldValue, newValue) -> {
@@ -1,11 +1,13 @@
 package seng202.team6.gui.popup;
 
 import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import javafx.beans.property.SimpleStringProperty;
-import javafx.collections.ListChangeListener;
 import javafx.fxml.FXML;
 import javafx.scene.control.ScrollPane;
 import org.apache.logging.log4j.LogManager;
+import seng202.team6.dao.WineListDao;
 import seng202.team6.gui.Controller;
 import seng202.team6.gui.controls.container.AddRemoveCardsContainer;
 import seng202.team6.managers.ManagerContext;
@@ -35,7 +37,6 @@ public class AddToListPopupController extends Controller {
     this.wine = wine;
     this.wineListService = new WineListService(getManagerContext().getAuthenticationManager(),
         context.getDatabaseManager());
-    bindToWineListService();
   }
 
   @Override
@@ -45,11 +46,9 @@ public class AddToListPopupController extends Controller {
         wineListsContainer.widthProperty());
     wineListsContainer.setContent(addRemoveCardsContainer);
 
-    try {
-      wineListService.init();
-    } catch (SQLException error) {
-      LogManager.getLogger(getClass()).error("Failed to initialise the wine list service", error);
-    }
+    getManagerContext().getGuiManager().runInBackground(this::loadWineLists, this::showWineLists,
+        error -> LogManager.getLogger(getClass())
+            .error("Failed to initialise the wine list service", error));
   }
 
   @FXML
@@ -57,38 +56,40 @@ public class AddToListPopupController extends Controller {
     getManagerContext().getGuiManager().closePopup();
   }
 
-  private void bindToWineListService() {
-    wineListService.getWineLists().addListener((ListChangeListener<WineList>) change -> {
-      while (change.next()) {
-        if (change.wasAdded()) {
-          change.getAddedSubList().forEach(wineList -> {
-            try {
-
-              addRemoveCardsContainer.add(wineList, new SimpleStringProperty(wineList.name()),
-                  !wineListService.isWineInList(wineList, wine),
-                  () -> {
-                    try {
-                      getManagerContext().getDatabaseManager().getWineListDao()
-                          .addWine(wineList, wine);
-                    } catch (SQLException e) {
-                      throw new RuntimeException(e);
-                    }
-                  },
-                  () -> {
-                    try {
-                      getManagerContext().getDatabaseManager().getWineListDao()
-                          .removeWine(wineList, wine);
-                    } catch (SQLException e) {
-                      throw new RuntimeException(e);
-                    }
-                  });
-            } catch (SQLException e) {
-              throw new RuntimeException(e);
-            }
+  /**
+   * Loads the user's wine lists and whether the wine is in each of them. Run in the background.
+   *
+   * @return whether the wine is in each list, in the order of the lists
+   * @throws SQLException if the lists could not be loaded
+   */
+  private Map<WineList, Boolean> loadWineLists() throws SQLException {
+    wineListService.init();
+    Map<WineList, Boolean> wineInList = new LinkedHashMap<>();
+    for (WineList wineList : wineListService.getWineLists()) {
+      wineInList.put(wineList, wineListService.isWineInList(wineList, wine));
+    }
+    return wineInList;
+  }
 
-          });
-        }
-      }
-    });
+  /**
+   * Adds a card for each wine list.
+   *
+   * @param wineInList whether the wine is in each list
+   */
+  private void showWineLists(Map<WineList, Boolean> wineInList) {
+    WineListDao wineListDao = getManagerContext().getDatabaseManager().getWineListDao();
+    wineInList.forEach((wineList, inList) ->
+        addRemoveCardsContainer.add(wineList, new SimpleStringProperty(wineList.name()),
+            !inList,
+            () -> getManagerContext().getGuiManager().runInBackground(() -> {
+              wineListDao.addWine(wineList, wine);
+              return null;
+            }, added -> {
+            }),
+            () -> getManagerContext().getGuiManager().runInBackground(() -> {
+              wineListDao.removeWine(wineList, wine);
+              return null;
+            }, removed -> {
+            })));
   }
 }
@@ -1,8 +1,10 @@
 package seng202.team6.gui.popup;
 
-import javafx.collections.ListChangeListener;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import javafx.fxml.FXML;
 import javafx.scene.control.ScrollPane;
+import seng202.team6.dao.VineyardTourDao;
 import seng202.team6.gui.Controller;
 import seng202.team6.gui.controls.container.AddRemoveCardsContainer;
 import seng202.team6.managers.ManagerContext;
@@ -31,7 +33,6 @@ public class AddToTourPopupController extends Controller {
     vineyardToursService = new VineyardToursService(context.getAuthenticationManager(),
         context.getDatabaseManager());
     this.vineyard = vineyard;
-    bindToVineyardToursService();
   }
 
   /**
@@ -43,7 +44,8 @@ public class AddToTourPopupController extends Controller {
         vineyardToursContainer.viewportBoundsProperty(),
         vineyardToursContainer.widthProperty());
     vineyardToursContainer.setContent(addRemoveCardsContainer);
-    vineyardToursService.init();
+    getManagerContext().getGuiManager().runInBackground(this::loadVineyardTours,
+        this::showVineyardTours);
   }
 
   /**
@@ -55,23 +57,40 @@ public class AddToTourPopupController extends Controller {
   }
 
   /**
-   * Binds the vineyards tours service to the UI.
+   * Loads the user's vineyard tours and whether the vineyard is in each of them. Run in the
+   * background.
+   *
+   * @return whether the vineyard is in each tour, in the order of the tours
+   */
+  private Map<VineyardTour, Boolean> loadVineyardTours() {
+    vineyardToursService.init();
+    Map<VineyardTour, Boolean> vineyardInTour = new LinkedHashMap<>();
+    for (VineyardTour vineyardTour : vineyardToursService.getVineyardTours()) {
+      vineyardInTour.put(vineyardTour,
+          vineyardToursService.isVineyardInTour(vineyardTour, vineyard));
+    }
+    return vineyardInTour;
+  }
+
+  /**
+   * Adds a card for each vineyard tour.
+   *
+   * @param vineyardInTour whether the vineyard is in each tour
    */
-  private void bindToVineyardToursService() {
-    vineyardToursService.getVineyardTours()
-        .addListener((ListChangeListener<VineyardTour>) change -> {
-          while (change.next()) {
-            if (change.wasAdded()) {
-              change.getAddedSubList().forEach(vineyardTour -> {
-                addRemoveCardsContainer.add(vineyardTour, vineyardTour.nameProperty(),
-                    !vineyardToursService.isVineyardInTour(vineyardTour, vineyard),
-                    () -> getManagerContext().getDatabaseManager().getVineyardTourDao()
-                        .addVineyard(vineyardTour, vineyard),
-                    () -> getManagerContext().getDatabaseManager().getVineyardTourDao()
-                        .removeVineyard(vineyardTour, vineyard));
-              });
-            }
-          }
-        });
+  private void showVineyardTours(Map<VineyardTour, Boolean> vineyardInTour) {
+    VineyardTourDao vineyardTourDao = getManagerContext().getDatabaseManager()
+        .getVineyardTourDao();
+    vineyardInTour.forEach((vineyardTour, inTour) ->
+        addRemoveCardsContainer.add(vineyardTour, vineyardTour.nameProperty(), !inTour,
+            () -> getManagerContext().getGuiManager().runInBackground(() -> {
+              vineyardTourDao.addVineyard(vineyardTour, vineyard);
+              return null;
+            }, added -> {
+            }),
+            () -> getManagerContext().getGuiManager().runInBackground(() -> {
+              vineyardTourDao.removeVineyard(vineyardTour, vineyard);
+              return null;
+            }, removed -> {
+            })));
   }
 }
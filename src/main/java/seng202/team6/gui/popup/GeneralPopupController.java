@@ -167,6 +167,17 @@ public class GeneralPopupController extends Controller {
     addButton("Cancel", this::close);
   }
 
+  /**
+   * Shows or hides the close button at the top right of the popup. Popups without it can only be
+   * closed by their own buttons or by the code which opened them.
+   *
+   * @param closeable whether the close button is shown
+   */
+  public void setCloseable(boolean closeable) {
+    closeButton.setVisible(closeable);
+    closeButton.setDisable(!closeable);
+  }
+
   /**
    * Closes the error popup when the close button is clicked.
    */
@@ -2,7 +2,6 @@ package seng202.team6.gui.popup;
 
 import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
-import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.Label;
 import javafx.scene.control.TableColumn;
@@ -81,20 +80,22 @@ public class UserSearchPopupController extends Controller {
     userTableView.getItems().clear();
 
     String searchName = searchTextField.getText();
-    ObservableList<User> results = getManagerContext().getDatabaseManager().getUserDao()
-        .getAllFromSearch(searchName);
 
     userTableColumn.setCellValueFactory(cellData ->
         new SimpleStringProperty(cellData.getValue().getUsername())
     );
 
-    if (results != null && !results.isEmpty()) {
-      userTableView.setItems(results);
-    } else {
-      Label placeholderLabel = new Label("No results found");
-      placeholderLabel.setStyle("-fx-font-weight: bold;");
-      userTableView.setPlaceholder(placeholderLabel);
-    }
+    getManagerContext().getGuiManager().runInBackground(
+        () -> getManagerContext().getDatabaseManager().getUserDao().getAllFromSearch(searchName),
+        results -> {
+          if (results != null && !results.isEmpty()) {
+            userTableView.setItems(results);
+          } else {
+            Label placeholderLabel = new Label("No results found");
+            placeholderLabel.setStyle("-fx-font-weight: bold;");
+            userTableView.setPlaceholder(placeholderLabel);
+          }
+        });
 
 
   }
@@ -1,6 +1,5 @@
 package seng202.team6.gui.popup;
 
-import java.sql.SQLException;
 import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
@@ -62,17 +61,15 @@ public class UserViewPopupController extends Controller {
     reviewsBox.setPrefWrapLength(600);
     reviewsBox.setAlignment(Pos.CENTER_LEFT);
 
-    try {
-      socialService.init();
-    } catch (SQLException e) {
-      throw new RuntimeException(e);
-    }
-
-    if (socialService.getUserReviews().isEmpty()) {
-      noReviewsLabel.setVisible(true);
-      noReviewsLabel.setText("This user has no reviews!");
-      reviewsScrollPane.setVisible(false);
-    }
+    getManagerContext().getGuiManager().runInBackground(socialService::loadReviewsAndWines,
+        reviewsAndWines -> {
+          socialService.setReviewsAndWines(reviewsAndWines);
+          if (socialService.getUserReviews().isEmpty()) {
+            noReviewsLabel.setVisible(true);
+            noReviewsLabel.setText("This user has no reviews!");
+            reviewsScrollPane.setVisible(false);
+          }
+        });
   }
 
   /**
@@ -119,12 +116,7 @@ public class UserViewPopupController extends Controller {
         + "-fx-border-color: black; "
         + "-fx-border-insets: 10;");
 
-    Wine wine;
-    try {
-      wine = getManagerContext().getDatabaseManager().getWineDao().get(wineReview.getWineId());
-    } catch (SQLException e) {
-      throw new RuntimeException(e);
-    }
+    Wine wine = socialService.getReviewedWine(wineReview);
     if (wine != null) {
       Label titleLabel = new Label(wine.getTitle());
       titleLabel.textProperty().bind(wine.titleProperty());
@@ -156,10 +148,12 @@ public class UserViewPopupController extends Controller {
 
   private void openReviewView(WineReview review, Wine wine) {
     getManagerContext().getGuiManager().closePopup();
-    User user = getManagerContext().getDatabaseManager().getUserDao().get(review.getUsername());
-    getManagerContext().getGuiManager().openPopupReviewView(
-        new WineReviewsService(getManagerContext().getAuthenticationManager(),
-            getManagerContext().getDatabaseManager(), wine), user, review, wine);
+    String username = review.getUsername();
+    getManagerContext().getGuiManager().runInBackground(
+        () -> getManagerContext().getDatabaseManager().getUserDao().get(username),
+        reviewer -> getManagerContext().getGuiManager().openPopupReviewView(
+            new WineReviewsService(getManagerContext().getAuthenticationManager(),
+                getManagerContext().getDatabaseManager(), wine), reviewer, review, wine));
   }
 
 }
@@ -66,6 +66,9 @@ public class FxWrapper {
 
         // load the database manager and handle window close event
         DatabaseManager databaseManager = new DatabaseManager("database", "database.db");
+        // wine edits are written behind in the background, off the javafx thread
+        databaseManager.getWineDao().getUpdateQueue()
+            .setFlushExecutor(databaseManager.getExecutor());
         stage.addEventHandler(WindowEvent.WINDOW_CLOSE_REQUEST,
             event -> databaseManager.teardown());
         GuiManager guiManager = new GuiManager(fxWrapper);
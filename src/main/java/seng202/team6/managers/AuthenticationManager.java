@@ -204,6 +204,7 @@ public class AuthenticationManager {
    * Processes a user logout request.
    */
   public void logout() {
+    databaseManager.getWineListDao().invalidateMembership();
     setAuthenticatedUser(null);
     setAdmin(false);
     setAdminFirstLogin(false);
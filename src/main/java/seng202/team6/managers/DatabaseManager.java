@@ -15,11 +15,13 @@ import java.util.List;
 import java.util.Objects;
 import java.util.Properties;
 import java.util.stream.Stream;
+import javafx.application.Platform;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import seng202.team6.dao.AggregatedDao;
 import seng202.team6.dao.Dao;
 import seng202.team6.dao.GeoLocationDao;
+import seng202.team6.dao.MigrationRunner;
 import seng202.team6.dao.UserDao;
 import seng202.team6.dao.VineyardDao;
 import seng202.team6.dao.VineyardTourDao;
@@ -27,9 +29,13 @@ import seng202.team6.dao.WineDao;
 import seng202.team6.dao.WineListDao;
 import seng202.team6.dao.WineNotesDao;
 import seng202.team6.dao.WineReviewDao;
+import seng202.team6.model.MigrationProgress;
 import seng202.team6.service.VineyardDataStatService;
 import seng202.team6.service.VineyardDefaultsService;
 import seng202.team6.service.WineDataStatService;
+import seng202.team6.util.ConnectionPool;
+import seng202.team6.util.ConnectionProfile;
+import seng202.team6.util.DatabaseExecutor;
 import seng202.team6.util.PasswordUtil;
 
 /**
@@ -41,6 +47,8 @@ public class DatabaseManager {
 
   private static final Logger log = LogManager.getLogger(DatabaseManager.class);
   private final Connection connection;
+  private final ConnectionPool connectionPool;
+  private final DatabaseExecutor executor = new DatabaseExecutor();
   private final UserDao userDao;
   private final WineDao wineDao;
   private final WineListDao wineListDao;
@@ -50,14 +58,16 @@ public class DatabaseManager {
   private final GeoLocationDao geoLocationDao;
   private final VineyardTourDao vineyardTourDao;
   private final AggregatedDao aggregatedDao;
+  private final MigrationRunner migrationRunner;
   private final WineDataStatService wineDataStatService;
   private final VineyardDataStatService vineyardDataStatService;
+  private Thread geocodingThread;
 
   /**
    * Constructs a NewDatabaseManager with an in-memory SQLite database connection.
    */
   public DatabaseManager() throws SQLException {
-    this(setupInMemoryConnection(), true, false);
+    this(setupInMemoryConnection(), null, false);
   }
 
   /**
@@ -67,24 +77,41 @@ public class DatabaseManager {
    * @param fileName      the name of the database file
    */
   public DatabaseManager(String directoryName, String fileName) throws SQLException {
-    this(setupPersistentConnection(directoryName, fileName), false, true);
+    this(directoryName, fileName, ConnectionProfile.load());
+  }
+
+  /**
+   * Constructs a NewDatabaseManager with a persistent SQLite database connection configured by the
+   * given profile.
+   *
+   * @param directoryName the directory to store the database file
+   * @param fileName      the name of the database file
+   * @param profile       the pragmas to apply to the connection
+   */
+  public DatabaseManager(String directoryName, String fileName, ConnectionProfile profile)
+      throws SQLException {
+    this(setupPersistentConnection(directoryName, fileName, profile), profile, true);
   }
 
   /**
    * Private constructor for NewDatabaseManager that initializes Daos using the provided database
-   * connection.
+   * connection. Persistent databases also get a pool of read-only connections for queries.
    *
    * @param connection the database connection to use
+   * @param profile    the pragmas applied to the connection, or null if it is in memory
    */
-  private DatabaseManager(Connection connection, boolean inMemory, boolean loadDefaultVineyards)
-      throws SQLException {
+  private DatabaseManager(Connection connection, ConnectionProfile profile,
+      boolean loadDefaultVineyards) throws SQLException {
     if (connection == null) {
       throw new InvalidParameterException("The provided connection was invalid");
     }
     this.connection = connection;
-    log.info("Successfully opened a connection to the database");
+    log.info("Successfully opened a connection to the database with {}",
+        ConnectionProfile.describe(connection));
     this.wineDataStatService = new WineDataStatService();
     this.vineyardDataStatService = new VineyardDataStatService();
+    // Every DAO queues for the same writer and shares its statement cache from the start
+    this.connectionPool = new ConnectionPool(connection);
     this.userDao = new UserDao(connection);
     this.wineDao = new WineDao(connection, wineDataStatService);
     this.wineListDao = new WineListDao(connection);
@@ -94,15 +121,62 @@ public class DatabaseManager {
     this.geoLocationDao = new GeoLocationDao(connection);
     this.vineyardTourDao = new VineyardTourDao(connection);
     this.aggregatedDao = new AggregatedDao(connection, wineReviewDao, wineNotesDao, wineDao);
+    Stream.of(userDao, wineDao, wineListDao, wineNotesDao, wineReviewDao, geoLocationDao,
+            vineyardsDao, vineyardTourDao, aggregatedDao)
+        .forEach(dao -> dao.setConnectionPool(connectionPool));
+    wineDao.setWinesRemovedListener(wineListDao::invalidateMembership);
+    this.migrationRunner = new MigrationRunner(connection, Stream.of(userDao, wineDao,
+            wineListDao, wineNotesDao, wineReviewDao, geoLocationDao, vineyardsDao, vineyardTourDao)
+        .flatMap(dao -> dao.getMigrations().stream())
+        .toList());
     init();
 
+    // Readers are opened once the schema exists
+    if (profile != null) {
+      connectionPool.openReaders(connection.getMetaData().getURL(),
+          ConnectionPool.DEFAULT_READER_COUNT, profile);
+    }
+
     VineyardDefaultsService vineyardDefaultsService = new VineyardDefaultsService(geoLocationDao,
-        vineyardsDao, !inMemory);
+        vineyardsDao, profile != null);
     if (loadDefaultVineyards) {
       vineyardDefaultsService.init();
+      // geocoding is rate limited and can take minutes, so addresses are resolved on a thread of
+      // their own which teardown interrupts rather than waits for
+      geocodingThread = Thread.ofVirtual().name("geocoding")
+          .start(vineyardDefaultsService::resolveMissingAddresses);
     }
 
-    wineDao.updateUniques();
+    wineDao.loadStats();
+    if (profile != null) {
+      executor.execute(this::finishMigrations);
+    }
+  }
+
+  /**
+   * Runs the backfills of migrations applied when the database was opened, then repairs any wine
+   * whose review count or rating sum no longer matches its reviews, which can only happen if the
+   * database was edited outside the app.
+   */
+  private void finishMigrations() {
+    try {
+      migrationRunner.runBackfills(connectionPool, MigrationRunner.DEFAULT_BATCH_SIZE,
+          this::logMigrationProgress);
+      // Wines may already be shown, so their ratings are updated on the FX thread
+      wineDao.repairReviewAggregates(Platform::runLater);
+    } catch (SQLException error) {
+      log.error("Failed to finish migrating the database", error);
+    }
+  }
+
+  /**
+   * Logs the progress of a migration backfill.
+   *
+   * @param progress progress after a batch
+   */
+  private void logMigrationProgress(MigrationProgress progress) {
+    log.debug("Backfilled migration {} ({}) to id {} of {} in {}ms", progress.version(),
+        progress.description(), progress.lastId(), progress.maxId(), progress.elapsedMillis());
   }
 
   /**
@@ -132,12 +206,13 @@ public class DatabaseManager {
    *
    * @param directoryName the directory to store the database file
    * @param fileName      the name of the database file
+   * @param profile       the pragmas to apply to the connection
    * @return a Connection object to the SQLite database
    * @throws SQLException     if a database access error occurs
    * @throws RuntimeException if the directory cannot be created
    */
-  private static Connection setupPersistentConnection(String directoryName, String fileName)
-      throws SQLException {
+  private static Connection setupPersistentConnection(String directoryName, String fileName,
+      ConnectionProfile profile) throws SQLException {
     Path directory = Path.of(directoryName);
     if (Files.notExists(directory)) {
       try {
@@ -147,12 +222,21 @@ public class DatabaseManager {
         throw new RuntimeException(error);
       }
     }
-    return setupConnection("jdbc:sqlite:" + directoryName + File.separator + fileName);
+    Connection connection = setupConnection(
+        "jdbc:sqlite:" + directoryName + File.separator + fileName);
+    try {
+      profile.apply(connection);
+    } catch (SQLException error) {
+      connection.close();
+      throw error;
+    }
+    return connection;
   }
 
   /**
    * Initializes the database by executing SQL statements required to set up the tables. The SQL
-   * statements are fetched from each Dao.
+   * statements are fetched from each Dao. Databases created by an earlier version of the app are
+   * migrated first, and new databases are marked as having the latest schema.
    *
    * @throws RuntimeException if any SQL execution fails
    */
@@ -182,12 +266,20 @@ public class DatabaseManager {
     );
 
     try (Statement statement = connection.createStatement()) {
+      // Existing databases are migrated before the latest schema is created around them
+      boolean newDatabase = !MigrationRunner.tableExists(connection, "WINE");
+      if (!newDatabase) {
+        migrationRunner.migrate();
+      }
       for (String sql : sqlStatements) {
         statement.execute(sql);
       }
       for (String sql : triggersAndDefaultStatements) {
         statement.execute(sql);
       }
+      if (newDatabase) {
+        migrationRunner.markCurrent();
+      }
     } catch (SQLException e) {
       log.error("Failed to initialise a Data Access Object", e);
       throw new RuntimeException(e);
@@ -197,10 +289,24 @@ public class DatabaseManager {
   }
 
   /**
-   * Tears down the database by closing the connection. Logs an error if the connection fails to
-   * close.
+   * Tears down the database by stopping geocoding, waiting for background tasks, writing queued
+   * wine updates, saving the wine stats and closing the connection. Logs an error if any of these
+   * fail.
    */
   public void teardown() {
+    stopGeocoding();
+    executor.close();
+    try {
+      wineDao.getUpdateQueue().close();
+    } catch (SQLException error) {
+      log.error("Failed to write queued wine updates", error);
+    }
+    try {
+      wineDao.saveStats();
+    } catch (SQLException error) {
+      log.error("Failed to save the wine stats", error);
+    }
+    connectionPool.close();
     try {
       connection.close();
       log.info("Successfully closed the database connection");
@@ -209,6 +315,23 @@ public class DatabaseManager {
     }
   }
 
+  /**
+   * Interrupts the resolving of vineyard addresses and waits for it to stop. Requests waiting for
+   * the rate limit are dropped, and addresses not yet stored are resolved next time.
+   */
+  private void stopGeocoding() {
+    if (geocodingThread == null) {
+      return;
+    }
+    geocodingThread.interrupt();
+    try {
+      geocodingThread.join();
+    } catch (InterruptedException error) {
+      log.warn("Interrupted while waiting for geocoding to stop");
+      Thread.currentThread().interrupt();
+    }
+  }
+
   public UserDao getUserDao() {
     return userDao;
   }
@@ -217,6 +340,18 @@ public class DatabaseManager {
     return wineDao;
   }
 
+  public ConnectionPool getConnectionPool() {
+    return connectionPool;
+  }
+
+  public DatabaseExecutor getExecutor() {
+    return executor;
+  }
+
+  public MigrationRunner getMigrationRunner() {
+    return migrationRunner;
+  }
+
   public WineListDao getWineListDao() {
     return wineListDao;
   }
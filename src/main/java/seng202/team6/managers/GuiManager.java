@@ -1,7 +1,10 @@
 package seng202.team6.managers;
 
 import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
 import javafx.animation.PauseTransition;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.layout.AnchorPane;
@@ -60,6 +63,7 @@ public class GuiManager {
   private MainController mainController;
   private String currentScreenFxml;
   private ManagerContext managerContext;
+  private int loadingCount = 0;
 
   /**
    * Constructs a GUIManager.
@@ -487,21 +491,76 @@ public class GuiManager {
    * Displays a loading indicator before running the specified task, and hides the loading indicator
    * upon completion. This method introduces a short delay to ensure the UI updates before executing
    * the provided Runnable task.
+   * <p>
+   * The task runs on the JavaFX application thread, so rendering stops until it finishes. Database
+   * queries and other slow work should use {@link #runInBackground} instead.
+   * </p>
    *
    * @param runnable the task to be executed while the loading indicator is visible
    */
   public void showLoadingIndicator(Runnable runnable) {
-    mainController.showLoadingIndicator(true);
+    startLoading();
 
     PauseTransition delay = new PauseTransition(Duration.millis(50));
     delay.setOnFinished(event -> {
       try {
         runnable.run();
       } finally {
-        mainController.showLoadingIndicator(false);
+        finishLoading();
       }
     });
     delay.play();
   }
 
+  /**
+   * Runs a task on the database executor while the loading indicator is shown, then passes its
+   * result to a callback on the JavaFX application thread. Failures are logged.
+   *
+   * @param task      task to run in the background, which must not touch any controls
+   * @param onSuccess called on the JavaFX application thread with the task's result
+   * @param <T>       result type
+   */
+  public <T> void runInBackground(Callable<T> task, Consumer<T> onSuccess) {
+    runInBackground(task, onSuccess,
+        error -> log.error("Failed to run a task in the background", error));
+  }
+
+  /**
+   * Runs a task on the database executor while the loading indicator is shown, then passes its
+   * result or failure to a callback on the JavaFX application thread.
+   *
+   * @param task      task to run in the background, which must not touch any controls
+   * @param onSuccess called on the JavaFX application thread with the task's result
+   * @param onFailure called on the JavaFX application thread with what the task threw
+   * @param <T>       result type
+   */
+  public <T> void runInBackground(Callable<T> task, Consumer<T> onSuccess,
+      Consumer<Throwable> onFailure) {
+    startLoading();
+    managerContext.getDatabaseManager().getExecutor().submit(task)
+        .whenComplete((result, error) -> Platform.runLater(() -> {
+          finishLoading();
+          if (error != null) {
+            onFailure.accept(error);
+          } else {
+            onSuccess.accept(result);
+          }
+        }));
+  }
+
+  /**
+   * Shows the loading indicator until every task started while it is shown has finished.
+   */
+  private void startLoading() {
+    if (loadingCount++ == 0) {
+      mainController.showLoadingIndicator(true);
+    }
+  }
+
+  private void finishLoading() {
+    if (--loadingCount == 0) {
+      mainController.showLoadingIndicator(false);
+    }
+  }
+
 }
@@ -0,0 +1,25 @@
+package seng202.team6.model;
+
+/**
+ * Counters and current size of a cache.
+ *
+ * @param hits        reads which found a value
+ * @param misses      reads which found no value, including expired ones
+ * @param evictions   values removed to keep the cache within its bounds
+ * @param expirations values dropped for being older than the time to live
+ * @param size        number of values held
+ * @param bytes       approximate size of the values held in bytes
+ */
+public record CacheStats(long hits, long misses, long evictions, long expirations, int size,
+    long bytes) {
+
+  /**
+   * Gets the fraction of reads which found a value.
+   *
+   * @return hit ratio between 0 and 1, or 0 if nothing has been read
+   */
+  public double hitRatio() {
+    long reads = hits + misses;
+    return reads == 0 ? 0 : (double) hits / reads;
+  }
+}
@@ -0,0 +1,28 @@
+package seng202.team6.model;
+
+/**
+ * Progress of a migration backfill, reported after each batch.
+ *
+ * @param version       schema version of the migration
+ * @param description   what the migration changes
+ * @param lastId        last ID backfilled so far
+ * @param maxId         highest ID to backfill
+ * @param batches       batches run since the backfill was started or resumed
+ * @param elapsedMillis time since the backfill was started or resumed in milliseconds
+ * @param complete      whether every batch has been run
+ */
+public record MigrationProgress(int version, String description, long lastId, long maxId,
+    int batches, long elapsedMillis, boolean complete) {
+
+  /**
+   * Gets the fraction of IDs backfilled.
+   *
+   * @return fraction between 0 and 1
+   */
+  public double getFractionDone() {
+    if (complete || maxId <= 0) {
+      return 1;
+    }
+    return Math.min(1, (double) lastId / maxId);
+  }
+}
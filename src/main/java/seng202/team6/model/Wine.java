@@ -1,5 +1,10 @@
 package seng202.team6.model;
 
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.FloatProperty;
 import javafx.beans.property.IntegerProperty;
@@ -14,60 +19,64 @@ import javafx.beans.property.StringProperty;
  * <p>
  * There must only be one wine per id. This is assured by the database
  * </p>
+ * <p>
+ * Changed attributes are recorded as dirty and reported to the change tracker, whether they are
+ * changed through a setter or a property.
+ * </p>
  */
 public class Wine {
 
   /**
    * Title.
    */
-  private final StringProperty title;
+  private String title;
   /**
    * Variety.
    */
-  private final StringProperty variety;
+  private String variety;
   /**
    * Country.
    */
-  private final StringProperty country;
+  private String country;
   /**
    * Region.
    */
-  private final StringProperty region;
+  private String region;
   /**
    * Winery.
    * <p>
    * Represented as a name to ease binding
    * </p>
    */
-  private final StringProperty winery;
+  private String winery;
   /**
    * Color of the wine.
    */
-  private final StringProperty color;
+  private String color;
   /**
    * Age of the wine as a year.
    */
-  private final IntegerProperty vintage;
+  private int vintage;
   /**
    * Description of the wine.
    */
-  private final StringProperty description;
+  private String description;
   /**
    * Normalized score from 0-100.
    */
-  private final IntegerProperty scorePercent;
+  private int scorePercent;
   /**
    * Alcohol by volume as a percentage if known, else 0.
    */
-  private final FloatProperty abv;
+  private float abv;
   /**
    * Price of the wine in NZD if known, else 0.
    */
-  private final FloatProperty price;
+  private float price;
   /**
    * Average rating of the wine.
    */
-  private final DoubleProperty averageRating;
+  private double averageRating;
   /**
    * ID of wine record.
    * <p>
@@ -83,6 +92,28 @@ public class Wine {
    * </p>
    */
   private GeoLocation geoLocation;
+  // Properties are only created when requested, so wines that are never bound stay small
+  private StringProperty titleProperty;
+  private StringProperty varietyProperty;
+  private StringProperty countryProperty;
+  private StringProperty regionProperty;
+  private StringProperty wineryProperty;
+  private StringProperty colorProperty;
+  private IntegerProperty vintageProperty;
+  private StringProperty descriptionProperty;
+  private IntegerProperty scorePercentProperty;
+  private FloatProperty abvProperty;
+  private FloatProperty priceProperty;
+  private DoubleProperty averageRatingProperty;
+  /**
+   * Attributes changed since they were last taken, one bit per attribute ordinal. Guarded by this
+   * wine, as changes are made on the JavaFX thread and taken by flushes on database threads.
+   */
+  private int dirtyAttributes;
+  /**
+   * Tracker notified of changes, null if changes are not persisted.
+   */
+  private ChangeTracker changeTracker;
 
   /**
    * Constructs a new Wine with the given attributes.
@@ -117,19 +148,19 @@ public class Wine {
       double averageRating
   ) {
     this.key = key;
-    this.title = new SimpleStringProperty(this, "title", title);
-    this.variety = new SimpleStringProperty(this, "variety", variety);
-    this.country = new SimpleStringProperty(this, "country", country);
-    this.region = new SimpleStringProperty(this, "region", region);
-    this.winery = new SimpleStringProperty(this, "winery", winery);
-    this.color = new SimpleStringProperty(this, "color", color);
-    this.vintage = new SimpleIntegerProperty(this, "vintage", vintage);
-    this.description = new SimpleStringProperty(this, "description", description);
-    this.scorePercent = new SimpleIntegerProperty(this, "scorePercent", scorePercent);
-    this.abv = new SimpleFloatProperty(this, "abv", abv);
-    this.price = new SimpleFloatProperty(this, "price", price);
+    this.title = title;
+    this.variety = variety;
+    this.country = country;
+    this.region = region;
+    this.winery = winery;
+    this.color = color;
+    this.vintage = vintage;
+    this.description = description;
+    this.scorePercent = scorePercent;
+    this.abv = abv;
+    this.price = price;
     this.geoLocation = geoLocation;
-    this.averageRating = new SimpleDoubleProperty(averageRating);
+    this.averageRating = averageRating;
   }
 
   /**
@@ -137,18 +168,6 @@ public class Wine {
    */
   public Wine() {
     this.key = -1;
-    this.title = new SimpleStringProperty(this, "title");
-    this.variety = new SimpleStringProperty(this, "variety");
-    this.country = new SimpleStringProperty(this, "country");
-    this.region = new SimpleStringProperty(this, "region");
-    this.winery = new SimpleStringProperty(this, "winery");
-    this.color = new SimpleStringProperty(this, "color");
-    this.vintage = new SimpleIntegerProperty(this, "vintage");
-    this.description = new SimpleStringProperty(this, "description");
-    this.scorePercent = new SimpleIntegerProperty(this, "scorePercent");
-    this.abv = new SimpleFloatProperty(this, "abv");
-    this.price = new SimpleFloatProperty(this, "price");
-    this.averageRating = new SimpleDoubleProperty(this, "rating", 0.0);
   }
 
   /**
@@ -175,7 +194,7 @@ public class Wine {
    * @return title
    */
   public String getTitle() {
-    return title.get();
+    return titleProperty != null ? titleProperty.get() : title;
   }
 
   /**
@@ -184,7 +203,13 @@ public class Wine {
    * @param title title
    */
   public void setTitle(String title) {
-    this.title.set(title);
+    if (titleProperty != null) {
+      titleProperty.set(title);
+    } else if (!Objects.equals(this.title, title)) {
+      String before = this.title;
+      this.title = title;
+      markDirty(Attribute.TITLE, before);
+    }
   }
 
   /**
@@ -193,7 +218,11 @@ public class Wine {
    * @return title property
    */
   public StringProperty titleProperty() {
-    return title;
+    if (titleProperty == null) {
+      titleProperty = new SimpleStringProperty(this, "title", title);
+      titleProperty.addListener((observable, before, after) -> markDirty(Attribute.TITLE, before));
+    }
+    return titleProperty;
   }
 
   /**
@@ -202,7 +231,7 @@ public class Wine {
    * @return variety
    */
   public String getVariety() {
-    return variety.get();
+    return varietyProperty != null ? varietyProperty.get() : variety;
   }
 
   /**
@@ -211,7 +240,13 @@ public class Wine {
    * @param variety variety
    */
   public void setVariety(String variety) {
-    this.variety.set(variety);
+    if (varietyProperty != null) {
+      varietyProperty.set(variety);
+    } else if (!Objects.equals(this.variety, variety)) {
+      String before = this.variety;
+      this.variety = variety;
+      markDirty(Attribute.VARIETY, before);
+    }
   }
 
   /**
@@ -220,7 +255,12 @@ public class Wine {
    * @return variety property
    */
   public StringProperty varietyProperty() {
-    return variety;
+    if (varietyProperty == null) {
+      varietyProperty = new SimpleStringProperty(this, "variety", variety);
+      varietyProperty.addListener((observable, before, after) ->
+          markDirty(Attribute.VARIETY, before));
+    }
+    return varietyProperty;
   }
 
   /**
@@ -229,7 +269,7 @@ public class Wine {
    * @return country
    */
   public String getCountry() {
-    return country.get();
+    return countryProperty != null ? countryProperty.get() : country;
   }
 
   /**
@@ -238,7 +278,13 @@ public class Wine {
    * @param country country
    */
   public void setCountry(String country) {
-    this.country.set(country);
+    if (countryProperty != null) {
+      countryProperty.set(country);
+    } else if (!Objects.equals(this.country, country)) {
+      String before = this.country;
+      this.country = country;
+      markDirty(Attribute.COUNTRY, before);
+    }
   }
 
   /**
@@ -247,7 +293,12 @@ public class Wine {
    * @return country property
    */
   public StringProperty countryProperty() {
-    return country;
+    if (countryProperty == null) {
+      countryProperty = new SimpleStringProperty(this, "country", country);
+      countryProperty.addListener((observable, before, after) ->
+          markDirty(Attribute.COUNTRY, before));
+    }
+    return countryProperty;
   }
 
   /**
@@ -256,7 +307,7 @@ public class Wine {
    * @return region
    */
   public String getRegion() {
-    return region.get();
+    return regionProperty != null ? regionProperty.get() : region;
   }
 
   /**
@@ -265,7 +316,13 @@ public class Wine {
    * @param region region
    */
   public void setRegion(String region) {
-    this.region.set(region);
+    if (regionProperty != null) {
+      regionProperty.set(region);
+    } else if (!Objects.equals(this.region, region)) {
+      String before = this.region;
+      this.region = region;
+      markDirty(Attribute.REGION, before);
+    }
   }
 
   /**
@@ -274,7 +331,12 @@ public class Wine {
    * @return region property
    */
   public StringProperty regionProperty() {
-    return region;
+    if (regionProperty == null) {
+      regionProperty = new SimpleStringProperty(this, "region", region);
+      regionProperty.addListener((observable, before, after) ->
+          markDirty(Attribute.REGION, before));
+    }
+    return regionProperty;
   }
 
 
@@ -284,7 +346,7 @@ public class Wine {
    * @return winery
    */
   public String getWinery() {
-    return winery.get();
+    return wineryProperty != null ? wineryProperty.get() : winery;
   }
 
   /**
@@ -293,7 +355,13 @@ public class Wine {
    * @param winery winery
    */
   public void setWinery(String winery) {
-    this.winery.set(winery);
+    if (wineryProperty != null) {
+      wineryProperty.set(winery);
+    } else if (!Objects.equals(this.winery, winery)) {
+      String before = this.winery;
+      this.winery = winery;
+      markDirty(Attribute.WINERY, before);
+    }
   }
 
   /**
@@ -302,7 +370,12 @@ public class Wine {
    * @return winery property
    */
   public StringProperty wineryProperty() {
-    return winery;
+    if (wineryProperty == null) {
+      wineryProperty = new SimpleStringProperty(this, "winery", winery);
+      wineryProperty.addListener((observable, before, after) ->
+          markDirty(Attribute.WINERY, before));
+    }
+    return wineryProperty;
   }
 
   /**
@@ -311,7 +384,7 @@ public class Wine {
    * @return color
    */
   public String getColor() {
-    return color.get();
+    return colorProperty != null ? colorProperty.get() : color;
   }
 
   /**
@@ -320,7 +393,13 @@ public class Wine {
    * @param color color
    */
   public void setColor(String color) {
-    this.color.set(color);
+    if (colorProperty != null) {
+      colorProperty.set(color);
+    } else if (!Objects.equals(this.color, color)) {
+      String before = this.color;
+      this.color = color;
+      markDirty(Attribute.COLOR, before);
+    }
   }
 
   /**
@@ -329,7 +408,11 @@ public class Wine {
    * @return color property
    */
   public StringProperty colorProperty() {
-    return color;
+    if (colorProperty == null) {
+      colorProperty = new SimpleStringProperty(this, "color", color);
+      colorProperty.addListener((observable, before, after) -> markDirty(Attribute.COLOR, before));
+    }
+    return colorProperty;
   }
 
   /**
@@ -338,7 +421,7 @@ public class Wine {
    * @return vintage
    */
   public int getVintage() {
-    return vintage.get();
+    return vintageProperty != null ? vintageProperty.get() : vintage;
   }
 
   /**
@@ -347,7 +430,13 @@ public class Wine {
    * @param vintage vintage
    */
   public void setVintage(int vintage) {
-    this.vintage.set(vintage);
+    if (vintageProperty != null) {
+      vintageProperty.set(vintage);
+    } else if (this.vintage != vintage) {
+      int before = this.vintage;
+      this.vintage = vintage;
+      markDirty(Attribute.VINTAGE, before);
+    }
   }
 
   /**
@@ -356,7 +445,12 @@ public class Wine {
    * @return vintage property
    */
   public IntegerProperty vintageProperty() {
-    return vintage;
+    if (vintageProperty == null) {
+      vintageProperty = new SimpleIntegerProperty(this, "vintage", vintage);
+      vintageProperty.addListener((observable, before, after) ->
+          markDirty(Attribute.VINTAGE, before));
+    }
+    return vintageProperty;
   }
 
   /**
@@ -365,7 +459,7 @@ public class Wine {
    * @return description
    */
   public String getDescription() {
-    return description.get();
+    return descriptionProperty != null ? descriptionProperty.get() : description;
   }
 
   /**
@@ -374,7 +468,13 @@ public class Wine {
    * @param description description
    */
   public void setDescription(String description) {
-    this.description.set(description);
+    if (descriptionProperty != null) {
+      descriptionProperty.set(description);
+    } else if (!Objects.equals(this.description, description)) {
+      String before = this.description;
+      this.description = description;
+      markDirty(Attribute.DESCRIPTION, before);
+    }
   }
 
   /**
@@ -383,7 +483,12 @@ public class Wine {
    * @return description property
    */
   public StringProperty descriptionProperty() {
-    return description;
+    if (descriptionProperty == null) {
+      descriptionProperty = new SimpleStringProperty(this, "description", description);
+      descriptionProperty.addListener((observable, before, after) ->
+          markDirty(Attribute.DESCRIPTION, before));
+    }
+    return descriptionProperty;
   }
 
   /**
@@ -392,7 +497,7 @@ public class Wine {
    * @return score percentage
    */
   public int getScorePercent() {
-    return scorePercent.get();
+    return scorePercentProperty != null ? scorePercentProperty.get() : scorePercent;
   }
 
   /**
@@ -401,7 +506,13 @@ public class Wine {
    * @param scorePercent score percentage
    */
   public void setScorePercent(int scorePercent) {
-    this.scorePercent.set(scorePercent);
+    if (scorePercentProperty != null) {
+      scorePercentProperty.set(scorePercent);
+    } else if (this.scorePercent != scorePercent) {
+      int before = this.scorePercent;
+      this.scorePercent = scorePercent;
+      markDirty(Attribute.SCORE_PERCENT, before);
+    }
   }
 
   /**
@@ -410,7 +521,12 @@ public class Wine {
    * @return score percentage
    */
   public IntegerProperty scorePercentProperty() {
-    return scorePercent;
+    if (scorePercentProperty == null) {
+      scorePercentProperty = new SimpleIntegerProperty(this, "scorePercent", scorePercent);
+      scorePercentProperty.addListener((observable, before, after) ->
+          markDirty(Attribute.SCORE_PERCENT, before));
+    }
+    return scorePercentProperty;
   }
 
   /**
@@ -419,7 +535,7 @@ public class Wine {
    * @return abv
    */
   public float getAbv() {
-    return abv.get();
+    return abvProperty != null ? abvProperty.get() : abv;
   }
 
   /**
@@ -428,7 +544,13 @@ public class Wine {
    * @param abv alcohol by volume
    */
   public void setAbv(float abv) {
-    this.abv.set(abv);
+    if (abvProperty != null) {
+      abvProperty.set(abv);
+    } else if (this.abv != abv) {
+      float before = this.abv;
+      this.abv = abv;
+      markDirty(Attribute.ABV, before);
+    }
   }
 
   /**
@@ -437,7 +559,11 @@ public class Wine {
    * @return alcohol by volume
    */
   public FloatProperty abvProperty() {
-    return abv;
+    if (abvProperty == null) {
+      abvProperty = new SimpleFloatProperty(this, "abv", abv);
+      abvProperty.addListener((observable, before, after) -> markDirty(Attribute.ABV, before));
+    }
+    return abvProperty;
   }
 
   /**
@@ -446,7 +572,7 @@ public class Wine {
    * @return price
    */
   public float getPrice() {
-    return price.get();
+    return priceProperty != null ? priceProperty.get() : price;
   }
 
   /**
@@ -455,7 +581,13 @@ public class Wine {
    * @param price price
    */
   public void setPrice(float price) {
-    this.price.set(price);
+    if (priceProperty != null) {
+      priceProperty.set(price);
+    } else if (this.price != price) {
+      float before = this.price;
+      this.price = price;
+      markDirty(Attribute.PRICE, before);
+    }
   }
 
   /**
@@ -464,7 +596,11 @@ public class Wine {
    * @return price property
    */
   public FloatProperty priceProperty() {
-    return price;
+    if (priceProperty == null) {
+      priceProperty = new SimpleFloatProperty(this, "price", price);
+      priceProperty.addListener((observable, before, after) -> markDirty(Attribute.PRICE, before));
+    }
+    return priceProperty;
   }
 
   /**
@@ -509,7 +645,7 @@ public class Wine {
    * @return the average rating
    */
   public double getAverageRating() {
-    return averageRating.get();
+    return averageRatingProperty != null ? averageRatingProperty.get() : averageRating;
   }
 
   /**
@@ -518,7 +654,13 @@ public class Wine {
    * @param averageRating average rating
    */
   public void setAverageRating(double averageRating) {
-    this.averageRating.set(averageRating);
+    if (averageRatingProperty != null) {
+      averageRatingProperty.set(averageRating);
+    } else if (this.averageRating != averageRating) {
+      double before = this.averageRating;
+      this.averageRating = averageRating;
+      markDirty(Attribute.AVERAGE_RATING, before);
+    }
   }
 
   /**
@@ -527,6 +669,161 @@ public class Wine {
    * @return the average rating property
    */
   public DoubleProperty averageRatingProperty() {
-    return averageRating;
+    if (averageRatingProperty == null) {
+      averageRatingProperty = new SimpleDoubleProperty(this, "averageRating", averageRating);
+      averageRatingProperty.addListener((observable, before, after) ->
+          markDirty(Attribute.AVERAGE_RATING, before));
+    }
+    return averageRatingProperty;
+  }
+
+  /**
+   * Sets the average rating to the value already stored in the database, without recording it as
+   * a change to write back.
+   *
+   * @param averageRating stored average rating
+   */
+  public synchronized void loadAverageRating(double averageRating) {
+    ChangeTracker tracker = changeTracker;
+    int dirty = dirtyAttributes;
+    changeTracker = null;
+    setAverageRating(averageRating);
+    changeTracker = tracker;
+    dirtyAttributes = dirty;
+  }
+
+  /**
+   * Gets the current value of an attribute.
+   *
+   * @param attribute attribute
+   * @return value of the attribute
+   */
+  public Object getAttribute(Attribute attribute) {
+    return switch (attribute) {
+      case TITLE -> getTitle();
+      case VARIETY -> getVariety();
+      case COUNTRY -> getCountry();
+      case REGION -> getRegion();
+      case WINERY -> getWinery();
+      case COLOR -> getColor();
+      case VINTAGE -> getVintage();
+      case DESCRIPTION -> getDescription();
+      case SCORE_PERCENT -> getScorePercent();
+      case ABV -> getAbv();
+      case PRICE -> getPrice();
+      case AVERAGE_RATING -> getAverageRating();
+    };
+  }
+
+  /**
+   * Sets the tracker notified when an attribute changes.
+   *
+   * @param changeTracker change tracker, or null to stop tracking
+   */
+  public synchronized void setChangeTracker(ChangeTracker changeTracker) {
+    this.changeTracker = changeTracker;
+  }
+
+  /**
+   * Checks if any attribute has changed since the dirty attributes were last taken.
+   *
+   * @return true if there are changed attributes
+   */
+  public synchronized boolean isDirty() {
+    return dirtyAttributes != 0;
+  }
+
+  /**
+   * Gets and clears the attributes changed since they were last taken.
+   *
+   * @return changed attributes
+   */
+  public synchronized Set<Attribute> takeDirtyAttributes() {
+    Set<Attribute> attributes = EnumSet.noneOf(Attribute.class);
+    for (Attribute attribute : Attribute.values()) {
+      if ((dirtyAttributes & (1 << attribute.ordinal())) != 0) {
+        attributes.add(attribute);
+      }
+    }
+    dirtyAttributes = 0;
+    return attributes;
+  }
+
+  /**
+   * Gets and clears the attributes changed since they were last taken, along with their current
+   * values. The values are read under the same lock the changes are recorded under, so a thread
+   * other than the one making changes sees every value whose change has been recorded.
+   *
+   * @return changed attributes and their values, in attribute order
+   */
+  public synchronized Map<Attribute, Object> takeDirtyValues() {
+    Map<Attribute, Object> values = new EnumMap<>(Attribute.class);
+    for (Attribute attribute : takeDirtyAttributes()) {
+      values.put(attribute, getAttribute(attribute));
+    }
+    return values;
+  }
+
+  /**
+   * Marks attributes taken by {@link #takeDirtyAttributes()} as changed again, for when writing
+   * them failed. The change tracker is not notified, as the changes are already known to it.
+   *
+   * @param attributes attributes to mark as changed
+   */
+  public synchronized void restoreDirtyAttributes(Set<Attribute> attributes) {
+    for (Attribute attribute : attributes) {
+      dirtyAttributes |= 1 << attribute.ordinal();
+    }
+  }
+
+  /**
+   * Records an attribute as changed and notifies the change tracker.
+   *
+   * @param attribute changed attribute
+   * @param before    value of the attribute before the change
+   */
+  private void markDirty(Attribute attribute, Object before) {
+    ChangeTracker tracker;
+    synchronized (this) {
+      dirtyAttributes |= 1 << attribute.ordinal();
+      tracker = changeTracker;
+    }
+    if (tracker != null) {
+      tracker.onChange(this, attribute, before);
+    }
+  }
+
+  /**
+   * Persisted attributes of a wine, named after their columns in the WINE table.
+   */
+  public enum Attribute {
+    TITLE,
+    VARIETY,
+    COUNTRY,
+    REGION,
+    WINERY,
+    COLOR,
+    VINTAGE,
+    DESCRIPTION,
+    SCORE_PERCENT,
+    ABV,
+    PRICE,
+    AVERAGE_RATING
+  }
+
+  /**
+   * Receives wines whose attributes have changed.
+   */
+  @FunctionalInterface
+  public interface ChangeTracker {
+
+    /**
+     * Called after an attribute of a wine changes.
+     *
+     * @param wine      changed wine
+     * @param attribute attribute that changed
+     * @param before    value of the attribute before the change
+     */
+    void onChange(Wine wine, Attribute attribute, Object before);
   }
 }
@@ -0,0 +1,19 @@
+package seng202.team6.model;
+
+/**
+ * Continuation cursor for a keyset paginated wine search. It holds the sort key and ID of the last
+ * wine on a page, so the next page starts straight after it no matter how sparse the IDs are.
+ * <p>
+ * Wines with no value in the sort column are sorted after every other wine, so the cursor records
+ * whether the last wine's sort key was null. Relevance ranks are recomputed by every query and are
+ * often tied, so relevance pages continue from the position instead.
+ * </p>
+ *
+ * @param sortKey     value of the sort column for the last wine seen, 0 if it was null
+ * @param nullSortKey whether the sort column of the last wine seen was null
+ * @param id          ID of the last wine seen, used to break ties between equal sort keys
+ * @param position    number of wines before the following page
+ */
+public record WineCursor(double sortKey, boolean nullSortKey, long id, int position) {
+
+}
@@ -7,7 +7,7 @@ package seng202.team6.model;
 public class WineFilters {
 
   /**
-   * The title of the wine to filter by.
+   * The search text to filter by, matched against the title, variety and description of the wine.
    */
   private String title;
 
@@ -66,6 +66,11 @@ public class WineFilters {
    */
   private double maxPrice;
 
+  /**
+   * Whether each search term also matches words starting with it.
+   */
+  private boolean prefixMatch = true;
+
   /**
    * Constructs a Filters object with specified criteria.
    *
@@ -345,4 +350,22 @@ public class WineFilters {
   public void setMaxPrice(double maxPrice) {
     this.maxPrice = maxPrice;
   }
+
+  /**
+   * Gets whether search terms match words starting with them.
+   *
+   * @return true if search terms are prefixes.
+   */
+  public boolean isPrefixMatch() {
+    return prefixMatch;
+  }
+
+  /**
+   * Sets whether search terms match words starting with them.
+   *
+   * @param prefixMatch true to match words starting with each term, false to match whole words.
+   */
+  public void setPrefixMatch(boolean prefixMatch) {
+    this.prefixMatch = prefixMatch;
+  }
 }
\ No newline at end of file
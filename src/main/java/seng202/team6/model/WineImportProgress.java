@@ -0,0 +1,33 @@
+package seng202.team6.model;
+
+/**
+ * Progress of a running wine import. Rates are rows per second over the time each stage has been
+ * running, so the slowest stage shows which one is holding the import back.
+ *
+ * @param rowsRead    rows read from the source so far
+ * @param rowsParsed  rows parsed so far, valid or not
+ * @param rowsInvalid rows which could not be parsed into a wine
+ * @param rowsWritten wines written to the database so far
+ * @param totalRows   number of rows in the source, or -1 if unknown
+ * @param readRate    rows read per second
+ * @param parseRate   rows parsed per second, across all parse workers
+ * @param writeRate   wines written per second
+ */
+public record WineImportProgress(long rowsRead, long rowsParsed, long rowsInvalid,
+    long rowsWritten, long totalRows, double readRate, double parseRate, double writeRate) {
+
+  /**
+   * Gets the fraction of rows parsed and written.
+   *
+   * @return fraction between 0 and 1, or -1 if the number of rows is unknown
+   */
+  public double getFractionDone() {
+    if (totalRows < 0) {
+      return -1;
+    }
+    if (totalRows == 0) {
+      return 1;
+    }
+    return Math.min(1, (double) (rowsWritten + rowsInvalid) / totalRows);
+  }
+}
@@ -0,0 +1,17 @@
+package seng202.team6.model;
+
+/**
+ * Outcome of a wine import. A cancelled import changes no wines, so its wine counts are 0.
+ *
+ * @param rowsRead      rows read from the source
+ * @param winesAdded    wines added to the database
+ * @param winesUpdated  existing wines updated by a merge
+ * @param winesRemoved  existing wines removed by a replace
+ * @param rowsInvalid   rows which could not be parsed into a wine
+ * @param cancelled     whether the import was cancelled and rolled back
+ * @param elapsedMillis time taken by the import in milliseconds
+ */
+public record WineImportResult(long rowsRead, int winesAdded, int winesUpdated,
+    int winesRemoved, long rowsInvalid, boolean cancelled, long elapsedMillis) {
+
+}
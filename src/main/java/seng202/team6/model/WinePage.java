@@ -0,0 +1,22 @@
+package seng202.team6.model;
+
+import javafx.collections.ObservableList;
+
+/**
+ * A page of wines returned by a search.
+ *
+ * @param wines wines on the page
+ * @param next  cursor to continue from for the following page, or null if this is the last page
+ * @param total number of wines matching the search across all pages
+ */
+public record WinePage(ObservableList<Wine> wines, WineCursor next, int total) {
+
+  /**
+   * Checks if there is another page after this one.
+   *
+   * @return true if another page exists
+   */
+  public boolean hasNext() {
+    return next != null;
+  }
+}
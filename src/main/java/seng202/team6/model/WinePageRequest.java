@@ -0,0 +1,18 @@
+package seng202.team6.model;
+
+import seng202.team6.enums.WineSortOrder;
+
+/**
+ * A page of wines to search for, continuing from a cursor if there is one and otherwise skipping
+ * to an offset.
+ *
+ * @param filters filters to apply, or null for no filtering
+ * @param order   order to sort the wines in
+ * @param after   cursor of the previous page, or null
+ * @param offset  number of matching wines to skip, only used without a cursor
+ * @param limit   maximum number of wines on the page
+ */
+public record WinePageRequest(WineFilters filters, WineSortOrder order, WineCursor after,
+    int offset, int limit) {
+
+}
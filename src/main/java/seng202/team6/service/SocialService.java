@@ -1,10 +1,15 @@
 package seng202.team6.service;
 
 import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import kotlin.Pair;
 import seng202.team6.managers.DatabaseManager;
 import seng202.team6.model.User;
+import seng202.team6.model.Wine;
 import seng202.team6.model.WineReview;
 
 
@@ -16,6 +21,7 @@ public class SocialService {
   private final DatabaseManager databaseManager;
   private final User user;
   private final ObservableList<WineReview> userReviews = FXCollections.observableArrayList();
+  private final Map<WineReview, Wine> reviewedWines = new HashMap<>();
 
   /**
    * Constructor for the social service class.
@@ -29,11 +35,44 @@ public class SocialService {
    * Initializer for the social service class.
    */
   public void init() throws SQLException {
-    userReviews.addAll(databaseManager.getWineReviewDao().getAll(user));
+    setReviewsAndWines(loadReviewsAndWines());
+  }
+
+  /**
+   * Loads the user's reviews and the wines they are about without changing the service, so they
+   * can be loaded off the JavaFX application thread and passed to {@link #setReviewsAndWines} on
+   * it.
+   *
+   * @return pairs of each review and its wine
+   * @throws SQLException if the reviews could not be loaded
+   */
+  public List<Pair<WineReview, Wine>> loadReviewsAndWines() throws SQLException {
+    return databaseManager.getAggregatedDao().getWineReviewsAndWines(user);
+  }
+
+  /**
+   * Sets the user's reviews and the wines they are about.
+   *
+   * @param reviewsAndWines pairs of each review and its wine
+   */
+  public void setReviewsAndWines(List<Pair<WineReview, Wine>> reviewsAndWines) {
+    // The wines are stored first so they are available to listeners of the reviews
+    reviewsAndWines.forEach(pair -> reviewedWines.put(pair.getFirst(), pair.getSecond()));
+    userReviews.addAll(reviewsAndWines.stream().map(Pair::getFirst).toList());
   }
 
   public ObservableList<WineReview> getUserReviews() {
     return userReviews;
   }
 
+  /**
+   * Gets the wine a review of the user is about.
+   *
+   * @param wineReview review by the user
+   * @return reviewed wine, or null if the review was not loaded by this service
+   */
+  public Wine getReviewedWine(WineReview wineReview) {
+    return reviewedWines.get(wineReview);
+  }
+
 }
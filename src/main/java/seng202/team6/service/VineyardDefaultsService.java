@@ -2,14 +2,12 @@ package seng202.team6.service;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import seng202.team6.dao.GeoLocationDao;
 import seng202.team6.dao.VineyardDao;
-import seng202.team6.model.GeoLocation;
 import seng202.team6.model.Vineyard;
 import seng202.team6.util.GeolocationResolver;
 import seng202.team6.util.ProcessCsv;
@@ -22,6 +20,11 @@ import seng202.team6.util.Timer;
  */
 public class VineyardDefaultsService {
 
+  /**
+   * Time after which an address which could not be resolved is tried again.
+   */
+  private static final long RETRY_UNRESOLVED_MILLIS = TimeUnit.DAYS.toMillis(30);
+
   private final Logger log = LogManager.getLogger(getClass());
   private final GeolocationResolver geolocationResolver;
   private final GeoLocationDao geoLocationDao;
@@ -46,8 +49,8 @@ public class VineyardDefaultsService {
 
   /**
    * Initializes the vineyard data. If the vineyard table is empty, this method loads default
-   * vineyard data from a CSV file. If address resolution is enabled, it resolves missing addresses
-   * by querying the geolocation API and updating the database.
+   * vineyard data from a CSV file. Addresses are resolved separately by resolveMissingAddresses,
+   * as that can take minutes.
    */
   public void init() {
     Timer timer = new Timer();
@@ -56,20 +59,30 @@ public class VineyardDefaultsService {
           timer.currentOffsetMilliseconds());
       return;
     }
+    vineyardDao.addAll(loadDefaultVineyards());
+  }
 
-    List<Vineyard> vineyards = loadDefaultVineyards();
-    if (resolveMissingAddresses) {
-      Set<String> addresses = vineyards.stream().map(Vineyard::getAddress)
-          .collect(Collectors.toSet());
-      Set<String> addressesInDatabase = geoLocationDao.getExistingLocationNames(addresses);
-      List<String> missingAddresses = findMissingAddresses(addresses, addressesInDatabase);
-      if (!missingAddresses.isEmpty()) {
-        Map<String, GeoLocation> missingAddressesGeolocations = geolocationResolver.resolveAll(
-            missingAddresses);
-        geoLocationDao.addAll(missingAddressesGeolocations);
-      }
+  /**
+   * Resolves the addresses of vineyards without a geolocation by querying the geolocation API, if
+   * address resolution is enabled. Each geolocation is stored as soon as it arrives, and addresses
+   * the API found nothing for are not tried again for a while.
+   */
+  public void resolveMissingAddresses() {
+    if (!resolveMissingAddresses) {
+      return;
+    }
+    Timer timer = new Timer();
+    Set<String> missingAddresses = vineyardDao.getAddressesWithoutGeoLocation();
+    if (!missingAddresses.isEmpty()) {
+      missingAddresses.removeAll(geoLocationDao.getUnresolvedLocationNames(missingAddresses,
+          System.currentTimeMillis() - RETRY_UNRESOLVED_MILLIS));
     }
-    vineyardDao.addAll(vineyards);
+    if (missingAddresses.isEmpty()) {
+      log.info("No vineyard addresses to resolve in {}ms", timer.currentOffsetMilliseconds());
+      return;
+    }
+    geolocationResolver.resolveAll(missingAddresses, geoLocationDao::add,
+        geoLocationDao::addUnresolved);
   }
 
   /**
@@ -95,22 +108,4 @@ public class VineyardDefaultsService {
     }
     return vineyards;
   }
-
-  /**
-   * Finds the addresses that are missing from the geolocation database.
-   *
-   * @param addresses           a set of addresses to check
-   * @param addressesInDatabase a set of addresses already in the database
-   * @return a list of addresses that are missing from the database
-   */
-  private List<String> findMissingAddresses(Set<String> addresses,
-      Set<String> addressesInDatabase) {
-    List<String> missingAddresses = new ArrayList<>();
-    for (String address : addresses) {
-      if (!addressesInDatabase.contains(address)) {
-        missingAddresses.add(address);
-      }
-    }
-    return missingAddresses;
-  }
 }
@@ -1,7 +1,14 @@
 package seng202.team6.service;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.TreeMap;
+import seng202.team6.model.Wine;
 
 /**
  * Stores a range of unique values and stats.<br> Stores:
@@ -18,6 +25,15 @@ import java.util.Set;
  *   <li>minPrice</li>
  *   <li>maxPrice</li>
  * </ul>
+ * <p>
+ * Every value is reference counted, so the stats are kept up to date as wines are added, changed
+ * and removed without rescanning the WINE table. A value is unique until the last wine holding it
+ * changes, and the minimums and maximums are read from the counted values.
+ * </p>
+ * <p>
+ * Wines are changed on the JavaFX thread while the stats are recalculated on database threads,
+ * so every method is synchronized and the unique values are returned as copies.
+ * </p>
  */
 public class WineDataStatService {
 
@@ -27,6 +43,19 @@ public class WineDataStatService {
   private final Set<String> uniqueWineries = new HashSet<>();
   private final Set<String> uniqueColors = new HashSet<>();
 
+  // Number of wines holding each value
+  private final Map<String, Integer> titleCounts = new HashMap<>();
+  private final Map<String, Integer> countryCounts = new HashMap<>();
+  private final Map<String, Integer> wineryCounts = new HashMap<>();
+  private final Map<String, Integer> colorCounts = new HashMap<>();
+  private final NavigableMap<Integer, Integer> vintageCounts = new TreeMap<>();
+  private final NavigableMap<Integer, Integer> scoreCounts = new TreeMap<>();
+  private final NavigableMap<Float, Integer> abvCounts = new TreeMap<>();
+  private final NavigableMap<Float, Integer> priceCounts = new TreeMap<>();
+
+  // Titles are left out of the saved snapshot, so are only counted once loaded
+  private boolean titlesLoaded = true;
+
   // minimum and maximum values
   private int minVintage;
   private int maxVintage;
@@ -46,11 +75,20 @@ public class WineDataStatService {
   /**
    * Resets all values.
    */
-  public void reset() {
+  public synchronized void reset() {
     this.uniqueTitles.clear();
     this.uniqueCountries.clear();
     this.uniqueWineries.clear();
     this.uniqueColors.clear();
+    this.titlesLoaded = true;
+    this.titleCounts.clear();
+    this.countryCounts.clear();
+    this.wineryCounts.clear();
+    this.colorCounts.clear();
+    this.vintageCounts.clear();
+    this.scoreCounts.clear();
+    this.abvCounts.clear();
+    this.priceCounts.clear();
     this.minVintage = Integer.MAX_VALUE;
     this.maxVintage = 0;
     this.minScore = 100;
@@ -61,83 +99,234 @@ public class WineDataStatService {
     this.maxPrice = 0;
   }
 
-  public Set<String> getUniqueTitles() {
-    return uniqueTitles;
+  /**
+   * Adds the values of a new wine.
+   *
+   * @param wine wine that was added
+   */
+  public synchronized void addWine(Wine wine) {
+    addValue(Wine.Attribute.TITLE, wine.getTitle(), 1);
+    addValue(Wine.Attribute.COUNTRY, wine.getCountry(), 1);
+    addValue(Wine.Attribute.WINERY, wine.getWinery(), 1);
+    addValue(Wine.Attribute.COLOR, wine.getColor(), 1);
+    addValue(Wine.Attribute.VINTAGE, wine.getVintage(), 1);
+    addValue(Wine.Attribute.SCORE_PERCENT, wine.getScorePercent(), 1);
+    addValue(Wine.Attribute.ABV, wine.getAbv(), 1);
+    addValue(Wine.Attribute.PRICE, wine.getPrice(), 1);
+  }
+
+  /**
+   * Moves one wine's reference from the old value of an attribute to its new value. Attributes
+   * without stats are ignored.
+   *
+   * @param attribute attribute that changed
+   * @param before    value before the change
+   * @param after     value after the change
+   */
+  public synchronized void updateValue(Wine.Attribute attribute, Object before, Object after) {
+    addValue(attribute, before, -1);
+    addValue(attribute, after, 1);
+  }
+
+  /**
+   * Adds to the number of wines holding a value of an attribute, updating the uniques and
+   * minimums and maximums it affects. A negative count removes references. Attributes without
+   * stats are ignored.
+   *
+   * @param attribute attribute the value belongs to
+   * @param value     value of the attribute
+   * @param count     number of wines to add, or remove if negative
+   */
+  public synchronized void addValue(Wine.Attribute attribute, Object value, int count) {
+    switch (attribute) {
+      case TITLE -> {
+        if (titlesLoaded) {
+          addString(titleCounts, uniqueTitles, (String) value, count);
+        }
+      }
+      case COUNTRY -> addString(countryCounts, uniqueCountries, (String) value, count);
+      case WINERY -> addString(wineryCounts, uniqueWineries, (String) value, count);
+      case COLOR -> addString(colorCounts, uniqueColors, (String) value, count);
+      case VINTAGE -> {
+        addNumber(vintageCounts, ((Number) value).intValue(), count);
+        // In decanter, some vintages are NV which defaults to 0
+        // In the 130k dataset, some values don't have vintage that defaults to -1
+        Integer lowest = vintageCounts.higherKey(0);
+        minVintage = lowest == null ? Integer.MAX_VALUE : lowest;
+        maxVintage = vintageCounts.isEmpty() ? 0 : Math.max(0, vintageCounts.lastKey());
+      }
+      case SCORE_PERCENT -> {
+        addNumber(scoreCounts, ((Number) value).intValue(), count);
+        minScore = scoreCounts.isEmpty() ? 100 : Math.min(100, scoreCounts.firstKey());
+        maxScore = scoreCounts.isEmpty() ? 0 : Math.max(0, scoreCounts.lastKey());
+      }
+      case ABV -> {
+        addNumber(abvCounts, ((Number) value).floatValue(), count);
+        minAbv = abvCounts.isEmpty() ? 100 : Math.min(100, abvCounts.firstKey());
+        maxAbv = abvCounts.isEmpty() ? 0 : Math.max(0, abvCounts.lastKey());
+      }
+      case PRICE -> {
+        addNumber(priceCounts, ((Number) value).floatValue(), count);
+        minPrice = priceCounts.isEmpty() ? Float.MAX_VALUE : priceCounts.firstKey();
+        maxPrice = priceCounts.isEmpty() ? 0 : Math.max(0, priceCounts.lastKey());
+      }
+      default -> {
+      }
+    }
+  }
+
+  /**
+   * Gets the number of wines holding each value of an attribute.
+   *
+   * @param attribute attribute with stats
+   * @return read only copy of the number of wines holding each value, in value order for numeric
+   *        attributes, empty for attributes without stats
+   */
+  public synchronized Map<?, Integer> getValueCounts(Wine.Attribute attribute) {
+    Map<?, Integer> counts = switch (attribute) {
+      case TITLE -> titleCounts;
+      case COUNTRY -> countryCounts;
+      case WINERY -> wineryCounts;
+      case COLOR -> colorCounts;
+      case VINTAGE -> vintageCounts;
+      case SCORE_PERCENT -> scoreCounts;
+      case ABV -> abvCounts;
+      case PRICE -> priceCounts;
+      default -> Map.of();
+    };
+    return Collections.unmodifiableMap(new LinkedHashMap<>(counts));
+  }
+
+  /**
+   * Checks if the unique titles have been counted. Titles are not part of the saved stats, so
+   * after loading a snapshot they are counted separately when first needed.
+   *
+   * @return true if the unique titles are counted
+   */
+  public synchronized boolean isTitlesLoaded() {
+    return titlesLoaded;
+  }
+
+  /**
+   * Sets if the unique titles have been counted. Title changes are ignored while they are not.
+   *
+   * @param titlesLoaded true if the unique titles are counted
+   */
+  public synchronized void setTitlesLoaded(boolean titlesLoaded) {
+    this.titlesLoaded = titlesLoaded;
+  }
+
+  /**
+   * Adds to the count of a string value, keeping the unique set to the values with a count.
+   *
+   * @param counts  number of wines holding each value
+   * @param uniques unique values
+   * @param value   value to count
+   * @param count   number of wines to add, or remove if negative
+   */
+  private void addString(Map<String, Integer> counts, Set<String> uniques, String value,
+      int count) {
+    Integer total = counts.merge(value, count, Integer::sum);
+    if (total <= 0) {
+      counts.remove(value);
+      uniques.remove(value);
+    } else {
+      uniques.add(value);
+    }
+  }
+
+  /**
+   * Adds to the count of a numeric value, removing values with no wines left.
+   *
+   * @param counts number of wines holding each value
+   * @param value  value to count
+   * @param count  number of wines to add, or remove if negative
+   * @param <T>    type of the value
+   */
+  private <T extends Number> void addNumber(NavigableMap<T, Integer> counts, T value, int count) {
+    Integer total = counts.merge(value, count, Integer::sum);
+    if (total <= 0) {
+      counts.remove(value);
+    }
+  }
+
+  public synchronized Set<String> getUniqueTitles() {
+    return Collections.unmodifiableSet(new HashSet<>(uniqueTitles));
   }
 
-  public Set<String> getUniqueCountries() {
-    return uniqueCountries;
+  public synchronized Set<String> getUniqueCountries() {
+    return Collections.unmodifiableSet(new HashSet<>(uniqueCountries));
   }
 
-  public Set<String> getUniqueWineries() {
-    return uniqueWineries;
+  public synchronized Set<String> getUniqueWineries() {
+    return Collections.unmodifiableSet(new HashSet<>(uniqueWineries));
   }
 
-  public Set<String> getUniqueColors() {
-    return uniqueColors;
+  public synchronized Set<String> getUniqueColors() {
+    return Collections.unmodifiableSet(new HashSet<>(uniqueColors));
   }
 
-  public int getMinVintage() {
+  public synchronized int getMinVintage() {
     return minVintage;
   }
 
-  public void setMinVintage(int minVintage) {
+  public synchronized void setMinVintage(int minVintage) {
     this.minVintage = minVintage;
   }
 
-  public int getMaxVintage() {
+  public synchronized int getMaxVintage() {
     return maxVintage;
   }
 
-  public void setMaxVintage(int maxVintage) {
+  public synchronized void setMaxVintage(int maxVintage) {
     this.maxVintage = maxVintage;
   }
 
-  public int getMinScore() {
+  public synchronized int getMinScore() {
     return minScore;
   }
 
-  public void setMinScore(int minScore) {
+  public synchronized void setMinScore(int minScore) {
     this.minScore = minScore;
   }
 
-  public int getMaxScore() {
+  public synchronized int getMaxScore() {
     return maxScore;
   }
 
-  public void setMaxScore(int maxScore) {
+  public synchronized void setMaxScore(int maxScore) {
     this.maxScore = maxScore;
   }
 
-  public float getMinAbv() {
+  public synchronized float getMinAbv() {
     return minAbv;
   }
 
-  public void setMinAbv(float minAbv) {
+  public synchronized void setMinAbv(float minAbv) {
     this.minAbv = minAbv;
   }
 
-  public float getMaxAbv() {
+  public synchronized float getMaxAbv() {
     return maxAbv;
   }
 
-  public void setMaxAbv(float maxAbv) {
+  public synchronized void setMaxAbv(float maxAbv) {
     this.maxAbv = maxAbv;
   }
 
-  public float getMinPrice() {
+  public synchronized float getMinPrice() {
     return minPrice;
   }
 
-  public void setMinPrice(float minPrice) {
+  public synchronized void setMinPrice(float minPrice) {
     this.minPrice = minPrice;
   }
 
-  public float getMaxPrice() {
+  public synchronized float getMaxPrice() {
     return maxPrice;
   }
 
-  public void setMaxPrice(float maxPrice) {
+  public synchronized void setMaxPrice(float maxPrice) {
     this.maxPrice = maxPrice;
   }
 }
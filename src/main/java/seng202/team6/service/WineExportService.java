@@ -0,0 +1,144 @@
+package seng202.team6.service;
+
+import com.opencsv.CSVWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.simple.JSONValue;
+import seng202.team6.enums.WinePropertyName;
+import seng202.team6.managers.DatabaseManager;
+import seng202.team6.model.Wine;
+import seng202.team6.model.WineFilters;
+import seng202.team6.util.Timer;
+
+/**
+ * Service for exporting wines as CSV or newline delimited JSON. Wines are streamed from the
+ * database and written one at a time, so an export uses the same memory however many wines it
+ * writes.
+ */
+public class WineExportService {
+
+  private static final Logger log = LogManager.getLogger(WineExportService.class);
+
+  private final DatabaseManager databaseManager;
+
+  /**
+   * Constructor.
+   *
+   * @param databaseManager database manager
+   */
+  public WineExportService(DatabaseManager databaseManager) {
+    this.databaseManager = databaseManager;
+  }
+
+  /**
+   * Writes the wines matching the filters as CSV. The header uses the same column names the
+   * importer recognises, so an exported file can be imported again.
+   *
+   * @param filters filters to apply, or null to export every wine
+   * @param writer  writer to write to, which is flushed but not closed
+   * @return number of wines written
+   * @throws SQLException if the wines could not be read
+   * @throws IOException  if the CSV could not be written
+   */
+  public long exportCsv(WineFilters filters, Writer writer) throws SQLException, IOException {
+    Timer timer = new Timer();
+    CSVWriter csvWriter = new CSVWriter(writer);
+    csvWriter.writeNext(new String[]{
+        WinePropertyName.TITLE.getName(),
+        WinePropertyName.VARIETY.getName(),
+        WinePropertyName.COUNTRY.getName(),
+        WinePropertyName.REGION.getName(),
+        WinePropertyName.WINERY.getName(),
+        WinePropertyName.COLOUR.getName(),
+        WinePropertyName.VINTAGE.getName(),
+        WinePropertyName.DESCRIPTION.getName(),
+        WinePropertyName.SCORE.getName(),
+        WinePropertyName.ABV.getName(),
+        WinePropertyName.PRICE.getName()
+    });
+    long count = 0;
+    try (Stream<Wine> wines = databaseManager.getWineDao().stream(filters)) {
+      Iterator<Wine> iterator = wines.iterator();
+      while (iterator.hasNext()) {
+        Wine wine = iterator.next();
+        csvWriter.writeNext(new String[]{
+            wine.getTitle(),
+            wine.getVariety(),
+            wine.getCountry(),
+            wine.getRegion(),
+            wine.getWinery(),
+            wine.getColor(),
+            String.valueOf(wine.getVintage()),
+            wine.getDescription(),
+            String.valueOf(wine.getScorePercent()),
+            String.valueOf(wine.getAbv()),
+            String.valueOf(wine.getPrice())
+        });
+        count++;
+      }
+    }
+    if (csvWriter.checkError()) {
+      throw new IOException("Failed to write wines as CSV");
+    }
+    log.info("Successfully exported {} wines as CSV in {}ms", count,
+        timer.currentOffsetMilliseconds());
+    return count;
+  }
+
+  /**
+   * Writes the wines matching the filters as newline delimited JSON, one object per wine.
+   *
+   * @param filters filters to apply, or null to export every wine
+   * @param writer  writer to write to, which is flushed but not closed
+   * @return number of wines written
+   * @throws SQLException if the wines could not be read
+   * @throws IOException  if the JSON could not be written
+   */
+  public long exportNdjson(WineFilters filters, Writer writer) throws SQLException, IOException {
+    Timer timer = new Timer();
+    long count = 0;
+    try (Stream<Wine> wines = databaseManager.getWineDao().stream(filters)) {
+      Iterator<Wine> iterator = wines.iterator();
+      while (iterator.hasNext()) {
+        writer.write(JSONValue.toJSONString(toJson(iterator.next())));
+        writer.write('\n');
+        count++;
+      }
+    }
+    writer.flush();
+    log.info("Successfully exported {} wines as NDJSON in {}ms", count,
+        timer.currentOffsetMilliseconds());
+    return count;
+  }
+
+  /**
+   * Maps a wine to the fields of its JSON object, in a fixed order.
+   *
+   * @param wine wine
+   * @return JSON fields
+   */
+  private Map<String, Object> toJson(Wine wine) {
+    Map<String, Object> json = new LinkedHashMap<>();
+    json.put("id", wine.getKey());
+    json.put("title", wine.getTitle());
+    json.put("variety", wine.getVariety());
+    json.put("country", wine.getCountry());
+    json.put("region", wine.getRegion());
+    json.put("winery", wine.getWinery());
+    json.put("color", wine.getColor());
+    json.put("vintage", wine.getVintage());
+    json.put("description", wine.getDescription());
+    json.put("scorePercent", wine.getScorePercent());
+    json.put("abv", wine.getAbv());
+    json.put("price", wine.getPrice());
+    json.put("averageRating", wine.getAverageRating());
+    return json;
+  }
+}
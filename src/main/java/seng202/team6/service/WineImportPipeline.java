@@ -0,0 +1,406 @@
+package seng202.team6.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import seng202.team6.dao.WineDao;
+import seng202.team6.enums.WineImportMode;
+import seng202.team6.enums.WinePropertyName;
+import seng202.team6.model.Wine;
+import seng202.team6.model.WineImportProgress;
+import seng202.team6.model.WineImportResult;
+import seng202.team6.util.exceptions.ValidationException;
+
+/**
+ * Imports wines from CSV rows in three pipelined stages. A reader thread groups rows into chunks,
+ * a pool of workers parses and validates the chunks in parallel, and the calling thread writes the
+ * parsed chunks in file order through a single {@link WineDao.BatchWriter}. The stages are joined
+ * by bounded queues, so only a few chunks are held in memory however large the source is.
+ * <p>
+ * Every wine is written in one transaction, so a cancelled or failed import leaves the database
+ * as it was. When merging, the writer stages the wines and merges them into WINE on commit. The
+ * batch writer holds the connection pool's writer until {@link #run} returns, so other writes
+ * queue behind the import. A pipeline runs a single import.
+ * </p>
+ */
+public class WineImportPipeline {
+
+  /**
+   * Number of rows passed between stages at a time, and written per batch.
+   */
+  public static final int CHUNK_SIZE = 1024;
+
+  private static final Logger log = LogManager.getLogger(WineImportPipeline.class);
+
+  /**
+   * Number of chunks each queue holds before the stage feeding it waits.
+   */
+  private static final int QUEUE_CAPACITY = 8;
+
+  /**
+   * How long the writer waits for a parsed chunk before checking for cancellation.
+   */
+  private static final long POLL_MILLIS = 100;
+
+  private final WineDao wineDao;
+  private final WineImportService importService = new WineImportService();
+  private final int workerCount;
+
+  private volatile boolean cancelled = false;
+
+  /**
+   * Constructs a pipeline with a parse worker for each processor not used by the reader or writer.
+   *
+   * @param wineDao wine DAO to write to
+   */
+  public WineImportPipeline(WineDao wineDao) {
+    this(wineDao, Math.max(1, Runtime.getRuntime().availableProcessors() - 2));
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param wineDao     wine DAO to write to
+   * @param workerCount number of threads parsing rows
+   */
+  public WineImportPipeline(WineDao wineDao, int workerCount) {
+    if (workerCount < 1) {
+      throw new IllegalArgumentException("An import needs at least one parse worker");
+    }
+    this.wineDao = wineDao;
+    this.workerCount = workerCount;
+  }
+
+  /**
+   * Imports wines from rows, blocking until every row is written or the import is cancelled. Rows
+   * which cannot be parsed into a wine are counted and skipped.
+   *
+   * @param rows      rows to import, without the header row
+   * @param columns   column index of each selected wine property
+   * @param mode      how the imported wines are combined with the existing ones
+   * @param totalRows number of rows, or -1 if unknown, used only to report progress
+   * @param listener  receives progress on the calling thread after each chunk is written
+   * @return result of the import
+   * @throws SQLException if the wines could not be written, in which case none are
+   * @throws IOException  if the rows could not be read, in which case no wines are written
+   */
+  public WineImportResult run(Iterator<String[]> rows, Map<WinePropertyName, Integer> columns,
+      WineImportMode mode, long totalRows, Consumer<WineImportProgress> listener)
+      throws SQLException, IOException {
+    Stages stages = new Stages(totalRows);
+    int added = 0;
+    int updated = 0;
+    int removed = 0;
+    AtomicInteger threadCount = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(workerCount + 1, runnable -> {
+      Thread thread = new Thread(runnable, "wine-import-" + threadCount.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      executor.execute(() -> stages.runStage(() -> stages.read(rows), stages::readFinished));
+      for (int i = 0; i < workerCount; i++) {
+        executor.execute(() -> stages.runStage(() -> stages.parse(columns), stages::parseFinished));
+      }
+      try (WineDao.BatchWriter writer = wineDao.openBatchWriter(mode)) {
+        stages.write(writer, listener);
+        if (!cancelled) {
+          writer.commit();
+          added = writer.getAdded();
+          updated = writer.getUpdated();
+          removed = writer.getRemoved();
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+      try {
+        executor.awaitTermination(1, TimeUnit.SECONDS);
+      } catch (InterruptedException error) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    WineImportProgress progress = stages.progress();
+    listener.accept(progress);
+    WineImportResult result = new WineImportResult(progress.rowsRead(), added, updated, removed,
+        progress.rowsInvalid(), cancelled, stages.elapsedMillis());
+    if (cancelled) {
+      log.info("Cancelled wine import after {} rows in {}ms", result.rowsRead(),
+          result.elapsedMillis());
+    } else {
+      log.info("Successfully imported {} rows, skipping {} invalid rows, in {}ms "
+              + "(read {} rows/s, parsed {} rows/s, wrote {} rows/s)", progress.rowsWritten(),
+          result.rowsInvalid(), result.elapsedMillis(), Math.round(progress.readRate()),
+          Math.round(progress.parseRate()), Math.round(progress.writeRate()));
+    }
+    return result;
+  }
+
+  /**
+   * Cancels a running import. The reader and workers stop at their next chunk, and the writer
+   * rolls back everything it has written. Safe to call from any thread.
+   */
+  public void cancel() {
+    cancelled = true;
+  }
+
+  /**
+   * Checks if the import has been cancelled.
+   *
+   * @return true if cancelled
+   */
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  /**
+   * Gets the number of threads parsing rows.
+   *
+   * @return number of parse workers
+   */
+  public int getWorkerCount() {
+    return workerCount;
+  }
+
+  /**
+   * A group of consecutive rows, or the wines parsed from them.
+   *
+   * @param sequence position of the chunk in the source, or -1 to mark the end of a stage
+   * @param items    rows or wines in the chunk
+   */
+  private record Chunk<T>(long sequence, List<T> items) {
+
+    static <T> Chunk<T> end() {
+      return new Chunk<>(-1, List.of());
+    }
+
+    boolean isEnd() {
+      return sequence < 0;
+    }
+  }
+
+  /**
+   * A stage body, which may be interrupted while waiting on a queue.
+   */
+  @FunctionalInterface
+  private interface Stage {
+
+    void run() throws InterruptedException;
+  }
+
+  /**
+   * State shared by the stages of one import.
+   */
+  private class Stages {
+
+    private final BlockingQueue<Chunk<String[]>> rowQueue =
+        new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final BlockingQueue<Chunk<Wine>> wineQueue =
+        new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final AtomicLong rowsRead = new AtomicLong();
+    private final AtomicLong rowsParsed = new AtomicLong();
+    private final AtomicLong rowsInvalid = new AtomicLong();
+    private final AtomicInteger workersRunning = new AtomicInteger(workerCount);
+    private final long totalRows;
+    private final long startNanos = System.nanoTime();
+    private volatile long readFinishedNanos = 0;
+    private volatile long parseFinishedNanos = 0;
+    private long rowsWritten = 0;
+
+    Stages(long totalRows) {
+      this.totalRows = totalRows;
+    }
+
+    /**
+     * Runs a stage on a pipeline thread, recording any failure for the writer to report before the
+     * stage is marked finished.
+     */
+    void runStage(Stage stage, Runnable onFinished) {
+      try {
+        stage.run();
+      } catch (InterruptedException error) {
+        // the writer has finished and is shutting the stages down
+        Thread.currentThread().interrupt();
+      } catch (Throwable error) {
+        failure.compareAndSet(null, error);
+      } finally {
+        onFinished.run();
+      }
+    }
+
+    /**
+     * Marks the end of the rows for each worker, however reading stopped.
+     */
+    void readFinished() {
+      readFinishedNanos = System.nanoTime();
+      for (int i = 0; i < workerCount; i++) {
+        putEnd(rowQueue);
+      }
+    }
+
+    /**
+     * Marks the end of a worker's wines, however parsing stopped.
+     */
+    void parseFinished() {
+      if (workersRunning.decrementAndGet() == 0) {
+        parseFinishedNanos = System.nanoTime();
+      }
+      putEnd(wineQueue);
+    }
+
+    /**
+     * Puts an end marker on a queue, unless the stages are being shut down.
+     */
+    private <T> void putEnd(BlockingQueue<Chunk<T>> queue) {
+      try {
+        queue.put(Chunk.end());
+      } catch (InterruptedException error) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    /**
+     * Reads rows into chunks until there are no more rows.
+     */
+    void read(Iterator<String[]> rows) throws InterruptedException {
+      long sequence = 0;
+      List<String[]> chunk = new ArrayList<>(CHUNK_SIZE);
+      while (!cancelled && rows.hasNext()) {
+        chunk.add(rows.next());
+        if (chunk.size() == CHUNK_SIZE) {
+          rowsRead.addAndGet(chunk.size());
+          rowQueue.put(new Chunk<>(sequence++, chunk));
+          chunk = new ArrayList<>(CHUNK_SIZE);
+        }
+      }
+      if (!chunk.isEmpty()) {
+        rowsRead.addAndGet(chunk.size());
+        rowQueue.put(new Chunk<>(sequence, chunk));
+      }
+    }
+
+    /**
+     * Parses chunks of rows until the end of the rows. A row which cannot be parsed for any reason
+     * is counted as invalid and skipped.
+     */
+    void parse(Map<WinePropertyName, Integer> columns) throws InterruptedException {
+      while (true) {
+        Chunk<String[]> chunk = rowQueue.take();
+        if (chunk.isEnd() || cancelled) {
+          return;
+        }
+        List<Wine> wines = new ArrayList<>(chunk.items().size());
+        int invalid = 0;
+        for (String[] row : chunk.items()) {
+          try {
+            wines.add(importService.parseWine(columns, row));
+          } catch (ValidationException | RuntimeException error) {
+            invalid++;
+            log.error("Could not parse a wine: {}", error.getMessage());
+          }
+        }
+        rowsInvalid.addAndGet(invalid);
+        rowsParsed.addAndGet(chunk.items().size());
+        wineQueue.put(new Chunk<>(chunk.sequence(), wines));
+      }
+    }
+
+    /**
+     * Writes parsed chunks in sequence order until every worker has finished. Chunks parsed ahead
+     * of the next one to write are held until it arrives.
+     */
+    void write(WineDao.BatchWriter writer, Consumer<WineImportProgress> listener)
+        throws SQLException, IOException {
+      Map<Long, Chunk<Wine>> waiting = new HashMap<>();
+      long nextSequence = 0;
+      int workersEnded = 0;
+      try {
+        while (workersEnded < workerCount && !cancelled) {
+          rethrowFailure();
+          Chunk<Wine> chunk = wineQueue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+          if (chunk == null) {
+            continue;
+          }
+          if (chunk.isEnd()) {
+            workersEnded++;
+            continue;
+          }
+          waiting.put(chunk.sequence(), chunk);
+          for (Chunk<Wine> next = waiting.remove(nextSequence); next != null && !cancelled;
+              next = waiting.remove(++nextSequence)) {
+            writer.write(next.items());
+            rowsWritten += next.items().size();
+            listener.accept(progress());
+          }
+        }
+      } catch (InterruptedException error) {
+        cancel();
+        Thread.currentThread().interrupt();
+      }
+      // a stage which failed records it before marking its end, so it is seen here at the latest
+      rethrowFailure();
+    }
+
+    /**
+     * Throws the failure of a reader or worker stage, if there was one, as the exception it was
+     * thrown with or the IOException an unchecked one wraps.
+     */
+    private void rethrowFailure() throws SQLException, IOException {
+      Throwable error = failure.get();
+      if (error == null) {
+        return;
+      }
+      if (error instanceof SQLException sqlError) {
+        throw sqlError;
+      } else if (error instanceof IOException ioError) {
+        throw ioError;
+      } else if (error instanceof UncheckedIOException ioError) {
+        throw ioError.getCause();
+      } else if (error instanceof RuntimeException runtimeError) {
+        throw runtimeError;
+      } else if (error instanceof Error fatalError) {
+        throw fatalError;
+      }
+      throw new IllegalStateException("Wine import stage failed", error);
+    }
+
+    /**
+     * Gets the current progress of the stages.
+     */
+    WineImportProgress progress() {
+      long now = System.nanoTime();
+      return new WineImportProgress(rowsRead.get(), rowsParsed.get(), rowsInvalid.get(),
+          rowsWritten, totalRows, rate(rowsRead.get(), readFinishedNanos, now),
+          rate(rowsParsed.get(), parseFinishedNanos, now), rate(rowsWritten, 0, now));
+    }
+
+    /**
+     * Gets the rows per second a stage has handled, up to when it finished if it has.
+     */
+    private double rate(long rows, long finishedNanos, long now) {
+      long elapsedNanos = (finishedNanos == 0 ? now : finishedNanos) - startNanos;
+      return elapsedNanos <= 0 ? 0 : rows * 1e9 / elapsedNanos;
+    }
+
+    long elapsedMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+  }
+}
@@ -5,6 +5,9 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import seng202.team6.enums.WinePropertyName;
+import seng202.team6.model.Wine;
+import seng202.team6.util.WineValidator;
+import seng202.team6.util.exceptions.ValidationException;
 
 
 /**
@@ -42,6 +45,33 @@ public class WineImportService {
         ? row[valid.get(winePropertyName)] : "";
   }
 
+  /**
+   * Parses a row into a wine using the selected columns. Holds no state, so rows may be parsed on
+   * several threads at once.
+   *
+   * @param valid map of valid wine property names to their column index
+   * @param row   row of table to import
+   * @return parsed wine
+   * @throws ValidationException if the row does not describe a valid wine
+   */
+  public Wine parseWine(Map<WinePropertyName, Integer> valid, String[] row)
+      throws ValidationException {
+    return WineValidator.parseWine(
+        extractPropertyFromRowOrDefault(valid, row, WinePropertyName.TITLE),
+        extractPropertyFromRowOrDefault(valid, row, WinePropertyName.VARIETY),
+        extractPropertyFromRowOrDefault(valid, row, WinePropertyName.COUNTRY),
+        extractPropertyFromRowOrDefault(valid, row, WinePropertyName.REGION),
+        extractPropertyFromRowOrDefault(valid, row, WinePropertyName.WINERY),
+        extractPropertyFromRowOrDefault(valid, row, WinePropertyName.COLOUR),
+        extractPropertyFromRowOrDefault(valid, row, WinePropertyName.VINTAGE),
+        extractPropertyFromRowOrDefault(valid, row, WinePropertyName.DESCRIPTION),
+        extractPropertyFromRowOrDefault(valid, row, WinePropertyName.SCORE),
+        extractPropertyFromRowOrDefault(valid, row, WinePropertyName.ABV),
+        extractPropertyFromRowOrDefault(valid, row, WinePropertyName.PRICE),
+        null
+    );
+  }
+
   /**
    * Check for duplicate attribute names.
    *
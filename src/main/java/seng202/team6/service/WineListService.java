@@ -31,10 +31,12 @@ public class WineListService {
   }
 
   /**
-   * Initializes the service.
+   * Initializes the service. The wines in the user's lists are loaded with them, so checking
+   * whether a wine is in a list does not query the database.
    */
   public void init() throws SQLException {
     User user = authenticationManager.getAuthenticatedUser();
+    databaseManager.getWineListDao().loadMembership(user);
     wineLists.addAll(databaseManager.getWineListDao().getAll(user));
   }
 
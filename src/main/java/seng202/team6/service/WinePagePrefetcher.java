@@ -0,0 +1,159 @@
+package seng202.team6.service;
+
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import seng202.team6.dao.WineDao;
+import seng202.team6.model.WinePage;
+import seng202.team6.model.WinePageRequest;
+import seng202.team6.util.BoundedCache;
+
+/**
+ * Loads the pages either side of the one being viewed in the background, so flipping to them does
+ * not wait on the database. Prefetched pages are kept in a small cache and each is handed out
+ * once; a page prefetched before a write to WINE is discarded and loaded again.
+ */
+public class WinePagePrefetcher {
+
+  /**
+   * Number of prefetched pages kept, the pages either side of the current one and a couple more.
+   */
+  public static final int DEFAULT_CAPACITY = 4;
+
+  private final Logger log = LogManager.getLogger(WinePagePrefetcher.class);
+  private final WineDao wineDao;
+  private final Executor executor;
+  private final BoundedCache<WinePageRequest, Prefetch> pages;
+  private long hits = 0;
+  private long misses = 0;
+
+  /**
+   * Constructs a prefetcher keeping the default number of pages.
+   *
+   * @param wineDao  wine dao to search
+   * @param executor executor to load pages on, such as the database executor
+   */
+  public WinePagePrefetcher(WineDao wineDao, Executor executor) {
+    this(wineDao, executor, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param wineDao  wine dao to search
+   * @param executor executor to load pages on
+   * @param capacity most prefetched pages to keep
+   */
+  public WinePagePrefetcher(WineDao wineDao, Executor executor, int capacity) {
+    this.wineDao = wineDao;
+    this.executor = executor;
+    this.pages = new BoundedCache<>(capacity);
+  }
+
+  /**
+   * Starts loading a page in the background unless it is already loaded or loading.
+   *
+   * @param request page to load
+   */
+  public void prefetch(WinePageRequest request) {
+    if (pages.get(request) != null) {
+      return;
+    }
+    long generation = wineDao.getPageGeneration();
+    CompletableFuture<WinePage> page = CompletableFuture.supplyAsync(() -> {
+      try {
+        return load(request);
+      } catch (SQLException error) {
+        throw new CompletionException(error);
+      }
+    }, executor);
+    pages.put(request, new Prefetch(page, generation));
+  }
+
+  /**
+   * Checks if a page has been prefetched and is still up to date, so getting it will not wait.
+   *
+   * @param request page
+   * @return true if the page is ready
+   */
+  public boolean isReady(WinePageRequest request) {
+    Prefetch prefetch = pages.get(request);
+    return prefetch != null && isCurrent(prefetch) && prefetch.page.isDone()
+        && !prefetch.page.isCompletedExceptionally();
+  }
+
+  /**
+   * Gets a page, taking it from the prefetched pages if it is there and up to date and otherwise
+   * loading it. A page still being prefetched is waited for rather than loaded twice.
+   *
+   * @param request page to get
+   * @return page of wines
+   * @throws SQLException if the page could not be loaded
+   */
+  public WinePage get(WinePageRequest request) throws SQLException {
+    Prefetch prefetch = pages.remove(request);
+    if (prefetch != null && isCurrent(prefetch)) {
+      try {
+        WinePage page = prefetch.page.join();
+        synchronized (this) {
+          hits++;
+        }
+        return page;
+      } catch (CompletionException error) {
+        log.error("Prefetching a page of wines failed, loading it again", error.getCause());
+      }
+    }
+    synchronized (this) {
+      misses++;
+    }
+    return load(request);
+  }
+
+  /**
+   * Drops every prefetched page.
+   */
+  public void clear() {
+    pages.invalidateAll();
+  }
+
+  /**
+   * Gets the number of pages which were taken from the prefetched pages.
+   *
+   * @return number of hits
+   */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * Gets the number of pages which had to be loaded when they were asked for.
+   *
+   * @return number of misses
+   */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  private boolean isCurrent(Prefetch prefetch) {
+    return prefetch.generation == wineDao.getPageGeneration();
+  }
+
+  private WinePage load(WinePageRequest request) throws SQLException {
+    return request.after() != null
+        ? wineDao.search(request.filters(), request.order(), request.after(), request.limit())
+        : wineDao.search(request.filters(), request.order(), request.offset(), request.limit());
+  }
+
+  /**
+   * A page being prefetched.
+   *
+   * @param page       page once loaded
+   * @param generation page generation of the wine dao when the prefetch started
+   */
+  private record Prefetch(CompletableFuture<WinePage> page, long generation) {
+
+  }
+}
@@ -2,6 +2,7 @@ package seng202.team6.service;
 
 import java.sql.Date;
 import java.sql.SQLException;
+import java.util.List;
 import javafx.beans.binding.Bindings;
 import javafx.beans.binding.StringBinding;
 import javafx.beans.property.Property;
@@ -55,12 +56,32 @@ public class WineReviewsService {
    * Initialize the service.
    */
   public void init() {
-    String username = authenticationManager.getAuthenticatedUsername();
     try {
-      wineReviews.addAll(databaseManager.getWineReviewDao().getAll(wine));
+      setReviews(loadReviews());
     } catch (SQLException e) {
       throw new RuntimeException(e);
     }
+  }
+
+  /**
+   * Loads the reviews of the wine without changing the service, so they can be loaded off the
+   * JavaFX application thread and passed to {@link #setReviews} on it.
+   *
+   * @return reviews of the wine
+   * @throws SQLException if the reviews could not be loaded
+   */
+  public List<WineReview> loadReviews() throws SQLException {
+    return databaseManager.getWineReviewDao().getAll(wine);
+  }
+
+  /**
+   * Sets the reviews of the wine and finds the authenticated user's review among them.
+   *
+   * @param reviews reviews of the wine
+   */
+  public void setReviews(List<WineReview> reviews) {
+    String username = authenticationManager.getAuthenticatedUsername();
+    wineReviews.setAll(reviews);
     usersReview.setValue(wineReviews.stream()
         .filter(wineReview -> wineReview.getUsername().equals(username))
         .findFirst()
@@ -79,7 +100,7 @@ public class WineReviewsService {
       WineReview usersReview = getUsersReview();
       usersReview.setRating(rating);
       usersReview.setDescription(description);
-      calculateAverageReview();
+      refreshAverageRating();
       return;
     }
     Date currentDate = new Date(System.currentTimeMillis());
@@ -88,7 +109,7 @@ public class WineReviewsService {
     if (wineReview != null) {
       wineReviews.add(wineReview);
       usersReview.setValue(wineReview);
-      calculateAverageReview();
+      refreshAverageRating();
     }
   }
 
@@ -101,7 +122,7 @@ public class WineReviewsService {
       databaseManager.getWineReviewDao().delete(wineReview);
       usersReview.setValue(null);
       wineReviews.remove(wineReview);
-      calculateAverageReview();
+      refreshAverageRating();
     }
   }
 
@@ -187,12 +208,9 @@ public class WineReviewsService {
   }
 
   /**
-   * Updates the average rating.
+   * Updates the average rating of the wine, which the database keeps as reviews change.
    */
-  private void calculateAverageReview() {
-    double sum = wineReviews.stream()
-        .mapToDouble(WineReview::getRating)
-        .sum();
-    wine.setAverageRating(sum / getWineReviews().size());
+  private void refreshAverageRating() throws SQLException {
+    databaseManager.getWineDao().refreshAverageRatings(List.of(wine.getKey()));
   }
 }
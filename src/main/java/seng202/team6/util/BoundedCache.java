@@ -0,0 +1,221 @@
+package seng202.team6.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+import seng202.team6.model.CacheStats;
+
+/**
+ * A cache holding strong references to its values, bounded by both the number of entries and
+ * their approximate size in bytes. The least recently used entries are evicted once either bound
+ * is exceeded, and entries older than the time to live are dropped when they are next read.
+ *
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+public class BoundedCache<K, V> {
+
+  private final int maxEntries;
+  private final long maxBytes;
+  private final long timeToLiveNanos;
+  private final ToLongFunction<V> weigher;
+  private final LongSupplier nanoClock;
+
+  /**
+   * Entries in access order, the eldest entry is the least recently used.
+   */
+  private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  private long bytes = 0;
+  private long hits = 0;
+  private long misses = 0;
+  private long evictions = 0;
+  private long expirations = 0;
+
+  /**
+   * Constructs a cache bounded only by the number of entries, whose entries never expire.
+   *
+   * @param maxEntries most entries to hold
+   */
+  public BoundedCache(int maxEntries) {
+    this(maxEntries, Long.MAX_VALUE, 0, value -> 1);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param maxEntries      most entries to hold
+   * @param maxBytes        most approximate bytes of values to hold
+   * @param timeToLiveNanos time after being put that an entry expires, or 0 to never expire
+   * @param weigher         estimates the size of a value in bytes
+   */
+  public BoundedCache(int maxEntries, long maxBytes, long timeToLiveNanos,
+      ToLongFunction<V> weigher) {
+    this(maxEntries, maxBytes, timeToLiveNanos, weigher, System::nanoTime);
+  }
+
+  /**
+   * Constructor taking the clock entries are timed by.
+   *
+   * @param maxEntries      most entries to hold
+   * @param maxBytes        most approximate bytes of values to hold
+   * @param timeToLiveNanos time after being put that an entry expires, or 0 to never expire
+   * @param weigher         estimates the size of a value in bytes
+   * @param nanoClock       current time in nanoseconds
+   */
+  public BoundedCache(int maxEntries, long maxBytes, long timeToLiveNanos,
+      ToLongFunction<V> weigher, LongSupplier nanoClock) {
+    if (maxEntries <= 0 || maxBytes <= 0) {
+      throw new IllegalArgumentException("Bounds must be positive");
+    }
+    this.maxEntries = maxEntries;
+    this.maxBytes = maxBytes;
+    this.timeToLiveNanos = timeToLiveNanos;
+    this.weigher = weigher;
+    this.nanoClock = nanoClock;
+  }
+
+  /**
+   * Gets a value from the cache, marking it as recently used.
+   *
+   * @param key key
+   * @return stored value, or null if there is none or it has expired
+   */
+  public synchronized V get(K key) {
+    Entry<V> entry = entries.get(key);
+    if (entry == null) {
+      misses++;
+      return null;
+    }
+    if (timeToLiveNanos > 0 && nanoClock.getAsLong() - entry.putNanos >= timeToLiveNanos) {
+      entries.remove(key);
+      bytes -= entry.bytes;
+      expirations++;
+      misses++;
+      return null;
+    }
+    hits++;
+    return entry.value;
+  }
+
+  /**
+   * Adds a value to the cache, evicting the least recently used entries until it is within its
+   * bounds. A value larger than the byte bound is not cached.
+   *
+   * @param key   key
+   * @param value value
+   * @return values evicted to make room, for callers which must release them
+   */
+  public synchronized List<V> put(K key, V value) {
+    long weight = weigher.applyAsLong(value);
+    Entry<V> previous = entries.remove(key);
+    if (previous != null) {
+      bytes -= previous.bytes;
+    }
+    if (weight > maxBytes) {
+      return List.of();
+    }
+    entries.put(key, new Entry<>(value, weight, nanoClock.getAsLong()));
+    bytes += weight;
+    List<V> evicted = new ArrayList<>();
+    Iterator<Entry<V>> eldest = entries.values().iterator();
+    while (entries.size() > maxEntries || bytes > maxBytes) {
+      Entry<V> entry = eldest.next();
+      bytes -= entry.bytes;
+      eldest.remove();
+      evicted.add(entry.value);
+      evictions++;
+    }
+    return evicted;
+  }
+
+  /**
+   * Checks if the cache holds a value for a key, without marking it as recently used or counting
+   * a read.
+   *
+   * @param key key
+   * @return true if there is a value, even if it has expired
+   */
+  public synchronized boolean containsKey(K key) {
+    return entries.containsKey(key);
+  }
+
+  /**
+   * Removes a value from the cache and returns it, without counting a read.
+   *
+   * @param key key
+   * @return removed value, or null if there was none or it has expired
+   */
+  public synchronized V remove(K key) {
+    Entry<V> entry = entries.remove(key);
+    if (entry == null) {
+      return null;
+    }
+    bytes -= entry.bytes;
+    if (timeToLiveNanos > 0 && nanoClock.getAsLong() - entry.putNanos >= timeToLiveNanos) {
+      expirations++;
+      return null;
+    }
+    return entry.value;
+  }
+
+  /**
+   * Removes a value from the cache.
+   *
+   * @param key key
+   */
+  public synchronized void invalidate(K key) {
+    Entry<V> entry = entries.remove(key);
+    if (entry != null) {
+      bytes -= entry.bytes;
+    }
+  }
+
+  /**
+   * Removes all values from the cache.
+   *
+   * @return removed values, for callers which must release them
+   */
+  public synchronized List<V> invalidateAll() {
+    List<V> removed = new ArrayList<>(entries.size());
+    for (Entry<V> entry : entries.values()) {
+      removed.add(entry.value);
+    }
+    entries.clear();
+    bytes = 0;
+    return removed;
+  }
+
+  /**
+   * Gets the number of entries in the cache, including expired ones not yet read.
+   *
+   * @return number of entries
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Gets the counters and current size of the cache.
+   *
+   * @return cache stats
+   */
+  public synchronized CacheStats getStats() {
+    return new CacheStats(hits, misses, evictions, expirations, entries.size(), bytes);
+  }
+
+  /**
+   * A cached value.
+   *
+   * @param value    value
+   * @param bytes    approximate size of the value
+   * @param putNanos time the value was put
+   * @param <V>      Value type
+   */
+  private record Entry<V>(V value, long bytes, long putNanos) {
+
+  }
+}
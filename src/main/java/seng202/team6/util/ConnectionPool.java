@@ -0,0 +1,349 @@
+package seng202.team6.util;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Hands out connections to a database: one writer connection, which writers queue for in the order
+ * they arrive, and a small pool of read-only connections for queries.
+ * <p>
+ * In WAL mode a reader sees the database as it was when its query started and is never blocked by
+ * the writer, so queries keep running while an import holds a long transaction open. Readers only
+ * see committed changes, so a thread holding the writer reads through the writer to see its own
+ * uncommitted changes. Without readers, such as for an in-memory database or a database not in
+ * WAL mode, every query runs on the writer and queues for it like a write.
+ * </p>
+ * <p>
+ * Each connection has its own {@link StatementCache}, so SQL run often is only parsed once per
+ * connection.
+ * </p>
+ */
+public class ConnectionPool implements AutoCloseable {
+
+  /**
+   * Number of read-only connections opened by default.
+   */
+  public static final int DEFAULT_READER_COUNT = Math.min(4,
+      Runtime.getRuntime().availableProcessors());
+
+  private static final Logger log = LogManager.getLogger(ConnectionPool.class);
+
+  private final Connection writer;
+  private final ReentrantLock writerLock = new ReentrantLock(true);
+  private final List<Connection> readers = new ArrayList<>();
+  private final BlockingQueue<Connection> idleReaders = new LinkedBlockingQueue<>();
+  private final ThreadLocal<Connection> currentReader = new ThreadLocal<>();
+  private final Map<Connection, StatementCache> statementCaches = new IdentityHashMap<>();
+
+  /**
+   * Constructs a pool running every query on the writer connection until readers are opened.
+   *
+   * @param writer connection used for writes and reads
+   * @see #openReaders
+   */
+  public ConnectionPool(Connection writer) {
+    this.writer = writer;
+    statementCaches.put(writer, new StatementCache(writer, StatementCache.DEFAULT_CAPACITY));
+  }
+
+  /**
+   * Constructs a pool opening read-only connections to the writer's database. No readers are
+   * opened unless the writer is in WAL mode, as readers would otherwise block on its transactions.
+   *
+   * @param writer      connection used for writes
+   * @param jdbcUrl     JDBC URL of the database the writer is connected to
+   * @param readerCount number of read-only connections to open
+   * @param profile     pragmas to apply to the read-only connections
+   * @throws SQLException if a read-only connection could not be opened
+   */
+  public ConnectionPool(Connection writer, String jdbcUrl, int readerCount,
+      ConnectionProfile profile) throws SQLException {
+    this(writer);
+    openReaders(jdbcUrl, readerCount, profile);
+  }
+
+  /**
+   * Opens read-only connections to the writer's database, for a pool created before the schema
+   * existed. No readers are opened unless the writer is in WAL mode, as readers would otherwise
+   * block on its transactions. Must be called before the pool is shared with other threads.
+   *
+   * @param jdbcUrl     JDBC URL of the database the writer is connected to
+   * @param readerCount number of read-only connections to open
+   * @param profile     pragmas to apply to the read-only connections
+   * @throws SQLException if a read-only connection could not be opened, in which case the pool is
+   *                      closed
+   */
+  public void openReaders(String jdbcUrl, int readerCount, ConnectionProfile profile)
+      throws SQLException {
+    if (!readers.isEmpty()) {
+      throw new IllegalStateException("Read-only connections are already open");
+    }
+    String journalMode;
+    try (Statement statement = writer.createStatement();
+        ResultSet resultSet = statement.executeQuery("PRAGMA journal_mode")) {
+      journalMode = resultSet.next() ? resultSet.getString(1) : "";
+    }
+    if (!"wal".equalsIgnoreCase(journalMode)) {
+      log.info("Running queries on the writer connection as the journal mode is {}", journalMode);
+      return;
+    }
+    try {
+      for (int i = 0; i < readerCount; i++) {
+        Connection reader = DriverManager.getConnection(jdbcUrl);
+        readers.add(reader);
+        profile.apply(reader);
+        try (Statement statement = reader.createStatement()) {
+          statement.execute("PRAGMA query_only = true");
+        }
+        statementCaches.put(reader, new StatementCache(reader, StatementCache.DEFAULT_CAPACITY));
+        idleReaders.add(reader);
+      }
+    } catch (SQLException error) {
+      close();
+      throw error;
+    }
+    log.info("Successfully opened {} read-only connections", readerCount);
+  }
+
+  /**
+   * Gets the writer connection. Writes should hold the writer while they run.
+   *
+   * @return writer connection
+   * @see #lockWriter()
+   */
+  public Connection getWriter() {
+    return writer;
+  }
+
+  /**
+   * Gets the number of read-only connections.
+   *
+   * @return read-only connections, 0 if every query runs on the writer
+   */
+  public int getReaderCount() {
+    return readers.size();
+  }
+
+  /**
+   * Waits for the writer, queueing behind threads which asked for it first. Must be followed by
+   * {@link #unlockWriter()} once the write is done, and may be held again by the same thread.
+   */
+  public void lockWriter() {
+    writerLock.lock();
+  }
+
+  /**
+   * Takes the writer if no other thread holds it, without waiting. Must be followed by
+   * {@link #unlockWriter()} if it returns true.
+   *
+   * @return true if the writer was taken
+   */
+  public boolean tryLockWriter() {
+    return writerLock.tryLock();
+  }
+
+  /**
+   * Releases the writer to the next queued thread.
+   */
+  public void unlockWriter() {
+    writerLock.unlock();
+  }
+
+  /**
+   * Runs a write on the writer connection, holding the writer while it runs.
+   *
+   * @param operation write to run
+   * @param <T>       type of the result
+   * @return result of the write
+   * @throws SQLException if the write failed
+   */
+  public <T> T write(Operation<T> operation) throws SQLException {
+    writerLock.lock();
+    try {
+      return operation.run(writer);
+    } finally {
+      writerLock.unlock();
+    }
+  }
+
+  /**
+   * Runs a query on a read-only connection, waiting for one to be free. Queries run on the writer
+   * if there are no readers or the calling thread holds the writer, holding the writer while they
+   * run so they never share it with a write on another thread. A query run while the calling
+   * thread is already reading uses the same reader.
+   *
+   * @param operation query to run
+   * @param <T>       type of the result
+   * @return result of the query
+   * @throws SQLException if the query failed or the thread was interrupted while waiting
+   */
+  public <T> T read(Operation<T> operation) throws SQLException {
+    if (readers.isEmpty() || writerLock.isHeldByCurrentThread()) {
+      return write(operation);
+    }
+    Connection reader = currentReader.get();
+    if (reader != null) {
+      return operation.run(reader);
+    }
+    try {
+      reader = idleReaders.take();
+    } catch (InterruptedException error) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("Interrupted while waiting for a read-only connection", error);
+    }
+    currentReader.set(reader);
+    try {
+      return operation.run(reader);
+    } finally {
+      currentReader.remove();
+      idleReaders.add(reader);
+    }
+  }
+
+  /**
+   * Borrows a connection to read from until the returned lease is closed, for reads which outlive
+   * one call such as a cursor handed to the caller. The connection is a read-only connection taken
+   * out of the pool, or the writer, held until the lease is closed, if there are no readers or the
+   * calling thread holds the writer.
+   * <p>
+   * A lease holding the writer must be closed by the thread which borrowed it.
+   * </p>
+   *
+   * @return lease of a connection, which must be closed to return the connection
+   * @throws SQLException if the thread was interrupted while waiting for a connection
+   */
+  public Lease borrowReader() throws SQLException {
+    if (readers.isEmpty() || writerLock.isHeldByCurrentThread()) {
+      writerLock.lock();
+      return new Lease(writer, true);
+    }
+    try {
+      return new Lease(idleReaders.take(), false);
+    } catch (InterruptedException error) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("Interrupted while waiting for a read-only connection", error);
+    }
+  }
+
+  /**
+   * Gets a prepared statement for the SQL on a connection from this pool, reusing one from the
+   * connection's statement cache if possible. Closing the statement returns it to the cache.
+   *
+   * @param connection connection handed out by this pool
+   * @param sql        SQL to prepare
+   * @return prepared statement
+   * @throws SQLException if the statement could not be prepared
+   */
+  public PreparedStatement prepare(Connection connection, String sql) throws SQLException {
+    StatementCache statementCache = statementCaches.get(connection);
+    if (statementCache == null) {
+      return connection.prepareStatement(sql);
+    }
+    return statementCache.prepare(sql);
+  }
+
+  /**
+   * Gets the number of statements reused from the statement caches of every connection.
+   *
+   * @return statement cache hits
+   */
+  public long getStatementCacheHits() {
+    return statementCaches.values().stream().mapToLong(StatementCache::getHits).sum();
+  }
+
+  /**
+   * Gets the number of statements which had to be prepared on any connection.
+   *
+   * @return statement cache misses
+   */
+  public long getStatementCacheMisses() {
+    return statementCaches.values().stream().mapToLong(StatementCache::getMisses).sum();
+  }
+
+  /**
+   * Closes the read-only connections and every cached statement. The writer is left open for its
+   * owner to close.
+   */
+  @Override
+  public void close() {
+    for (StatementCache statementCache : statementCaches.values()) {
+      statementCache.close();
+    }
+    for (Connection reader : readers) {
+      try {
+        reader.close();
+      } catch (SQLException error) {
+        log.error("Failed to close a read-only connection", error);
+      }
+    }
+    readers.clear();
+    idleReaders.clear();
+  }
+
+  /**
+   * A connection borrowed from the pool until the lease is closed.
+   */
+  public final class Lease implements AutoCloseable {
+
+    private final Connection connection;
+    private final boolean holdsWriter;
+    private boolean closed = false;
+
+    private Lease(Connection connection, boolean holdsWriter) {
+      this.connection = connection;
+      this.holdsWriter = holdsWriter;
+    }
+
+    public Connection getConnection() {
+      return connection;
+    }
+
+    /**
+     * Returns the connection to the pool, or releases the writer. Closing a lease again does
+     * nothing.
+     */
+    @Override
+    public synchronized void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      if (holdsWriter) {
+        writerLock.unlock();
+      } else {
+        idleReaders.add(connection);
+      }
+    }
+  }
+
+  /**
+   * Database work run on a connection from the pool.
+   *
+   * @param <T> type of the result
+   */
+  @FunctionalInterface
+  public interface Operation<T> {
+
+    /**
+     * Runs the work.
+     *
+     * @param connection connection to use, which must not be kept once the work returns
+     * @return result of the work
+     * @throws SQLException if the work failed
+     */
+    T run(Connection connection) throws SQLException;
+  }
+}
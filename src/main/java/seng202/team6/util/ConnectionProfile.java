@@ -0,0 +1,151 @@
+package seng202.team6.util;
+
+import io.github.cdimascio.dotenv.Dotenv;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.function.Function;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * SQLite settings applied to a database connection when it is opened.
+ * <p>
+ * The throughput profile, used unless the settings say otherwise, writes through a write-ahead log
+ * with synchronous=NORMAL. A commit then appends to the log without waiting for the disk, and the
+ * log is synced when it is checkpointed. The database cannot be corrupted this way, but the last
+ * few commits before a power failure may be lost. Reads are served from a larger page cache and
+ * memory-mapped pages, and temporary tables and indexes are kept in memory.
+ * </p>
+ *
+ * @param journalMode       journal_mode pragma, such as WAL or DELETE
+ * @param synchronous       synchronous pragma, such as NORMAL or FULL
+ * @param mmapSize          bytes of the database file to memory map, or 0 to read it normally
+ * @param cacheSize         cache_size pragma, pages if positive or KiB if negative
+ * @param tempStore         temp_store pragma, such as MEMORY or DEFAULT
+ * @param busyTimeoutMillis time to wait for a lock held by another connection
+ */
+public record ConnectionProfile(String journalMode, String synchronous, long mmapSize,
+    int cacheSize, String tempStore, int busyTimeoutMillis) {
+
+  /**
+   * SQLite's own defaults, with the driver's default busy timeout.
+   */
+  public static final ConnectionProfile SQLITE_DEFAULTS = new ConnectionProfile("DELETE", "FULL",
+      0, -2000, "DEFAULT", 3000);
+
+  /**
+   * Settings for write throughput, described above.
+   */
+  public static final ConnectionProfile THROUGHPUT = new ConnectionProfile("WAL", "NORMAL",
+      256L * 1024 * 1024, -64 * 1024, "MEMORY", 5000);
+
+  private static final Logger log = LogManager.getLogger(ConnectionProfile.class);
+
+  private static final Set<String> JOURNAL_MODES = Set.of("DELETE", "TRUNCATE", "PERSIST",
+      "MEMORY", "WAL", "OFF");
+  private static final Set<String> SYNCHRONOUS_MODES = Set.of("OFF", "NORMAL", "FULL", "EXTRA");
+  private static final Set<String> TEMP_STORES = Set.of("DEFAULT", "FILE", "MEMORY");
+
+  /**
+   * Loads the profile from the .env settings file, or the throughput profile if there is none.
+   *
+   * @return connection profile
+   * @see #fromSettings(Function)
+   */
+  public static ConnectionProfile load() {
+    Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
+    return fromSettings(dotenv::get);
+  }
+
+  /**
+   * Reads a profile from settings. DB_PROFILE picks the base profile, either "throughput" or
+   * "default" for SQLite's defaults. DB_JOURNAL_MODE, DB_SYNCHRONOUS, DB_MMAP_SIZE, DB_CACHE_SIZE,
+   * DB_TEMP_STORE and DB_BUSY_TIMEOUT override single settings of the base profile. Invalid
+   * values are logged and ignored.
+   *
+   * @param settings looks up a setting by name, returning null if it is not set
+   * @return connection profile
+   */
+  public static ConnectionProfile fromSettings(Function<String, String> settings) {
+    String name = settings.apply("DB_PROFILE");
+    ConnectionProfile base = "default".equalsIgnoreCase(name) ? SQLITE_DEFAULTS : THROUGHPUT;
+    return new ConnectionProfile(
+        readMode(settings, "DB_JOURNAL_MODE", JOURNAL_MODES, base.journalMode),
+        readMode(settings, "DB_SYNCHRONOUS", SYNCHRONOUS_MODES, base.synchronous),
+        readNumber(settings, "DB_MMAP_SIZE", base.mmapSize),
+        (int) readNumber(settings, "DB_CACHE_SIZE", base.cacheSize),
+        readMode(settings, "DB_TEMP_STORE", TEMP_STORES, base.tempStore),
+        (int) readNumber(settings, "DB_BUSY_TIMEOUT", base.busyTimeoutMillis));
+  }
+
+  private static String readMode(Function<String, String> settings, String key,
+      Set<String> allowed, String fallback) {
+    String value = settings.apply(key);
+    if (value == null) {
+      return fallback;
+    }
+    String mode = value.trim().toUpperCase(Locale.ROOT);
+    if (!allowed.contains(mode)) {
+      log.warn("Ignoring invalid {} '{}', expected one of {}", key, value, allowed);
+      return fallback;
+    }
+    return mode;
+  }
+
+  private static long readNumber(Function<String, String> settings, String key, long fallback) {
+    String value = settings.apply(key);
+    if (value == null) {
+      return fallback;
+    }
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException error) {
+      log.warn("Ignoring invalid {} '{}', expected a whole number", key, value);
+      return fallback;
+    }
+  }
+
+  /**
+   * Applies the profile to an open connection. Must be called before the connection is used, as
+   * the journal mode cannot change inside a transaction.
+   *
+   * @param connection connection to configure
+   * @throws SQLException if a pragma could not be set
+   */
+  public void apply(Connection connection) throws SQLException {
+    try (Statement statement = connection.createStatement()) {
+      statement.execute("PRAGMA busy_timeout = " + busyTimeoutMillis);
+      statement.execute("PRAGMA journal_mode = " + journalMode);
+      statement.execute("PRAGMA synchronous = " + synchronous);
+      statement.execute("PRAGMA mmap_size = " + mmapSize);
+      statement.execute("PRAGMA cache_size = " + cacheSize);
+      statement.execute("PRAGMA temp_store = " + tempStore);
+    }
+  }
+
+  /**
+   * Describes the pragmas in effect on a connection, as SQLite reports them. The journal mode an
+   * in-memory database reports is always memory, whatever was requested.
+   *
+   * @param connection connection to describe
+   * @return pragma names and values
+   * @throws SQLException if a pragma could not be read
+   */
+  public static String describe(Connection connection) throws SQLException {
+    StringJoiner description = new StringJoiner(", ");
+    try (Statement statement = connection.createStatement()) {
+      for (String pragma : new String[]{"journal_mode", "synchronous", "mmap_size", "cache_size",
+          "temp_store", "busy_timeout", "foreign_keys"}) {
+        try (ResultSet resultSet = statement.executeQuery("PRAGMA " + pragma)) {
+          description.add(pragma + "=" + (resultSet.next() ? resultSet.getString(1) : "?"));
+        }
+      }
+    }
+    return description.toString();
+  }
+}
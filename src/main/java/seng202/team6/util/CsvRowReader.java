@@ -0,0 +1,203 @@
+package seng202.team6.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvValidationException;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Reads the rows of a CSV file one at a time. The encoding is detected from a bounded prefix of
+ * the file, and the rest is read through a buffered file channel as rows are requested, so reading
+ * a file takes the same memory however large it is.
+ * <p>
+ * Failures while reading rows are thrown as unchecked exceptions, as {@link Iterator} allows no
+ * checked ones.
+ * </p>
+ */
+public class CsvRowReader implements Iterator<String[]>, Closeable {
+
+  /**
+   * Number of bytes at the start of the file the encoding is detected from.
+   */
+  public static final int SNIFF_BYTES = 64 * 1024;
+
+  private static final Logger log = LogManager.getLogger(CsvRowReader.class);
+
+  /**
+   * Size of the buffer between the file channel and the decoder.
+   */
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final CSVReader csvReader;
+  private final Charset charset;
+  private final long size;
+  private final CountingInputStream counter;
+  private String[] nextRow;
+  private boolean finished = false;
+
+  /**
+   * Opens a CSV file and detects its encoding.
+   *
+   * @param path path of the CSV file
+   * @throws IOException if the file could not be opened
+   */
+  public CsvRowReader(Path path) throws IOException {
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+    size = channel.size();
+    counter = new CountingInputStream(Channels.newInputStream(channel));
+    InputStream input = new BufferedInputStream(counter, BUFFER_SIZE);
+    try {
+      charset = detectCharset(input);
+      csvReader = new CSVReader(new InputStreamReader(input, charset));
+    } catch (IOException | RuntimeException error) {
+      input.close();
+      throw error;
+    }
+    log.info("Opened {} as {}", path, charset.name());
+  }
+
+  /**
+   * Detects the encoding from the first {@link #SNIFF_BYTES} bytes of a stream, leaving the stream
+   * where it was.
+   *
+   * @param input stream supporting mark and reset
+   * @return detected charset, or UTF-8 if detection fails or Java cannot decode the detected one
+   * @throws IOException if the prefix could not be read
+   */
+  private static Charset detectCharset(InputStream input) throws IOException {
+    input.mark(SNIFF_BYTES);
+    byte[] prefix = input.readNBytes(SNIFF_BYTES);
+    input.reset();
+    String name = ProcessCsv.detectFileEncoding(prefix);
+    if (!Charset.isSupported(name)) {
+      log.warn("Detected charset {} is not supported, reading as UTF-8", name);
+      return UTF_8;
+    }
+    return Charset.forName(name);
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (nextRow == null && !finished) {
+      nextRow = readRow();
+      finished = nextRow == null;
+    }
+    return nextRow != null;
+  }
+
+  @Override
+  public String[] next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    String[] row = nextRow;
+    nextRow = null;
+    return row;
+  }
+
+  /**
+   * Reads the next row from the file.
+   *
+   * @return next row, or null at the end of the file
+   */
+  private String[] readRow() {
+    try {
+      return csvReader.readNext();
+    } catch (IOException error) {
+      throw new UncheckedIOException(error);
+    } catch (CsvValidationException error) {
+      throw new IllegalStateException("Invalid CSV at line " + csvReader.getLinesRead(), error);
+    }
+  }
+
+  /**
+   * Gets the charset the file is decoded with.
+   *
+   * @return detected charset
+   */
+  public Charset getCharset() {
+    return charset;
+  }
+
+  /**
+   * Gets the size of the file.
+   *
+   * @return size in bytes
+   */
+  public long getSize() {
+    return size;
+  }
+
+  /**
+   * Gets the number of bytes read from the file so far. Safe to call from any thread, to report
+   * the progress of a reader running on another.
+   *
+   * @return bytes read
+   */
+  public long getBytesRead() {
+    return counter.count;
+  }
+
+  /**
+   * Closes the file.
+   *
+   * @throws IOException if the file could not be closed
+   */
+  @Override
+  public void close() throws IOException {
+    csvReader.close();
+  }
+
+  /**
+   * Input stream counting the bytes read through it.
+   */
+  private static class CountingInputStream extends FilterInputStream {
+
+    private volatile long count = 0;
+
+    CountingInputStream(InputStream input) {
+      super(input);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int value = super.read();
+      if (value != -1) {
+        count++;
+      }
+      return value;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      int read = super.read(buffer, offset, length);
+      if (read > 0) {
+        count += read;
+      }
+      return read;
+    }
+
+    @Override
+    public long skip(long length) throws IOException {
+      long skipped = super.skip(length);
+      count += skipped;
+      return skipped;
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package seng202.team6.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Runs database work off the JavaFX application thread, by default each task on a virtual thread
+ * of its own. Tasks queue in the {@link ConnectionPool} rather than here: writes wait for the
+ * writer while queries run on read-only connections if there are any, so a page load is not held
+ * up behind an import.
+ * <p>
+ * Results are returned as futures. GUI code should hand them back to the JavaFX application
+ * thread with Platform.runLater before touching any controls.
+ * </p>
+ */
+public class DatabaseExecutor implements Executor, AutoCloseable {
+
+  /**
+   * Time to wait for running tasks to finish when closing.
+   */
+  private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+  private static final Logger log = LogManager.getLogger(DatabaseExecutor.class);
+
+  private final ExecutorService executorService;
+
+  /**
+   * Constructs an executor running each task on a new virtual thread.
+   */
+  public DatabaseExecutor() {
+    this(Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("database-", 0).factory()));
+  }
+
+  /**
+   * Constructs an executor running tasks on an executor service, which it takes ownership of.
+   *
+   * @param executorService executor service to run tasks on
+   */
+  public DatabaseExecutor(ExecutorService executorService) {
+    this.executorService = executorService;
+  }
+
+  /**
+   * Runs a task in the background.
+   *
+   * @param task task to run
+   * @param <T>  result type
+   * @return future completed with the task's result, or exceptionally with what it threw
+   */
+  public <T> CompletableFuture<T> submit(Callable<T> task) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    executorService.execute(() -> {
+      try {
+        future.complete(task.call());
+      } catch (Exception error) {
+        future.completeExceptionally(error);
+      }
+    });
+    return future;
+  }
+
+  /**
+   * Runs a task in the background, ignoring its result.
+   *
+   * @param runnable task to run
+   */
+  @Override
+  public void execute(Runnable runnable) {
+    executorService.execute(runnable);
+  }
+
+  /**
+   * Stops accepting tasks and waits for running tasks to finish, so none is cut off before the
+   * database is closed.
+   */
+  @Override
+  public void close() {
+    executorService.shutdown();
+    try {
+      if (!executorService.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        log.warn("Database tasks still running after {}s, interrupting them",
+            CLOSE_TIMEOUT_SECONDS);
+        executorService.shutdownNow();
+      }
+    } catch (InterruptedException error) {
+      executorService.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -1,15 +1,21 @@
 package seng202.team6.util;
 
-
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
-import java.util.HashMap;
-
+import java.util.concurrent.locks.StampedLock;
 
 /**
  * Database objects are required to be unique in memory to assure consistency.
  * <p>
- * This class implements a simple weak cache to resolve that problem. Objects are stored with weak
- * references to prevent memory leaks.
+ * This class implements a weak identity map keyed by database ID to resolve that problem. Objects
+ * are stored with weak references to prevent memory leaks, and references cleared by the garbage
+ * collector are expunged a few at a time as objects are added rather than by scanning every entry.
+ * </p>
+ * <p>
+ * The map is safe to use from any thread. IDs are spread over segments, each an open addressing
+ * table of primitive keys guarded by its own lock. Lookups take no lock: they read the table
+ * optimistically and only fall back to the segment's read lock if a write raced with them.
  * </p>
  *
  * @param <T> Object type
@@ -17,20 +23,63 @@ import java.util.HashMap;
 public class DatabaseObjectUniquer<T> {
 
   /**
-   * Object map.
+   * Number of segments, a power of two.
+   */
+  private static final int SEGMENT_COUNT = 16;
+
+  /**
+   * Initial number of slots in each segment, a power of two.
    */
-  private final HashMap<Long, WeakReference<T>> objects = new HashMap<>();
+  private static final int INITIAL_SEGMENT_CAPACITY = 16;
 
   /**
-   * Timer for garbage collection.
+   * Most cleared references expunged by each add, enough to keep up with any rate of adds.
    */
-  private int garbageCollectionTimer = 0;
+  private static final int EXPUNGE_BATCH = 8;
+
+  private final ReferenceQueue<T> clearedReferences = new ReferenceQueue<>();
+
+  @SuppressWarnings("unchecked")
+  private final Segment<T>[] segments = new Segment[SEGMENT_COUNT];
 
   /**
-   * Tries to remove outdated references.
+   * Constructor.
+   */
+  public DatabaseObjectUniquer() {
+    for (int i = 0; i < SEGMENT_COUNT; i++) {
+      segments[i] = new Segment<>();
+    }
+  }
+
+  private static int hash(long id) {
+    long hash = id * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32));
+  }
+
+  private Segment<T> segmentFor(int hash) {
+    return segments[(hash >>> 28) & (SEGMENT_COUNT - 1)];
+  }
+
+  /**
+   * Removes every entry whose object has been garbage collected. Entries are also removed as
+   * objects are added, so this only needs calling to shrink the map straight away.
    */
   public void tryGarbageCollect() {
-    objects.values().removeIf(object -> object.get() == null);
+    expunge(Integer.MAX_VALUE);
+  }
+
+  /**
+   * Removes the entries of up to a number of references cleared by the garbage collector.
+   *
+   * @param limit most references to expunge
+   */
+  private void expunge(int limit) {
+    Reference<? extends T> cleared;
+    for (int i = 0; i < limit && (cleared = clearedReferences.poll()) != null; i++) {
+      KeyedReference<T> reference = (KeyedReference<T>) cleared;
+      int hash = hash(reference.id);
+      segmentFor(hash).remove(reference.id, hash, reference);
+    }
   }
 
   /**
@@ -40,15 +89,9 @@ public class DatabaseObjectUniquer<T> {
    * @return stored object or null
    */
   public T tryGetObject(long id) {
-    WeakReference<T> ref = objects.get(id);
-    if (ref == null) {
-      return null;
-    }
-    T strongRef = ref.get();
-    if (strongRef == null) {
-      objects.remove(id);
-    }
-    return strongRef;
+    int hash = hash(id);
+    KeyedReference<T> reference = segmentFor(hash).get(id, hash);
+    return reference == null ? null : reference.get();
   }
 
   /**
@@ -56,17 +99,37 @@ public class DatabaseObjectUniquer<T> {
    *
    * @param id     id
    * @param object object
+   * @throws IllegalStateException if another object with the id is still in the cache
    */
   public void addObject(long id, T object) {
-    if (garbageCollectionTimer++ == 4096) {
-      tryGarbageCollect();
-      garbageCollectionTimer = 0;
-    }
-    if (objects.containsKey(id)) {
+    expunge(EXPUNGE_BATCH);
+    int hash = hash(id);
+    if (!segmentFor(hash).put(id, hash, new KeyedReference<>(id, object, clearedReferences))) {
       throw new IllegalStateException(
           "Duplicate keys are not allowed and attempting indicates a leak");
     }
-    objects.put(id, new WeakReference<>(object));
+  }
+
+  /**
+   * Adds an object to the cache unless another object with the id is still in it, for rows which
+   * may be loaded by more than one thread at once.
+   *
+   * @param id     id
+   * @param object object
+   * @return the object already in the cache, or the given object if it was added
+   */
+  public T addObjectIfAbsent(long id, T object) {
+    expunge(EXPUNGE_BATCH);
+    int hash = hash(id);
+    Segment<T> segment = segmentFor(hash);
+    while (!segment.put(id, hash, new KeyedReference<>(id, object, clearedReferences))) {
+      // The existing object may be collected between failing to replace it and getting it
+      T existing = tryGetObject(id);
+      if (existing != null) {
+        return existing;
+      }
+    }
+    return object;
   }
 
   /**
@@ -75,14 +138,17 @@ public class DatabaseObjectUniquer<T> {
    * @param id id
    */
   public void removeObject(long id) {
-    objects.remove(id);
+    int hash = hash(id);
+    segmentFor(hash).remove(id, hash, null);
   }
 
   /**
    * Removes all objects from the cache.
    */
   public void removeAll() {
-    objects.clear();
+    for (Segment<T> segment : segments) {
+      segment.clear();
+    }
   }
 
   /**
@@ -91,15 +157,201 @@ public class DatabaseObjectUniquer<T> {
    * @return number of objects in map
    */
   public int size() {
-    return objects.size();
+    int size = 0;
+    for (Segment<T> segment : segments) {
+      size += segment.size;
+    }
+    return size;
   }
 
   /**
    * Clears all objects in cache.
    */
   public void clear() {
-    objects.clear();
+    removeAll();
+  }
+
+  /**
+   * Weak reference remembering the id it was stored under, so it can be expunged once cleared.
+   *
+   * @param <T> Object type
+   */
+  private static final class KeyedReference<T> extends WeakReference<T> {
+
+    private final long id;
+
+    KeyedReference(long id, T object, ReferenceQueue<T> queue) {
+      super(object, queue);
+      this.id = id;
+    }
   }
 
+  /**
+   * Slots of a segment. Keys and references are swapped together by replacing the table, so a
+   * lookup reading one table never sees arrays of different lengths.
+   *
+   * @param <T> Object type
+   */
+  private static final class Table<T> {
+
+    private final long[] ids;
+    private final KeyedReference<T>[] references;
+
+    @SuppressWarnings("unchecked")
+    Table(int capacity) {
+      ids = new long[capacity];
+      references = new KeyedReference[capacity];
+    }
+  }
+
+  /**
+   * Open addressing table with linear probing. An empty slot has a null reference, and removals
+   * shift later entries of the probe sequence back instead of leaving tombstones.
+   *
+   * @param <T> Object type
+   */
+  private static final class Segment<T> {
+
+    private final StampedLock lock = new StampedLock();
+    private volatile Table<T> table = new Table<>(INITIAL_SEGMENT_CAPACITY);
+    private volatile int size = 0;
+
+    /**
+     * Finds the reference stored for an id. Never throws or loops forever, even when reading a
+     * table being written to, so it can run under an optimistic read.
+     */
+    private static <T> KeyedReference<T> find(Table<T> table, long id, int hash) {
+      int mask = table.references.length - 1;
+      for (int probe = 0, slot = hash & mask; probe <= mask; probe++, slot = (slot + 1) & mask) {
+        KeyedReference<T> reference = table.references[slot];
+        if (reference == null) {
+          return null;
+        }
+        if (table.ids[slot] == id) {
+          return reference;
+        }
+      }
+      return null;
+    }
+
+    KeyedReference<T> get(long id, int hash) {
+      long stamp = lock.tryOptimisticRead();
+      KeyedReference<T> reference = find(table, id, hash);
+      if (lock.validate(stamp)) {
+        return reference;
+      }
+      stamp = lock.readLock();
+      try {
+        return find(table, id, hash);
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+
+    /**
+     * Stores a reference unless the id already has an object which has not been collected.
+     *
+     * @return true if the reference was stored
+     */
+    boolean put(long id, int hash, KeyedReference<T> reference) {
+      long stamp = lock.writeLock();
+      try {
+        Table<T> current = table;
+        int mask = current.references.length - 1;
+        int slot = hash & mask;
+        while (current.references[slot] != null) {
+          if (current.ids[slot] == id) {
+            if (current.references[slot].get() != null) {
+              return false;
+            }
+            current.references[slot] = reference;
+            return true;
+          }
+          slot = (slot + 1) & mask;
+        }
+        current.ids[slot] = id;
+        current.references[slot] = reference;
+        size++;
+        if (size * 4L > current.references.length * 3L) {
+          resize(current.references.length * 2);
+        }
+        return true;
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+
+    /**
+     * Removes the entry for an id, only if it still holds the given reference when one is given.
+     */
+    void remove(long id, int hash, KeyedReference<T> expected) {
+      long stamp = lock.writeLock();
+      try {
+        Table<T> current = table;
+        int mask = current.references.length - 1;
+        int slot = hash & mask;
+        while (current.references[slot] != null) {
+          if (current.ids[slot] == id) {
+            if (expected == null || current.references[slot] == expected) {
+              current.references[slot] = null;
+              size--;
+              shiftBack(current, slot);
+            }
+            return;
+          }
+          slot = (slot + 1) & mask;
+        }
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+
+    /**
+     * Moves entries following an emptied slot back so that none is cut off from its home slot.
+     */
+    private static <T> void shiftBack(Table<T> table, int emptied) {
+      int mask = table.references.length - 1;
+      int gap = emptied;
+      int slot = (gap + 1) & mask;
+      while (table.references[slot] != null) {
+        int home = hash(table.ids[slot]) & mask;
+        // The entry can fill the gap if its home slot is not between the gap and itself
+        if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+          table.ids[gap] = table.ids[slot];
+          table.references[gap] = table.references[slot];
+          table.references[slot] = null;
+          gap = slot;
+        }
+        slot = (slot + 1) & mask;
+      }
+    }
 
+    private void resize(int capacity) {
+      Table<T> current = table;
+      Table<T> resized = new Table<>(capacity);
+      int mask = capacity - 1;
+      for (int i = 0; i < current.references.length; i++) {
+        KeyedReference<T> reference = current.references[i];
+        if (reference != null) {
+          int slot = hash(current.ids[i]) & mask;
+          while (resized.references[slot] != null) {
+            slot = (slot + 1) & mask;
+          }
+          resized.ids[slot] = current.ids[i];
+          resized.references[slot] = reference;
+        }
+      }
+      table = resized;
+    }
+
+    void clear() {
+      long stamp = lock.writeLock();
+      try {
+        table = new Table<>(INITIAL_SEGMENT_CAPACITY);
+        size = 0;
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+  }
 }
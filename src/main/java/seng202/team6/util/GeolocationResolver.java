@@ -9,14 +9,14 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.json.simple.JSONArray;
@@ -32,21 +32,54 @@ import seng202.team6.model.GeoLocation;
  */
 public class GeolocationResolver {
 
-  private static final int MAX_REQUESTS_PER_MINUTE = 100; // ORS has a cap of 100 requests per min
+  private static final String ORS_URL = "https://api.openrouteservice.org";
   private static final String API_KEY;
   private static final String GEOLOCATION_API_URL;
-  private static final String ROUTING_API_URL;
+
+  /**
+   * ORS has a cap of 100 geocoding requests a minute. Refilling 90 tokens a minute with a burst of
+   * 10 keeps every minute under the cap.
+   */
+  private static final TokenBucket ORS_RATE_LIMIT = new TokenBucket(10, 90 / 60.0);
 
   static {
     Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
     API_KEY = dotenv.get("ORS_API_KEY");
-    GEOLOCATION_API_URL = "https://api.openrouteservice.org/geocode/search?api_key=" + API_KEY
-        + "&boundary.country=NZ&size=1";
-    ROUTING_API_URL = "https://api.openrouteservice.org/v2/directions/driving-car";
+    GEOLOCATION_API_URL = geolocationApiUrl(ORS_URL, API_KEY);
   }
 
   private final HttpClient client = HttpClient.newHttpClient();
   private final Logger log = LogManager.getLogger(getClass());
+  private final String geolocationApiUrl;
+  private final String routingApiUrl;
+  private final String apiKey;
+  private final TokenBucket rateLimit;
+
+  /**
+   * Constructs a resolver sending requests to OpenRouteService with the API key from the .env
+   * file. Every such resolver shares one rate limit.
+   */
+  public GeolocationResolver() {
+    this(ORS_URL, API_KEY, ORS_RATE_LIMIT);
+  }
+
+  /**
+   * Constructs a resolver sending requests to a server with the OpenRouteService API.
+   *
+   * @param baseUrl   URL the API paths are relative to
+   * @param apiKey    API key to send
+   * @param rateLimit rate limit geocoding requests from resolveAll wait for
+   */
+  public GeolocationResolver(String baseUrl, String apiKey, TokenBucket rateLimit) {
+    this.geolocationApiUrl = geolocationApiUrl(baseUrl, apiKey);
+    this.routingApiUrl = baseUrl + "/v2/directions/driving-car";
+    this.apiKey = apiKey;
+    this.rateLimit = rateLimit;
+  }
+
+  private static String geolocationApiUrl(String baseUrl, String apiKey) {
+    return baseUrl + "/geocode/search?api_key=" + apiKey + "&boundary.country=NZ&size=1";
+  }
 
   /**
    * Tests if an API key is present in a .env file and sends a dummy request in order to check if
@@ -76,61 +109,78 @@ public class GeolocationResolver {
   }
 
   /**
-   * Resolves the geographical coordinates of a list of location names. This method splits the
-   * locations into batches of requests, ensuring compliance with the rate limits of the ORS API. It
-   * performs these requests asynchronously.
+   * Resolves the geographical coordinates of a collection of location names, each on a virtual
+   * thread of its own. Requests wait for the rate limit rather than being sent in batches, and each
+   * result is passed on as soon as it arrives so it can be stored straight away. Returns once every
+   * location has been tried, or early if interrupted.
+   * <p>
+   * Locations which could not be resolved because of an error, rather than because the API found
+   * nothing, are logged and passed to neither callback so they are tried again next time.
+   * </p>
    *
-   * @param locations a list of location names to be geocoded.
-   * @return a map of location names to their respective GeoLocation objects.
+   * @param locations    location names to be geocoded
+   * @param onResolved   called with each location name and its coordinates, from the thread which
+   *                     resolved it
+   * @param onUnresolved called with each location name the API found no coordinates for
    */
-  public Map<String, GeoLocation> resolveAll(List<String> locations) {
-    Map<String, CompletableFuture<GeoLocation>> futuresMap = new ConcurrentHashMap<>();
-
-    int totalRequests = locations.size();
-    List<CompletableFuture<Void>> allBatches = new ArrayList<>();
-
-    for (int i = 0; i < totalRequests; i += MAX_REQUESTS_PER_MINUTE) {
-      List<String> batch = locations.subList(i,
-          Math.min(i + MAX_REQUESTS_PER_MINUTE, totalRequests));
-
-      batch.forEach(location -> {
-        CompletableFuture<GeoLocation> future = resolveLocation(location);
-        futuresMap.put(location, future);
-      });
-
-      // collect all futures in this batch
-      CompletableFuture<Void> batchFuture = CompletableFuture.allOf(
-          batch.stream().map(futuresMap::get).toArray(CompletableFuture[]::new)
-      );
-      allBatches.add(batchFuture);
-
-      // throttle by waiting for 60 seconds between batches
-      // not really any way around this
-      if (i + MAX_REQUESTS_PER_MINUTE < totalRequests) {
-        batchFuture.thenRun(() -> {
-          try {
-            TimeUnit.SECONDS.sleep(60); // wait for 60 seconds
-          } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-          }
-        }).join();
+  public void resolveAll(Collection<String> locations, BiConsumer<String, GeoLocation> onResolved,
+      Consumer<String> onUnresolved) {
+    Timer timer = new Timer();
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (String location : locations) {
+        executor.execute(() -> resolveInto(location, onResolved, onUnresolved));
       }
     }
+    log.info("Finished resolving {} locations in {}ms", locations.size(),
+        timer.currentOffsetMilliseconds());
+  }
 
-    // wait for all batches to complete
-    CompletableFuture<Void> allFutures = CompletableFuture.allOf(
-        allBatches.toArray(new CompletableFuture[0])
-    );
-    allFutures.join();
+  /**
+   * Resolves one location once the rate limit allows, passing the result to a callback.
+   *
+   * @param locationName location name to be geocoded
+   * @param onResolved   called with the coordinates if found
+   * @param onUnresolved called if the API found no coordinates
+   */
+  private void resolveInto(String locationName, BiConsumer<String, GeoLocation> onResolved,
+      Consumer<String> onUnresolved) {
+    try {
+      rateLimit.acquire();
+      Timer timer = new Timer();
+      HttpResponse<String> response = client.send(buildGeolocationRequest(locationName),
+          HttpResponse.BodyHandlers.ofString());
+      if (response.statusCode() != 200) {
+        log.error("Failed to resolve location '{}'. Error code {}", locationName,
+            response.statusCode());
+        return;
+      }
+      GeoLocation geoLocation = parseResponse(locationName, response.body(), timer);
+      if (geoLocation != null) {
+        onResolved.accept(locationName, geoLocation);
+      } else {
+        onUnresolved.accept(locationName);
+      }
+    } catch (IOException | IllegalStateException error) {
+      log.error("Failed to resolve location with search string '{}'", locationName, error);
+    } catch (InterruptedException error) {
+      Thread.currentThread().interrupt();
+    }
+  }
 
-    // Collect results into a Map<String, GeoLocation>
-    return futuresMap.entrySet().stream()
-        .collect(Collectors.toMap(
-            Map.Entry::getKey,
-            entry -> entry.getValue().join(),
-            (e1, e2) -> e1,  // handle key collisions if any
-            ConcurrentHashMap::new
-        ));
+  /**
+   * Builds a geocoding request for a location.
+   *
+   * @param locationName the name of the location to be geocoded
+   * @return geocoding request
+   */
+  private HttpRequest buildGeolocationRequest(String locationName) {
+    String encodedLocationName = URLEncoder.encode(locationName, StandardCharsets.UTF_8);
+    return HttpRequest.newBuilder()
+        .uri(URI.create(geolocationApiUrl + "&text=" + encodedLocationName))
+        .header("User-Agent", "Java 21 Http Client")
+        .header("content-type", "application/json")
+        .GET()
+        .build();
   }
 
   /**
@@ -142,29 +192,17 @@ public class GeolocationResolver {
    */
   public CompletableFuture<GeoLocation> resolveLocation(String locationName) {
     Timer timer = new Timer();
-    String encodedLocationName = URLEncoder.encode(locationName, StandardCharsets.UTF_8);
-    String url = GEOLOCATION_API_URL + "&text=" + encodedLocationName;
-    try {
-      HttpRequest request = HttpRequest.newBuilder()
-          .uri(new URI(url))
-          .header("User-Agent", "Java 21 Http Client")
-          .header("content-type", "application/json")
-          .GET()
-          .build();
-
-      return client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
-          .thenApply(response -> {
-            log.info("Status code for location '{}': {}", locationName, response.statusCode());
-            return response.body();
-          })
-          .thenApply(response -> parseResponse(locationName, response, timer))
-          .exceptionally(error -> {
-            log.error("Encountered an error sending location resolver request", error);
-            throw new CompletionException(error); // Propagate the error
-          });
-    } catch (URISyntaxException e) {
-      throw new RuntimeException(e);
-    }
+    return client.sendAsync(buildGeolocationRequest(locationName),
+            HttpResponse.BodyHandlers.ofString())
+        .thenApply(response -> {
+          log.info("Status code for location '{}': {}", locationName, response.statusCode());
+          return response.body();
+        })
+        .thenApply(response -> parseResponse(locationName, response, timer))
+        .exceptionally(error -> {
+          log.error("Encountered an error sending location resolver request", error);
+          throw new CompletionException(error); // Propagate the error
+        });
   }
 
   /**
@@ -174,7 +212,8 @@ public class GeolocationResolver {
    * @param responseBody the response body from the ORS API.
    * @param timer        a timer object to measure the time taken for the request.
    * @return a GeoLocation object containing the latitude and longitude of the location, or null if
-   *        the location could not be resolved.
+   *        the API found no match for the location.
+   * @throws IllegalStateException if the response is not a geocoding result
    */
   private GeoLocation parseResponse(String locationName, String responseBody, Timer timer) {
     JSONParser jsonParser = new JSONParser();
@@ -186,18 +225,18 @@ public class GeolocationResolver {
         JSONObject geometry = (JSONObject) firstResult.get("geometry");
         JSONArray coordinates = (JSONArray) geometry.get("coordinates");
         // for some reason ORS returns the longitude first
-        double lon = (double) coordinates.get(0);
-        double lat = (double) coordinates.get(1);
+        double lon = ((Number) coordinates.get(0)).doubleValue();
+        double lat = ((Number) coordinates.get(1)).doubleValue();
         log.info("Successfully resolved geolocation for location '{}' in {}ms", locationName,
             timer.currentOffsetMilliseconds());
         return new GeoLocation(lat, lon);
       }
       log.error("Could not resolve location with search string '{}' in {}ms", locationName,
           timer.currentOffsetMilliseconds());
-    } catch (Exception e) {
-      log.error("Failed to resolve location with search string '{}'", locationName, e);
+      return null;
+    } catch (ParseException | ClassCastException | NullPointerException e) {
+      throw new IllegalStateException("Invalid geocoding response for '" + locationName + "'", e);
     }
-    return null;
   }
 
   /**
@@ -224,8 +263,8 @@ public class GeolocationResolver {
 
     try {
       HttpRequest request = HttpRequest.newBuilder()
-          .uri(new URI(ROUTING_API_URL))
-          .header("Authorization", API_KEY)
+          .uri(new URI(routingApiUrl))
+          .header("Authorization", apiKey)
           .header("Content-Type", "application/json")
           .POST(HttpRequest.BodyPublishers.ofString(content.toString(), StandardCharsets.UTF_8))
           .build();
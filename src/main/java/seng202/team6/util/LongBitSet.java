@@ -0,0 +1,98 @@
+package seng202.team6.util;
+
+import java.util.Arrays;
+
+/**
+ * A set of non-negative long IDs stored as one bit per ID. Database IDs are allocated from 1
+ * upwards, so a set of them takes an eighth of a byte per ID up to the highest one stored rather
+ * than a boxed object per member.
+ * <p>
+ * The set is not thread safe, and must be guarded by its owner.
+ * </p>
+ */
+public class LongBitSet {
+
+  /**
+   * Highest ID that can be stored, limited by the number of words an array can hold.
+   */
+  public static final long MAX_ID = ((long) Integer.MAX_VALUE << 6) - 1;
+
+  private long[] words = new long[0];
+  private int cardinality = 0;
+
+  private static int wordIndex(long id) {
+    if (id < 0 || id > MAX_ID) {
+      throw new IllegalArgumentException("ID out of range: " + id);
+    }
+    return (int) (id >>> 6);
+  }
+
+  /**
+   * Adds an ID to the set.
+   *
+   * @param id id
+   * @return true if the ID was not already in the set
+   */
+  public boolean add(long id) {
+    int index = wordIndex(id);
+    if (index >= words.length) {
+      words = Arrays.copyOf(words, (int) Math.min(Integer.MAX_VALUE,
+          Math.max(index + 1L, words.length * 2L)));
+    }
+    long mask = 1L << id;
+    if ((words[index] & mask) != 0) {
+      return false;
+    }
+    words[index] |= mask;
+    cardinality++;
+    return true;
+  }
+
+  /**
+   * Removes an ID from the set.
+   *
+   * @param id id
+   * @return true if the ID was in the set
+   */
+  public boolean remove(long id) {
+    int index = wordIndex(id);
+    long mask = 1L << id;
+    if (index >= words.length || (words[index] & mask) == 0) {
+      return false;
+    }
+    words[index] &= ~mask;
+    cardinality--;
+    return true;
+  }
+
+  /**
+   * Checks if an ID is in the set. IDs which can never be stored are never in it.
+   *
+   * @param id id
+   * @return true if the ID is in the set
+   */
+  public boolean contains(long id) {
+    if (id < 0 || id > MAX_ID) {
+      return false;
+    }
+    int index = (int) (id >>> 6);
+    return index < words.length && (words[index] & (1L << id)) != 0;
+  }
+
+  /**
+   * Gets the number of IDs in the set.
+   *
+   * @return number of IDs
+   */
+  public int size() {
+    return cardinality;
+  }
+
+  /**
+   * Removes every ID from the set and releases its storage.
+   */
+  public void clear() {
+    words = new long[0];
+    cardinality = 0;
+  }
+}
@@ -6,12 +6,11 @@ import com.ibm.icu.text.CharsetDetector;
 import com.ibm.icu.text.CharsetMatch;
 import com.opencsv.CSVReader;
 import com.opencsv.exceptions.CsvValidationException;
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.nio.file.Files;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
 import org.apache.logging.log4j.LogManager;
@@ -27,34 +26,20 @@ public class ProcessCsv {
   /**
    * Gets a CSV file as a list of rows.
    * <p>
-   * This function will attempt to detect the file encoding then try and read the bytes as the
-   * detected encoding. If the encoding detection fails, the file will be read as UTF-8.
+   * This function will attempt to detect the file encoding from the start of the file then read
+   * the rows as the detected encoding. If the encoding detection fails, the file will be read as
+   * UTF-8. Large files should be read with {@link CsvRowReader} instead, which does not hold every
+   * row at once.
    * </p>
    *
    * @param file the CSV file to read
-   * @return a list of rows from the CSV input stream, or an empty list if the reading fails
+   * @return a list of rows from the CSV file, or the rows read before a failure
    */
   public static List<String[]> getCsvRows(File file) {
     List<String[]> rows = new ArrayList<>();
-    byte[] fileBytes;
-
-    // read the all the bytes from the file. this can be used to detect encoding and read the csv
-    // file without having to read the file twice
-    try {
-      fileBytes = Files.readAllBytes(file.toPath());
-
-      String detectedCharset = detectFileEncoding(fileBytes);
-    } catch (IOException e) {
-      log.error("Failed to read the file: {}", file.getAbsolutePath(), e);
-      return rows;
-    }
-
-    // detect encoding using ICU4J then try read the CSV rows using it
-    String detectedCharset = detectFileEncoding(fileBytes);
-    try (InputStreamReader inputStreamReader = new InputStreamReader(
-        new ByteArrayInputStream(fileBytes), detectedCharset)) {
-      readCsvRows(inputStreamReader, rows);
-    } catch (IOException | CsvValidationException error) {
+    try (CsvRowReader reader = new CsvRowReader(file.toPath())) {
+      reader.forEachRemaining(rows::add);
+    } catch (IOException | UncheckedIOException | IllegalStateException error) {
       log.error("Failed to read rows from CSV file: {}", file.getAbsolutePath(), error);
     }
     return rows;
@@ -96,10 +81,10 @@ public class ProcessCsv {
   /**
    * Detects the file encoding of the provided byte array using ICU4J's character detector.
    *
-   * @param fileBytes the byte array of the file
+   * @param fileBytes the byte array of the file, or of a prefix of it
    * @return the name of the detected charset, or UTF-8 is detection fails
    */
-  private static String detectFileEncoding(byte[] fileBytes) {
+  static String detectFileEncoding(byte[] fileBytes) {
     CharsetDetector charsetDetector = new CharsetDetector();
     charsetDetector.setText(fileBytes);
     CharsetMatch match = charsetDetector.detect();
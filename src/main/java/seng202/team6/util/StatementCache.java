@@ -0,0 +1,205 @@
+package seng202.team6.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Keeps prepared statements on one connection so that their SQL is only parsed once. Statements
+ * are handed out for the length of a try-with-resources block: closing one returns it to the
+ * cache instead of finalising it. A statement is not in the cache while it is handed out, so the
+ * same SQL prepared again before it is returned gets a statement of its own, and a handed out
+ * statement is never evicted.
+ * <p>
+ * The cache holds at most a fixed number of idle statements, closing the least recently used one
+ * once it is full.
+ * </p>
+ */
+public class StatementCache {
+
+  /**
+   * Number of idle statements kept by default.
+   */
+  public static final int DEFAULT_CAPACITY = 64;
+
+  private static final Logger log = LogManager.getLogger(StatementCache.class);
+
+  private final Connection connection;
+
+  /**
+   * Idle statements by SQL.
+   */
+  private final BoundedCache<String, PreparedStatement> idle;
+
+  private boolean closed = false;
+  private long hits = 0;
+  private long misses = 0;
+
+  /**
+   * Constructor.
+   *
+   * @param connection connection to prepare statements on
+   * @param capacity   maximum number of idle statements to keep
+   */
+  public StatementCache(Connection connection, int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be positive");
+    }
+    this.connection = connection;
+    this.idle = new BoundedCache<>(capacity);
+  }
+
+  /**
+   * Gets a prepared statement for the SQL, reusing an idle one if there is one. The statement must
+   * be closed once it is no longer used, which returns it to the cache.
+   *
+   * @param sql SQL to prepare
+   * @return prepared statement
+   * @throws SQLException if the statement could not be prepared
+   */
+  public synchronized PreparedStatement prepare(String sql) throws SQLException {
+    PreparedStatement statement = idle.remove(sql);
+    if (statement != null) {
+      hits++;
+    } else {
+      misses++;
+      statement = connection.prepareStatement(sql);
+    }
+    return lend(sql, statement);
+  }
+
+  /**
+   * Wraps a statement so that closing it returns it to the cache.
+   *
+   * @param sql       SQL of the statement
+   * @param statement statement to lend out
+   * @return wrapped statement
+   */
+  private PreparedStatement lend(String sql, PreparedStatement statement) {
+    boolean[] returned = {false};
+    return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+        new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "close":
+              if (!returned[0]) {
+                returned[0] = true;
+                release(sql, statement);
+              }
+              return null;
+            case "isClosed":
+              return returned[0] || statement.isClosed();
+            case "equals":
+              return proxy == args[0];
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            default:
+              return invoke(statement, method, args);
+          }
+        });
+  }
+
+  private static Object invoke(PreparedStatement statement, Method method, Object[] args)
+      throws Throwable {
+    try {
+      return method.invoke(statement, args);
+    } catch (InvocationTargetException error) {
+      throw error.getCause();
+    }
+  }
+
+  /**
+   * Returns a statement to the cache, closing it instead if the cache is closed or already holds
+   * a statement for the SQL, and closing the least recently used statement if the cache is full.
+   *
+   * @param sql       SQL of the statement
+   * @param statement statement being returned
+   */
+  private synchronized void release(String sql, PreparedStatement statement) {
+    List<PreparedStatement> closing = new ArrayList<>();
+    try {
+      if (closed || statement.isClosed() || idle.containsKey(sql)) {
+        closing.add(statement);
+      } else {
+        statement.clearParameters();
+        statement.clearBatch();
+        closing.addAll(idle.put(sql, statement));
+      }
+    } catch (SQLException error) {
+      closing.add(statement);
+    }
+    for (PreparedStatement evicted : closing) {
+      closeQuietly(evicted);
+    }
+  }
+
+  private void closeQuietly(PreparedStatement statement) {
+    try {
+      statement.close();
+    } catch (SQLException error) {
+      log.error("Failed to close a cached statement", error);
+    }
+  }
+
+  /**
+   * Closes every idle statement. Statements handed out are closed when they are returned.
+   */
+  public synchronized void close() {
+    closed = true;
+    for (PreparedStatement statement : idle.invalidateAll()) {
+      closeQuietly(statement);
+    }
+  }
+
+  /**
+   * Gets the number of statements reused from the cache.
+   *
+   * @return cache hits
+   */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * Gets the number of statements which had to be prepared.
+   *
+   * @return cache misses
+   */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * Gets the number of idle statements closed to make room for others.
+   *
+   * @return evictions
+   */
+  public synchronized long getEvictions() {
+    return idle.getStats().evictions();
+  }
+
+  /**
+   * Gets the number of idle statements held.
+   *
+   * @return idle statements
+   */
+  public synchronized int size() {
+    return idle.size();
+  }
+
+  /**
+   * Gets the hit rate of the cache.
+   *
+   * @return hits as a fraction of all statements prepared, 0 before any are
+   */
+  public synchronized double getHitRate() {
+    long total = hits + misses;
+    return total == 0 ? 0 : (double) hits / total;
+  }
+}
@@ -0,0 +1,90 @@
+package seng202.team6.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Rate limiter handing out tokens which refill at a steady rate, up to a burst capacity. Taking a
+ * token blocks until one is available, so callers on any number of threads between them never
+ * exceed the rate by more than the capacity.
+ */
+public class TokenBucket {
+
+  private final int capacity;
+  private final double nanosPerToken;
+  private final LongSupplier nanoClock;
+  private double tokens;
+  private long lastRefillNanos;
+
+  /**
+   * Constructs a bucket which starts full.
+   *
+   * @param capacity        most tokens which can be taken at once
+   * @param tokensPerSecond rate tokens refill at
+   */
+  public TokenBucket(int capacity, double tokensPerSecond) {
+    this(capacity, tokensPerSecond, System::nanoTime);
+  }
+
+  /**
+   * Constructs a bucket which starts full, timed by a clock.
+   *
+   * @param capacity        most tokens which can be taken at once
+   * @param tokensPerSecond rate tokens refill at
+   * @param nanoClock       current time in nanoseconds
+   */
+  public TokenBucket(int capacity, double tokensPerSecond, LongSupplier nanoClock) {
+    if (capacity <= 0 || tokensPerSecond <= 0) {
+      throw new IllegalArgumentException("Capacity and rate must be positive");
+    }
+    this.capacity = capacity;
+    this.nanosPerToken = TimeUnit.SECONDS.toNanos(1) / tokensPerSecond;
+    this.nanoClock = nanoClock;
+    this.tokens = capacity;
+    this.lastRefillNanos = nanoClock.getAsLong();
+  }
+
+  /**
+   * Takes a token, waiting for one to refill if there are none.
+   *
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public void acquire() throws InterruptedException {
+    while (true) {
+      long waitNanos;
+      synchronized (this) {
+        if (tryAcquire()) {
+          return;
+        }
+        waitNanos = (long) Math.ceil((1 - tokens) * nanosPerToken);
+      }
+      TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+  }
+
+  /**
+   * Takes a token if one is available.
+   *
+   * @return true if a token was taken
+   */
+  public synchronized boolean tryAcquire() {
+    long now = nanoClock.getAsLong();
+    tokens = Math.min(capacity, tokens + (now - lastRefillNanos) / nanosPerToken);
+    lastRefillNanos = now;
+    if (tokens >= 1) {
+      tokens--;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Gets the number of whole tokens available.
+   *
+   * @return available tokens
+   */
+  public synchronized int getAvailableTokens() {
+    long now = nanoClock.getAsLong();
+    return (int) Math.min(capacity, tokens + (now - lastRefillNanos) / nanosPerToken);
+  }
+}
@@ -0,0 +1,130 @@
+package seng202.team6.benchmarks;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import seng202.team6.dao.Dao;
+import seng202.team6.model.Wine;
+
+/**
+ * Shared helpers for the database benchmarks. Generates a deterministic synthetic dataset shaped
+ * like the 130k wine review dataset and times labelled operations.
+ */
+public final class BenchmarkData {
+
+  /**
+   * Number of wines in the full wine review dataset.
+   */
+  public static final int DATASET_SIZE = 130_000;
+
+  private static final Logger log = LogManager.getLogger(BenchmarkData.class);
+
+  private static final String[] COUNTRIES = {"New Zealand", "France", "Italy", "US", "Spain",
+      "Chile", "Argentina", "Australia", "Portugal", "Germany"};
+  private static final String[] REGIONS = {"Marlborough", "marlborough", "Central Otago",
+      "Hawke's Bay", "CHRISTCHURCH", "Auckland", "Napa Valley", "Bordeaux", "Tuscany", ""};
+  private static final String[] COLORS = {"Red", "White", "Rose", "Sparkling"};
+  private static final String[] VARIETIES = {"Pinot Noir", "Sauvignon Blanc", "Chardonnay",
+      "Merlot", "Syrah", "Riesling", "Malbec", "Tempranillo"};
+  private static final String[] WORDS = {"cherry", "oak", "tannins", "crisp", "citrus", "plum",
+      "vanilla", "earthy", "mineral", "spice", "finish", "bright", "dense", "floral"};
+
+  private BenchmarkData() {
+  }
+
+  /**
+   * Creates a list of wines which are not yet in the database.
+   *
+   * @param count number of wines to create
+   * @param seed  random seed so each run generates the same dataset
+   * @return generated wines
+   */
+  public static List<Wine> createWines(int count, long seed) {
+    Random random = new Random(seed);
+    List<Wine> wines = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      String winery = "Winery " + random.nextInt(count / 8 + 1);
+      int vintage = 1990 + random.nextInt(35);
+      String variety = pick(random, VARIETIES);
+      StringBuilder description = new StringBuilder();
+      for (int j = 0; j < 30; j++) {
+        description.append(pick(random, WORDS)).append(' ');
+      }
+      wines.add(new Wine(-1,
+          winery + " " + vintage + " " + variety + " " + i,
+          variety,
+          pick(random, COUNTRIES),
+          pick(random, REGIONS),
+          winery,
+          pick(random, COLORS),
+          vintage,
+          description.toString(),
+          80 + random.nextInt(21),
+          10f + random.nextInt(60) / 10f,
+          5f + random.nextInt(3000) / 10f,
+          null,
+          0.0));
+    }
+    return wines;
+  }
+
+  /**
+   * Runs an operation a number of times and logs the mean duration.
+   *
+   * @param label      description of the operation
+   * @param iterations number of timed iterations
+   * @param operation  operation to time
+   * @return mean duration in milliseconds
+   */
+  public static double time(String label, int iterations, Operation operation) throws Exception {
+    // warm up once so statement compilation and page loads are not counted
+    operation.run();
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      operation.run();
+    }
+    double meanMillis = (System.nanoTime() - start) / 1_000_000.0 / iterations;
+    log.info("[benchmark] {}: {} ms/op over {} iterations", label,
+        String.format("%.3f", meanMillis), iterations);
+    return meanMillis;
+  }
+
+  /**
+   * Runs the initialise statements of each DAO against a connection.
+   *
+   * @param connection database connection
+   * @param daos       DAOs to create the tables of
+   */
+  public static void initialise(Connection connection, Dao... daos) throws SQLException {
+    try (Statement statement = connection.createStatement()) {
+      for (Dao dao : daos) {
+        for (String sql : dao.getInitialiseStatements()) {
+          statement.execute(sql);
+        }
+      }
+    }
+  }
+
+  private static String pick(Random random, String[] values) {
+    return values[random.nextInt(values.length)];
+  }
+
+  /**
+   * An operation to be timed.
+   */
+  @FunctionalInterface
+  public interface Operation {
+
+    /**
+     * Runs the operation.
+     *
+     * @throws Exception if the operation fails
+     */
+    void run() throws Exception;
+  }
+}
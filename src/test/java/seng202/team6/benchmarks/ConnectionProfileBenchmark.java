@@ -0,0 +1,75 @@
+package seng202.team6.benchmarks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import seng202.team6.enums.WineSortOrder;
+import seng202.team6.managers.DatabaseManager;
+import seng202.team6.model.User;
+import seng202.team6.model.Wine;
+import seng202.team6.model.WineCursor;
+import seng202.team6.model.WineFilters;
+import seng202.team6.model.WinePage;
+import seng202.team6.util.ConnectionProfile;
+
+/**
+ * Times importing 130k wines into a database file, paging through them and writing reviews one
+ * at a time under SQLite's default pragmas and under the throughput profile.
+ */
+public class ConnectionProfileBenchmark {
+
+  private static final int PAGES = 50;
+  private static final int PAGE_SIZE = 100;
+  private static final int REVIEWS = 500;
+
+  @TempDir
+  Path directory;
+
+  /**
+   * Runs the workload under both profiles, each against its own database file.
+   */
+  @Test
+  void compareProfiles() throws Exception {
+    List<Wine> wines = BenchmarkData.createWines(BenchmarkData.DATASET_SIZE, 1);
+    run("default pragmas (before)", ConnectionProfile.SQLITE_DEFAULTS, wines);
+    run("throughput profile (after)", ConnectionProfile.THROUGHPUT, wines);
+  }
+
+  private void run(String label, ConnectionProfile profile, List<Wine> wines) throws Exception {
+    Path profileDirectory = Files.createDirectory(directory.resolve(profile.journalMode()));
+    DatabaseManager databaseManager = new DatabaseManager(profileDirectory.toString(),
+        "benchmark.db", profile);
+    try {
+      BenchmarkData.time("import 130k wines, " + label, 1,
+          () -> databaseManager.getWineDao().addAll(wines));
+
+      BenchmarkData.time("page through " + PAGES + " pages, " + label, 3, () -> {
+        WineCursor cursor = null;
+        for (int i = 0; i < PAGES; i++) {
+          WinePage page = databaseManager.getWineDao().search(new WineFilters(),
+              WineSortOrder.DEFAULT, cursor, PAGE_SIZE);
+          cursor = page.next();
+        }
+      });
+
+      User user = new User("benchmark", "password", "user", "salt");
+      databaseManager.getUserDao().add(user);
+      List<Wine> reviewed = databaseManager.getWineDao().search(new WineFilters(),
+          WineSortOrder.DEFAULT, (WineCursor) null, PAGE_SIZE).wines();
+      BenchmarkData.time("write " + REVIEWS + " reviews, " + label, 1, () -> {
+        for (int i = 0; i < REVIEWS; i++) {
+          databaseManager.getWineReviewDao().add(user, reviewed.get(i % reviewed.size()), 3,
+              "Review " + i, new Date(0));
+        }
+      });
+      assertEquals(BenchmarkData.DATASET_SIZE, databaseManager.getWineDao().getCount());
+    } finally {
+      databaseManager.teardown();
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package seng202.team6.benchmarks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.opencsv.CSVWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import seng202.team6.model.Wine;
+import seng202.team6.util.CsvRowReader;
+import seng202.team6.util.ProcessCsv;
+
+/**
+ * Times reading a CSV file of 130k wines into a list against streaming its rows, and logs the heap
+ * each holds once the file has been read.
+ */
+public class CsvReadBenchmark {
+
+  private static final Logger log = LogManager.getLogger(CsvReadBenchmark.class);
+
+  @TempDir
+  Path directory;
+
+  private Path file;
+
+  /**
+   * Writes 130k generated wines to a CSV file.
+   */
+  @BeforeEach
+  void setup() throws Exception {
+    file = directory.resolve("wines.csv");
+    try (Writer writer = Files.newBufferedWriter(file);
+        CSVWriter csvWriter = new CSVWriter(writer)) {
+      csvWriter.writeNext(new String[]{"title", "variety", "country", "region", "description"});
+      for (Wine wine : BenchmarkData.createWines(BenchmarkData.DATASET_SIZE, 1)) {
+        csvWriter.writeNext(new String[]{wine.getTitle(), wine.getVariety(), wine.getCountry(),
+            wine.getRegion(), wine.getDescription()});
+      }
+    }
+    log.info("[benchmark] CSV file size: {} KiB", Files.size(file) / 1024);
+  }
+
+  /**
+   * Times both ways of reading the file and logs the heap held by the list of rows.
+   */
+  @Test
+  void compareRead() throws Exception {
+    BenchmarkData.time("read CSV into a list", 3,
+        () -> assertEquals(BenchmarkData.DATASET_SIZE + 1,
+            ProcessCsv.getCsvRows(file.toFile()).size()));
+    BenchmarkData.time("stream CSV rows", 3, () -> {
+      int count = 0;
+      try (CsvRowReader reader = new CsvRowReader(file)) {
+        while (reader.hasNext()) {
+          reader.next();
+          count++;
+        }
+      }
+      assertEquals(BenchmarkData.DATASET_SIZE + 1, count);
+    });
+
+    Runtime runtime = Runtime.getRuntime();
+    System.gc();
+    long before = runtime.totalMemory() - runtime.freeMemory();
+    List<String[]> rows = ProcessCsv.getCsvRows(file.toFile());
+    System.gc();
+    long after = runtime.totalMemory() - runtime.freeMemory();
+    log.info("[benchmark] heap held by {} rows read into a list (before): {} KiB", rows.size(),
+        (after - before) / 1024);
+
+    System.gc();
+    before = runtime.totalMemory() - runtime.freeMemory();
+    try (CsvRowReader reader = new CsvRowReader(file)) {
+      while (reader.hasNext()) {
+        reader.next();
+      }
+      System.gc();
+      after = runtime.totalMemory() - runtime.freeMemory();
+    }
+    log.info("[benchmark] heap held by an open streaming reader (after): {} KiB",
+        (after - before) / 1024);
+  }
+}
@@ -0,0 +1,84 @@
+package seng202.team6.benchmarks;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import seng202.team6.dao.GeoLocationDao;
+import seng202.team6.dao.WineDao;
+import seng202.team6.enums.WineSortOrder;
+import seng202.team6.model.WineCursor;
+import seng202.team6.model.WineFilters;
+import seng202.team6.service.WineDataStatService;
+
+/**
+ * Compares searching wine text with LIKE scans against the WINE_SEARCH full-text index over a 130k
+ * wine database.
+ */
+public class FullTextSearchBenchmark {
+
+  private static final String LIKE_SQL = "SELECT COUNT(*) FROM WINE "
+      + "WHERE TITLE LIKE ? OR VARIETY LIKE ? OR DESCRIPTION LIKE ?";
+
+  private static final String MATCH_SQL = "SELECT COUNT(*) FROM WINE_SEARCH "
+      + "WHERE WINE_SEARCH MATCH ?";
+
+  private Connection connection;
+  private WineDao wineDao;
+
+  /**
+   * Creates an in-memory database holding the default geolocations and 130k generated wines.
+   */
+  @BeforeEach
+  void setup() throws SQLException {
+    connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+    GeoLocationDao geoLocationDao = new GeoLocationDao(connection);
+    wineDao = new WineDao(connection, new WineDataStatService());
+    BenchmarkData.initialise(connection, geoLocationDao, wineDao);
+    geoLocationDao.addDefaultGeoLocations();
+    wineDao.addAll(BenchmarkData.createWines(BenchmarkData.DATASET_SIZE, 1));
+  }
+
+  /**
+   * Closes the database.
+   */
+  @AfterEach
+  void teardown() throws SQLException {
+    connection.close();
+  }
+
+  /**
+   * Times counting matches for a word with LIKE and with the full-text index, then times the first
+   * page of a ranked search and the index rebuild used to migrate existing databases.
+   */
+  @Test
+  void compareLikeAndFullTextSearch() throws Exception {
+    for (String term : new String[]{"riesling", "vanilla", "Winery 42"}) {
+      BenchmarkData.time("count '" + term + "', LIKE (before)", 5, () -> count(LIKE_SQL,
+          "%" + term + "%", "%" + term + "%", "%" + term + "%"));
+      BenchmarkData.time("count '" + term + "', FTS5 (after)", 5, () -> count(MATCH_SQL,
+          "\"" + term + "\""));
+    }
+
+    WineFilters filters = new WineFilters();
+    filters.setTitle("pinot van");
+    BenchmarkData.time("ranked prefix search, first page", 5,
+        () -> wineDao.search(filters, WineSortOrder.RELEVANCE, (WineCursor) null, 100));
+    BenchmarkData.time("rebuild search index", 1, () -> wineDao.rebuildSearchIndex());
+  }
+
+  private int count(String sql, String... parameters) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+      for (int i = 0; i < parameters.length; i++) {
+        statement.setString(i + 1, parameters[i]);
+      }
+      try (ResultSet resultSet = statement.executeQuery()) {
+        return resultSet.next() ? resultSet.getInt(1) : 0;
+      }
+    }
+  }
+}
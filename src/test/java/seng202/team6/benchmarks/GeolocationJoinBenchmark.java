@@ -0,0 +1,83 @@
+package seng202.team6.benchmarks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import seng202.team6.dao.GeoLocationDao;
+import seng202.team6.dao.WineDao;
+import seng202.team6.service.WineDataStatService;
+
+/**
+ * Compares resolving wine geolocations with the original LOWER(...) LIKE LOWER(...) join against
+ * the keyed join backed by the expression index on GEOLOCATION, over a 130k wine database.
+ */
+public class GeolocationJoinBenchmark {
+
+  private static final String LIKE_JOIN_SQL = "SELECT WINE.ID, GEOLOCATION.LATITUDE "
+      + "FROM WINE "
+      + "LEFT JOIN GEOLOCATION ON LOWER(WINE.REGION) LIKE LOWER(GEOLOCATION.NAME)";
+
+  private static final String KEYED_JOIN_SQL = "SELECT WINE.ID, GEOLOCATION.LATITUDE "
+      + "FROM WINE "
+      + "LEFT JOIN GEOLOCATION ON LOWER(WINE.REGION) = LOWER(GEOLOCATION.NAME)";
+
+  private Connection connection;
+  private WineDao wineDao;
+
+  /**
+   * Creates an in-memory database holding the default geolocations and 130k generated wines.
+   */
+  @BeforeEach
+  void setup() throws SQLException {
+    connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+    GeoLocationDao geoLocationDao = new GeoLocationDao(connection);
+    wineDao = new WineDao(connection, new WineDataStatService());
+    BenchmarkData.initialise(connection, geoLocationDao, wineDao);
+    geoLocationDao.addDefaultGeoLocations();
+    wineDao.addAll(BenchmarkData.createWines(BenchmarkData.DATASET_SIZE, 1));
+  }
+
+  /**
+   * Closes the database.
+   */
+  @AfterEach
+  void teardown() throws SQLException {
+    connection.close();
+  }
+
+  /**
+   * Times a full scan of the wines with their geolocations using both join forms and checks they
+   * resolve the same number of locations.
+   */
+  @Test
+  void compareGeolocationJoins() throws Exception {
+    assertEquals(countResolved(LIKE_JOIN_SQL), countResolved(KEYED_JOIN_SQL));
+
+    BenchmarkData.time("geolocation join, LIKE (before)", 3,
+        () -> countResolved(LIKE_JOIN_SQL));
+    BenchmarkData.time("geolocation join, keyed (after)", 3,
+        () -> countResolved(KEYED_JOIN_SQL));
+    BenchmarkData.time("WineDao.getAll with geolocations", 3, () -> wineDao.getAll());
+  }
+
+  private int countResolved(String sql) throws SQLException {
+    int resolved = 0;
+    try (Statement statement = connection.createStatement();
+        ResultSet resultSet = statement.executeQuery(sql)) {
+      while (resultSet.next()) {
+        resultSet.getDouble(2);
+        if (!resultSet.wasNull()) {
+          resolved++;
+        }
+      }
+    }
+    return resolved;
+  }
+}
@@ -0,0 +1,120 @@
+package seng202.team6.benchmarks;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import org.junit.jupiter.api.Test;
+import seng202.team6.util.DatabaseObjectUniquer;
+
+/**
+ * Times lookups, inserts and churn at 10k, 100k and 1M entries for the HashMap of boxed IDs the
+ * object uniquer used to be, which swept every entry each 4096 inserts, against the segmented
+ * primitive-keyed map which expunges cleared references through a reference queue. Churn adds a
+ * new object for every one dropped, as paging through wines does, so most entries are cleared.
+ */
+public class ObjectUniquerBenchmark {
+
+  private static final int[] SIZES = {10_000, 100_000, 1_000_000};
+  private static final int OPERATIONS = 1_000_000;
+
+  /**
+   * Times each workload at each size for both implementations.
+   */
+  @Test
+  void compareUniquers() throws Exception {
+    for (int size : SIZES) {
+      Object[] objects = new Object[size];
+      for (int i = 0; i < size; i++) {
+        objects[i] = new Object();
+      }
+
+      BenchmarkData.time("insert " + size + ", HashMap uniquer (before)", 3, () -> {
+        HashMapUniquer<Object> uniquer = new HashMapUniquer<>();
+        for (int i = 0; i < size; i++) {
+          uniquer.addObject(i, objects[i]);
+        }
+      });
+      BenchmarkData.time("insert " + size + ", segmented uniquer (after)", 3, () -> {
+        DatabaseObjectUniquer<Object> uniquer = new DatabaseObjectUniquer<>();
+        for (int i = 0; i < size; i++) {
+          uniquer.addObject(i, objects[i]);
+        }
+      });
+
+      HashMapUniquer<Object> before = new HashMapUniquer<>();
+      DatabaseObjectUniquer<Object> after = new DatabaseObjectUniquer<>();
+      for (int i = 0; i < size; i++) {
+        before.addObject(i, objects[i]);
+        after.addObject(i, objects[i]);
+      }
+      BenchmarkData.time(OPERATIONS + " lookups in " + size + ", HashMap uniquer (before)", 3,
+          () -> {
+            for (int i = 0; i < OPERATIONS; i++) {
+              before.tryGetObject((i * 31L) % size);
+            }
+          });
+      BenchmarkData.time(OPERATIONS + " lookups in " + size + ", segmented uniquer (after)", 3,
+          () -> {
+            for (int i = 0; i < OPERATIONS; i++) {
+              after.tryGetObject((i * 31L) % size);
+            }
+          });
+
+      long[] nextId = {size};
+      BenchmarkData.time(OPERATIONS + " churn over " + size + ", HashMap uniquer (before)", 3,
+          () -> churn(objects, nextId, before::addObject));
+      BenchmarkData.time(OPERATIONS + " churn over " + size + ", segmented uniquer (after)", 3,
+          () -> churn(objects, nextId, after::addObject));
+    }
+  }
+
+  private static void churn(Object[] live, long[] nextId, Adder adder) {
+    for (int i = 0; i < OPERATIONS; i++) {
+      Object object = new Object();
+      live[i % live.length] = object;
+      adder.add(nextId[0]++, object);
+    }
+  }
+
+  /**
+   * Adds an object to a uniquer.
+   */
+  @FunctionalInterface
+  private interface Adder {
+
+    void add(long id, Object object);
+  }
+
+  /**
+   * The object uniquer as it was before, kept as the baseline.
+   *
+   * @param <T> Object type
+   */
+  private static class HashMapUniquer<T> {
+
+    private final HashMap<Long, WeakReference<T>> objects = new HashMap<>();
+    private int garbageCollectionTimer = 0;
+
+    T tryGetObject(long id) {
+      WeakReference<T> ref = objects.get(id);
+      if (ref == null) {
+        return null;
+      }
+      T strongRef = ref.get();
+      if (strongRef == null) {
+        objects.remove(id);
+      }
+      return strongRef;
+    }
+
+    void addObject(long id, T object) {
+      if (garbageCollectionTimer++ == 4096) {
+        objects.values().removeIf(reference -> reference.get() == null);
+        garbageCollectionTimer = 0;
+      }
+      if (objects.containsKey(id)) {
+        throw new IllegalStateException("Duplicate key");
+      }
+      objects.put(id, new WeakReference<>(object));
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package seng202.team6.benchmarks;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import seng202.team6.enums.WineSortOrder;
+import seng202.team6.managers.DatabaseManager;
+import seng202.team6.model.WineCursor;
+import seng202.team6.model.WineFilters;
+
+/**
+ * Measures a cold start against a 130k wine database file, up to the data the wine screen needs
+ * to show: the filter stats and the first page of wines. Compares starting with a current stats
+ * snapshot against starting with a stale one, which recalculates the stats as every start used to.
+ */
+public class StartupBenchmark {
+
+  private static final String FILE_NAME = "benchmark.db";
+
+  @TempDir
+  Path directory;
+
+  /**
+   * Creates the database file holding 130k generated wines, saving a stats snapshot on teardown.
+   */
+  @BeforeEach
+  void setup() throws Exception {
+    DatabaseManager databaseManager = new DatabaseManager(directory.toString(), FILE_NAME);
+    databaseManager.getWineDao().addAll(
+        BenchmarkData.createWines(BenchmarkData.DATASET_SIZE, 1));
+    databaseManager.teardown();
+  }
+
+  /**
+   * Deletes the database file.
+   */
+  @AfterEach
+  void teardown() throws Exception {
+    Files.deleteIfExists(directory.resolve(FILE_NAME));
+  }
+
+  /**
+   * Times cold starts with a stale and a current stats snapshot.
+   */
+  @Test
+  void compareColdStart() throws Exception {
+    BenchmarkData.time("cold start to wine screen, stale stats (before)", 3, () -> {
+      invalidateStatsSnapshot();
+      startToWineScreen();
+    });
+    BenchmarkData.time("cold start to wine screen, stats snapshot (after)", 3,
+        this::startToWineScreen);
+  }
+
+  private void startToWineScreen() throws Exception {
+    DatabaseManager databaseManager = new DatabaseManager(directory.toString(), FILE_NAME);
+    databaseManager.getWineDataStatService().getMaxPrice();
+    databaseManager.getWineDao().search(new WineFilters(), WineSortOrder.DEFAULT,
+        (WineCursor) null, 100);
+    databaseManager.teardown();
+  }
+
+  private void invalidateStatsSnapshot() throws Exception {
+    try (Connection connection = DriverManager.getConnection(
+        "jdbc:sqlite:" + directory.resolve(FILE_NAME));
+        Statement statement = connection.createStatement()) {
+      statement.executeUpdate("UPDATE WINE_VERSION SET STATS_VERSION = -1");
+    }
+  }
+}
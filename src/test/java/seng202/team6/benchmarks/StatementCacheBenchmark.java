@@ -0,0 +1,135 @@
+package seng202.team6.benchmarks;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import seng202.team6.managers.DatabaseManager;
+import seng202.team6.model.User;
+import seng202.team6.model.Wine;
+import seng202.team6.model.WineList;
+import seng202.team6.util.ConnectionPool;
+import seng202.team6.util.StatementCache;
+
+/**
+ * Times the review lookup and list membership queries when their statements are prepared on
+ * every call, as the DAOs used to, against reusing them from a statement cache. Also runs the DAO
+ * methods themselves and logs the statement cache hit rate.
+ */
+public class StatementCacheBenchmark {
+
+  private static final Logger log = LogManager.getLogger(StatementCacheBenchmark.class);
+
+  private static final int WINES = 1000;
+  private static final int CALLS = 20_000;
+  private static final String REVIEWS_SQL = "SELECT WINE_REVIEW.ID as wine_review_id, "
+      + "WINE_REVIEW.* FROM WINE_REVIEW WHERE WINE_ID = ?";
+  private static final String MEMBERSHIP_SQL =
+      "SELECT * FROM LIST_ITEMS WHERE LIST_ID = ? AND WINE_ID = ?";
+
+  private DatabaseManager databaseManager;
+  private List<Wine> wines;
+  private User user;
+  private WineList list;
+
+  /**
+   * Creates an in-memory database with a review of every wine and every other wine in a list.
+   */
+  @BeforeEach
+  void setup() throws Exception {
+    databaseManager = new DatabaseManager();
+    wines = BenchmarkData.createWines(WINES, 1);
+    databaseManager.getWineDao().addAll(wines);
+    user = new User("benchmark", "password", "user", "salt");
+    databaseManager.getUserDao().add(user);
+    list = databaseManager.getWineListDao().getAll(user).getFirst();
+    for (int i = 0; i < wines.size(); i++) {
+      databaseManager.getWineReviewDao().add(user, wines.get(i), 3, "Review", new Date(0));
+      if (i % 2 == 0) {
+        databaseManager.getWineListDao().addWine(list, wines.get(i));
+      }
+    }
+  }
+
+  /**
+   * Closes the database.
+   */
+  @AfterEach
+  void teardown() {
+    databaseManager.teardown();
+  }
+
+  /**
+   * Times each query prepared per call and reused from a cache, then through the DAOs.
+   */
+  @Test
+  void compareStatementReuse() throws Exception {
+    ConnectionPool connectionPool = databaseManager.getConnectionPool();
+    Connection connection = connectionPool.getWriter();
+    StatementCache cache = new StatementCache(connection, StatementCache.DEFAULT_CAPACITY);
+
+    BenchmarkData.time(CALLS + " review lookups, prepared per call (before)", 3, () -> {
+      for (int i = 0; i < CALLS; i++) {
+        try (PreparedStatement statement = connection.prepareStatement(REVIEWS_SQL)) {
+          lookUpReviews(statement, i);
+        }
+      }
+    });
+    BenchmarkData.time(CALLS + " review lookups, statement cache (after)", 3, () -> {
+      for (int i = 0; i < CALLS; i++) {
+        try (PreparedStatement statement = cache.prepare(REVIEWS_SQL)) {
+          lookUpReviews(statement, i);
+        }
+      }
+    });
+    BenchmarkData.time(CALLS + " list membership checks, prepared per call (before)", 3, () -> {
+      for (int i = 0; i < CALLS; i++) {
+        try (PreparedStatement statement = connection.prepareStatement(MEMBERSHIP_SQL)) {
+          checkMembership(statement, i);
+        }
+      }
+    });
+    BenchmarkData.time(CALLS + " list membership checks, statement cache (after)", 3, () -> {
+      for (int i = 0; i < CALLS; i++) {
+        try (PreparedStatement statement = cache.prepare(MEMBERSHIP_SQL)) {
+          checkMembership(statement, i);
+        }
+      }
+    });
+    cache.close();
+
+    BenchmarkData.time(CALLS + " WineReviewDao.getAll and WineListDao.isWineInList calls", 3,
+        () -> {
+          for (int i = 0; i < CALLS; i++) {
+            Wine wine = wines.get(i % wines.size());
+            databaseManager.getWineReviewDao().getAll(wine);
+            databaseManager.getWineListDao().isWineInList(list, wine);
+          }
+        });
+    log.info("[benchmark] statement cache hits: {}, misses: {}",
+        connectionPool.getStatementCacheHits(), connectionPool.getStatementCacheMisses());
+  }
+
+  private void lookUpReviews(PreparedStatement statement, int call) throws Exception {
+    statement.setLong(1, wines.get(call % wines.size()).getKey());
+    try (ResultSet resultSet = statement.executeQuery()) {
+      while (resultSet.next()) {
+        resultSet.getLong("wine_review_id");
+      }
+    }
+  }
+
+  private void checkMembership(PreparedStatement statement, int call) throws Exception {
+    statement.setLong(1, list.id());
+    statement.setLong(2, wines.get(call % wines.size()).getKey());
+    try (ResultSet resultSet = statement.executeQuery()) {
+      resultSet.next();
+    }
+  }
+}
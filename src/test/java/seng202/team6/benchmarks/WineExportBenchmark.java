@@ -0,0 +1,71 @@
+package seng202.team6.benchmarks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.Writer;
+import java.sql.SQLException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import seng202.team6.managers.DatabaseManager;
+import seng202.team6.service.WineExportService;
+
+/**
+ * Times exporting 130k wines as CSV and NDJSON, and compares the heap retained by a streamed
+ * export against loading every wine with WineDao.getAll.
+ */
+public class WineExportBenchmark {
+
+  private static final Logger log = LogManager.getLogger(WineExportBenchmark.class);
+
+  private DatabaseManager databaseManager;
+  private WineExportService wineExportService;
+
+  /**
+   * Creates an in-memory database holding 130k generated wines.
+   */
+  @BeforeEach
+  void setup() throws SQLException {
+    databaseManager = new DatabaseManager();
+    databaseManager.getWineDao().addAll(
+        BenchmarkData.createWines(BenchmarkData.DATASET_SIZE, 1));
+    wineExportService = new WineExportService(databaseManager);
+  }
+
+  /**
+   * Closes the database.
+   */
+  @AfterEach
+  void teardown() {
+    databaseManager.teardown();
+  }
+
+  /**
+   * Times both export formats and logs the memory used while streaming against a full load.
+   */
+  @Test
+  void compareExport() throws Exception {
+    int total = databaseManager.getWineDao().getCount();
+
+    BenchmarkData.time("export CSV, streamed", 3,
+        () -> assertEquals(total, wineExportService.exportCsv(null, Writer.nullWriter())));
+    BenchmarkData.time("export NDJSON, streamed", 3,
+        () -> assertEquals(total, wineExportService.exportNdjson(null, Writer.nullWriter())));
+
+    Runtime runtime = Runtime.getRuntime();
+    System.gc();
+    long before = runtime.totalMemory() - runtime.freeMemory();
+    wineExportService.exportCsv(null, Writer.nullWriter());
+    long streamed = runtime.totalMemory() - runtime.freeMemory();
+    log.info("[benchmark] heap after streamed export: {} KiB", (streamed - before) / 1024);
+
+    System.gc();
+    before = runtime.totalMemory() - runtime.freeMemory();
+    int loaded = databaseManager.getWineDao().getAll().size();
+    long all = runtime.totalMemory() - runtime.freeMemory();
+    log.info("[benchmark] heap after loading all {} wines: {} KiB", loaded,
+        (all - before) / 1024);
+  }
+}
@@ -0,0 +1,101 @@
+package seng202.team6.benchmarks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.List;
+import javafx.beans.value.ChangeListener;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import seng202.team6.dao.GeoLocationDao;
+import seng202.team6.dao.WineDao;
+import seng202.team6.model.Wine;
+import seng202.team6.service.WineDataStatService;
+
+/**
+ * Measures the retained heap per wine loaded from a 130k wine database. Loaded wines hold plain
+ * values and a shared change tracker; the eager case materialises every property and attaches a
+ * listener to each, as every loaded wine used to.
+ */
+public class WineFootprintBenchmark {
+
+  private static final Logger log = LogManager.getLogger(WineFootprintBenchmark.class);
+
+  private Connection connection;
+  private WineDao wineDao;
+
+  /**
+   * Creates an in-memory database holding 130k generated wines.
+   */
+  @BeforeEach
+  void setup() throws SQLException {
+    connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+    GeoLocationDao geoLocationDao = new GeoLocationDao(connection);
+    wineDao = new WineDao(connection, new WineDataStatService());
+    BenchmarkData.initialise(connection, geoLocationDao, wineDao);
+    wineDao.addAll(BenchmarkData.createWines(BenchmarkData.DATASET_SIZE, 1));
+  }
+
+  /**
+   * Closes the database.
+   */
+  @AfterEach
+  void teardown() throws SQLException {
+    connection.close();
+  }
+
+  /**
+   * Loads every wine, then binds listeners to every property of every wine, logging the bytes
+   * retained per wine at each step.
+   */
+  @Test
+  void compareWineFootprint() throws Exception {
+    long before = usedMemory();
+    List<Wine> wines = wineDao.getAll();
+    long loaded = usedMemory();
+    assertEquals(BenchmarkData.DATASET_SIZE, wines.size());
+    log.info("[benchmark] bytes per loaded wine, lazy properties (after): {}",
+        (loaded - before) / wines.size());
+
+    for (Wine wine : wines) {
+      wine.titleProperty().addListener(listenerFor(wine));
+      wine.varietyProperty().addListener(listenerFor(wine));
+      wine.countryProperty().addListener(listenerFor(wine));
+      wine.regionProperty().addListener(listenerFor(wine));
+      wine.wineryProperty().addListener(listenerFor(wine));
+      wine.colorProperty().addListener(listenerFor(wine));
+      wine.vintageProperty().addListener(listenerFor(wine));
+      wine.descriptionProperty().addListener(listenerFor(wine));
+      wine.scorePercentProperty().addListener(listenerFor(wine));
+      wine.abvProperty().addListener(listenerFor(wine));
+      wine.priceProperty().addListener(listenerFor(wine));
+      wine.averageRatingProperty().addListener(listenerFor(wine));
+    }
+    long bound = usedMemory();
+    log.info("[benchmark] bytes per loaded wine, eager bound properties (before): {}",
+        (bound - before) / wines.size());
+    assertEquals(BenchmarkData.DATASET_SIZE, wines.size());
+  }
+
+  /**
+   * Creates a listener capturing its wine, like the per-property listeners wines used to be bound
+   * with.
+   */
+  private static ChangeListener<Object> listenerFor(Wine wine) {
+    return (observable, oldValue, newValue) -> wine.getKey();
+  }
+
+  private static long usedMemory() throws InterruptedException {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      Thread.sleep(100);
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -0,0 +1,111 @@
+package seng202.team6.benchmarks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import seng202.team6.enums.WineImportMode;
+import seng202.team6.enums.WinePropertyName;
+import seng202.team6.managers.DatabaseManager;
+import seng202.team6.model.Wine;
+import seng202.team6.service.WineImportPipeline;
+import seng202.team6.service.WineImportService;
+import seng202.team6.util.exceptions.ValidationException;
+
+/**
+ * Times importing 130k CSV rows by parsing every row on one thread then adding them with
+ * WineDao.replaceAll, as the import screen used to, against the pipelined import. Replacing
+ * through the pipeline merges on the natural key, so wines imported again are left in place.
+ */
+public class WineImportBenchmark {
+
+  private static final Map<WinePropertyName, Integer> COLUMNS = Map.ofEntries(
+      Map.entry(WinePropertyName.TITLE, 0),
+      Map.entry(WinePropertyName.VARIETY, 1),
+      Map.entry(WinePropertyName.COUNTRY, 2),
+      Map.entry(WinePropertyName.REGION, 3),
+      Map.entry(WinePropertyName.WINERY, 4),
+      Map.entry(WinePropertyName.COLOUR, 5),
+      Map.entry(WinePropertyName.VINTAGE, 6),
+      Map.entry(WinePropertyName.DESCRIPTION, 7),
+      Map.entry(WinePropertyName.SCORE, 8),
+      Map.entry(WinePropertyName.ABV, 9),
+      Map.entry(WinePropertyName.PRICE, 10));
+
+  private DatabaseManager databaseManager;
+  private List<String[]> rows;
+
+  /**
+   * Creates an empty in-memory database and 130k generated rows.
+   */
+  @BeforeEach
+  void setup() {
+    databaseManager = new DatabaseManager();
+    rows = new ArrayList<>();
+    for (Wine wine : BenchmarkData.createWines(BenchmarkData.DATASET_SIZE, 1)) {
+      rows.add(new String[]{wine.getTitle(), wine.getVariety(), wine.getCountry(),
+          wine.getRegion(), wine.getWinery(), wine.getColor(), String.valueOf(wine.getVintage()),
+          wine.getDescription(), String.valueOf(wine.getScorePercent()),
+          String.valueOf(wine.getAbv()), String.valueOf(wine.getPrice())});
+    }
+  }
+
+  /**
+   * Closes the database.
+   */
+  @AfterEach
+  void teardown() {
+    databaseManager.teardown();
+  }
+
+  /**
+   * Times re-importing the same rows over the wines they were first imported as: sequentially
+   * through replaceAll, then through the pipeline replacing with one and with the default number
+   * of workers, and merging a copy with a tenth of the rows changed.
+   */
+  @Test
+  void compareImport() throws Exception {
+    WineImportService importService = new WineImportService();
+    BenchmarkData.time("re-import, sequential parse then replaceAll (before)", 3, () -> {
+      List<Wine> wines = new ArrayList<>();
+      for (String[] row : rows) {
+        try {
+          wines.add(importService.parseWine(COLUMNS, row));
+        } catch (ValidationException error) {
+          // counted as invalid by the import screen
+        }
+      }
+      databaseManager.getWineDao().replaceAll(wines);
+    });
+    assertEquals(rows.size(), databaseManager.getWineDao().getCount());
+
+    BenchmarkData.time("re-import, pipeline replace with 1 worker (after)", 3,
+        () -> new WineImportPipeline(databaseManager.getWineDao(), 1)
+            .run(rows.iterator(), COLUMNS, WineImportMode.REPLACE, rows.size(), progress -> { }));
+    assertEquals(rows.size(), databaseManager.getWineDao().getCount());
+
+    int workers = new WineImportPipeline(databaseManager.getWineDao()).getWorkerCount();
+    BenchmarkData.time("re-import, pipeline replace with " + workers + " workers (after)", 3,
+        () -> new WineImportPipeline(databaseManager.getWineDao())
+            .run(rows.iterator(), COLUMNS, WineImportMode.REPLACE, rows.size(), progress -> { }));
+    assertEquals(rows.size(), databaseManager.getWineDao().getCount());
+
+    List<String[]> changed = new ArrayList<>();
+    for (int i = 0; i < rows.size(); i++) {
+      String[] row = rows.get(i).clone();
+      if (i % 10 == 0) {
+        row[10] = String.valueOf(i % 500);
+      }
+      changed.add(row);
+    }
+    BenchmarkData.time("re-import with a tenth changed, pipeline merge (after)", 3,
+        () -> new WineImportPipeline(databaseManager.getWineDao())
+            .run(changed.iterator(), COLUMNS, WineImportMode.MERGE, changed.size(),
+                progress -> { }));
+    assertEquals(rows.size(), databaseManager.getWineDao().getCount());
+  }
+}
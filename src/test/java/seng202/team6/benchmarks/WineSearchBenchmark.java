@@ -0,0 +1,80 @@
+package seng202.team6.benchmarks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import seng202.team6.dao.GeoLocationDao;
+import seng202.team6.dao.WineDao;
+import seng202.team6.enums.WineSortOrder;
+import seng202.team6.model.WineCursor;
+import seng202.team6.model.WinePage;
+import seng202.team6.service.WineDataStatService;
+
+/**
+ * Compares reading the first and the 1000th page of wines by cursor and by offset over a 130k wine
+ * database, for each sort order.
+ */
+public class WineSearchBenchmark {
+
+  private static final int PAGE_SIZE = 100;
+  private static final int DEEP_PAGE = 1000;
+
+  private Connection connection;
+  private WineDao wineDao;
+
+  /**
+   * Creates an in-memory database holding the default geolocations and 130k generated wines.
+   */
+  @BeforeEach
+  void setup() throws SQLException {
+    connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+    GeoLocationDao geoLocationDao = new GeoLocationDao(connection);
+    wineDao = new WineDao(connection, new WineDataStatService());
+    BenchmarkData.initialise(connection, geoLocationDao, wineDao);
+    geoLocationDao.addDefaultGeoLocations();
+    wineDao.addAll(BenchmarkData.createWines(BenchmarkData.DATASET_SIZE, 1));
+  }
+
+  /**
+   * Closes the database.
+   */
+  @AfterEach
+  void teardown() throws SQLException {
+    connection.close();
+  }
+
+  /**
+   * Times page 1 against page 1000 for every sort order, checking that the cursor and offset reach
+   * the same wines.
+   */
+  @Test
+  void compareFirstAndDeepPages() throws Exception {
+    for (WineSortOrder order : WineSortOrder.values()) {
+      WineCursor deepCursor = walkToPage(order, DEEP_PAGE);
+      int offset = (DEEP_PAGE - 1) * PAGE_SIZE;
+      assertEquals(wineDao.search(null, order, offset, PAGE_SIZE).wines(),
+          wineDao.search(null, order, deepCursor, PAGE_SIZE).wines());
+
+      BenchmarkData.time(order + ", page 1", 20,
+          () -> wineDao.search(null, order, (WineCursor) null, PAGE_SIZE));
+      BenchmarkData.time(order + ", page " + DEEP_PAGE + " by offset", 20,
+          () -> wineDao.search(null, order, offset, PAGE_SIZE));
+      BenchmarkData.time(order + ", page " + DEEP_PAGE + " by cursor", 20,
+          () -> wineDao.search(null, order, deepCursor, PAGE_SIZE));
+    }
+  }
+
+  private WineCursor walkToPage(WineSortOrder order, int pageNumber) throws SQLException {
+    WineCursor cursor = null;
+    for (int page = 1; page < pageNumber; page++) {
+      WinePage result = wineDao.search(null, order, cursor, PAGE_SIZE);
+      cursor = result.next();
+    }
+    return cursor;
+  }
+}
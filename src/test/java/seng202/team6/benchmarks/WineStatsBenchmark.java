@@ -0,0 +1,75 @@
+package seng202.team6.benchmarks;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import seng202.team6.dao.WineDao;
+import seng202.team6.service.WineDataStatService;
+
+/**
+ * Compares recalculating the wine stats by scanning every wine row against counting each attribute
+ * over its index, and times adding wines now that the stats are kept incrementally.
+ */
+public class WineStatsBenchmark {
+
+  private static final String ROW_SCAN_SQL = "SELECT title, country, winery, color, vintage, "
+      + "score_percent, abv, price FROM wine";
+
+  private Connection connection;
+  private WineDao wineDao;
+
+  /**
+   * Creates an in-memory database holding 130k generated wines.
+   */
+  @BeforeEach
+  void setup() throws SQLException {
+    connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+    wineDao = new WineDao(connection, new WineDataStatService());
+    BenchmarkData.initialise(connection, wineDao);
+    wineDao.addAll(BenchmarkData.createWines(BenchmarkData.DATASET_SIZE, 1));
+  }
+
+  /**
+   * Closes the database.
+   */
+  @AfterEach
+  void teardown() throws SQLException {
+    connection.close();
+  }
+
+  /**
+   * Times both ways of recalculating the stats, then an import of 1000 more wines.
+   */
+  @Test
+  void compareStatsRecalculation() throws Exception {
+    BenchmarkData.time("wine stats, row scan (before)", 5, this::scanRows);
+    BenchmarkData.time("wine stats, grouped index scan (after)", 5, () -> wineDao.updateUniques());
+    BenchmarkData.time("add 1000 wines with incremental stats", 5,
+        () -> wineDao.addAll(BenchmarkData.createWines(1000, 2)));
+  }
+
+  private void scanRows() throws SQLException {
+    Set<String> titles = new HashSet<>();
+    Set<String> countries = new HashSet<>();
+    try (Statement statement = connection.createStatement();
+        ResultSet set = statement.executeQuery(ROW_SCAN_SQL)) {
+      while (set.next()) {
+        titles.add(set.getString("title"));
+        countries.add(set.getString("country"));
+        set.getString("winery");
+        set.getString("color");
+        set.getInt("vintage");
+        set.getInt("score_percent");
+        set.getFloat("abv");
+        set.getFloat("price");
+      }
+    }
+  }
+}
@@ -213,6 +213,59 @@ public class AggregatedDaoTest {
     }
   }
 
+  /**
+   * Tests paging through filtered reviews and their wines after the last review of each page.
+   *
+   * @throws SQLException if there is an error retrieving data from the database.
+   */
+  @Test
+  void testGetWineReviewsAndWinesAfter() throws SQLException {
+    WineReviewDao reviewDao = databaseManager.getWineReviewDao();
+    for (int i = 0; i < 5; i++) {
+      reviewDao.add(testUser, testWine, i % 2 == 0 ? 5 : 1, "Review " + i,
+          new Date(1728366112972L));
+    }
+    ReviewFilters testFilters = new ReviewFilters("", "win", 4, 5);
+
+    ObservableList<Pair<WineReview, Wine>> firstPage = aggregatedDao
+        .getWineReviewsAndWinesAfter(0, 2, testFilters);
+    assertEquals(2, firstPage.size());
+    assertEquals("Review 0", firstPage.get(0).getFirst().getDescription());
+    assertEquals("Review 2", firstPage.get(1).getFirst().getDescription());
+    assertEquals("wine", firstPage.getFirst().getSecond().getTitle());
+
+    ObservableList<Pair<WineReview, Wine>> secondPage = aggregatedDao
+        .getWineReviewsAndWinesAfter(firstPage.getLast().getFirst().getId(), 2, testFilters);
+    assertEquals(1, secondPage.size());
+    assertEquals("Review 4", secondPage.getFirst().getFirst().getDescription());
+  }
+
+  /**
+   * Tests the retrieval of all reviews by a user along with their wines, ensuring each review is
+   * paired with the wine it is about.
+   *
+   * @throws SQLException if there is an error retrieving data from the database.
+   */
+  @Test
+  void testGetWineReviewsAndWinesByUser() throws SQLException {
+    WineReviewDao reviewDao = databaseManager.getWineReviewDao();
+    Wine otherWine = new Wine(-1, "other wine", "blue", "nz", "christchurch", "Test Vineyard", "",
+        1024, "na", 99, 25.0f, 50f, null, 0.0);
+    wineDao.add(otherWine);
+
+    reviewDao.add(testUser, testWine, 5, "Yum!", new Date(1728366112972L));
+    reviewDao.add(testUser, otherWine, 2, "Yuck!", new Date(1728366112972L));
+
+    ObservableList<Pair<WineReview, Wine>> result = aggregatedDao.getWineReviewsAndWines(testUser);
+
+    assertEquals(2, result.size());
+    for (Pair<WineReview, Wine> pair : result) {
+      assertEquals(pair.getFirst().getWineId(), pair.getSecond().getKey());
+      assertEquals(pair.getFirst().getDescription().equals("Yum!") ? "wine" : "other wine",
+          pair.getSecond().getTitle());
+    }
+  }
+
   /**
    * Tests the retrieval of wines from a specific vineyard.
    * Ensures that the wines associated with the given vineyard are returned correctly.
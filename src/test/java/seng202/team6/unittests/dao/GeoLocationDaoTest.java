@@ -115,4 +115,32 @@ public class GeoLocationDaoTest {
 
   }
 
-}
\ No newline at end of file
+  /**
+   * Tests that locations which could not be resolved are remembered until they are resolved.
+   */
+  @Test
+  void testUnresolvedLocationNames() {
+    geoLocationDao.addUnresolved("Nowhere");
+    geoLocationDao.addUnresolved("Somewhere");
+
+    Set<String> unresolved = geoLocationDao.getUnresolvedLocationNames(
+        Set.of("Nowhere", "Somewhere", "Elsewhere"), 0);
+    assertEquals(Set.of("Nowhere", "Somewhere"), unresolved);
+
+    geoLocationDao.add("Somewhere", new GeoLocation(-43.5, 172.5));
+    assertEquals(Set.of("Nowhere"), geoLocationDao.getUnresolvedLocationNames(
+        Set.of("Nowhere", "Somewhere"), 0));
+    assertEquals(Set.of("Somewhere"), geoLocationDao.getExistingLocationNames(
+        Set.of("Nowhere", "Somewhere")));
+  }
+
+  /**
+   * Tests that attempts made before the given time are not returned, so they can be retried.
+   */
+  @Test
+  void testUnresolvedLocationNamesAttemptedSince() {
+    geoLocationDao.addUnresolved("Nowhere");
+    long future = System.currentTimeMillis() + 60_000;
+    assertTrue(geoLocationDao.getUnresolvedLocationNames(Set.of("Nowhere"), future).isEmpty());
+  }
+}
@@ -0,0 +1,333 @@
+package seng202.team6.unittests.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import seng202.team6.dao.GeoLocationDao;
+import seng202.team6.dao.Migration;
+import seng202.team6.dao.MigrationRunner;
+import seng202.team6.dao.WineDao;
+import seng202.team6.dao.WineNotesDao;
+import seng202.team6.dao.WineReviewDao;
+import seng202.team6.managers.DatabaseManager;
+import seng202.team6.model.MigrationProgress;
+import seng202.team6.service.WineDataStatService;
+import seng202.team6.util.ConnectionPool;
+
+/**
+ * Tests applying migrations to databases created by earlier versions of the app and running their
+ * backfills in batches.
+ */
+public class MigrationRunnerTest {
+
+  private Connection connection;
+  private ConnectionPool connectionPool;
+
+  /**
+   * Opens an empty in-memory database.
+   */
+  @BeforeEach
+  void setup() throws SQLException {
+    connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+    connectionPool = new ConnectionPool(connection);
+  }
+
+  /**
+   * Closes the database.
+   */
+  @AfterEach
+  void teardown() throws SQLException {
+    connectionPool.close();
+    connection.close();
+  }
+
+  private void execute(String sql) throws SQLException {
+    try (Statement statement = connection.createStatement()) {
+      statement.execute(sql);
+    }
+  }
+
+  private long queryLong(String sql) throws SQLException {
+    try (Statement statement = connection.createStatement();
+        ResultSet resultSet = statement.executeQuery(sql)) {
+      resultSet.next();
+      return resultSet.getLong(1);
+    }
+  }
+
+  /**
+   * Creates a table of numbered rows whose values start at 0.
+   *
+   * @param rows number of rows
+   */
+  private void createRows(int rows) throws SQLException {
+    execute("CREATE TABLE ROWS (ID INTEGER PRIMARY KEY, VALUE INTEGER NOT NULL DEFAULT 0)");
+    execute("WITH RECURSIVE N(I) AS (SELECT 1 UNION ALL SELECT I + 1 FROM N WHERE I < " + rows
+        + ") INSERT INTO ROWS (ID) SELECT I FROM N");
+  }
+
+  /**
+   * Creates the wine table as it was before any migrations, with three wines.
+   */
+  private void createOriginalWines() throws SQLException {
+    execute("CREATE TABLE WINE (ID INTEGER PRIMARY KEY, TITLE VARCHAR(64) NOT NULL, "
+        + "VARIETY VARCHAR(32), COUNTRY VARCHAR(32), REGION VARCHAR(32), WINERY VARCHAR(64), "
+        + "COLOR VARCHAR(32), VINTAGE INTEGER, DESCRIPTION TEXT, SCORE_PERCENT INTEGER, "
+        + "ABV FLOAT, PRICE FLOAT, AVERAGE_RATING DOUBLE)");
+    execute("INSERT INTO WINE (ID, TITLE, VARIETY) VALUES (1, 'Kumeu Chardonnay', 'Chardonnay'), "
+        + "(2, 'Gibbston Pinot Noir', 'Pinot Noir'), (3, 'Awatere Sauvignon', 'Sauvignon')");
+  }
+
+  private boolean indexExists(String name) throws SQLException {
+    return queryLong("SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' AND name = '"
+        + name + "'") == 1;
+  }
+
+  /**
+   * Backfill setting the value of each row to 1, recording the ranges of its batches.
+   */
+  private static class RowsBackfill implements Migration.Backfill {
+
+    private final List<long[]> batches = new ArrayList<>();
+    private long failAfterId = -1;
+
+    @Override
+    public long getMaxId(Connection connection) throws SQLException {
+      try (Statement statement = connection.createStatement();
+          ResultSet resultSet = statement.executeQuery("SELECT MAX(ID) FROM ROWS")) {
+        return resultSet.next() ? resultSet.getLong(1) : 0;
+      }
+    }
+
+    @Override
+    public int applyBatch(Connection connection, long fromId, long toId) throws SQLException {
+      batches.add(new long[]{fromId, toId});
+      try (Statement statement = connection.createStatement()) {
+        int rows = statement.executeUpdate(
+            "UPDATE ROWS SET VALUE = 1 WHERE ID > " + fromId + " AND ID <= " + toId);
+        if (fromId == failAfterId) {
+          throw new SQLException("Batch failed");
+        }
+        return rows;
+      }
+    }
+  }
+
+  /**
+   * Checks that a new database is marked with the latest version and has no backfills to run.
+   */
+  @Test
+  void testNewDatabaseIsCurrent() throws SQLException {
+    DatabaseManager databaseManager = new DatabaseManager();
+    try {
+      MigrationRunner runner = databaseManager.getMigrationRunner();
+      assertTrue(runner.getLatestVersion() >= 1);
+      assertEquals(runner.getLatestVersion(), runner.getVersion());
+      assertEquals(0, runner.migrate());
+      assertTrue(runner.getPendingBackfills(databaseManager.getConnectionPool()).isEmpty());
+    } finally {
+      databaseManager.teardown();
+    }
+  }
+
+  /**
+   * Checks that pending migrations are applied in version order whatever order they are given in,
+   * and are not applied again.
+   */
+  @Test
+  void testMigrateAppliesPendingInOrder() throws SQLException {
+    List<Integer> applied = new ArrayList<>();
+    MigrationRunner runner = new MigrationRunner(connection, List.of(
+        new Migration(2, "Add column", c -> {
+          applied.add(2);
+          execute("ALTER TABLE ROWS ADD COLUMN NAME TEXT");
+        }),
+        new Migration(1, "Create table", c -> {
+          applied.add(1);
+          execute("CREATE TABLE ROWS (ID INTEGER PRIMARY KEY)");
+        })));
+
+    assertEquals(0, runner.getVersion());
+    assertEquals(2, runner.migrate());
+    assertEquals(List.of(1, 2), applied);
+    assertEquals(2, runner.getVersion());
+    assertTrue(MigrationRunner.columnExists(connection, "ROWS", "NAME"));
+
+    assertEquals(0, runner.migrate());
+    assertEquals(List.of(1, 2), applied);
+  }
+
+  /**
+   * Checks that a failed migration is rolled back with its version, leaving earlier migrations
+   * applied.
+   */
+  @Test
+  void testFailedMigrationRolledBack() throws SQLException {
+    MigrationRunner runner = new MigrationRunner(connection, List.of(
+        new Migration(1, "Create table", c -> execute("CREATE TABLE ROWS (ID INTEGER)")),
+        new Migration(2, "Fail", c -> {
+          execute("CREATE TABLE OTHER (ID INTEGER)");
+          throw new SQLException("Migration failed");
+        })));
+
+    assertThrows(SQLException.class, runner::migrate);
+    assertEquals(1, runner.getVersion());
+    assertEquals(1, queryLong("SELECT COUNT(*) FROM sqlite_master WHERE name = 'ROWS'"));
+    assertEquals(0, queryLong("SELECT COUNT(*) FROM sqlite_master WHERE name = 'OTHER'"));
+    assertTrue(connection.getAutoCommit());
+  }
+
+  /**
+   * Checks that two migrations with the same version are rejected.
+   */
+  @Test
+  void testDuplicateVersionsRejected() {
+    Migration.Step step = c -> {
+    };
+    assertThrows(IllegalArgumentException.class, () -> new MigrationRunner(connection,
+        List.of(new Migration(1, "First", step), new Migration(1, "Second", step))));
+    assertThrows(IllegalArgumentException.class, () -> new Migration(0, "Zero", step));
+  }
+
+  /**
+   * Checks that a backfill is run in batches covering every row, reporting progress after each.
+   */
+  @Test
+  void testBackfillInBatches() throws SQLException {
+    createRows(25);
+    RowsBackfill backfill = new RowsBackfill();
+    MigrationRunner runner = new MigrationRunner(connection,
+        List.of(new Migration(1, "Set values", c -> {
+        }, backfill)));
+    runner.migrate();
+    assertEquals(1, runner.getPendingBackfills(connectionPool).size());
+
+    List<MigrationProgress> progress = new ArrayList<>();
+    assertEquals(1, runner.runBackfills(connectionPool, 10, progress::add));
+
+    assertEquals(3, backfill.batches.size());
+    assertEquals(List.of(10L, 20L, 25L), progress.stream().map(MigrationProgress::lastId).toList());
+    assertFalse(progress.get(1).complete());
+    assertTrue(progress.getLast().complete());
+    assertEquals(1, progress.getLast().getFractionDone());
+    assertEquals(0, queryLong("SELECT COUNT(*) FROM ROWS WHERE VALUE = 0"));
+    assertTrue(runner.getPendingBackfills(connectionPool).isEmpty());
+    assertEquals(0, runner.runBackfills(connectionPool, 10, progress::add));
+  }
+
+  /**
+   * Checks that a failed batch is rolled back, and the backfill resumes from it without repeating
+   * the batches before it.
+   */
+  @Test
+  void testBackfillResumesAfterFailure() throws SQLException {
+    createRows(30);
+    RowsBackfill backfill = new RowsBackfill();
+    backfill.failAfterId = 10;
+    MigrationRunner runner = new MigrationRunner(connection,
+        List.of(new Migration(1, "Set values", c -> {
+        }, backfill)));
+    runner.migrate();
+
+    assertThrows(SQLException.class, () -> runner.runBackfills(connectionPool, 10, p -> {
+    }));
+    assertEquals(20, queryLong("SELECT COUNT(*) FROM ROWS WHERE VALUE = 0"));
+    assertEquals(10, queryLong("SELECT LAST_ID FROM MIGRATION_BACKFILL WHERE VERSION = 1"));
+
+    backfill.failAfterId = -1;
+    backfill.batches.clear();
+    runner.runBackfills(connectionPool, 10, p -> {
+    });
+    assertEquals(10, backfill.batches.getFirst()[0]);
+    assertEquals(2, backfill.batches.size());
+    assertEquals(0, queryLong("SELECT COUNT(*) FROM ROWS WHERE VALUE = 0"));
+  }
+
+  /**
+   * Checks that a wine table from before reviews were aggregated gets the aggregate columns, and
+   * that the backfill fills them in from the reviews.
+   */
+  @Test
+  void testWineReviewAggregatesMigrated() throws SQLException {
+    createOriginalWines();
+    execute("CREATE TABLE WINE_REVIEW (ID INTEGER PRIMARY KEY, WINE_ID INTEGER, RATING DOUBLE)");
+    execute("INSERT INTO WINE_REVIEW (WINE_ID, RATING) VALUES (1, 4), (1, 2), (3, 5)");
+    WineDao wineDao = new WineDao(connection, new WineDataStatService());
+    wineDao.setConnectionPool(connectionPool);
+    MigrationRunner runner = new MigrationRunner(connection, wineDao.getMigrations());
+
+    assertEquals(wineDao.getMigrations().size(), runner.migrate());
+    assertTrue(MigrationRunner.columnExists(connection, "WINE", "REVIEW_COUNT"));
+    assertTrue(MigrationRunner.columnExists(connection, "WINE", "RATING_SUM"));
+    runner.runBackfills(connectionPool, 2, p -> {
+    });
+
+    assertEquals(2, queryLong("SELECT REVIEW_COUNT FROM WINE WHERE ID = 1"));
+    assertEquals(6, queryLong("SELECT RATING_SUM FROM WINE WHERE ID = 1"));
+    assertEquals(3, queryLong("SELECT AVERAGE_RATING FROM WINE WHERE ID = 1"));
+    assertEquals(0, queryLong("SELECT REVIEW_COUNT FROM WINE WHERE ID = 2"));
+    assertEquals(1, queryLong("SELECT REVIEW_COUNT FROM WINE WHERE ID = 3"));
+  }
+
+  /**
+   * Checks that a wine table from before the indexes and stats snapshot were added gets them, with
+   * the search index built from the existing wines and the title index replaced.
+   */
+  @Test
+  void testWineSchemaMigrated() throws SQLException {
+    createOriginalWines();
+    execute("CREATE INDEX WINE_TITLE ON WINE (TITLE)");
+    WineDao wineDao = new WineDao(connection, new WineDataStatService());
+    MigrationRunner runner = new MigrationRunner(connection, wineDao.getMigrations());
+
+    runner.migrate();
+
+    assertEquals(2, queryLong("SELECT rowid FROM WINE_SEARCH WHERE WINE_SEARCH MATCH 'pinot'"));
+    assertTrue(indexExists("WINE_COUNTRY"));
+    assertTrue(indexExists("WINE_NATURAL_KEY"));
+    assertFalse(indexExists("WINE_TITLE"));
+    assertEquals(-1, queryLong("SELECT STATS_VERSION FROM WINE_VERSION WHERE ID = 0"));
+    execute("DELETE FROM WINE WHERE ID = 3");
+    assertEquals(1, queryLong("SELECT VERSION FROM WINE_VERSION WHERE ID = 0"));
+    assertEquals(0,
+        queryLong("SELECT COUNT(*) FROM WINE_SEARCH WHERE WINE_SEARCH MATCH 'awatere'"));
+  }
+
+  /**
+   * Checks that the migrations of the other tables index them when they exist, and leave tables
+   * which do not exist yet for the latest schema to create.
+   */
+  @Test
+  void testTableIndexesMigrated() throws SQLException {
+    execute("CREATE TABLE WINE_REVIEW (ID INTEGER PRIMARY KEY, USERNAME VARCHAR(64), "
+        + "WINE_ID INTEGER, FLAG INTEGER)");
+    execute("CREATE TABLE GEOLOCATION (NAME VARCHAR(64) PRIMARY KEY, LATITUDE DECIMAL, "
+        + "LONGITUDE DECIMAL)");
+    List<Migration> migrations = new ArrayList<>();
+    migrations.addAll(new WineReviewDao(connection).getMigrations());
+    migrations.addAll(new WineNotesDao(connection).getMigrations());
+    migrations.addAll(new GeoLocationDao(connection).getMigrations());
+    MigrationRunner runner = new MigrationRunner(connection, migrations);
+
+    assertEquals(migrations.size(), runner.migrate());
+
+    assertTrue(indexExists("WINE_REVIEW_WINE"));
+    assertTrue(indexExists("WINE_REVIEW_FLAGGED"));
+    assertTrue(indexExists("GEOLOCATION_NAME_KEY"));
+    assertTrue(MigrationRunner.tableExists(connection, "GEOLOCATION_UNRESOLVED"));
+    assertFalse(MigrationRunner.tableExists(connection, "NOTES"));
+    assertFalse(indexExists("NOTES_WINE"));
+  }
+}
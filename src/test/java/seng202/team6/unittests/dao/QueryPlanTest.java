@@ -0,0 +1,169 @@
+package seng202.team6.unittests.dao;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import seng202.team6.dao.AggregatedDao;
+import seng202.team6.dao.WineListDao;
+import seng202.team6.dao.WineNotesDao;
+import seng202.team6.dao.WineReviewDao;
+import seng202.team6.managers.DatabaseManager;
+
+/**
+ * Checks the query plans of the review, note and list queries the DAOs run, so that a dropped
+ * index or a rewritten query falling back to scanning a whole table fails the build.
+ */
+public class QueryPlanTest {
+
+  private DatabaseManager databaseManager;
+  private Connection connection;
+
+  /**
+   * Creates an in-memory database with the full schema.
+   */
+  @BeforeEach
+  void setup() throws SQLException {
+    databaseManager = new DatabaseManager();
+    connection = databaseManager.getConnectionPool().getWriter();
+  }
+
+  /**
+   * Closes the database.
+   */
+  @AfterEach
+  void teardown() {
+    databaseManager.teardown();
+  }
+
+  /**
+   * Gets the steps of the query plan for a statement.
+   *
+   * @param sql statement to plan
+   * @return detail of each step
+   */
+  private List<String> explain(String sql) throws SQLException {
+    List<String> steps = new ArrayList<>();
+    try (PreparedStatement statement = connection.prepareStatement("EXPLAIN QUERY PLAN " + sql);
+        ResultSet resultSet = statement.executeQuery()) {
+      while (resultSet.next()) {
+        steps.add(resultSet.getString("detail"));
+      }
+    }
+    return steps;
+  }
+
+  /**
+   * Asserts that a statement seeks with the given index and scans no table in full.
+   *
+   * @param sql   statement to plan
+   * @param index index or key the statement should use
+   */
+  private void assertUsesIndex(String sql, String index) throws SQLException {
+    List<String> steps = explain(sql);
+    for (String step : steps) {
+      assertFalse(step.startsWith("SCAN") && !step.contains(" USING "),
+          "Full table scan in " + steps + " for " + sql);
+    }
+    assertTrue(steps.stream().anyMatch(step -> step.contains(index)),
+        "Expected " + index + " in " + steps + " for " + sql);
+  }
+
+  /**
+   * Tests the reviews of a wine are found through the wine index.
+   */
+  @Test
+  void testReviewsByWine() throws SQLException {
+    assertUsesIndex(WineReviewDao.GET_BY_WINE_SQL, "WINE_REVIEW_WINE");
+  }
+
+  /**
+   * Tests the reviews of a user are found through the username index.
+   */
+  @Test
+  void testReviewsByUser() throws SQLException {
+    assertUsesIndex(WineReviewDao.GET_BY_USER_SQL, "WINE_REVIEW_USERNAME");
+  }
+
+  /**
+   * Tests flagged reviews are read and deleted through the partial flag index.
+   */
+  @Test
+  void testFlaggedReviews() throws SQLException {
+    assertUsesIndex(WineReviewDao.GET_FLAGGED_SQL, "WINE_REVIEW_FLAGGED");
+    assertUsesIndex(WineReviewDao.DELETE_FLAGGED_SQL, "WINE_REVIEW_FLAGGED");
+  }
+
+  /**
+   * Tests a page of reviews seeks on the primary key rather than skipping rows.
+   */
+  @Test
+  void testReviewsAfterId() throws SQLException {
+    assertUsesIndex(WineReviewDao.GET_AFTER_SQL, "INTEGER PRIMARY KEY");
+  }
+
+  /**
+   * Tests a page of reviews with their wines seeks on the primary key and joins wines by key,
+   * with and without filters.
+   */
+  @Test
+  void testReviewsAndWinesAfterId() throws SQLException {
+    assertUsesIndex(AggregatedDao.REVIEWS_AFTER_SQL, "INTEGER PRIMARY KEY");
+    assertUsesIndex(AggregatedDao.FILTERED_REVIEWS_AFTER_SQL, "INTEGER PRIMARY KEY");
+  }
+
+  /**
+   * Tests the notes of a user are found through the username and wine index.
+   */
+  @Test
+  void testNotesByUser() throws SQLException {
+    assertUsesIndex(WineNotesDao.GET_BY_USER_SQL, "NOTES_USERNAME_WINE");
+    assertUsesIndex(AggregatedDao.NOTES_AND_WINES_BY_USER_SQL, "NOTES_USERNAME_WINE");
+  }
+
+  /**
+   * Tests a note is found by both columns of the username and wine index.
+   */
+  @Test
+  void testNoteByUserAndWine() throws SQLException {
+    assertUsesIndex(WineNotesDao.GET_BY_USER_AND_WINE_SQL,
+        "NOTES_USERNAME_WINE (USERNAME=? AND WINE_ID=?)");
+  }
+
+  /**
+   * Tests a wine is found in and removed from a list by both columns of the list index.
+   */
+  @Test
+  void testWineInList() throws SQLException {
+    assertUsesIndex(WineListDao.CONTAINS_WINE_SQL,
+        "LIST_ITEMS_LIST_WINE (LIST_ID=? AND WINE_ID=?)");
+    assertUsesIndex(WineListDao.REMOVE_WINE_SQL, "LIST_ITEMS_LIST_WINE");
+  }
+
+  /**
+   * Tests the lists of a user are found through the username index.
+   */
+  @Test
+  void testListsByUser() throws SQLException {
+    assertUsesIndex(WineListDao.GET_BY_USER_SQL, "LIST_NAME_USERNAME");
+  }
+
+  /**
+   * Tests the rows cascaded to from a deleted wine are found through indexes.
+   */
+  @Test
+  void testWineDeleteCascades() throws SQLException {
+    // Deleting a wine makes SQLite look up its reviews, notes and list items to cascade to
+    assertUsesIndex("SELECT 1 FROM WINE_REVIEW WHERE WINE_ID = ?", "WINE_REVIEW_WINE");
+    assertUsesIndex("SELECT 1 FROM NOTES WHERE WINE_ID = ?", "NOTES_WINE");
+    assertUsesIndex("SELECT 1 FROM LIST_ITEMS WHERE WINE_ID = ?", "LIST_ITEMS_WINE");
+  }
+}
@@ -3,22 +3,34 @@ package seng202.team6.unittests.dao;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 import javafx.collections.ObservableList;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import seng202.team6.dao.WineDao;
+import seng202.team6.enums.WineImportMode;
+import seng202.team6.enums.WineSortOrder;
 import seng202.team6.managers.DatabaseManager;
 import seng202.team6.model.GeoLocation;
 import seng202.team6.model.Wine;
+import seng202.team6.model.WineCursor;
 import seng202.team6.model.WineFilters;
+import seng202.team6.model.WinePage;
 import seng202.team6.service.WineDataStatService;
 
 /**
@@ -605,6 +617,32 @@ public class WineDaoTest {
 
   }
 
+  /**
+   * Tests that a wine's region is matched to its geolocation regardless of case.
+   */
+  @Test
+  void testGeoLocationResolvedIgnoringCase() throws SQLException {
+    Wine wine = createWine("wine", "variety", "nz", "mARLBOROUGH",
+        "winery", "red", 2011, "description", 99, 13.5f, 10);
+
+    GeoLocation geoLocation = wine.getGeoLocation();
+    assertNotNull(geoLocation);
+    assertEquals(-41.5134, geoLocation.getLatitude(), 1e-4);
+    assertEquals(173.9612, geoLocation.getLongitude(), 1e-4);
+  }
+
+  /**
+   * Tests that a wine whose region has no geolocation is still returned without one.
+   */
+  @Test
+  void testUnknownRegionHasNoGeoLocation() throws SQLException {
+    Wine wine = createWine("wine", "variety", "nz", "Nowhere",
+        "winery", "red", 2011, "description", 99, 13.5f, 10);
+
+    assertNotNull(wine);
+    assertNull(wine.getGeoLocation());
+  }
+
   /**
    * Test the exact title matching
    * @throws SQLException
@@ -628,6 +666,488 @@ public class WineDaoTest {
   }
 
 
+  /**
+   * Tests that following the cursor of each page visits every wine exactly once, with the last page
+   * having no cursor.
+   */
+  @Test
+  void testSearchFollowsCursorThroughAllPages() throws SQLException {
+    addWines(25);
+    Set<Long> seen = new HashSet<>();
+    WinePage page = wineDao.search(null, WineSortOrder.DEFAULT, (WineCursor) null, 10);
+    int pages = 1;
+    page.wines().forEach(wine -> seen.add(wine.getKey()));
+    while (page.hasNext()) {
+      page = wineDao.search(null, WineSortOrder.DEFAULT, page.next(), 10);
+      page.wines().forEach(wine -> seen.add(wine.getKey()));
+      pages++;
+    }
+    assertEquals(3, pages);
+    assertEquals(5, page.wines().size());
+    assertEquals(25, seen.size());
+  }
+
+  /**
+   * Tests that pages sorted by price continue in order across the cursor.
+   */
+  @Test
+  void testSearchSortedByPriceAcrossPages() throws SQLException {
+    addWines(15);
+    WinePage first = wineDao.search(null, WineSortOrder.PRICE_HIGH_TO_LOW, (WineCursor) null, 8);
+    WinePage second = wineDao.search(null, WineSortOrder.PRICE_HIGH_TO_LOW, first.next(), 8);
+    List<Wine> wines = new ArrayList<>(first.wines());
+    wines.addAll(second.wines());
+
+    assertEquals(15, wines.size());
+    assertFalse(second.hasNext());
+    for (int i = 0; i < wines.size(); i++) {
+      assertEquals(14 - i, wines.get(i).getPrice());
+    }
+  }
+
+  /**
+   * Tests that wines with no price are sorted after every priced wine in both directions, and that
+   * cursors falling on and between unpriced wines skip none of them.
+   */
+  @Test
+  void testSearchSortedByNullablePriceAcrossPages() throws SQLException {
+    addWines(12);
+    Set<Long> unpriced = new HashSet<>();
+    try (Statement statement = databaseManager.getConnectionPool().getWriter()
+        .createStatement()) {
+      statement.executeUpdate("UPDATE WINE SET PRICE = NULL WHERE PRICE IN (0, 3, 6, 9)");
+      try (ResultSet resultSet = statement.executeQuery(
+          "SELECT ID FROM WINE WHERE PRICE IS NULL")) {
+        while (resultSet.next()) {
+          unpriced.add(resultSet.getLong("ID"));
+        }
+      }
+    }
+    assertEquals(4, unpriced.size());
+
+    for (WineSortOrder order : List.of(WineSortOrder.PRICE_LOW_TO_HIGH,
+        WineSortOrder.PRICE_HIGH_TO_LOW)) {
+      List<Long> ids = new ArrayList<>();
+      WinePage page = wineDao.search(null, order, (WineCursor) null, 5);
+      page.wines().forEach(wine -> ids.add(wine.getKey()));
+      while (page.hasNext()) {
+        page = wineDao.search(null, order, page.next(), 5);
+        page.wines().forEach(wine -> ids.add(wine.getKey()));
+      }
+      assertEquals(12, ids.size());
+      assertEquals(12, Set.copyOf(ids).size());
+      assertEquals(unpriced, Set.copyOf(ids.subList(8, 12)));
+    }
+  }
+
+  /**
+   * Tests that paging through tied relevance ranks visits every match exactly once.
+   */
+  @Test
+  void testSearchRelevanceAcrossPages() throws SQLException {
+    addWines(25);
+    WineFilters testFilters = new WineFilters();
+    testFilters.setTitle("wine");
+    Set<Long> seen = new HashSet<>();
+    WinePage page = wineDao.search(testFilters, WineSortOrder.RELEVANCE, (WineCursor) null, 10);
+    page.wines().forEach(wine -> seen.add(wine.getKey()));
+    while (page.hasNext()) {
+      page = wineDao.search(testFilters, WineSortOrder.RELEVANCE, page.next(), 10);
+      page.wines().forEach(wine -> seen.add(wine.getKey()));
+    }
+    assertEquals(5, page.wines().size());
+    assertEquals(25, seen.size());
+  }
+
+  /**
+   * Tests that a range of filtered wines is offset by position in the results rather than by ID.
+   */
+  @Test
+  void testGetAllInRangeWithSparseFilteredIds() throws SQLException {
+    addWines(25);
+    WineFilters testFilters = new WineFilters();
+    testFilters.setMinPrice(10);
+
+    ObservableList<Wine> result = wineDao.getAllInRange(5, 10, testFilters);
+
+    assertEquals(5, result.size());
+    assertEquals(15f, result.getFirst().getPrice());
+    assertEquals(19f, result.getLast().getPrice());
+  }
+
+  /**
+   * Tests that the country filter matches regardless of case.
+   */
+  @Test
+  void testCountryFilterIgnoresCase() throws SQLException {
+    createWine("wine1", "variety", "New Zealand", "region", "winery", "red", 2020,
+        "description", 99, 25f, 10f);
+    createWine("wine2", "variety", "France", "region", "winery", "red", 2020,
+        "description", 99, 25f, 10f);
+    WineFilters testFilters = new WineFilters();
+    testFilters.setCountry("new zealand");
+
+    assertEquals(1, wineDao.getCount(testFilters));
+    assertEquals("wine1", wineDao.getAllInRange(0, 10, testFilters).getFirst().getTitle());
+  }
+
+  /**
+   * Tests that the search text matches the variety and description as well as the title.
+   */
+  @Test
+  void testSearchMatchesVarietyAndDescription() throws SQLException {
+    createWine("wine1", "Pinot Noir", "nz", "region", "winery", "red", 2020,
+        "dark cherry", 99, 25f, 10f);
+    createWine("wine2", "Chardonnay", "nz", "region", "winery", "white", 2020,
+        "crisp citrus", 99, 25f, 10f);
+    WineFilters testFilters = new WineFilters();
+
+    testFilters.setTitle("pinot");
+    assertEquals("wine1", wineDao.getAllInRange(0, 10, testFilters).getFirst().getTitle());
+    testFilters.setTitle("citrus");
+    assertEquals("wine2", wineDao.getAllInRange(0, 10, testFilters).getFirst().getTitle());
+  }
+
+  /**
+   * Tests that search terms match the start of words only when prefix matching is enabled.
+   */
+  @Test
+  void testSearchPrefixMatching() throws SQLException {
+    createWine("Seasonal Collection Syrah", "variety", "nz", "region", "winery", "red", 2021,
+        "description", 93, 14f, 30f);
+    WineFilters testFilters = new WineFilters();
+    testFilters.setTitle("Season");
+
+    assertEquals(1, wineDao.getCount(testFilters));
+    testFilters.setPrefixMatch(false);
+    assertEquals(0, wineDao.getCount(testFilters));
+  }
+
+  /**
+   * Tests that renaming a wine updates the search index.
+   */
+  @Test
+  void testSearchIndexFollowsTitleUpdates() throws SQLException {
+    Wine wine = createWine("Initial", "variety", "nz", "region", "winery", "red", 2021,
+        "description", 93, 14f, 30f);
+    wine.setTitle("Changed");
+    WineFilters testFilters = new WineFilters();
+
+    testFilters.setTitle("Initial");
+    assertEquals(0, wineDao.getCount(testFilters));
+    testFilters.setTitle("Changed");
+    assertEquals(1, wineDao.getCount(testFilters));
+  }
+
+  /**
+   * Tests that ordering by relevance puts title matches ahead of description matches.
+   */
+  @Test
+  void testSearchRanksTitleMatchesFirst() throws SQLException {
+    createWine("Riverside Red", "variety", "nz", "region", "winery", "red", 2021,
+        "a syrah blend", 93, 14f, 30f);
+    createWine("Riverside Syrah", "variety", "nz", "region", "winery", "red", 2021,
+        "description", 93, 14f, 30f);
+    WineFilters testFilters = new WineFilters();
+    testFilters.setTitle("syrah");
+
+    WinePage page = wineDao.search(testFilters, WineSortOrder.RELEVANCE, (WineCursor) null, 10);
+    assertEquals("Riverside Syrah", page.wines().getFirst().getTitle());
+    assertEquals(2, page.wines().size());
+  }
+
+  /**
+   * Tests that rebuilding the search index does not duplicate matches.
+   */
+  @Test
+  void testRebuildSearchIndex() throws SQLException {
+    addWines(5);
+    wineDao.rebuildSearchIndex();
+    WineFilters testFilters = new WineFilters();
+    testFilters.setTitle("wine");
+
+    assertEquals(5, wineDao.getCount(testFilters));
+  }
+
+  /**
+   * Tests that a search page carries the total across all pages.
+   */
+  @Test
+  void testSearchPageHasTotal() throws SQLException {
+    addWines(25);
+    WineFilters testFilters = new WineFilters();
+    testFilters.setMinPrice(10);
+
+    WinePage page = wineDao.search(testFilters, WineSortOrder.DEFAULT, (WineCursor) null, 10);
+    assertEquals(10, page.wines().size());
+    assertEquals(15, page.total());
+  }
+
+  /**
+   * Tests that cached filtered counts are invalidated by adding and editing wines.
+   */
+  @Test
+  void testCachedCountInvalidatedByWrites() throws SQLException {
+    Wine wine = createWine("wine1", "variety", "nz", "region", "winery", "red", 2020,
+        "description", 99, 25f, 10f);
+    WineFilters testFilters = new WineFilters();
+    testFilters.setColor("red");
+    assertEquals(1, wineDao.getCount(testFilters));
+
+    createWine("wine2", "variety", "nz", "region", "winery", "red", 2020,
+        "description", 99, 25f, 10f);
+    assertEquals(2, wineDao.getCount(testFilters));
+
+    wine.setColor("white");
+    assertEquals(1, wineDao.getCount(testFilters));
+
+    wineDao.removeAll();
+    assertEquals(0, wineDao.getCount(testFilters));
+  }
+
+  /**
+   * Tests that pages and wines are served from the second level cache until a write invalidates
+   * the pages.
+   */
+  @Test
+  void testSecondLevelCacheInvalidatedByWrites() throws SQLException {
+    addWines(25);
+    WineFilters testFilters = new WineFilters();
+    testFilters.setColor("red");
+
+    ObservableList<Wine> firstPage = wineDao.getAllInRange(0, 10, testFilters);
+    ObservableList<Wine> cachedPage = wineDao.getAllInRange(0, 10, testFilters);
+    assertEquals(firstPage, cachedPage);
+    assertNotSame(firstPage, cachedPage);
+    assertEquals(1, wineDao.getPageCacheStats().hits());
+    assertSame(firstPage.getFirst(), wineDao.get(firstPage.getFirst().getKey()));
+    assertEquals(1, wineDao.getWineCacheStats().hits());
+
+    Wine changed = firstPage.getFirst();
+    changed.setColor("white");
+    assertFalse(wineDao.getAllInRange(0, 10, testFilters).contains(changed));
+    assertEquals(24, wineDao.getCount(testFilters));
+
+    wineDao.removeAll();
+    assertEquals(0, wineDao.getAllInRange(0, 10, testFilters).size());
+    assertNull(wineDao.get(changed.getKey()));
+  }
+
+  /**
+   * Tests that nothing is cached while the second level cache is turned off.
+   */
+  @Test
+  void testSecondLevelCacheDisabled() throws SQLException {
+    addWines(5);
+    wineDao.setSecondLevelCacheEnabled(false);
+    wineDao.getAllInRange(0, 5, null);
+    wineDao.getAllInRange(0, 5, null);
+    assertEquals(0, wineDao.getPageCacheStats().hits());
+    assertEquals(0, wineDao.getWineCacheStats().size());
+  }
+
+  /**
+   * Tests that streaming wines applies filters, returns them in ID order, and detaches them from
+   * the wine cache.
+   */
+  @Test
+  void testStreamFiltersInIdOrder() throws SQLException {
+    addWines(20);
+    WineFilters testFilters = new WineFilters();
+    testFilters.setMinPrice(10);
+
+    List<Wine> streamed;
+    try (Stream<Wine> wines = wineDao.stream(testFilters, 4)) {
+      streamed = wines.toList();
+    }
+    assertEquals(10, streamed.size());
+    for (int i = 1; i < streamed.size(); i++) {
+      assertTrue(streamed.get(i - 1).getKey() < streamed.get(i).getKey());
+    }
+    Wine first = streamed.getFirst();
+    assertNotSame(first, wineDao.get(first.getKey()));
+  }
+
+  /**
+   * Tests that changes to a streamed wine are not saved.
+   */
+  @Test
+  void testStreamedWinesAreDetached() throws SQLException {
+    Wine wine = createWine("wine1", "variety", "nz", "region", "winery", "red", 2020,
+        "description", 99, 25f, 10f);
+    try (Stream<Wine> wines = wineDao.stream(null)) {
+      wines.forEach(streamed -> streamed.setTitle("changed"));
+    }
+    assertEquals(0, wineDao.getUpdateQueue().getPendingCount());
+    WineFilters testFilters = new WineFilters();
+    testFilters.setTitle("changed");
+    assertEquals(0, wineDao.getCount(testFilters));
+    assertEquals("wine1", wine.getTitle());
+  }
+
+  /**
+   * Tests that adding, editing and removing wines keeps the wine stats up to date without
+   * recalculating them.
+   */
+  @Test
+  void testUniquesKeptUpToDateIncrementally() throws SQLException {
+    WineDataStatService wineDataStatService = wineDao.getWineDataStatService();
+    Wine wine = createWine("wine", "variety", "Namibia", "region", "winery", "red", 2011,
+        "description", 99, 13.5f, 10);
+    assertTrue(wineDataStatService.getUniqueCountries().contains("Namibia"));
+    assertEquals(2011, wineDataStatService.getMaxVintage());
+
+    wine.setCountry("Chile");
+    wine.setVintage(2015);
+    assertFalse(wineDataStatService.getUniqueCountries().contains("Namibia"));
+    assertTrue(wineDataStatService.getUniqueCountries().contains("Chile"));
+    assertEquals(2015, wineDataStatService.getMaxVintage());
+
+    wineDao.updateUniques();
+    assertTrue(wineDataStatService.getUniqueCountries().contains("Chile"));
+    assertEquals(2015, wineDataStatService.getMinVintage());
+
+    wineDao.removeAll();
+    assertTrue(wineDataStatService.getUniqueCountries().isEmpty());
+  }
+
+  /**
+   * Tests that saved stats are loaded while no wine has changed, and recalculated once one has.
+   */
+  @Test
+  void testStatsSnapshotLoadedUntilStale() throws SQLException {
+    WineDataStatService wineDataStatService = wineDao.getWineDataStatService();
+    createWine("wine", "variety", "Namibia", "region", "winery", "red", 2011,
+        "description", 99, 13.5f, 10);
+    wineDao.saveStats();
+
+    wineDataStatService.reset();
+    wineDao.loadStats();
+    assertFalse(wineDataStatService.isTitlesLoaded());
+    assertTrue(wineDataStatService.getUniqueCountries().contains("Namibia"));
+    assertEquals(2011, wineDataStatService.getMaxVintage());
+    assertEquals(13.5f, wineDataStatService.getMaxAbv());
+    assertEquals(Set.of("wine"), wineDao.getUniqueTitles());
+
+    Wine wine = createWine("wine2", "variety", "Chile", "region", "winery", "red", 2015,
+        "description", 99, 13.5f, 10);
+    wine.setCountry("Peru");
+    wineDataStatService.reset();
+    wineDao.loadStats();
+    assertTrue(wineDataStatService.isTitlesLoaded());
+    assertTrue(wineDataStatService.getUniqueCountries().containsAll(Set.of("Namibia", "Peru")));
+    assertFalse(wineDataStatService.getUniqueCountries().contains("Chile"));
+  }
+
+  /**
+   * Tests getting wines by ID across more than one batch, in the order of the IDs given and
+   * skipping IDs with no wine.
+   */
+  @Test
+  void testGetAllByIds() throws SQLException {
+    List<Wine> wines = new ArrayList<>();
+    for (int i = 0; i < 1200; i++) {
+      wines.add(new Wine(-1, "wine" + i, "blue", "nz", "christchurch", "bob's wine", "red", 2011,
+          "na", 99, 25f, (float) i, null, 0.0));
+    }
+    wineDao.addAll(wines);
+    List<Long> ids = new ArrayList<>();
+    for (int i = wines.size() - 1; i >= 0; i--) {
+      ids.add(wines.get(i).getKey());
+    }
+    ids.add(600, -1L);
+
+    Map<Long, Wine> result = wineDao.getAll(ids);
+    ids.remove(600);
+    assertEquals(ids, new ArrayList<>(result.keySet()));
+    assertEquals("wine7", result.get(wines.get(7).getKey()).getTitle());
+    assertEquals(7f, result.get(wines.get(7).getKey()).getPrice());
+
+    Map<Long, Wine> again = wineDao.getAll(List.of(wines.get(7).getKey()));
+    assertSame(result.get(wines.get(7).getKey()), again.get(wines.get(7).getKey()));
+    assertTrue(wineDao.getAll(List.of()).isEmpty());
+  }
+
+  /**
+   * Tests merging wines with no winery, which must match each other and the existing wine with no
+   * winery rather than being added again.
+   */
+  @Test
+  void testMergeWithNullWinery() throws SQLException {
+    Wine existing = createWine("Existing", "blue", "nz", "christchurch", null, "red", 2011, "na",
+        99, 25f, 10f);
+    Wine named = createWine("Existing", "blue", "nz", "christchurch", "", "red", 2011, "na",
+        99, 25f, 10f);
+    try (WineDao.BatchWriter writer = wineDao.openBatchWriter(WineImportMode.MERGE)) {
+      writer.write(List.of(
+          new Wine(-1, "Existing", "blue", "nz", "christchurch", null, "red", 2011, "na", 99,
+              25f, 20f, null, 0.0),
+          new Wine(-1, "New", "blue", "nz", "christchurch", null, "red", 2011, "na", 99, 25f,
+              10f, null, 0.0),
+          new Wine(-1, "New", "blue", "nz", "christchurch", null, "red", 2011, "na", 99, 25f,
+              30f, null, 0.0)));
+      writer.commit();
+      assertEquals(1, writer.getAdded());
+      assertEquals(1, writer.getUpdated());
+    }
+
+    assertEquals(3, wineDao.getCount());
+    assertEquals(20f, wineDao.get(existing.getKey()).getPrice());
+    assertEquals(10f, wineDao.get(named.getKey()).getPrice());
+    assertEquals(30f, wineDao.getByExactTitle("New").getPrice());
+  }
+
+  /**
+   * Tests that merging, replacing and appending wines keep the stats as a full recalculation
+   * would, and that a rolled back append leaves them unchanged.
+   */
+  @Test
+  void testImportKeepsStatsUpToDate() throws SQLException {
+    WineDataStatService wineDataStatService = wineDao.getWineDataStatService();
+    createWine("Kept", "blue", "Namibia", "region", "winery", "red", 2011, "na", 90, 13f, 10f);
+    createWine("Changed", "blue", "Chile", "region", "winery", "red", 2012, "na", 91, 14f, 20f);
+    createWine("Removed", "blue", "Peru", "region", "winery", "white", 2013, "na", 92, 15f, 30f);
+
+    for (WineImportMode mode : List.of(WineImportMode.MERGE, WineImportMode.REPLACE)) {
+      try (WineDao.BatchWriter writer = wineDao.openBatchWriter(mode)) {
+        writer.write(List.of(
+            new Wine(-1, "Kept", "blue", "Namibia", "region", "winery", "red", 2011, "na", 90,
+                13f, 10f, null, 0.0),
+            new Wine(-1, "Changed", "blue", "Fiji", "region", "winery", "rose", 2012, "na", 95,
+                14f, 40f, null, 0.0),
+            new Wine(-1, "Added", "blue", "Fiji", "region", null, "red", 2020, "na", 99,
+                16f, 50f, null, 0.0)));
+        writer.commit();
+      }
+    }
+    assertFalse(wineDataStatService.getUniqueCountries().contains("Peru"));
+    assertFalse(wineDataStatService.getUniqueCountries().contains("Chile"));
+    assertEquals(2020, wineDataStatService.getMaxVintage());
+    assertEquals(50f, wineDataStatService.getMaxPrice());
+
+    try (WineDao.BatchWriter writer = wineDao.openBatchWriter(WineImportMode.APPEND)) {
+      writer.write(List.of(new Wine(-1, "Appended", "blue", "Tonga", "region", "winery", "red",
+          2021, "na", 80, 11f, 5f, null, 0.0)));
+      writer.commit();
+    }
+    try (WineDao.BatchWriter writer = wineDao.openBatchWriter(WineImportMode.APPEND)) {
+      writer.write(List.of(new Wine(-1, "Rolled back", "blue", "Samoa", "region", "winery",
+          "red", 2030, "na", 80, 11f, 5f, null, 0.0)));
+    }
+    assertTrue(wineDataStatService.getUniqueCountries().contains("Tonga"));
+    assertFalse(wineDataStatService.getUniqueCountries().contains("Samoa"));
+
+    List<Map<?, Integer>> counts = new ArrayList<>();
+    for (Wine.Attribute attribute : Wine.Attribute.values()) {
+      counts.add(wineDataStatService.getValueCounts(attribute));
+    }
+    wineDao.updateUniques();
+    for (Wine.Attribute attribute : Wine.Attribute.values()) {
+      assertEquals(counts.get(attribute.ordinal()), wineDataStatService.getValueCounts(attribute),
+          attribute.name());
+    }
+  }
+
   /**
    * Helper method to create a new Wine object with the given properties and add it to the database.
    *
@@ -5,6 +5,10 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javafx.collections.ObservableList;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -153,6 +157,97 @@ public class WineListDaoTest {
 
   }
 
+  /**
+   * Creates and adds a wine with the given title.
+   */
+  private Wine addWine(String title) throws SQLException {
+    Wine wine = new Wine(-1, title, "pinot gris", "nz", "christchurch",
+        "bob's wine", "red", 2011, "na", 99, 25f, 10f,
+        new GeoLocation(10, 10), 5.0);
+    databaseManager.getWineDao().add(wine);
+    return wine;
+  }
+
+  /**
+   * Tests getting the lists of many wines at once. Verifies that each wine gets the IDs of the
+   * user's lists it is in, and that other users' lists are left out.
+   */
+  @Test
+  void testGetListIdsContaining() throws SQLException {
+    Wine first = addWine("first");
+    Wine second = addWine("second");
+    Wine third = addWine("third");
+    WineList listA = wineListDao.create(testUser, "a");
+    WineList listB = wineListDao.create(testUser, "b");
+    User otherUser = new User("otherUser", "testPassword1!", "user", "egsalt");
+    userDao.add(otherUser);
+    WineList otherList = wineListDao.create(otherUser, "other");
+    wineListDao.addWine(listA, first);
+    wineListDao.addWine(listB, first);
+    wineListDao.addWine(listB, second);
+    wineListDao.addWine(otherList, third);
+    wineListDao.loadMembership(otherUser);
+
+    Map<Long, List<Long>> listIds = wineListDao.getListIdsContaining(testUser,
+        List.of(third.getKey(), first.getKey(), second.getKey()));
+
+    assertEquals(List.of(third.getKey(), first.getKey(), second.getKey()),
+        List.copyOf(listIds.keySet()));
+    assertEquals(Set.of(listA.id(), listB.id()), Set.copyOf(listIds.get(first.getKey())));
+    assertEquals(List.of(listB.id()), listIds.get(second.getKey()));
+    assertTrue(listIds.get(third.getKey()).isEmpty());
+  }
+
+  /**
+   * Tests that the loaded membership is kept up to date as wines are added and removed and lists
+   * are created, and is checked without querying the database.
+   */
+  @Test
+  void testLoadedMembershipUpdated() throws SQLException {
+    Wine wine = addWine("wine");
+    WineList testList = wineListDao.create(testUser, "testList1");
+    wineListDao.loadMembership(testUser);
+
+    wineListDao.addWine(testList, wine);
+    assertTrue(wineListDao.isWineInList(testList, wine));
+    WineList newList = wineListDao.create(testUser, "testList2");
+    assertFalse(wineListDao.isWineInList(newList, wine));
+    wineListDao.addWine(newList, wine);
+    assertEquals(Set.of(testList.id(), newList.id()), Set.copyOf(
+        wineListDao.getListIdsContaining(testUser, List.of(wine.getKey())).get(wine.getKey())));
+
+    wineListDao.removeWine(testList, wine);
+    assertFalse(wineListDao.isWineInList(testList, wine));
+
+    // Changed behind the DAO's back, so only a database query would see it
+    try (Statement statement = databaseManager.getConnectionPool().getWriter()
+        .createStatement()) {
+      statement.executeUpdate("DELETE FROM LIST_ITEMS");
+    }
+    assertTrue(wineListDao.isWineInList(newList, wine));
+    wineListDao.invalidateMembership();
+    assertFalse(wineListDao.isWineInList(newList, wine));
+  }
+
+  /**
+   * Tests that removing wines drops the loaded membership, so a new wine given a removed wine's
+   * ID is not found in its lists.
+   */
+  @Test
+  void testMembershipDroppedWhenWinesRemoved() throws SQLException {
+    Wine wine = addWine("wine");
+    WineList testList = wineListDao.create(testUser, "testList1");
+    wineListDao.addWine(testList, wine);
+    wineListDao.loadMembership(testUser);
+    assertTrue(wineListDao.isWineInList(testList, wine));
+
+    databaseManager.getWineDao().removeAll();
+    Wine replacement = addWine("replacement");
+
+    assertEquals(wine.getKey(), replacement.getKey());
+    assertFalse(wineListDao.isWineInList(testList, replacement));
+  }
+
   /**
    * Tears down the database after each test, removing any added data and resetting the state.
    *
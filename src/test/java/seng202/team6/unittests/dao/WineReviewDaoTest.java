@@ -1,9 +1,14 @@
 package seng202.team6.unittests.dao;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.sql.Date;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 import javafx.collections.ObservableList;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -220,6 +225,74 @@ public class WineReviewDaoTest {
 
   }
 
+  /**
+   * Tests paging through reviews after the last ID of each page, including after a review on an
+   * earlier page is deleted.
+   */
+  @Test
+  void testGetAllAfter() throws SQLException {
+    List<WineReview> reviews = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      reviews.add(createWineReview(3, wine, "review" + i));
+    }
+
+    ObservableList<WineReview> firstPage = wineReviewDao.getAllAfter(0, 2);
+    assertEquals(reviews.subList(0, 2), firstPage);
+    wineReviewDao.delete(reviews.getFirst());
+
+    ObservableList<WineReview> secondPage = wineReviewDao.getAllAfter(
+        firstPage.getLast().getId(), 2);
+    assertEquals(reviews.subList(2, 4), secondPage);
+    ObservableList<WineReview> lastPage = wineReviewDao.getAllAfter(
+        secondPage.getLast().getId(), 2);
+    assertEquals(reviews.subList(4, 5), lastPage);
+    assertTrue(wineReviewDao.getAllAfter(lastPage.getLast().getId(), 2).isEmpty());
+  }
+
+  /**
+   * Tests that adding, changing and deleting reviews keeps the wine's review aggregates and
+   * average rating in step, without writing the average back from memory.
+   */
+  @Test
+  void testReviewAggregatesMaintained() throws SQLException {
+    Wine loadedWine = wineDao.get(wine.getKey());
+    WineReview first = createWineReview(3.0, loadedWine, "First");
+    WineReview second = createWineReview(5.0, loadedWine, "Second");
+    wineDao.refreshAverageRatings(List.of(loadedWine.getKey()));
+    assertEquals(4.0, loadedWine.getAverageRating(), 0.001);
+    assertFalse(loadedWine.isDirty());
+
+    second.setRating(1.0);
+    wineDao.refreshAverageRatings(List.of(loadedWine.getKey()));
+    assertEquals(2.0, loadedWine.getAverageRating(), 0.001);
+
+    wineReviewDao.delete(first);
+    wineReviewDao.delete(second);
+    wineDao.refreshAverageRatings(List.of(loadedWine.getKey()));
+    assertEquals(0.0, loadedWine.getAverageRating(), 0.001);
+    assertTrue(wineDao.findInconsistentReviewAggregates().isEmpty());
+  }
+
+  /**
+   * Tests that review aggregates changed around the triggers are found and repaired.
+   */
+  @Test
+  void testRepairReviewAggregates() throws SQLException {
+    Wine loadedWine = wineDao.get(wine.getKey());
+    createWineReview(3.0, loadedWine, "First");
+    try (Statement statement = databaseManager.getConnectionPool().getWriter()
+        .createStatement()) {
+      statement.executeUpdate("UPDATE WINE SET REVIEW_COUNT = 0, RATING_SUM = 0, "
+          + "AVERAGE_RATING = 0");
+    }
+
+    assertEquals(List.of(loadedWine.getKey()), wineDao.findInconsistentReviewAggregates());
+    assertEquals(1, wineDao.repairReviewAggregates());
+    assertTrue(wineDao.findInconsistentReviewAggregates().isEmpty());
+    assertEquals(3.0, loadedWine.getAverageRating(), 0.001);
+    assertEquals(0, wineDao.repairReviewAggregates());
+  }
+
   /**
    * Helper method to create and add a wine review to the database.
    *
@@ -0,0 +1,218 @@
+package seng202.team6.unittests.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import seng202.team6.dao.WineDao;
+import seng202.team6.dao.WineUpdateQueue;
+import seng202.team6.managers.DatabaseManager;
+import seng202.team6.model.Wine;
+
+/**
+ * Unit tests for the WineUpdateQueue class, which writes wine attribute changes behind in batches.
+ */
+public class WineUpdateQueueTest {
+
+  private DatabaseManager databaseManager;
+  private WineDao wineDao;
+  private WineUpdateQueue updateQueue;
+
+  /**
+   * Sets up the database manager and update queue before each test.
+   *
+   * @throws SQLException if an error occurs during database setup.
+   */
+  @BeforeEach
+  void setup() throws SQLException {
+    databaseManager = new DatabaseManager();
+    wineDao = databaseManager.getWineDao();
+    updateQueue = wineDao.getUpdateQueue();
+  }
+
+  /**
+   * Tears down the database after each test.
+   */
+  @AfterEach
+  void teardown() {
+    databaseManager.teardown();
+  }
+
+  /**
+   * Tests that several changes to one wine are written as a single row update.
+   */
+  @Test
+  void testChangesToOneWineAreCoalesced() throws SQLException {
+    Wine wine = addWine();
+    wine.setTitle("Changed");
+    wine.setPrice(20f);
+    wine.setPrice(30f);
+    assertEquals(1, updateQueue.getPendingCount());
+
+    updateQueue.flush();
+
+    assertEquals(0, updateQueue.getPendingCount());
+    assertEquals(3, updateQueue.getChangesQueued());
+    assertEquals(1, updateQueue.getLastBatchSize());
+    assertEquals(1, updateQueue.getFlushCount());
+  }
+
+  /**
+   * Tests that changes to several wines are written in one flush.
+   */
+  @Test
+  void testChangesToManyWinesFlushTogether() throws SQLException {
+    Wine first = addWine();
+    Wine second = addWine();
+    first.setVintage(2001);
+    second.setDescription("Changed");
+
+    updateQueue.flush();
+
+    assertEquals(2, updateQueue.getRowsFlushed());
+    assertEquals(2, updateQueue.getMaxBatchSize());
+    assertEquals(1, updateQueue.getFlushCount());
+  }
+
+  /**
+   * Tests that reading wines writes pending changes first.
+   */
+  @Test
+  void testReadFlushesPendingChanges() throws SQLException {
+    Wine wine = addWine();
+    wine.setScorePercent(42);
+
+    wineDao.getCount();
+
+    assertEquals(0, updateQueue.getPendingCount());
+    assertEquals(1, updateQueue.getRowsFlushed());
+  }
+
+  /**
+   * Tests that pending changes are flushed by the executor after the delay.
+   */
+  @Test
+  void testScheduledFlushRunsOnExecutor() throws Exception {
+    CountDownLatch flushed = new CountDownLatch(1);
+    updateQueue.setFlushExecutor(task -> {
+      task.run();
+      flushed.countDown();
+    });
+    Wine wine = addWine();
+    wine.setAbv(12f);
+
+    assertTrue(flushed.await(5, TimeUnit.SECONDS));
+    assertEquals(0, updateQueue.getPendingCount());
+    assertEquals(1, updateQueue.getFlushCount());
+  }
+
+  /**
+   * Tests that a failed flush keeps its wines queued and dirty, so they are written by the next
+   * flush.
+   */
+  @Test
+  void testFailedFlushKeepsChangesQueued() throws SQLException {
+    Wine wine = addWine();
+    execute("CREATE TRIGGER FAIL_UPDATE BEFORE UPDATE ON WINE WHEN NEW.TITLE = 'Fail' "
+        + "BEGIN SELECT RAISE(ABORT, 'Update failed'); END");
+    wine.setTitle("Fail");
+
+    assertThrows(SQLException.class, updateQueue::flush);
+    assertEquals(1, updateQueue.getPendingCount());
+    assertTrue(wine.isDirty());
+    assertEquals(0, updateQueue.getFlushCount());
+
+    execute("DROP TRIGGER FAIL_UPDATE");
+    updateQueue.flush();
+    assertEquals(0, updateQueue.getPendingCount());
+    assertFalse(wine.isDirty());
+    assertEquals(1, updateQueue.getRowsFlushed());
+  }
+
+  /**
+   * Tests that a flush while the writer is in a transaction joins it rather than committing it.
+   */
+  @Test
+  void testFlushJoinsOpenTransaction() throws SQLException {
+    Wine wine = addWine();
+    wine.setTitle("Changed");
+    databaseManager.getConnectionPool().write(connection -> {
+      connection.setAutoCommit(false);
+      try {
+        updateQueue.flush();
+        assertFalse(connection.getAutoCommit());
+        connection.rollback();
+      } finally {
+        connection.setAutoCommit(true);
+      }
+      return null;
+    });
+
+    assertEquals(0, updateQueue.getPendingCount());
+    String title = databaseManager.getConnectionPool().read(connection -> {
+      try (Statement statement = connection.createStatement();
+          ResultSet resultSet = statement.executeQuery("SELECT TITLE FROM WINE")) {
+        resultSet.next();
+        return resultSet.getString(1);
+      }
+    });
+    assertEquals("wine", title);
+  }
+
+  /**
+   * Tests that a read's flush leaves the updates queued rather than waiting while another thread
+   * holds the writer, and writes them once the writer is free.
+   */
+  @Test
+  void testFlushIfWriterFreeSkipsBusyWriter() throws Exception {
+    Wine wine = addWine();
+    wine.setTitle("Changed");
+    CountDownLatch locked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Thread writer = new Thread(() -> {
+      databaseManager.getConnectionPool().lockWriter();
+      try {
+        locked.countDown();
+        release.await();
+      } catch (InterruptedException error) {
+        Thread.currentThread().interrupt();
+      } finally {
+        databaseManager.getConnectionPool().unlockWriter();
+      }
+    });
+    writer.start();
+    assertTrue(locked.await(2, TimeUnit.SECONDS));
+
+    updateQueue.flushIfWriterFree();
+    assertEquals(1, updateQueue.getPendingCount());
+
+    release.countDown();
+    writer.join();
+    updateQueue.flushIfWriterFree();
+    assertEquals(0, updateQueue.getPendingCount());
+  }
+
+  private void execute(String sql) throws SQLException {
+    databaseManager.getConnectionPool().write(connection -> {
+      try (Statement statement = connection.createStatement()) {
+        return statement.execute(sql);
+      }
+    });
+  }
+
+  private Wine addWine() throws SQLException {
+    Wine wine = new Wine(-1, "wine", "blue", "nz", "christchurch", "bob's wine", "red", 2011,
+        "na", 99, 25f, 10f, null, 0.0);
+    wineDao.add(wine);
+    return wineDao.get(wine.getKey());
+  }
+}
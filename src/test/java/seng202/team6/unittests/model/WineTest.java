@@ -1,8 +1,14 @@
 package seng202.team6.unittests.model;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import seng202.team6.model.Wine;
@@ -163,4 +169,53 @@ class WineTest {
     Wine checkAgainst = new Wine(-1, "", "", "", "", "", "", -1, "", 0, 0f, 0f, null, 0.0);
     assertEquals((wine2.equals(checkAgainst)), true);
   }
-}
\ No newline at end of file
+
+  /**
+   * Tests that setters and property changes mark attributes dirty and notify the change tracker
+   */
+  @Test
+  void testChangesMarkAttributesDirty() {
+    List<Wine> changed = new ArrayList<>();
+    wine.setChangeTracker((changedWine, attribute, before) -> changed.add(changedWine));
+    assertFalse(wine.isDirty());
+
+    wine.setTitle("");
+    assertFalse(wine.isDirty());
+    wine.setTitle("test");
+    wine.priceProperty().set(12f);
+    assertTrue(wine.isDirty());
+    assertEquals(2, changed.size());
+    assertEquals(EnumSet.of(Wine.Attribute.TITLE, Wine.Attribute.PRICE),
+        wine.takeDirtyAttributes());
+    assertFalse(wine.isDirty());
+  }
+
+  /**
+   * Tests that the dirty values are taken in attribute order, and restored attributes are dirty
+   * again
+   */
+  @Test
+  void testTakeAndRestoreDirtyValues() {
+    wine.setPrice(12f);
+    wine.setTitle("test");
+    Map<Wine.Attribute, Object> values = wine.takeDirtyValues();
+    assertEquals(List.of(Wine.Attribute.TITLE, Wine.Attribute.PRICE),
+        new ArrayList<>(values.keySet()));
+    assertEquals(List.of("test", 12f), new ArrayList<>(values.values()));
+    assertFalse(wine.isDirty());
+
+    wine.restoreDirtyAttributes(values.keySet());
+    assertEquals(values, wine.takeDirtyValues());
+  }
+
+  /**
+   * Tests that a property reflects values set before it was created
+   */
+  @Test
+  void testPropertyCreatedAfterSet() {
+    wine.setVintage(2020);
+    assertEquals(2020, wine.vintageProperty().get());
+    wine.vintageProperty().set(2021);
+    assertEquals(2021, wine.getVintage());
+  }
+}
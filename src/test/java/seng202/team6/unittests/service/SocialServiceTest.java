@@ -9,14 +9,16 @@ import java.sql.Date;
 import java.sql.SQLException;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import kotlin.Pair;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import seng202.team6.dao.WineReviewDao;
+import seng202.team6.dao.AggregatedDao;
 import seng202.team6.managers.AuthenticationManager;
 import seng202.team6.managers.DatabaseManager;
 import seng202.team6.model.User;
+import seng202.team6.model.Wine;
 import seng202.team6.model.WineReview;
 import seng202.team6.service.SocialService;
 
@@ -24,7 +26,7 @@ public class SocialServiceTest {
 
   private SocialService socialService;
   private User user;
-  private WineReviewDao wineReviewDao;
+  private AggregatedDao aggregatedDao;
 
   /**
    * Sets up the database and social service before each test.
@@ -35,10 +37,10 @@ public class SocialServiceTest {
     AuthenticationManager authenticationManager = mock(AuthenticationManager.class);
     DatabaseManager databaseManager = mock(DatabaseManager.class);
     user = mock(User.class);
-    wineReviewDao = mock(WineReviewDao.class);
+    aggregatedDao = mock(AggregatedDao.class);
 
     // Ensure correct return from mocked database
-    when(databaseManager.getWineReviewDao()).thenReturn(wineReviewDao);
+    when(databaseManager.getAggregatedDao()).thenReturn(aggregatedDao);
 
     socialService = new SocialService(
         databaseManager, user);
@@ -54,8 +56,11 @@ public class SocialServiceTest {
     ObservableList<WineReview> wineReviews = FXCollections.observableArrayList();
     addReviewsToArray(wineReviews);
 
-    // Mock behaviour of WineReviewDao
-    when(wineReviewDao.getAll(user)).thenReturn(wineReviews);
+    // Mock behaviour of AggregatedDao
+    Wine wine = mock(Wine.class);
+    ObservableList<Pair<WineReview, Wine>> reviewsAndWines = FXCollections.observableArrayList();
+    wineReviews.forEach(review -> reviewsAndWines.add(new Pair<>(review, wine)));
+    when(aggregatedDao.getWineReviewsAndWines(user)).thenReturn(reviewsAndWines);
 
     // Call init
     socialService.init();
@@ -66,8 +71,10 @@ public class SocialServiceTest {
     Assertions.assertEquals(wineReviews.getFirst(), returnedReviews.getFirst());
     Assertions.assertEquals(wineReviews.getLast(), returnedReviews.getLast());
 
-    // Verify getAll was only called once
-    verify(wineReviewDao, times(1)).getAll(user);
+    Assertions.assertSame(wine, socialService.getReviewedWine(wineReviews.getFirst()));
+
+    // Verify the reviews and wines were only got once
+    verify(aggregatedDao, times(1)).getWineReviewsAndWines(user);
   }
 
   /**
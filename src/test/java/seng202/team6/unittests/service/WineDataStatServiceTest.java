@@ -3,8 +3,10 @@ package seng202.team6.unittests.service;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.Set;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import seng202.team6.model.Wine;
 import seng202.team6.service.WineDataStatService;
 
 public class WineDataStatServiceTest {
@@ -56,4 +58,25 @@ public class WineDataStatServiceTest {
     assertEquals(0, wineDataStatService.getMaxPrice());
   }
 
+  @Test
+  void testValuesAreReferenceCounted() {
+    wineDataStatService.reset();
+    wineDataStatService.addWine(new Wine(1, "A", "", "France", "", "", "Red", 2001, "", 90,
+        12f, 20f, null, 0.0));
+    wineDataStatService.addWine(new Wine(2, "B", "", "France", "", "", "Red", 2010, "", 80,
+        14f, 50f, null, 0.0));
+
+    wineDataStatService.updateValue(Wine.Attribute.COUNTRY, "France", "Italy");
+    assertTrue(wineDataStatService.getUniqueCountries().containsAll(Set.of("France", "Italy")));
+    wineDataStatService.updateValue(Wine.Attribute.COUNTRY, "France", "Italy");
+    assertEquals(Set.of("Italy"), wineDataStatService.getUniqueCountries());
+
+    wineDataStatService.updateValue(Wine.Attribute.PRICE, 50f, 30f);
+    assertEquals(30f, wineDataStatService.getMaxPrice());
+    wineDataStatService.updateValue(Wine.Attribute.VINTAGE, 2001, -1);
+    assertEquals(2010, wineDataStatService.getMinVintage());
+    assertEquals(80, wineDataStatService.getMinScore());
+    assertEquals(90, wineDataStatService.getMaxScore());
+  }
+
 }
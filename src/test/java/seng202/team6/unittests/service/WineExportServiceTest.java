@@ -0,0 +1,90 @@
+package seng202.team6.unittests.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.List;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import seng202.team6.enums.WinePropertyName;
+import seng202.team6.managers.DatabaseManager;
+import seng202.team6.model.Wine;
+import seng202.team6.model.WineFilters;
+import seng202.team6.service.WineExportService;
+import seng202.team6.util.ProcessCsv;
+
+/**
+ * Tests for the wine export service.
+ */
+public class WineExportServiceTest {
+
+  private DatabaseManager databaseManager;
+  private WineExportService wineExportService;
+
+  /**
+   * Sets up an in-memory database with two wines.
+   *
+   * @throws SQLException if there's an error setting up the database
+   */
+  @BeforeEach
+  public void setup() throws SQLException {
+    databaseManager = new DatabaseManager();
+    wineExportService = new WineExportService(databaseManager);
+    databaseManager.getWineDao().addAll(List.of(
+        new Wine(-1, "Red, \"Reserve\"", "Pinot Noir", "New Zealand", "Marlborough", "Winery",
+            "Red", 2020, "Cherry and oak", 90, 13.5f, 40f, null, 0.0),
+        new Wine(-1, "White", "Chardonnay", "France", "Bordeaux", "Winery", "White", 2018,
+            "Citrus", 85, 12f, 25f, null, 0.0)));
+  }
+
+  /**
+   * Closes the database manager connection after each test.
+   */
+  @AfterEach
+  public void close() {
+    databaseManager.teardown();
+  }
+
+  /**
+   * Tests that exported CSV has a header the importer recognises and quotes values correctly.
+   */
+  @Test
+  public void testExportCsv() throws SQLException, IOException {
+    StringWriter writer = new StringWriter();
+    assertEquals(2, wineExportService.exportCsv(null, writer));
+
+    List<String[]> rows = ProcessCsv.getCsvRows(
+        new ByteArrayInputStream(writer.toString().getBytes(StandardCharsets.UTF_8)));
+    assertEquals(3, rows.size());
+    assertEquals(WinePropertyName.TITLE, WinePropertyName.tryMatch(rows.get(0)[0]));
+    assertEquals(WinePropertyName.PRICE, WinePropertyName.tryMatch(rows.get(0)[10]));
+    assertEquals("Red, \"Reserve\"", rows.get(1)[0]);
+    assertEquals("2018", rows.get(2)[6]);
+  }
+
+  /**
+   * Tests that NDJSON export writes one object per filtered wine.
+   */
+  @Test
+  public void testExportNdjsonFiltered() throws SQLException, IOException, ParseException {
+    WineFilters filters = new WineFilters();
+    filters.setCountry("France");
+    StringWriter writer = new StringWriter();
+    assertEquals(1, wineExportService.exportNdjson(filters, writer));
+
+    String[] lines = writer.toString().split("\n");
+    assertEquals(1, lines.length);
+    JSONObject json = (JSONObject) new JSONParser().parse(new StringReader(lines[0]));
+    assertEquals("White", json.get("title"));
+    assertEquals(2018L, json.get("vintage"));
+  }
+}
@@ -0,0 +1,233 @@
+package seng202.team6.unittests.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import seng202.team6.dao.WineDao;
+import seng202.team6.enums.WineImportMode;
+import seng202.team6.enums.WinePropertyName;
+import seng202.team6.managers.DatabaseManager;
+import seng202.team6.model.User;
+import seng202.team6.model.Wine;
+import seng202.team6.model.WineImportProgress;
+import seng202.team6.model.WineImportResult;
+import seng202.team6.service.WineImportPipeline;
+
+/**
+ * Tests for the pipelined wine import.
+ */
+public class WineImportPipelineTest {
+
+  private static final Map<WinePropertyName, Integer> COLUMNS = Map.of(
+      WinePropertyName.TITLE, 0,
+      WinePropertyName.COUNTRY, 1,
+      WinePropertyName.VINTAGE, 2,
+      WinePropertyName.SCORE, 3);
+
+  private DatabaseManager databaseManager;
+  private WineDao wineDao;
+  private Wine existing;
+
+  /**
+   * Sets up an in-memory database with one wine.
+   *
+   * @throws SQLException if there's an error setting up the database
+   */
+  @BeforeEach
+  public void setup() throws SQLException {
+    databaseManager = new DatabaseManager();
+    wineDao = databaseManager.getWineDao();
+    existing = new Wine(-1, "Existing", "", "Chile", "", "", "", 2010, "", 80, 0f, 0f, null, 0.0);
+    wineDao.add(existing);
+  }
+
+  /**
+   * Closes the database manager connection after each test.
+   */
+  @AfterEach
+  public void close() {
+    databaseManager.teardown();
+  }
+
+  private static List<String[]> createRows(int count) {
+    List<String[]> rows = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      rows.add(new String[]{"Wine " + i, i % 2 == 0 ? "France" : "Italy", "2015",
+          String.valueOf(i % 100)});
+    }
+    return rows;
+  }
+
+  /**
+   * Tests that appended rows are written in file order after the existing wines, across several
+   * chunks and workers.
+   */
+  @Test
+  public void testAppend() throws SQLException, IOException {
+    int count = WineImportPipeline.CHUNK_SIZE * 5 + 7;
+    List<String[]> rows = createRows(count);
+    List<WineImportProgress> progress = new ArrayList<>();
+    WineImportResult result = new WineImportPipeline(wineDao, 3).run(rows.iterator(), COLUMNS,
+        WineImportMode.APPEND, rows.size(), progress::add);
+
+    assertFalse(result.cancelled());
+    assertEquals(count, result.rowsRead());
+    assertEquals(count, result.winesAdded());
+    assertEquals(0, result.rowsInvalid());
+    assertEquals(count + 1, wineDao.getCount());
+    List<Wine> wines = wineDao.getAll();
+    assertEquals("Existing", wines.getFirst().getTitle());
+    for (int i = 0; i < count; i++) {
+      assertEquals("Wine " + i, wines.get(i + 1).getTitle());
+    }
+    assertEquals(1.0, progress.getLast().getFractionDone());
+    assertTrue(wineDao.getWineDataStatService().getUniqueCountries().contains("Italy"));
+  }
+
+  /**
+   * Tests that replacing removes the existing wines which were not imported again and that invalid
+   * rows are skipped.
+   */
+  @Test
+  public void testReplaceSkipsInvalidRows() throws SQLException, IOException {
+    List<String[]> rows = createRows(10);
+    rows.add(new String[]{"Bad score", "France", "2015", "not a number"});
+    rows.add(new String[]{"Short row"});
+    rows.add(null);
+    WineImportResult result = new WineImportPipeline(wineDao, 2).run(rows.iterator(), COLUMNS,
+        WineImportMode.REPLACE, rows.size(), progress -> { });
+
+    assertEquals(13, result.rowsRead());
+    assertEquals(10, result.winesAdded());
+    assertEquals(1, result.winesRemoved());
+    assertEquals(3, result.rowsInvalid());
+    assertEquals(10, wineDao.getCount());
+    assertFalse(wineDao.getWineDataStatService().getUniqueCountries().contains("Chile"));
+  }
+
+  /**
+   * Tests that cancelling an append part way through rolls back every wine already written, and
+   * the stats counted for them.
+   */
+  @Test
+  public void testCancelRollsBack() throws SQLException, IOException {
+    List<String[]> rows = createRows(WineImportPipeline.CHUNK_SIZE * 20);
+    WineImportPipeline pipeline = new WineImportPipeline(wineDao, 2);
+    WineImportResult result = pipeline.run(rows.iterator(), COLUMNS, WineImportMode.APPEND,
+        rows.size(), progress -> {
+          if (progress.rowsWritten() >= WineImportPipeline.CHUNK_SIZE * 2) {
+            pipeline.cancel();
+          }
+        });
+
+    assertTrue(result.cancelled());
+    assertEquals(0, result.winesAdded());
+    assertEquals(1, wineDao.getCount());
+    assertEquals("Existing", wineDao.getAll().getFirst().getTitle());
+    assertTrue(wineDao.getWineDataStatService().getUniqueCountries().contains("Chile"));
+    assertFalse(wineDao.getWineDataStatService().getUniqueCountries().contains("France"));
+  }
+
+  /**
+   * Tests that merging updates a re-imported wine in place, keeping its ID and reviews, and that
+   * rows repeating a natural key within the import are added once.
+   */
+  @Test
+  public void testMergeKeepsExistingWines() throws SQLException, IOException {
+    User user = new User("username", "password", "role", "salt");
+    databaseManager.getUserDao().add(user);
+    databaseManager.getWineReviewDao().add(user, existing, 4, "Lovely", new Date(0));
+
+    List<String[]> rows = createRows(3);
+    rows.add(new String[]{"Existing", "Argentina", "2010", "95"});
+    rows.add(new String[]{"Wine 1", "Spain", "2015", "50"});
+    WineImportResult result = new WineImportPipeline(wineDao, 2).run(rows.iterator(), COLUMNS,
+        WineImportMode.MERGE, rows.size(), progress -> { });
+
+    assertEquals(3, result.winesAdded());
+    assertEquals(1, result.winesUpdated());
+    assertEquals(0, result.winesRemoved());
+    assertEquals(4, wineDao.getCount());
+    Wine merged = wineDao.getByExactTitle("Existing");
+    assertEquals(existing.getKey(), merged.getKey());
+    assertEquals("Argentina", merged.getCountry());
+    assertEquals(95, merged.getScorePercent());
+    assertEquals("Spain", wineDao.getByExactTitle("Wine 1").getCountry());
+    assertEquals(1, databaseManager.getWineReviewDao().getAll(merged).size());
+    assertFalse(wineDao.getWineDataStatService().getUniqueCountries().contains("Chile"));
+
+    WineImportResult again = new WineImportPipeline(wineDao, 2).run(rows.iterator(), COLUMNS,
+        WineImportMode.MERGE, rows.size(), progress -> { });
+    assertEquals(0, again.winesAdded());
+    assertEquals(0, again.winesUpdated());
+    assertEquals(4, wineDao.getCount());
+  }
+
+  /**
+   * Tests that a failure reading the source rolls back the import and is reported to the caller as
+   * it was thrown.
+   */
+  @Test
+  public void testSourceFailureRollsBack() throws SQLException, IOException {
+    Iterator<String[]> failing = failAfter(WineImportPipeline.CHUNK_SIZE * 2,
+        new IllegalStateException("Source failed"));
+    assertThrows(IllegalStateException.class,
+        () -> new WineImportPipeline(wineDao, 2).run(failing, COLUMNS, WineImportMode.MERGE, -1,
+            progress -> { }));
+    assertEquals(1, wineDao.getCount());
+  }
+
+  /**
+   * Tests that an I/O error reading the source is reported as an IOException.
+   */
+  @Test
+  public void testSourceIoFailureThrowsIoException() throws SQLException {
+    Iterator<String[]> failing = failAfter(WineImportPipeline.CHUNK_SIZE + 1,
+        new UncheckedIOException(new IOException("Disk failed")));
+    IOException error = assertThrows(IOException.class,
+        () -> new WineImportPipeline(wineDao, 2).run(failing, COLUMNS, WineImportMode.APPEND, -1,
+            progress -> { }));
+    assertEquals("Disk failed", error.getMessage());
+    assertEquals(1, wineDao.getCount());
+  }
+
+  /**
+   * Creates a source of rows which throws once a number of rows have been read.
+   *
+   * @param rowsBeforeFailure rows read successfully
+   * @param failure           exception thrown reading the next row
+   * @return failing rows
+   */
+  private static Iterator<String[]> failAfter(int rowsBeforeFailure, RuntimeException failure) {
+    Iterator<String[]> source = createRows(rowsBeforeFailure * 2).iterator();
+    return new Iterator<>() {
+      private int read = 0;
+
+      @Override
+      public boolean hasNext() {
+        return source.hasNext();
+      }
+
+      @Override
+      public String[] next() {
+        if (++read > rowsBeforeFailure) {
+          throw failure;
+        }
+        return source.next();
+      }
+    };
+  }
+}
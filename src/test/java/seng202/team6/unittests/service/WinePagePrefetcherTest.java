@@ -0,0 +1,108 @@
+package seng202.team6.unittests.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import seng202.team6.dao.WineDao;
+import seng202.team6.enums.WineSortOrder;
+import seng202.team6.managers.DatabaseManager;
+import seng202.team6.model.Wine;
+import seng202.team6.model.WinePage;
+import seng202.team6.model.WinePageRequest;
+import seng202.team6.service.WinePagePrefetcher;
+
+/**
+ * Tests for prefetching pages of wines.
+ */
+public class WinePagePrefetcherTest {
+
+  private DatabaseManager databaseManager;
+  private WineDao wineDao;
+  private ExecutorService executor;
+  private WinePagePrefetcher prefetcher;
+
+  /**
+   * Sets up an in-memory database with 25 wines and a prefetcher loading on its own thread.
+   *
+   * @throws SQLException if there's an error setting up the database
+   */
+  @BeforeEach
+  public void setup() throws SQLException {
+    databaseManager = new DatabaseManager();
+    wineDao = databaseManager.getWineDao();
+    List<Wine> wines = new ArrayList<>();
+    for (int i = 0; i < 25; i++) {
+      wines.add(new Wine(-1, "wine " + i, "variety", "nz", "region", "winery", "red", 2011,
+          "description", 90, 12f, i, null, 0.0));
+    }
+    wineDao.addAll(wines);
+    executor = Executors.newSingleThreadExecutor();
+    prefetcher = new WinePagePrefetcher(wineDao, executor, WinePagePrefetcher.DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Stops the prefetch thread and closes the database.
+   */
+  @AfterEach
+  public void close() {
+    executor.shutdownNow();
+    databaseManager.teardown();
+  }
+
+  private WinePageRequest request(int offset) {
+    return new WinePageRequest(null, WineSortOrder.DEFAULT, null, offset, 10);
+  }
+
+  /**
+   * Tests that a prefetched page is handed out once and then loaded again.
+   */
+  @Test
+  public void testPrefetchedPageTakenOnce() throws SQLException {
+    prefetcher.prefetch(request(10));
+    WinePage page = prefetcher.get(request(10));
+    assertEquals(10, page.wines().size());
+    assertEquals(wineDao.search(null, WineSortOrder.DEFAULT, 10, 10).wines(), page.wines());
+    assertEquals(1, prefetcher.getHits());
+
+    assertFalse(prefetcher.isReady(request(10)));
+    prefetcher.get(request(10));
+    assertEquals(1, prefetcher.getMisses());
+  }
+
+  /**
+   * Tests that a page becomes ready once prefetched.
+   */
+  @Test
+  public void testPrefetchedPageBecomesReady() throws Exception {
+    prefetcher.prefetch(request(20));
+    executor.submit(() -> { }).get();
+    assertTrue(prefetcher.isReady(request(20)));
+    assertEquals(5, prefetcher.get(request(20)).wines().size());
+  }
+
+  /**
+   * Tests that a page prefetched before a write is loaded again.
+   */
+  @Test
+  public void testPageReloadedAfterWrite() throws Exception {
+    prefetcher.prefetch(request(0));
+    executor.submit(() -> { }).get();
+    wineDao.add(new Wine(-1, "new wine", "variety", "nz", "region", "winery", "red", 2011,
+        "description", 90, 12f, 0f, null, 0.0));
+
+    assertFalse(prefetcher.isReady(request(0)));
+    WinePage page = prefetcher.get(request(0));
+    assertEquals(26, page.total());
+    assertEquals(0, prefetcher.getHits());
+    assertEquals(1, prefetcher.getMisses());
+  }
+}
@@ -0,0 +1,135 @@
+package seng202.team6.unittests.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import seng202.team6.model.CacheStats;
+import seng202.team6.util.BoundedCache;
+
+/**
+ * Tests the bounded cache
+ */
+class BoundedCacheTest {
+
+  private long now = 0;
+
+  /**
+   * Tests the least recently used entry is evicted once there are too many entries
+   */
+  @Test
+  void evictByEntries() {
+    BoundedCache<Integer, String> cache = new BoundedCache<>(2, 1000, 0, String::length);
+    cache.put(1, "a");
+    cache.put(2, "b");
+    cache.get(1);
+    cache.put(3, "c");
+    assertEquals("a", cache.get(1));
+    assertNull(cache.get(2));
+    assertEquals("c", cache.get(3));
+    assertEquals(1, cache.getStats().evictions());
+  }
+
+  /**
+   * Tests entries are evicted once their total size is too large, and a value larger than the
+   * bound is not cached
+   */
+  @Test
+  void evictByBytes() {
+    BoundedCache<Integer, String> cache = new BoundedCache<>(100, 10, 0, String::length);
+    cache.put(1, "aaaa");
+    cache.put(2, "bbbb");
+    cache.put(3, "cccc");
+    assertNull(cache.get(1));
+    assertEquals(2, cache.size());
+    assertEquals(8, cache.getStats().bytes());
+
+    cache.put(4, "dddddddddddd");
+    assertNull(cache.get(4));
+    assertEquals(8, cache.getStats().bytes());
+  }
+
+  /**
+   * Tests replacing and invalidating entries keeps the size up to date
+   */
+  @Test
+  void replaceAndInvalidate() {
+    BoundedCache<Integer, String> cache = new BoundedCache<>(100, 100, 0, String::length);
+    cache.put(1, "aaaa");
+    cache.put(1, "bb");
+    assertEquals(2, cache.getStats().bytes());
+    cache.put(2, "ccc");
+    cache.invalidate(1);
+    assertEquals(3, cache.getStats().bytes());
+    cache.invalidateAll();
+    assertEquals(0, cache.getStats().bytes());
+    assertEquals(0, cache.size());
+  }
+
+  /**
+   * Tests entries expire once they are older than the time to live
+   */
+  @Test
+  void expireAfterTimeToLive() {
+    BoundedCache<Integer, String> cache = new BoundedCache<>(100, 100, 10, String::length,
+        () -> now);
+    cache.put(1, "a");
+    now = 9;
+    assertEquals("a", cache.get(1));
+    now = 10;
+    assertNull(cache.get(1));
+    CacheStats stats = cache.getStats();
+    assertEquals(1, stats.expirations());
+    assertEquals(0, stats.size());
+    assertEquals(0, stats.bytes());
+  }
+
+  /**
+   * Tests hits and misses are counted into the hit ratio
+   */
+  @Test
+  void hitRatio() {
+    BoundedCache<Integer, String> cache = new BoundedCache<>(100, 100, 0, String::length);
+    assertEquals(0, cache.getStats().hitRatio());
+    cache.put(1, "a");
+    cache.get(1);
+    cache.get(1);
+    cache.get(1);
+    cache.get(2);
+    CacheStats stats = cache.getStats();
+    assertEquals(3, stats.hits());
+    assertEquals(1, stats.misses());
+    assertEquals(0.75, stats.hitRatio());
+  }
+
+  /**
+   * Tests a cache bounded only by entries hands back the values it evicts and removes
+   */
+  @Test
+  void evictedAndRemovedValuesReturned() {
+    BoundedCache<Integer, String> cache = new BoundedCache<>(2);
+    assertEquals(List.of(), cache.put(1, "a"));
+    cache.put(2, "b");
+    assertEquals(List.of("a"), cache.put(3, "c"));
+    assertTrue(cache.containsKey(2));
+    assertFalse(cache.containsKey(1));
+
+    assertEquals("b", cache.remove(2));
+    assertNull(cache.remove(2));
+    assertEquals(List.of("c"), cache.invalidateAll());
+    assertEquals(0, cache.getStats().hits() + cache.getStats().misses());
+  }
+
+  /**
+   * Tests a cache must hold at least one entry
+   */
+  @Test
+  void invalidBounds() {
+    assertThrows(IllegalArgumentException.class, () -> new BoundedCache<Integer, String>(0));
+  }
+}
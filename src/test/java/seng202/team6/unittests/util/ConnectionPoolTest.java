@@ -0,0 +1,171 @@
+package seng202.team6.unittests.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import seng202.team6.dao.WineDao;
+import seng202.team6.enums.WineImportMode;
+import seng202.team6.enums.WineSortOrder;
+import seng202.team6.managers.DatabaseManager;
+import seng202.team6.model.Wine;
+import seng202.team6.model.WineCursor;
+import seng202.team6.model.WineFilters;
+import seng202.team6.util.ConnectionPool;
+import seng202.team6.util.ConnectionProfile;
+
+/**
+ * Tests queries run on read-only connections while the writer is busy.
+ */
+class ConnectionPoolTest {
+
+  @TempDir
+  Path directory;
+
+  private static Wine createWine(String title) {
+    return new Wine(-1, title, "", "Chile", "", "", "", 2010, "", 80, 0f, 0f, null, 0.0);
+  }
+
+  /**
+   * Tests read-only connections are only opened for a database in WAL mode
+   */
+  @Test
+  void readersOnlyInWalMode() throws SQLException {
+    DatabaseManager walDatabase = new DatabaseManager(directory.toString(), "wal.db",
+        ConnectionProfile.THROUGHPUT);
+    DatabaseManager defaultDatabase = new DatabaseManager(directory.toString(), "default.db",
+        ConnectionProfile.SQLITE_DEFAULTS);
+    try {
+      assertTrue(walDatabase.getConnectionPool().getReaderCount() > 0);
+      assertEquals(0, defaultDatabase.getConnectionPool().getReaderCount());
+    } finally {
+      walDatabase.teardown();
+      defaultDatabase.teardown();
+    }
+  }
+
+  /**
+   * Tests wines can be read while an import holds the writer's transaction open, seeing the
+   * wines from before the import until it is committed
+   */
+  @Test
+  void readDuringImport() throws Exception {
+    DatabaseManager databaseManager = new DatabaseManager(directory.toString(), "import.db",
+        ConnectionProfile.THROUGHPUT);
+    WineDao wineDao = databaseManager.getWineDao();
+    try {
+      wineDao.add(createWine("Existing"));
+      List<Wine> imported = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        imported.add(createWine("Imported " + i));
+      }
+      CountDownLatch written = new CountDownLatch(1);
+      CountDownLatch read = new CountDownLatch(1);
+      CompletableFuture<Void> importer = CompletableFuture.runAsync(() -> {
+        try (WineDao.BatchWriter writer = wineDao.openBatchWriter(WineImportMode.APPEND)) {
+          writer.write(imported);
+          written.countDown();
+          read.await();
+          writer.commit();
+        } catch (SQLException | InterruptedException error) {
+          throw new RuntimeException(error);
+        }
+      });
+
+      written.await();
+      assertTimeoutPreemptively(Duration.ofSeconds(2), () -> {
+        assertEquals(1, wineDao.getCount());
+        assertEquals("Existing", wineDao.search(new WineFilters(), WineSortOrder.DEFAULT,
+            (WineCursor) null, 10).wines().getFirst().getTitle());
+      });
+      read.countDown();
+      importer.join();
+      assertEquals(101, wineDao.getCount());
+    } finally {
+      databaseManager.teardown();
+    }
+  }
+
+  /**
+   * Tests a query waits for a write on another thread when there are no read-only connections, as
+   * it runs on the writer
+   */
+  @Test
+  void readWaitsForWriterWithoutReaders() throws Exception {
+    try (Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        ConnectionPool connectionPool = new ConnectionPool(connection)) {
+      CountDownLatch locked = new CountDownLatch(1);
+      CountDownLatch release = new CountDownLatch(1);
+      CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+        connectionPool.lockWriter();
+        try {
+          locked.countDown();
+          release.await();
+        } catch (InterruptedException error) {
+          Thread.currentThread().interrupt();
+        } finally {
+          connectionPool.unlockWriter();
+        }
+      });
+      locked.await();
+      CompletableFuture<Connection> reader = CompletableFuture.supplyAsync(() -> {
+        try {
+          return connectionPool.read(readConnection -> readConnection);
+        } catch (SQLException error) {
+          throw new RuntimeException(error);
+        }
+      });
+      assertThrows(TimeoutException.class, () -> reader.get(200, TimeUnit.MILLISECONDS));
+      release.countDown();
+      assertSame(connection, reader.get(2, TimeUnit.SECONDS));
+      writer.join();
+    }
+  }
+
+  /**
+   * Tests a stream of wines holds the writer until it is closed when there are no read-only
+   * connections, so writes cannot change the connection under its cursor
+   */
+  @Test
+  void streamHoldsWriterWithoutReaders() throws Exception {
+    DatabaseManager databaseManager = new DatabaseManager();
+    WineDao wineDao = databaseManager.getWineDao();
+    try {
+      wineDao.add(createWine("Existing"));
+      CompletableFuture<Void> writer;
+      try (Stream<Wine> wines = wineDao.stream(null)) {
+        writer = CompletableFuture.runAsync(() -> {
+          try {
+            wineDao.add(createWine("Added"));
+          } catch (SQLException error) {
+            throw new RuntimeException(error);
+          }
+        });
+        assertThrows(TimeoutException.class, () -> writer.get(200, TimeUnit.MILLISECONDS));
+        assertEquals(1, wines.count());
+      }
+      writer.get(2, TimeUnit.SECONDS);
+      assertFalse(writer.isCompletedExceptionally());
+      assertEquals(2, wineDao.getCount());
+    } finally {
+      databaseManager.teardown();
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package seng202.team6.unittests.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import seng202.team6.util.ConnectionProfile;
+
+/**
+ * Tests reading connection profiles from settings and applying them.
+ */
+class ConnectionProfileTest {
+
+  @TempDir
+  Path directory;
+
+  /**
+   * Tests the throughput profile is used when nothing is set
+   */
+  @Test
+  void noSettings() {
+    assertEquals(ConnectionProfile.THROUGHPUT, ConnectionProfile.fromSettings(key -> null));
+  }
+
+  /**
+   * Tests single settings override the chosen profile and invalid values are ignored
+   */
+  @Test
+  void overrideSettings() {
+    Map<String, String> settings = Map.of(
+        "DB_PROFILE", "default",
+        "DB_SYNCHRONOUS", "normal",
+        "DB_CACHE_SIZE", "-4096",
+        "DB_JOURNAL_MODE", "WAL; DROP TABLE WINE",
+        "DB_MMAP_SIZE", "lots");
+    ConnectionProfile profile = ConnectionProfile.fromSettings(settings::get);
+    assertEquals(new ConnectionProfile("DELETE", "NORMAL", 0, -4096, "DEFAULT", 3000), profile);
+  }
+
+  /**
+   * Tests the profile's pragmas are in effect after applying it to a file database
+   */
+  @Test
+  void applyProfile() throws SQLException {
+    try (Connection connection = DriverManager.getConnection(
+        "jdbc:sqlite:" + directory.resolve("profile.db"))) {
+      ConnectionProfile.THROUGHPUT.apply(connection);
+      String description = ConnectionProfile.describe(connection);
+      assertTrue(description.contains("journal_mode=wal"), description);
+      assertTrue(description.contains("synchronous=1"), description);
+      assertTrue(description.contains("cache_size=-65536"), description);
+      assertTrue(description.contains("temp_store=2"), description);
+      assertTrue(description.contains("busy_timeout=5000"), description);
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package seng202.team6.unittests.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.NoSuchElementException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import seng202.team6.util.CsvRowReader;
+import seng202.team6.util.ProcessCsv;
+
+/**
+ * Tests reading CSV files row by row.
+ */
+class CsvRowReaderTest {
+
+  @TempDir
+  Path directory;
+
+  /**
+   * Tests rows are read in order, including quoted values spanning lines
+   */
+  @Test
+  void readRows() throws IOException {
+    Path file = directory.resolve("wines.csv");
+    Files.writeString(file,
+        "title,country\n\"Red, \"\"Reserve\"\"\",France\n\"Two\nLines\",Italy\n");
+    try (CsvRowReader reader = new CsvRowReader(file)) {
+      assertArrayEquals(new String[]{"title", "country"}, reader.next());
+      assertArrayEquals(new String[]{"Red, \"Reserve\"", "France"}, reader.next());
+      assertArrayEquals(new String[]{"Two\nLines", "Italy"}, reader.next());
+      assertFalse(reader.hasNext());
+      assertThrows(NoSuchElementException.class, reader::next);
+      assertEquals(Files.size(file), reader.getBytesRead());
+    }
+  }
+
+  /**
+   * Tests a Latin-1 file is detected from its prefix and decoded correctly
+   */
+  @Test
+  void detectLatin1() throws IOException {
+    Path file = directory.resolve("latin1.csv");
+    StringBuilder csv = new StringBuilder("title,region\n");
+    for (int i = 0; i < 200; i++) {
+      csv.append("Ch\u00e2teau C\u00f4te ").append(i)
+          .append(",Rh\u00f4ne \u00e9lev\u00e9 en f\u00fbt\n");
+    }
+    Files.write(file, csv.toString().getBytes(StandardCharsets.ISO_8859_1));
+    try (CsvRowReader reader = new CsvRowReader(file)) {
+      reader.next();
+      assertEquals("Ch\u00e2teau C\u00f4te 0", reader.next()[0]);
+    }
+  }
+
+  /**
+   * Tests a file much larger than the sniffed prefix is read lazily and completely
+   */
+  @Test
+  void readLargeFile() throws IOException {
+    Path file = directory.resolve("large.csv");
+    StringBuilder csv = new StringBuilder();
+    int rows = 50_000;
+    for (int i = 0; i < rows; i++) {
+      csv.append("Wine ").append(i).append(",Pinot Noir,New Zealand\n");
+    }
+    Files.writeString(file, csv);
+    assertTrue(Files.size(file) > CsvRowReader.SNIFF_BYTES * 10);
+
+    try (CsvRowReader reader = new CsvRowReader(file)) {
+      assertEquals("Wine 0", reader.next()[0]);
+      assertTrue(reader.getBytesRead() < reader.getSize());
+      int count = 1;
+      String[] last = null;
+      while (reader.hasNext()) {
+        last = reader.next();
+        count++;
+      }
+      assertEquals(rows, count);
+      assertEquals("Wine " + (rows - 1), last[0]);
+    }
+    assertEquals(rows, ProcessCsv.getCsvRows(file.toFile()).size());
+  }
+}
@@ -0,0 +1,102 @@
+package seng202.team6.unittests.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import seng202.team6.managers.DatabaseManager;
+import seng202.team6.util.DatabaseExecutor;
+
+/**
+ * Tests running database work in the background
+ */
+class DatabaseExecutorTest {
+
+  private DatabaseExecutor executor;
+
+  /**
+   * Creates an executor running tasks on virtual threads
+   */
+  @BeforeEach
+  void setup() {
+    executor = new DatabaseExecutor();
+  }
+
+  /**
+   * Closes the executor
+   */
+  @AfterEach
+  void teardown() {
+    executor.close();
+  }
+
+  /**
+   * Tests a task's result completes its future, off the calling thread
+   */
+  @Test
+  void submitReturnsResult() throws Exception {
+    Thread caller = Thread.currentThread();
+    CompletableFuture<Thread> future = executor.submit(Thread::currentThread);
+    Thread worker = future.get();
+    assertNotSame(caller, worker);
+    assertTrue(worker.isVirtual());
+  }
+
+  /**
+   * Tests what a task throws completes its future exceptionally
+   */
+  @Test
+  void submitReturnsFailure() {
+    CompletableFuture<Object> future = executor.submit(() -> {
+      throw new SQLException("failed");
+    });
+    ExecutionException error = assertThrows(ExecutionException.class, future::get);
+    assertInstanceOf(SQLException.class, error.getCause());
+  }
+
+  /**
+   * Tests closing waits for running tasks to finish
+   */
+  @Test
+  void closeWaitsForTasks() throws InterruptedException {
+    CountDownLatch started = new CountDownLatch(1);
+    AtomicBoolean finished = new AtomicBoolean();
+    executor.execute(() -> {
+      started.countDown();
+      try {
+        Thread.sleep(100);
+      } catch (InterruptedException error) {
+        return;
+      }
+      finished.set(true);
+    });
+    started.await();
+    executor.close();
+    assertTrue(finished.get());
+  }
+
+  /**
+   * Tests queries run through the database manager's executor see the database
+   */
+  @Test
+  void queryInBackground() throws Exception {
+    DatabaseManager databaseManager = new DatabaseManager();
+    try {
+      int count = databaseManager.getExecutor()
+          .submit(() -> databaseManager.getWineDao().getCount()).get();
+      assertEquals(0, count);
+    } finally {
+      databaseManager.teardown();
+    }
+  }
+}
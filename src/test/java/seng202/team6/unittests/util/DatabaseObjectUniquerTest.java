@@ -2,7 +2,11 @@ package seng202.team6.unittests.util;
 
 import static java.lang.Thread.sleep;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import seng202.team6.util.DatabaseObjectUniquer;
@@ -68,6 +72,58 @@ class DatabaseObjectUniquerTest {
 
   }
 
+  /**
+   * Tests an object can be added again once removed, and a live duplicate is rejected
+   */
+  @Test
+  void addAfterRemove() {
+    assertThrows(IllegalStateException.class, () -> objects.addObject(1, new TestClass()));
+    objects.removeObject(1);
+    TestClass ref2 = new TestClass();
+    objects.addObject(1, ref2);
+    assertEquals(ref2, objects.tryGetObject(1));
+    assertEquals(1, objects.size());
+  }
+
+  /**
+   * Tests objects added from several threads can all be read back from every thread
+   *
+   * @throws InterruptedException if interrupted
+   */
+  @Test
+  void concurrentAddAndGet() throws InterruptedException {
+    int count = 20_000;
+    TestClass[] refs = new TestClass[count];
+    for (int i = 0; i < count; i++) {
+      refs[i] = new TestClass();
+    }
+    AtomicBoolean mismatch = new AtomicBoolean(false);
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      int first = t;
+      threads[t] = new Thread(() -> {
+        for (int i = first; i < count; i += threads.length) {
+          objects.addObject(100 + i, refs[i]);
+        }
+        for (int i = 0; i < count; i++) {
+          TestClass object = objects.tryGetObject(100 + i);
+          if (object != null && object != refs[i]) {
+            mismatch.set(true);
+          }
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertFalse(mismatch.get());
+    for (int i = 0; i < count; i++) {
+      assertSame(refs[i], objects.tryGetObject(100 + i));
+    }
+    assertEquals(count + 1, objects.size());
+  }
+
   static class TestClass {
 
   }
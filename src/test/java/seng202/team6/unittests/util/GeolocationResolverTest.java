@@ -0,0 +1,159 @@
+package seng202.team6.unittests.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import seng202.team6.model.GeoLocation;
+import seng202.team6.util.GeolocationResolver;
+import seng202.team6.util.TokenBucket;
+
+/**
+ * Tests the geolocation resolver against a local server standing in for OpenRouteService
+ */
+class GeolocationResolverTest {
+
+  private static final String FOUND = "{\"features\":[{\"geometry\":"
+      + "{\"coordinates\":[172.5,-43.5]}}]}";
+  private static final String NOT_FOUND = "{\"features\":[]}";
+
+  private HttpServer server;
+  private String baseUrl;
+  private final AtomicInteger requests = new AtomicInteger();
+
+  /**
+   * Starts a server which finds "Christchurch" and "Blenheim", finds nothing for "Nowhere" and
+   * fails for anything else
+   */
+  @BeforeEach
+  void setup() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/geocode/search", exchange -> {
+      requests.incrementAndGet();
+      String query = URLDecoder.decode(exchange.getRequestURI().getRawQuery(),
+          StandardCharsets.UTF_8);
+      if (query.contains("text=Christchurch") || query.contains("text=Blenheim")) {
+        respond(exchange, 200, FOUND);
+      } else if (query.contains("text=Nowhere")) {
+        respond(exchange, 200, NOT_FOUND);
+      } else {
+        respond(exchange, 500, "{\"error\":\"failed\"}");
+      }
+    });
+    server.createContext("/v2/directions/driving-car", exchange -> {
+      requests.incrementAndGet();
+      respond(exchange, 200, "{\"routes\":[{\"geometry\":\"route\"}]}");
+    });
+    server.start();
+    baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  /**
+   * Stops the server
+   */
+  @AfterEach
+  void teardown() {
+    server.stop(0);
+  }
+
+  private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream output = exchange.getResponseBody()) {
+      output.write(bytes);
+    }
+  }
+
+  /**
+   * Tests found locations and locations with no match are passed on, and failed ones are neither
+   */
+  @Test
+  void resolveAllStreamsResults() {
+    GeolocationResolver resolver = new GeolocationResolver(baseUrl, "key",
+        new TokenBucket(10, 100));
+    Map<String, GeoLocation> resolved = new ConcurrentHashMap<>();
+    Set<String> unresolved = ConcurrentHashMap.newKeySet();
+    resolver.resolveAll(List.of("Christchurch", "Blenheim", "Nowhere", "Broken"),
+        resolved::put, unresolved::add);
+
+    assertEquals(Set.of("Christchurch", "Blenheim"), resolved.keySet());
+    assertEquals(-43.5, resolved.get("Christchurch").getLatitude());
+    assertEquals(172.5, resolved.get("Christchurch").getLongitude());
+    assertEquals(Set.of("Nowhere"), unresolved);
+    assertEquals(4, requests.get());
+  }
+
+  /**
+   * Tests requests wait for the rate limit
+   */
+  @Test
+  void resolveAllRateLimited() {
+    GeolocationResolver resolver = new GeolocationResolver(baseUrl, "key",
+        new TokenBucket(2, 20));
+    long start = System.nanoTime();
+    resolver.resolveAll(List.of("Christchurch", "Blenheim", "Nowhere", "Broken", "Other"),
+        (name, geoLocation) -> { }, name -> { });
+
+    // two requests are sent straight away and the other three wait 50ms each
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(140));
+    assertEquals(5, requests.get());
+  }
+
+  /**
+   * Tests interrupting resolveAll stops the requests waiting for the rate limit straight away
+   */
+  @Test
+  void resolveAllStopsWhenInterrupted() throws InterruptedException {
+    GeolocationResolver resolver = new GeolocationResolver(baseUrl, "key",
+        new TokenBucket(1, 0.1));
+    Thread thread = Thread.ofVirtual().start(() -> resolver.resolveAll(
+        List.of("Christchurch", "Blenheim", "Nowhere"), (name, geoLocation) -> { }, name -> { }));
+    while (requests.get() == 0) {
+      Thread.sleep(10);
+    }
+    thread.interrupt();
+
+    // the other two requests would each wait 10s for the rate limit
+    assertTrue(thread.join(Duration.ofSeconds(2)));
+    assertEquals(1, requests.get());
+  }
+
+  /**
+   * Tests resolving a single location
+   */
+  @Test
+  void resolveLocation() {
+    GeolocationResolver resolver = new GeolocationResolver(baseUrl, "key",
+        new TokenBucket(10, 100));
+    assertEquals(-43.5, resolver.resolveLocation("Christchurch").join().getLatitude());
+    assertNull(resolver.resolveLocation("Nowhere").join());
+  }
+
+  /**
+   * Tests resolving a route
+   */
+  @Test
+  void resolveRoute() {
+    GeolocationResolver resolver = new GeolocationResolver(baseUrl, "key",
+        new TokenBucket(10, 100));
+    assertEquals("route", resolver.resolveRoute(
+        List.of(new GeoLocation(-43.5, 172.5), new GeoLocation(-41.5, 173.9))));
+  }
+}
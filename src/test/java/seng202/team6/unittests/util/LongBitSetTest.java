@@ -0,0 +1,68 @@
+package seng202.team6.unittests.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import seng202.team6.util.LongBitSet;
+
+/**
+ * Tests the set of IDs stored as bits
+ */
+class LongBitSetTest {
+
+  /**
+   * Tests IDs can be added and removed on either side of a word boundary
+   */
+  @Test
+  void addAndRemove() {
+    LongBitSet set = new LongBitSet();
+    assertTrue(set.add(63));
+    assertTrue(set.add(64));
+    assertFalse(set.add(64));
+    assertTrue(set.contains(63));
+    assertTrue(set.contains(64));
+    assertFalse(set.contains(65));
+    assertEquals(2, set.size());
+
+    assertTrue(set.remove(63));
+    assertFalse(set.remove(63));
+    assertFalse(set.contains(63));
+    assertTrue(set.contains(64));
+    assertEquals(1, set.size());
+  }
+
+  /**
+   * Tests the set grows to hold large IDs and never contains IDs it has not stored
+   */
+  @Test
+  void growsForLargeIds() {
+    LongBitSet set = new LongBitSet();
+    assertFalse(set.contains(1_000_000));
+    assertFalse(set.remove(1_000_000));
+    for (long id = 0; id < 1_000_000; id += 7) {
+      set.add(id);
+    }
+    assertEquals(142_858, set.size());
+    assertTrue(set.contains(999_999));
+    assertFalse(set.contains(999_998));
+    assertFalse(set.contains(-1));
+
+    set.clear();
+    assertEquals(0, set.size());
+    assertFalse(set.contains(0));
+  }
+
+  /**
+   * Tests IDs which cannot be stored are rejected
+   */
+  @Test
+  void rejectsOutOfRangeIds() {
+    LongBitSet set = new LongBitSet();
+    assertThrows(IllegalArgumentException.class, () -> set.add(-1));
+    assertThrows(IllegalArgumentException.class, () -> set.add(LongBitSet.MAX_ID + 1));
+    assertFalse(set.contains(Long.MAX_VALUE));
+  }
+}
@@ -0,0 +1,110 @@
+package seng202.team6.unittests.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import seng202.team6.util.StatementCache;
+
+/**
+ * Tests the prepared statement cache
+ */
+class StatementCacheTest {
+
+  private Connection connection;
+  private StatementCache cache;
+
+  /**
+   * Creates a cache holding two statements on an in-memory database
+   */
+  @BeforeEach
+  void setup() throws SQLException {
+    connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+    cache = new StatementCache(connection, 2);
+  }
+
+  /**
+   * Closes the cache and the database
+   */
+  @AfterEach
+  void teardown() throws SQLException {
+    cache.close();
+    connection.close();
+  }
+
+  private int select(String sql, int value) throws SQLException {
+    try (PreparedStatement statement = cache.prepare(sql)) {
+      statement.setInt(1, value);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        resultSet.next();
+        return resultSet.getInt(1);
+      }
+    }
+  }
+
+  /**
+   * Tests a statement is reused once closed and its parameters are rebound
+   */
+  @Test
+  void reuseClosedStatement() throws SQLException {
+    assertEquals(1, select("SELECT ?", 1));
+    assertEquals(2, select("SELECT ?", 2));
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+    assertEquals(1, cache.size());
+  }
+
+  /**
+   * Tests the same SQL prepared while a statement for it is in use gets a statement of its own
+   */
+  @Test
+  void prepareInUse() throws SQLException {
+    try (PreparedStatement outer = cache.prepare("SELECT ?")) {
+      outer.setInt(1, 1);
+      assertEquals(2, select("SELECT ?", 2));
+      try (ResultSet resultSet = outer.executeQuery()) {
+        resultSet.next();
+        assertEquals(1, resultSet.getInt(1));
+      }
+      assertFalse(outer.isClosed());
+    }
+    assertEquals(2, cache.getMisses());
+    assertEquals(1, cache.size());
+  }
+
+  /**
+   * Tests the least recently used statement is evicted when the cache is full
+   */
+  @Test
+  void evictLeastRecentlyUsed() throws SQLException {
+    select("SELECT ?", 1);
+    select("SELECT ? + 1", 1);
+    select("SELECT ?", 1);
+    select("SELECT ? + 2", 1);
+    assertEquals(1, cache.getEvictions());
+    select("SELECT ?", 1);
+    assertEquals(2, cache.getHits());
+    select("SELECT ? + 1", 1);
+    assertEquals(2, cache.getHits());
+  }
+
+  /**
+   * Tests a statement closed after the cache is closed is closed for good
+   */
+  @Test
+  void closeCache() throws SQLException {
+    PreparedStatement statement = cache.prepare("SELECT ?");
+    cache.close();
+    statement.close();
+    assertTrue(statement.isClosed());
+    assertEquals(0, cache.size());
+  }
+}
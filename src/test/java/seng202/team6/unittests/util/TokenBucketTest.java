@@ -0,0 +1,60 @@
+package seng202.team6.unittests.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import seng202.team6.util.TokenBucket;
+
+/**
+ * Tests the token bucket rate limiter
+ */
+class TokenBucketTest {
+
+  private long now = 0;
+
+  /**
+   * Tests a full bucket hands out its capacity at once and then refills at its rate
+   */
+  @Test
+  void burstThenRefill() {
+    TokenBucket bucket = new TokenBucket(3, 2, () -> now);
+    assertTrue(bucket.tryAcquire());
+    assertTrue(bucket.tryAcquire());
+    assertTrue(bucket.tryAcquire());
+    assertFalse(bucket.tryAcquire());
+
+    now += TimeUnit.MILLISECONDS.toNanos(499);
+    assertFalse(bucket.tryAcquire());
+    now += TimeUnit.MILLISECONDS.toNanos(1);
+    assertTrue(bucket.tryAcquire());
+    assertFalse(bucket.tryAcquire());
+  }
+
+  /**
+   * Tests tokens never build up past the capacity
+   */
+  @Test
+  void refillCappedAtCapacity() {
+    TokenBucket bucket = new TokenBucket(2, 10, () -> now);
+    bucket.tryAcquire();
+    now += TimeUnit.SECONDS.toNanos(60);
+    assertEquals(2, bucket.getAvailableTokens());
+  }
+
+  /**
+   * Tests acquiring waits for tokens to refill once the bucket is empty
+   */
+  @Test
+  void acquireWaitsForRefill() throws InterruptedException {
+    TokenBucket bucket = new TokenBucket(1, 20);
+    long start = System.nanoTime();
+    for (int i = 0; i < 5; i++) {
+      bucket.acquire();
+    }
+    // the first token is free and the other four take 50ms each
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(190));
+  }
+}